@@ -0,0 +1,195 @@
+#!/bin/bash
+#
+# test-batch-server-failover - test batch server nodes that share a hot folder, with one node killed during a job
+#
+# The test:
+#   1. Creates a temporary hot folder and starts N batch server nodes (TSTool JVMs) on it,
+#      each with --batchServerNode nodeN.
+#   2. Copies M command files into the hot folder, each of which runs for several seconds.
+#   3. Kills node1 (kill -9 of the JVM, similar to a crash or power failure) while it is running a job.
+#   4. Waits for the other nodes to requeue the job after the lease expires and for all jobs to finish.
+#   5. Checks the node journals (.tstool-jobs/journal-nodeN.jsonl) so that each command file finished successfully
+#      exactly once and that no job failed.
+#
+# The lease timeout must be the same as the TSTool BatchServerLeaseTimeout configuration property (default 60 seconds).
+# Use a short timeout for testing, for example in the user's TSTool.cfg:
+#   BatchServerLeaseTimeout = 10
+#   BatchServerLeaseHeartbeat = 2
+#
+# The test uses RunProgram(CommandLine="sleep N") so must be run on Linux.
+
+# Supporting functions, alphabetized.
+
+# Count the successful finish records for a command file name in all node journals.
+countDone() {
+  local name
+  name="$1"
+  cat ${jobsFolder}/journal-*.jsonl 2> /dev/null | grep '"Event":"finish"' | grep "\"Name\":\"${name}\"" | grep -c '"Folder":"done"'
+}
+
+# Count the failed finish records in all node journals, not including jobs whose lease was lost.
+countFailed() {
+  cat ${jobsFolder}/journal-*.jsonl 2> /dev/null | grep '"Event":"finish"' | grep -c '"Folder":"failed"'
+}
+
+# Echo to stderr.
+echoStderr() {
+  echo "$@" 1>&2
+}
+
+# Return the identifier of a job that node1 has started and not finished, or nothing if none.
+getRunningJobId() {
+  local journalFile jobId
+  journalFile="${jobsFolder}/journal-node1.jsonl"
+  if [ ! -f "${journalFile}" ]; then
+    return
+  fi
+  for jobId in $(grep '"Event":"start"' "${journalFile}" | grep -o '"JobId":"[^"]*"' | cut -d '"' -f 4); do
+    if ! grep '"Event":"finish"' "${journalFile}" | grep -q "\"JobId\":\"${jobId}\""; then
+      echo "${jobId}"
+      return
+    fi
+  done
+}
+
+# Print the usage.
+printUsage() {
+  echoStderr ""
+  echoStderr "Usage:  $0 [options]"
+  echoStderr ""
+  echoStderr "Test batch server nodes that share a hot folder, with one node killed while it is running a job."
+  echoStderr ""
+  echoStderr "-h, --help              Print the usage."
+  echoStderr "--jobs M                Number of command files to run (default ${jobCount})."
+  echoStderr "--jobSeconds S          Seconds that each command file runs (default ${jobSeconds})."
+  echoStderr "--leaseTimeout S        TSTool BatchServerLeaseTimeout configuration property value (default ${leaseTimeout})."
+  echoStderr "--nodes N               Number of batch server nodes, 2 or more (default ${nodeCount})."
+  echoStderr "--tstool PROGRAM        TSTool launcher program (default ${tstoolProgram})."
+  echoStderr ""
+}
+
+# Stop the nodes that are running, using the "stop" file, and kill any that do not stop.
+stopNodes() {
+  local pid
+  touch "${hotFolder}/stop"
+  sleep $((jobSeconds + 5))
+  for pid in "${nodePids[@]}"; do
+    if kill -0 ${pid} 2> /dev/null; then
+      pkill -KILL -P ${pid}
+    fi
+  done
+}
+
+# Entry point into the script.
+
+scriptFolder=$(cd $(dirname "$0") && pwd)
+repoFolder=$(dirname "${scriptFolder}")
+tstoolProgram="${repoFolder}/resources/runtime/bin/tstool"
+nodeCount=3
+jobCount=12
+jobSeconds=5
+leaseTimeout=60
+
+while [ $# -gt 0 ]; do
+  case "$1" in
+    -h|--help) printUsage; exit 0;;
+    --jobs) jobCount="$2"; shift 2;;
+    --jobSeconds) jobSeconds="$2"; shift 2;;
+    --leaseTimeout) leaseTimeout="$2"; shift 2;;
+    --nodes) nodeCount="$2"; shift 2;;
+    --tstool) tstoolProgram="$2"; shift 2;;
+    *) echoStderr "Unknown option: $1"; printUsage; exit 1;;
+  esac
+done
+if [ ${nodeCount} -lt 2 ]; then
+  echoStderr "At least 2 nodes are required."
+  exit 1
+fi
+if [ ! -x "${tstoolProgram}" ]; then
+  echoStderr "TSTool program does not exist or is not executable:  ${tstoolProgram}"
+  exit 1
+fi
+
+testFolder=$(mktemp -d -t tstool-failover-XXXXXX)
+hotFolder="${testFolder}/hot"
+jobsFolder="${hotFolder}/.tstool-jobs"
+mkdir -p "${hotFolder}"
+echoStderr "Test folder:  ${testFolder}"
+
+# Start the nodes.
+nodePids=()
+for node in $(seq 1 ${nodeCount}); do
+  "${tstoolProgram}" --batchServer --batchServerHotFolder "${hotFolder}" --batchServerNode "node${node}" \
+    > "${testFolder}/node${node}.out" 2>&1 &
+  nodePids+=($!)
+  echoStderr "Started node${node}, launcher process ${nodePids[-1]}."
+done
+# Wait for the nodes to open their journals.
+sleep 10
+
+# Submit the command files:
+# - write to a temporary name and rename so that each file is complete when it appears
+for job in $(seq 1 ${jobCount}); do
+  echo "RunProgram(CommandLine=\"sleep ${jobSeconds}\")" > "${hotFolder}/job-${job}.tstool.tmp"
+  mv "${hotFolder}/job-${job}.tstool.tmp" "${hotFolder}/job-${job}.tstool"
+done
+echoStderr "Submitted ${jobCount} command files."
+
+# Kill node1 while it is running a job.
+killedJobId=""
+for i in $(seq 1 60); do
+  killedJobId=$(getRunningJobId)
+  if [ -n "${killedJobId}" ]; then
+    break
+  fi
+  sleep 1
+done
+if [ -z "${killedJobId}" ]; then
+  echoStderr "node1 did not start a job - see ${testFolder}/node1.out"
+  stopNodes
+  exit 1
+fi
+pkill -KILL -P ${nodePids[0]}
+echoStderr "Killed node1 while running job ${killedJobId}."
+
+# Wait for all the jobs to finish, allowing for the lease timeout and running the jobs on the remaining nodes.
+maxWait=$((leaseTimeout*2 + (jobCount*jobSeconds)/(nodeCount - 1) + 60))
+for i in $(seq 1 ${maxWait}); do
+  doneCount=0
+  for job in $(seq 1 ${jobCount}); do
+    if [ $(countDone "job-${job}.tstool") -gt 0 ]; then
+      doneCount=$((doneCount + 1))
+    fi
+  done
+  if [ ${doneCount} -eq ${jobCount} ]; then
+    break
+  fi
+  sleep 1
+done
+stopNodes
+
+# Check that each job finished successfully exactly once.
+status=0
+for job in $(seq 1 ${jobCount}); do
+  count=$(countDone "job-${job}.tstool")
+  if [ ${count} -ne 1 ]; then
+    echoStderr "FAIL:  job-${job}.tstool finished successfully ${count} times."
+    status=1
+  fi
+done
+failedCount=$(countFailed)
+if [ ${failedCount} -ne 0 ]; then
+  echoStderr "FAIL:  ${failedCount} jobs failed."
+  status=1
+fi
+if [ $(grep -c '"Event":"requeue"' ${jobsFolder}/journal-*.jsonl | awk -F: '{ n += $2 } END { print n }') -eq 0 ]; then
+  echoStderr "FAIL:  no job was requeued after node1 was killed."
+  status=1
+fi
+if [ ${status} -eq 0 ]; then
+  echoStderr "PASS:  all ${jobCount} jobs finished successfully exactly once after node1 was killed."
+  rm -rf "${testFolder}"
+else
+  echoStderr "Journals and node output are in:  ${testFolder}"
+fi
+exit ${status}
@@ -0,0 +1,141 @@
+#!/bin/bash
+#
+# test-http-server-load - measure TSTool HTTP server requests per second for concurrent time series reads
+#
+# The test sends many GET /tstool/ts requests for one time series from many concurrent clients
+# (one curl process with parallel transfers, which requires curl 7.66 or later)
+# to a TSTool HTTP server that is already running (tstool --httpServer), and prints the requests per second
+# and the count of each HTTP status.  A 503 status means that the request could not start a datastore call within
+# the HttpServerDataStoreWait time, or that the server was overloaded.
+#
+# To compare request thread configurations, run the test with the same time series and each server configuration,
+# for example in the user's TSTool.cfg:
+#   HttpServerVirtualThreads = False                   (fixed pool of HttpServerRequestThreads, default 16)
+#   HttpServerVirtualThreads = True                    (virtual threads, requires Java 21 or later)
+#   HttpServerDataStoreConcurrency = 16 or 200         (concurrent datastore calls)
+# The server configuration is printed from GET /tstool/status before the test.
+#
+# Use a time series from a datastore that is typical of the deployment (for example a database or web service),
+# so that each request waits for the datastore similar to production.
+# A datastore that responds in about 100 ms with 400 clients shows the difference between the configurations.
+
+# Supporting functions, alphabetized.
+
+# Echo to stderr.
+echoStderr() {
+  echo "$@" 1>&2
+}
+
+# Print the usage.
+printUsage() {
+  echoStderr ""
+  echoStderr "Usage:  $0 [options] --tsid TSID"
+  echoStderr ""
+  echoStderr "Measure TSTool HTTP server requests per second for concurrent time series reads."
+  echoStderr ""
+  echoStderr "--clients N             Number of concurrent clients (default ${clientCount})."
+  echoStderr "-h, --help              Print the usage."
+  echoStderr "--inputEnd DATETIME     End of the period to read (default is full period)."
+  echoStderr "--inputStart DATETIME   Start of the period to read (default is full period)."
+  echoStderr "--requests N            Number of requests (default ${requestCount})."
+  echoStderr "--token TOKEN           Token, if HttpServerToken is configured."
+  echoStderr "--tsid TSID             Time series identifier to read, for example Loc.Source.Type.Interval~DataStore."
+  echoStderr "--url URL               Server URL (default ${serverUrl})."
+  echoStderr ""
+}
+
+# URL-encode a query parameter value.
+urlEncode() {
+  local s i c encoded
+  s="$1"
+  encoded=""
+  for (( i=0; i<${#s}; i++ )); do
+    c="${s:i:1}"
+    case "${c}" in
+      [A-Za-z0-9.~_-]) encoded="${encoded}${c}";;
+      *) encoded="${encoded}$(printf '%%%02X' "'${c}")";;
+    esac
+  done
+  echo "${encoded}"
+}
+
+# Entry point into the script.
+
+serverUrl="http://127.0.0.1:8000/tstool"
+requestCount=4000
+clientCount=400
+tsid=""
+inputStart=""
+inputEnd=""
+token=""
+
+while [ $# -gt 0 ]; do
+  case "$1" in
+    --clients) clientCount="$2"; shift 2;;
+    -h|--help) printUsage; exit 0;;
+    --inputEnd) inputEnd="$2"; shift 2;;
+    --inputStart) inputStart="$2"; shift 2;;
+    --requests) requestCount="$2"; shift 2;;
+    --token) token="$2"; shift 2;;
+    --tsid) tsid="$2"; shift 2;;
+    --url) serverUrl="$2"; shift 2;;
+    *) echoStderr "Unknown option: $1"; printUsage; exit 1;;
+  esac
+done
+if [ -z "${tsid}" ]; then
+  echoStderr "The time series identifier (--tsid) is required."
+  printUsage
+  exit 1
+fi
+if ! curl --help all 2> /dev/null | grep -q -- '--parallel-max'; then
+  echoStderr "curl 7.66 or later is required for parallel requests."
+  exit 1
+fi
+
+authorization=()
+if [ -n "${token}" ]; then
+  authorization=(-H "Authorization: Bearer ${token}")
+fi
+tsUrl="${serverUrl}/ts?TSID=$(urlEncode "${tsid}")&Format=JSON"
+if [ -n "${inputStart}" ]; then
+  tsUrl="${tsUrl}&InputStart=$(urlEncode "${inputStart}")"
+fi
+if [ -n "${inputEnd}" ]; then
+  tsUrl="${tsUrl}&InputEnd=$(urlEncode "${inputEnd}")"
+fi
+
+# Print the server configuration and check that the time series can be read.
+echoStderr "Server status:"
+if ! curl -s -f "${authorization[@]}" "${serverUrl}/status"; then
+  echoStderr "Unable to get the server status from ${serverUrl}/status - is the server running?"
+  exit 1
+fi
+echo ""
+code=$(curl -s -o /dev/null -w "%{http_code}" "${authorization[@]}" "${tsUrl}")
+if [ "${code}" != "200" ]; then
+  echoStderr "Reading the time series returned status ${code} - check the time series identifier."
+  exit 1
+fi
+
+echoStderr "Sending ${requestCount} requests from ${clientCount} concurrent clients for ${tsid}."
+# Use one curl process for all requests, rather than a process for each request,
+# so that starting processes does not limit the request rate.
+configFile=$(mktemp -t tstool-load-XXXXXX)
+statusFile=$(mktemp -t tstool-load-XXXXXX)
+for i in $(seq 1 ${requestCount}); do
+  echo "url = \"${tsUrl}\""
+  echo "output = \"/dev/null\""
+done > "${configFile}"
+startNs=$(date +%s%N)
+curl -s --parallel --parallel-immediate --parallel-max ${clientCount} -w "%{http_code}\n" --max-time 300 \
+  "${authorization[@]}" -K "${configFile}" > "${statusFile}"
+endNs=$(date +%s%N)
+
+elapsedMs=$(( (endNs - startNs)/1000000 ))
+okCount=$(grep -c '^200$' "${statusFile}")
+echo "Elapsed time:  ${elapsedMs} ms"
+echo "Requests per second:  $(( requestCount*1000/(elapsedMs > 0 ? elapsedMs : 1) ))"
+echo "Successful requests per second:  $(( okCount*1000/(elapsedMs > 0 ? elapsedMs : 1) ))"
+echo "Status counts (000 is a connection error or timeout):"
+sort "${statusFile}" | uniq -c
+rm -f "${configFile}" "${statusFile}"
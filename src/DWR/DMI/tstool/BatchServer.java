@@ -0,0 +1,900 @@
+// BatchServer - run command files from the batch server hot folder using a pool of workers
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandLogRecord;
+import RTi.Util.IO.CommandPhaseType;
+import RTi.Util.IO.CommandProcessorListener;
+import RTi.Util.IO.CommandStatusType;
+import RTi.Util.IO.CommandStatusUtil;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import riverside.datastore.DataStore;
+import riverside.datastore.DataStoreSubstitute;
+import rti.tscommandprocessor.core.TSCommandFileRunner;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Batch server, started with --batchServer, that runs command files that are copied into the hot folder.
+ * Command files are run by a pool of workers (--batchServerWorkers N, default 1) so that a long run does not block
+ * short runs.  Each job is run by a new command processor so that jobs are isolated from each other
+ * (results, properties, and Exit() only affect the job's processor),
+ * and all processors share the datastores that were opened at startup by the warm processor.
+ *
+ * Jobs are recorded in the job journal (see BatchServerJournal), which moves each command file to the
+ * "processing" folder while queued and running and then to the "done" or "failed" folder,
+ * and requeues jobs that were processing when the server stopped.
+ * The command file's working directory is the hot folder, even though the file is run from the "processing" folder.
+ *
+ * The TSTool log file is shared by all workers, with messages from the server prefixed by the worker name.
+ * Each job also writes its own log file in the journal "logs" folder,
+ * with the job's command progress and problems, so that the output for a job can be reviewed without
+ * separating it from other jobs in the TSTool log file.
+ * The StartLog(), SetDebugLevel(), and SetWarningLevel() commands change the logging for the whole server,
+ * not only for the job that runs them, because the TSTool log file and message levels are global.
+ * Therefore, with more than one worker, a job that uses one of these commands waits for running jobs to finish
+ * and runs by itself so that its StartLog() log file only contains its own messages,
+ * and the debug and warning levels are reset when the job finishes.
+ * The TSTool log file is not reset after StartLog(), so messages from later jobs are written to the job's log file
+ * until another job uses StartLog().  Use the job log files rather than StartLog() in command files that are run
+ * by the batch server.
+ *
+ * Command files are queued when they are ready and are run in the order determined by BatchServerScheduler,
+ * using priority (the "high" and "low" hot folder subfolders or #@priority annotation) and fair share between submitters.
+ * The queue depth and longest wait are logged periodically, and the queue time and depth are saved in the journal.
+ *
+ * In incremental mode (--incremental), a job is skipped if its command file, inputs, and outputs are unchanged since
+ * the last successful run of a command file with the same name (see IncrementalRunCache).
+ * Skipped jobs are recorded as successful in the journal.
+ *
+ * Requests for identical command files (same content, for example when several dashboards submit the same file)
+ * are coalesced so that the work is only done once:  when a job is started, queued files with identical content,
+ * and files with identical content that are submitted while the job is running, are attached to the job.
+ * Each attached request is still a job in the journal, with its own log file and "done" or "failed" command file,
+ * and finishes with the status of the job that ran.
+ *
+ * Each job has a wall time and memory budget (see BatchServerJobBudget), from the BatchServerJobTimeLimit,
+ * BatchServerJobMemoryLimit, and BatchServerJobAllocationLimit configuration properties or #@timeLimit, #@memoryLimit,
+ * and #@allocationLimit annotations in the command file.
+ * A job that exceeds its budget is canceled, its results are cleared, and it is recorded as failed,
+ * so that a runaway job does not exhaust the heap and stop the server.
+ *
+ * Several batch servers (nodes) can share the hot folder, for throughput and failover, when started with --batchServerNode.
+ * Each node claims command files with an atomic move and holds a lease for each job that it renews while the job runs
+ * (see BatchServerLeases).  Jobs for a node that stopped are requeued when their leases expire,
+ * and a job whose lease was lost because another node requeued it is canceled.
+ * The hot folder should use "Poll" mode if it is a network folder, because file events are not shared between computers.
+ *
+ * Job counts, job duration percentiles, datastore read times, and JVM heap and garbage collection metrics
+ * are written periodically to the status file in the journal folder and are available with JMX (see BatchServerMetrics).
+ *
+ * A file named "stop" in the hot folder stops the server after running jobs complete.
+ * A file named "reload-datastores" in the hot folder reloads datastores whose configuration files have changed
+ * (see DataStoreReloader), after running jobs complete and before other jobs are started.
+ */
+public class BatchServer {
+
+	/**
+	 * Name of the file that stops the server.
+	 */
+	public static final String STOP_FILE_NAME = "stop";
+
+	/**
+	 * Name of the file that reloads datastores whose configuration files have changed.
+	 */
+	public static final String RELOAD_DATASTORES_FILE_NAME = "reload-datastores";
+
+	/**
+	 * Interval to log the queue status when files are queued, milliseconds.
+	 */
+	private static final long STATUS_INTERVAL_MS = 60000;
+
+	/**
+	 * Commands that change the TSTool log file or message levels for the whole server, upper case.
+	 */
+	private static final String [] GLOBAL_LOGGING_COMMANDS = { "STARTLOG", "SETDEBUGLEVEL", "SETWARNINGLEVEL" };
+
+	/**
+	 * Hot folder containing command files to run.
+	 */
+	private BatchServerHotFolder hotFolder = null;
+
+	/**
+	 * Job journal.
+	 */
+	private BatchServerJournal journal = null;
+
+	/**
+	 * Scheduler that selects the next command file to run.
+	 */
+	private BatchServerScheduler scheduler = null;
+
+	/**
+	 * Incremental run cache, or null if not running in incremental mode.
+	 */
+	private IncrementalRunCache incrementalCache = null;
+
+	/**
+	 * Reloads datastores whose configuration files have changed, or null if reloading is not enabled.
+	 */
+	private DataStoreReloader dataStoreReloader = null;
+
+	/**
+	 * Whether requests for identical command files are coalesced.
+	 */
+	private boolean coalesceDuplicates = true;
+
+	/**
+	 * Running jobs that identical requests can be coalesced with, by content key.
+	 * This is also used to synchronize coalescing.
+	 */
+	private Map<String,BatchServerJob> runningJobMap = new HashMap<>();
+
+	/**
+	 * Default wall time limit for each job in seconds, 0 for no limit.
+	 */
+	private int jobTimeLimitSeconds = 0;
+
+	/**
+	 * Default memory limit for each job in MB, 0 for no limit.
+	 */
+	private long jobMemoryLimitMb = 0;
+
+	/**
+	 * Default allocation limit for each command in MB, 0 for no limit, or -1 for a multiple of the memory limit.
+	 */
+	private long jobAllocationLimitMb = -1;
+
+	/**
+	 * Budgets for running jobs, checked periodically and used to cancel jobs.
+	 * This is also used to synchronize checking the budgets.
+	 */
+	private List<BatchServerJobBudget> runningBudgetList = new ArrayList<>();
+
+	/**
+	 * Lock used when there is more than one worker, so that a job that changes the global logging
+	 * (see GLOBAL_LOGGING_COMMANDS) runs by itself.
+	 * Other jobs hold the read lock while running and a job that changes the logging holds the write lock.
+	 * The lock is fair so that a job waiting for the write lock is not delayed by jobs that start later.
+	 */
+	private ReentrantReadWriteLock globalLoggingLock = new ReentrantReadWriteLock ( true );
+
+	/**
+	 * Job leases when several nodes share the hot folder, or null for a single node.
+	 */
+	private BatchServerLeases leases = null;
+
+	/**
+	 * Operational metrics.
+	 */
+	private BatchServerMetrics metrics = null;
+
+	/**
+	 * Interval for writing the status file, milliseconds, or 0 to not write.
+	 */
+	private long statusIntervalMs = 30000;
+
+	/**
+	 * Processor that holds the open datastores, shared with the processor for each job.
+	 */
+	private TSCommandProcessor warmProcessor = null;
+
+	/**
+	 * Processor properties from the command line, used for each job.
+	 */
+	private PropList processorProps = null;
+
+	/**
+	 * Plugin command classes, used for each job.
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginCommandClassList = null;
+
+	/**
+	 * Datastore substitutes, used for each job.
+	 */
+	private List<DataStoreSubstitute> datastoreSubstituteList = null;
+
+	/**
+	 * Number of workers.
+	 */
+	private int workerCount = 1;
+
+	/**
+	 * Constructor.
+	 * @param hotFolder hot folder containing command files to run
+	 * @param journal job journal, which has been opened
+	 * @param scheduler scheduler that selects the next command file to run
+	 * @param warmProcessor processor with open datastores, which are shared with the processor for each job
+	 * @param processorProps processor properties from the command line
+	 * @param pluginCommandClassList plugin command classes
+	 * @param datastoreSubstituteList datastore substitutes
+	 * @param workerCount number of workers, 1 or more
+	 */
+	@SuppressWarnings("rawtypes")
+	public BatchServer ( BatchServerHotFolder hotFolder, BatchServerJournal journal, BatchServerScheduler scheduler,
+		TSCommandProcessor warmProcessor, PropList processorProps,
+		List<Class> pluginCommandClassList, List<DataStoreSubstitute> datastoreSubstituteList, int workerCount ) {
+		this.hotFolder = hotFolder;
+		this.journal = journal;
+		this.scheduler = scheduler;
+		this.warmProcessor = warmProcessor;
+		this.processorProps = processorProps;
+		this.pluginCommandClassList = pluginCommandClassList;
+		this.datastoreSubstituteList = datastoreSubstituteList;
+		this.workerCount = Math.max(1, workerCount);
+		this.metrics = new BatchServerMetrics ( scheduler );
+	}
+
+	/**
+	 * Coalesce a command file with a job that runs an identical command file,
+	 * moving the command file to the "processing" folder and attaching it to the job.
+	 * This must be called when synchronized on runningJobMap.
+	 * @param queuedFile command file that was removed from the queue
+	 * @param runningJob job that runs an identical command file
+	 */
+	private void coalesceJob ( BatchServerScheduler.QueuedFile queuedFile, BatchServerJob runningJob ) {
+		String routine = getClass().getSimpleName() + ".coalesceJob";
+		try {
+			BatchServerJob job = this.journal.enqueue ( queuedFile.getFile(), queuedFile.getPriority(), queuedFile.getShareKey(),
+				queuedFile.getSubmitTime() );
+			runningJob.addCoalescedJob ( job );
+			this.journal.coalesce ( job );
+			Message.printStatus ( 2, routine, "Coalesced job " + job + " with job " + runningJob +
+				", which runs an identical command file." );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 2, routine, "Unable to move command file \"" + queuedFile.getFile() +
+				"\" to the processing folder (" + e + ") - not running." );
+		}
+	}
+
+	/**
+	 * Coalesce a command file that was just queued with a running job for an identical command file, if there is one.
+	 * @param queuedFile command file that was queued
+	 */
+	private void coalesceWithRunningJob ( BatchServerScheduler.QueuedFile queuedFile ) {
+		if ( !this.coalesceDuplicates || (queuedFile.getContentKey() == null) ) {
+			return;
+		}
+		synchronized ( this.runningJobMap ) {
+			BatchServerJob runningJob = this.runningJobMap.get ( queuedFile.getContentKey() );
+			if ( runningJob != null ) {
+				this.scheduler.remove ( queuedFile.getFile() );
+				coalesceJob ( queuedFile, runningJob );
+			}
+		}
+	}
+
+	/**
+	 * Create the processor for a job, which shares the datastores of the warm processor.
+	 * @param commandFileFull full path to the command file
+	 * @return the command file runner for the job
+	 */
+	private TSCommandFileRunner createJobRunner ( String commandFileFull ) throws Exception {
+		synchronized ( this.warmProcessor ) {
+			// Open lazy datastores used by the command file, in the warm processor so they remain open for later jobs.
+			TSToolMain.openLazyDataStoresReferencedByCommandFile ( this.warmProcessor, commandFileFull );
+			TSCommandFileRunner runner = new TSCommandFileRunner ( this.processorProps, this.pluginCommandClassList );
+			TSCommandProcessor processor = runner.getProcessor();
+			for ( DataStore dataStore : this.warmProcessor.getDataStores() ) {
+				processor.setPropContents ( "DataStore", dataStore );
+			}
+			Object hbdmiList = this.warmProcessor.getPropContents ( "HydroBaseDMIList" );
+			if ( hbdmiList != null ) {
+				processor.setPropContents ( "HydroBaseDMIList", hbdmiList );
+			}
+			processor.setDatastoreSubstituteList ( this.datastoreSubstituteList );
+			return runner;
+		}
+	}
+
+	/**
+	 * Finish the jobs that were coalesced with a job, after the job finished.
+	 * Each coalesced job has the status of the job, and its log file contains the log of the job.
+	 * @param job job that finished
+	 */
+	private void finishCoalescedJobs ( BatchServerJob job ) {
+		String routine = getClass().getSimpleName() + "[" + Thread.currentThread().getName() + "].finishCoalescedJobs";
+		List<BatchServerJob> coalescedJobs;
+		synchronized ( this.runningJobMap ) {
+			// Requests that are submitted after this will run the command file again.
+			this.runningJobMap.values().remove ( job );
+			coalescedJobs = new ArrayList<>(job.getCoalescedJobs());
+		}
+		if ( coalescedJobs.isEmpty() ) {
+			return;
+		}
+		List<String> logLines = new ArrayList<>();
+		try {
+			logLines = Files.readAllLines ( this.journal.getLogFile(job).toPath(), StandardCharsets.UTF_8 );
+		}
+		catch ( IOException e ) {
+			// No log lines to copy.
+		}
+		SimpleDateFormat timeFormat = new SimpleDateFormat ( "yyyy-MM-dd HH:mm:ss.SSS" );
+		for ( BatchServerJob coalescedJob : coalescedJobs ) {
+			// The coalesced job has no run time and its queue time is the time waiting for the result.
+			coalescedJob.setStarted ( job.getWorker() );
+			coalescedJob.setSkipped ( job.isSkipped() );
+			coalescedJob.setFinished ( job.getStatus() );
+			this.metrics.jobFinished ( coalescedJob );
+			PrintWriter jobLog = openJobLog ( coalescedJob );
+			writeJobLog ( jobLog, timeFormat, "Coalesced command file \"" + coalescedJob.getName() + "\" as job " +
+				coalescedJob.getId() + " with job " + job + ", which ran an identical command file.  Log for job " + job.getId() + ":" );
+			if ( jobLog != null ) {
+				for ( String logLine : logLines ) {
+					jobLog.println ( logLine );
+				}
+			}
+			writeJobLog ( jobLog, timeFormat, "Finished with status " + coalescedJob.getStatus() + " (coalesced with job " + job.getId() + ")." );
+			if ( jobLog != null ) {
+				jobLog.close();
+			}
+			// Move the command file to the done or failed folder.
+			this.journal.finish ( coalescedJob );
+			Message.printStatus ( 1, routine, "Finished job " + coalescedJob + " with status " + coalescedJob.getStatus() +
+				" (coalesced with job " + job.getId() + ", queued " + coalescedJob.getQueueMs() + " ms)." );
+		}
+	}
+
+	/**
+	 * Return the operational metrics.
+	 * @return the metrics
+	 */
+	public BatchServerMetrics getMetrics () {
+		return this.metrics;
+	}
+
+	/**
+	 * Open the log file for a job.
+	 * @param job job
+	 * @return the log file writer, or null if the log file could not be opened
+	 */
+	private PrintWriter openJobLog ( BatchServerJob job ) {
+		File logFile = this.journal.getLogFile ( job );
+		try {
+			return new PrintWriter ( new OutputStreamWriter(new FileOutputStream(logFile), StandardCharsets.UTF_8), true );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 2, getClass().getSimpleName() + ".openJobLog",
+				"Unable to open job log file \"" + logFile + "\" (" + e + ")." );
+			return null;
+		}
+	}
+
+	/**
+	 * Add a command file that is ready in the hot folder to the queue.
+	 * @param f file that is ready in the hot folder
+	 */
+	private void queueFile ( File f ) {
+		String routine = getClass().getSimpleName() + ".queueFile";
+		String commandFileFull = f.getAbsolutePath();
+		if ( !commandFileFull.toUpperCase().endsWith(".TSTOOL") ) {
+			// Not a command file so don't process.
+			Message.printStatus ( 2, routine, "Ignoring file that is not a command file:  \"" + commandFileFull + "\"" );
+			return;
+		}
+		if ( !f.canRead() ) {
+			Message.printWarning ( 2, routine, "Can't read command file \"" + commandFileFull + "\"." );
+			return;
+		}
+		BatchServerScheduler.QueuedFile queuedFile = this.scheduler.add ( f );
+		coalesceWithRunningJob ( queuedFile );
+	}
+
+	/**
+	 * Reload datastores whose configuration files have changed, after running jobs complete.
+	 * Jobs are not started while datastores are reloaded.
+	 * @param idleWorkers semaphore with a permit for each idle worker
+	 * @throws InterruptedException if interrupted while waiting for running jobs to complete
+	 */
+	private void reloadDataStores ( Semaphore idleWorkers ) throws InterruptedException {
+		String routine = getClass().getSimpleName() + ".reloadDataStores";
+		if ( this.dataStoreReloader == null ) {
+			Message.printWarning ( 2, routine, "File named \"" + RELOAD_DATASTORES_FILE_NAME +
+				"\" was found in hot folder but reloading datastores is not enabled - ignoring." );
+			return;
+		}
+		Message.printStatus ( 1, routine, "Reloading datastores because file named \"" + RELOAD_DATASTORES_FILE_NAME +
+			"\" was found in hot folder.  Waiting for running jobs to complete." );
+		// Wait for all workers to be idle so that no job is using a datastore that is replaced.
+		idleWorkers.acquire ( this.workerCount );
+		try {
+			synchronized ( this.warmProcessor ) {
+				Message.printStatus ( 1, routine, this.dataStoreReloader.reload() );
+			}
+		}
+		finally {
+			idleWorkers.release ( this.workerCount );
+		}
+	}
+
+	/**
+	 * Renew the leases for this node's jobs, canceling jobs whose leases were lost,
+	 * and requeue jobs for other nodes whose leases have expired.  This is called every heartbeat interval.
+	 */
+	private void renewLeases () {
+		for ( BatchServerJob lostJob : this.leases.heartbeat() ) {
+			lostJob.setLeaseLost ( true );
+			synchronized ( this.runningBudgetList ) {
+				for ( BatchServerJobBudget budget : this.runningBudgetList ) {
+					if ( budget.getJob() == lostJob ) {
+						budget.cancel ( "The job's lease was lost because another node requeued the job." );
+					}
+				}
+			}
+		}
+		this.journal.recover();
+	}
+
+	/**
+	 * Run the server, processing command files until the stop file is found.
+	 * @throws InterruptedException if interrupted while waiting for files
+	 */
+	public void run () throws InterruptedException {
+		String routine = getClass().getSimpleName() + ".run";
+		Message.printStatus ( 2, routine, "Batch server is using " + this.workerCount + " worker(s)." );
+		final Semaphore idleWorkers = new Semaphore ( this.workerCount );
+		ExecutorService workers = Executors.newFixedThreadPool ( this.workerCount, new ThreadFactory() {
+			private int count = 0;
+			public Thread newThread ( Runnable r ) {
+				++this.count;
+				return new Thread ( r, "TSTool-batch-worker-" + this.count );
+			}
+		});
+		// Check the budgets of running jobs and renew leases, in a separate thread so that checks are not delayed by the dispatcher.
+		ScheduledExecutorService jobChecker = Executors.newSingleThreadScheduledExecutor ( new ThreadFactory() {
+			public Thread newThread ( Runnable r ) {
+				Thread thread = new Thread ( r, "TSTool-batch-checker" );
+				thread.setDaemon ( true );
+				return thread;
+			}
+		});
+		jobChecker.scheduleWithFixedDelay ( new Runnable() {
+			public void run () {
+				try {
+					synchronized ( runningBudgetList ) {
+						for ( BatchServerJobBudget budget : runningBudgetList ) {
+							budget.check();
+						}
+					}
+				}
+				catch ( Throwable e ) {
+					// Keep checking.
+					Message.printWarning ( 3, routine, e );
+				}
+			}
+		}, 1, 1, TimeUnit.SECONDS );
+		// Write the status file periodically and make the metrics available with JMX.
+		this.metrics.register ( (this.leases == null) ? null : this.leases.getNodeId() );
+		if ( this.statusIntervalMs > 0 ) {
+			jobChecker.scheduleWithFixedDelay ( new Runnable() {
+				public void run () {
+					try {
+						metrics.writeStatusFile ( journal.getStatusFile() );
+					}
+					catch ( Throwable e ) {
+						// Keep writing.
+						Message.printWarning ( 3, routine, e );
+					}
+				}
+			}, 0, this.statusIntervalMs, TimeUnit.MILLISECONDS );
+		}
+		if ( this.leases != null ) {
+			jobChecker.scheduleWithFixedDelay ( new Runnable() {
+				public void run () {
+					try {
+						renewLeases();
+					}
+					catch ( Throwable e ) {
+						// Keep renewing.
+						Message.printWarning ( 3, routine, e );
+					}
+				}
+			}, 0, this.leases.getHeartbeatMs(), TimeUnit.MILLISECONDS );
+		}
+		long lastStatusTime = 0;
+		try {
+			while ( true ) {
+				// Add command files that are ready to the queue:
+				// - wait for files if the queue is empty, otherwise only check files that are already ready
+				File f = this.hotFolder.waitForNextFile ( (this.scheduler.getQueueDepth() == 0) ? STATUS_INTERVAL_MS : 0 );
+				boolean doStop = false;
+				boolean doReload = false;
+				while ( f != null ) {
+					if ( f.getName().equalsIgnoreCase(STOP_FILE_NAME) ) {
+						Message.printStatus ( 1, routine, "Stopping batch server because file named \"" + STOP_FILE_NAME +
+							"\" was found in hot folder.  Waiting for running jobs to complete.  Queued files will run when restarted." );
+						f.delete();
+						doStop = true;
+						break;
+					}
+					if ( f.getName().equalsIgnoreCase(RELOAD_DATASTORES_FILE_NAME) ) {
+						f.delete();
+						doReload = true;
+					}
+					else {
+						queueFile ( f );
+					}
+					f = this.hotFolder.waitForNextFile ( 0 );
+				}
+				if ( doStop ) {
+					break;
+				}
+				if ( doReload ) {
+					reloadDataStores ( idleWorkers );
+				}
+				long now = System.currentTimeMillis();
+				if ( (this.scheduler.getQueueDepth() > 0) && ((now - lastStatusTime) >= STATUS_INTERVAL_MS) ) {
+					// Periodically log the queue status so that the server can be sized.
+					Message.printStatus ( 2, routine, this.scheduler.getStatus() );
+					lastStatusTime = now;
+				}
+				if ( this.scheduler.getQueueDepth() == 0 ) {
+					continue;
+				}
+				// Wait for an idle worker, but not too long so that new files are added to the queue.
+				if ( !idleWorkers.tryAcquire(1000, TimeUnit.MILLISECONDS) ) {
+					continue;
+				}
+				// Select the next file using priority and fair share,
+				// then move the command file out of the hot folder and record the job.
+				BatchServerScheduler.QueuedFile queuedFile = this.scheduler.next();
+				final BatchServerJob job;
+				try {
+					job = this.journal.enqueue ( queuedFile.getFile(), queuedFile.getPriority(), queuedFile.getShareKey(),
+						queuedFile.getSubmitTime() );
+				}
+				catch ( IOException e ) {
+					Message.printWarning ( 2, routine, "Unable to move command file \"" + queuedFile.getFile() +
+						"\" to the processing folder (" + e + ") - not running.  Another node may have claimed the file." );
+					this.scheduler.jobFinished ( queuedFile.getShareKey() );
+					idleWorkers.release();
+					continue;
+				}
+				if ( this.coalesceDuplicates && (queuedFile.getContentKey() != null) ) {
+					// Coalesce queued files with identical content with the job, and later files while the job runs.
+					synchronized ( this.runningJobMap ) {
+						if ( !this.runningJobMap.containsKey(queuedFile.getContentKey()) ) {
+							this.runningJobMap.put ( queuedFile.getContentKey(), job );
+							for ( BatchServerScheduler.QueuedFile duplicate : this.scheduler.removeDuplicates(queuedFile.getContentKey()) ) {
+								coalesceJob ( duplicate, job );
+							}
+						}
+					}
+				}
+				final int queueDepth = this.scheduler.getQueueDepth();
+				workers.execute ( new Runnable() {
+					public void run () {
+						try {
+							runJob ( job, queueDepth );
+						}
+						finally {
+							scheduler.jobFinished ( job.getShareKey() );
+							idleWorkers.release();
+						}
+					}
+				});
+			}
+		}
+		finally {
+			workers.shutdown();
+			workers.awaitTermination ( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+			jobChecker.shutdownNow();
+			if ( this.statusIntervalMs > 0 ) {
+				// Final status.
+				this.metrics.writeStatusFile ( this.journal.getStatusFile() );
+			}
+			this.metrics.unregister();
+			this.hotFolder.close();
+			this.journal.close();
+		}
+	}
+
+	/**
+	 * Run a job.  This is called in a worker thread.  Errors are logged and do not affect other jobs.
+	 * @param job job to run
+	 * @param queueDepth number of queued files when the job was started, for the journal
+	 */
+	private void runJob ( BatchServerJob job, int queueDepth ) {
+		String routine = getClass().getSimpleName() + "[" + Thread.currentThread().getName() + "].runJob";
+		String commandFileFull = job.getCommandFile().getAbsolutePath();
+		job.setStarted ( Thread.currentThread().getName() );
+		this.metrics.jobStarted();
+		this.journal.start ( job, queueDepth );
+		Message.printStatus ( 1, routine, "Running job " + job + " in batch server mode:  \"" + commandFileFull + "\"" );
+		final PrintWriter jobLog = openJobLog ( job );
+		final SimpleDateFormat timeFormat = new SimpleDateFormat ( "yyyy-MM-dd HH:mm:ss.SSS" );
+		writeJobLog ( jobLog, timeFormat, "Running command file \"" + job.getName() + "\" as job " + job.getId() + " on " +
+			job.getWorker() );
+		int status = 0;
+		TSCommandProcessor processor = null;
+		BatchServerJobBudget budget = null;
+		Lock loggingLock = null;
+		int [] logLevels = null;
+		try {
+			TSCommandFileRunner runner = createJobRunner ( commandFileFull );
+			processor = runner.getProcessor();
+			if ( jobLog != null ) {
+				processor.addCommandProcessorListener ( new CommandProcessorListener() {
+					public void commandCanceled ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+						writeJobLog ( jobLog, timeFormat, "Canceled command " + (icommand + 1) + " of " + ncommand + ": " + command );
+					}
+					public void commandCompleted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+						writeJobLog ( jobLog, timeFormat, "Completed command " + (icommand + 1) + " of " + ncommand + ": " + command );
+					}
+					public void commandProgress ( int istep, int nstep, Command command, float percentComplete, String message ) {
+					}
+					public void commandStarted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+						writeJobLog ( jobLog, timeFormat, "Started command " + (icommand + 1) + " of " + ncommand + ": " + command );
+					}
+				});
+			}
+			processor.addCommandProcessorListener ( this.metrics.createDataStoreReadListener(processor) );
+			runner.readCommandFile ( commandFileFull, false );
+			// The command file is in the processing folder but paths in the file are relative to the hot folder.
+			String workingDir = this.hotFolder.getFolder().getPath();
+			processor.setPropContents ( "InitialWorkingDir", workingDir );
+			// In incremental mode, the cache key is the submitted file name because the processing file name includes the job identifier.
+			String cacheKey = new File(workingDir, job.getName()).getPath();
+			String fingerprint = null;
+			if ( this.incrementalCache != null ) {
+				fingerprint = this.incrementalCache.computeFingerprint ( job.getCommandFile(), processor, this.processorProps, workingDir );
+				if ( this.incrementalCache.isUpToDate(cacheKey, fingerprint) ) {
+					Message.printStatus ( 1, routine, "Job " + job + " is unchanged since the last successful run - skipping." );
+					writeJobLog ( jobLog, timeFormat, "Skipped because the command file, inputs, and outputs are unchanged since the last successful run." );
+					job.setSkipped ( true );
+					// Don't write the problems from the commands that were not run.
+					processor = null;
+				}
+			}
+			if ( !job.isSkipped() && (this.workerCount > 1) ) {
+				// Run a job that changes the global logging by itself, before starting the budget so the wait is not counted.
+				String loggingCommand = getGlobalLoggingCommand ( processor );
+				if ( loggingCommand == null ) {
+					loggingLock = this.globalLoggingLock.readLock();
+				}
+				else {
+					Message.printStatus ( 2, routine, "Job " + job + " uses " + loggingCommand +
+						"() - waiting for other jobs to finish so that the job runs by itself." );
+					writeJobLog ( jobLog, timeFormat, "Waiting for other jobs to finish because " + loggingCommand +
+						"() changes the logging for the server." );
+					loggingLock = this.globalLoggingLock.writeLock();
+				}
+				loggingLock.lock();
+				if ( loggingCommand != null ) {
+					logLevels = new int[] {
+						Message.getDebugLevel(Message.TERM_OUTPUT), Message.getDebugLevel(Message.LOG_OUTPUT),
+						Message.getWarningLevel(Message.TERM_OUTPUT), Message.getWarningLevel(Message.LOG_OUTPUT) };
+				}
+			}
+			if ( !job.isSkipped() ) {
+				// Cancel the job if it exceeds its time or memory limit or its lease is lost.
+				budget = new BatchServerJobBudget ( job, this.jobTimeLimitSeconds, this.jobMemoryLimitMb,
+					this.jobAllocationLimitMb );
+				if ( budget.hasLimits() ) {
+					writeJobLog ( jobLog, timeFormat, "Running with " + budget + "." );
+				}
+				budget.start ( processor );
+				synchronized ( this.runningBudgetList ) {
+					this.runningBudgetList.add ( budget );
+				}
+				// The following will throw an exception if there are any errors running.
+				runner.runCommands();
+				// A canceled job may not throw an exception and is handled below, and is not saved in the cache.
+				if ( (this.incrementalCache != null) && (budget.getCanceledReason() == null) ) {
+					this.incrementalCache.save ( cacheKey, fingerprint, processor );
+				}
+			}
+		}
+		catch ( Throwable e ) {
+			// Catch all errors, including Error, so that the worker continues with other jobs.
+			Message.printWarning ( 1, routine, "Error running job " + job + " command file \"" + commandFileFull + "\"." );
+			Message.printWarning ( 1, routine, e );
+			writeJobLog ( jobLog, timeFormat, "Error running command file (" + e + ")." );
+			status = 1;
+		}
+		finally {
+			if ( budget != null ) {
+				// Stop checking the budget before clearing the interrupt so that the worker is not interrupted for the next job.
+				synchronized ( this.runningBudgetList ) {
+					this.runningBudgetList.remove ( budget );
+				}
+				Thread.interrupted();
+				if ( budget.getCanceledReason() != null ) {
+					writeJobLog ( jobLog, timeFormat, "Canceled:  " + budget.getCanceledReason() );
+					job.setBudgetExceededReason ( budget.getExceededReason() );
+					status = 1;
+				}
+			}
+			if ( loggingLock != null ) {
+				if ( logLevels != null ) {
+					// Reset the message levels that the job may have changed before other jobs run.
+					Message.setDebugLevel ( Message.TERM_OUTPUT, logLevels[0] );
+					Message.setDebugLevel ( Message.LOG_OUTPUT, logLevels[1] );
+					Message.setWarningLevel ( Message.TERM_OUTPUT, logLevels[2] );
+					Message.setWarningLevel ( Message.LOG_OUTPUT, logLevels[3] );
+				}
+				loggingLock.unlock();
+			}
+			job.setFinished ( status );
+			this.metrics.jobFinished ( job );
+			if ( processor != null ) {
+				writeJobProblems ( jobLog, timeFormat, processor );
+				if ( (budget != null) && (budget.getCanceledReason() != null) ) {
+					// Release the memory used by the results now rather than when the processor is no longer referenced.
+					try {
+						processor.clearResults();
+					}
+					catch ( Exception e ) {
+						Message.printWarning ( 3, routine, e );
+					}
+				}
+			}
+			writeJobLog ( jobLog, timeFormat, "Finished with status " + status + " in " + job.getDurationMs() + " ms." );
+			if ( jobLog != null ) {
+				jobLog.close();
+			}
+			// Move the command file to the done or failed folder.
+			this.journal.finish ( job );
+			finishCoalescedJobs ( job );
+		}
+		Message.printStatus ( 1, routine, "Finished job " + job + " with status " + status + (job.isSkipped() ? " (skipped)" : "") +
+			((job.getBudgetExceededReason() != null) ? " (canceled, exceeded limit)" : "") +
+			(job.isLeaseLost() ? " (canceled, lease lost)" : "") +
+			" in " + job.getDurationMs() + " ms (queued " + job.getQueueMs() + " ms)." );
+	}
+
+	/**
+	 * Return the first command in a job that changes the logging for the whole server.
+	 * @param processor processor for the job, with the commands read
+	 * @return the command name, or null if the job does not change the logging
+	 */
+	@SuppressWarnings("unchecked")
+	private String getGlobalLoggingCommand ( TSCommandProcessor processor ) {
+		for ( Command command : (List<Command>)processor.getCommands() ) {
+			String commandName = command.getCommandName();
+			for ( String loggingCommand : GLOBAL_LOGGING_COMMANDS ) {
+				if ( loggingCommand.equalsIgnoreCase(commandName) ) {
+					return commandName;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Set whether requests for identical command files are coalesced, so that the work is only done once.
+	 * @param coalesceDuplicates true to coalesce identical requests (the default)
+	 */
+	public void setCoalesceDuplicates ( boolean coalesceDuplicates ) {
+		this.coalesceDuplicates = coalesceDuplicates;
+	}
+
+	/**
+	 * Set the datastore reloader, used when the "reload-datastores" file is found in the hot folder.
+	 * @param dataStoreReloader datastore reloader, or null to not allow reloading
+	 */
+	public void setDataStoreReloader ( DataStoreReloader dataStoreReloader ) {
+		this.dataStoreReloader = dataStoreReloader;
+	}
+
+	/**
+	 * Set the incremental run cache, to skip jobs that are unchanged since the last successful run.
+	 * @param incrementalCache incremental run cache, or null to always run jobs
+	 */
+	public void setIncrementalCache ( IncrementalRunCache incrementalCache ) {
+		this.incrementalCache = incrementalCache;
+	}
+
+	/**
+	 * Set the default wall time and memory limits for each job,
+	 * which are overridden by #@timeLimit, #@memoryLimit, and #@allocationLimit annotations in the command file.
+	 * @param jobTimeLimitSeconds wall time limit in seconds, 0 for no limit (the default)
+	 * @param jobMemoryLimitMb memory limit for the results in MB, 0 for no limit (the default)
+	 * @param jobAllocationLimitMb allocation limit for each command in MB, 0 for no limit,
+	 * or -1 for BatchServerJobBudget.DEFAULT_ALLOCATION_LIMIT_FACTOR times the memory limit (the default)
+	 */
+	public void setJobLimits ( int jobTimeLimitSeconds, long jobMemoryLimitMb, long jobAllocationLimitMb ) {
+		this.jobTimeLimitSeconds = Math.max(0, jobTimeLimitSeconds);
+		this.jobMemoryLimitMb = Math.max(0, jobMemoryLimitMb);
+		this.jobAllocationLimitMb = Math.max(-1, jobAllocationLimitMb);
+	}
+
+	/**
+	 * Set the job leases, when several nodes share the hot folder.
+	 * The leases must also be used by the journal.
+	 * @param leases job leases for this node, or null for a single node (the default)
+	 */
+	public void setLeases ( BatchServerLeases leases ) {
+		this.leases = leases;
+	}
+
+	/**
+	 * Set the interval for writing the status file.
+	 * @param statusIntervalMs interval in milliseconds, or 0 to not write the status file (default is 30000)
+	 */
+	public void setStatusInterval ( long statusIntervalMs ) {
+		this.statusIntervalMs = Math.max(0, statusIntervalMs);
+	}
+
+	/**
+	 * Write a line to the job log.
+	 * @param jobLog job log writer, or null if no job log
+	 * @param timeFormat format for the line timestamp
+	 * @param line line to write
+	 */
+	private void writeJobLog ( PrintWriter jobLog, SimpleDateFormat timeFormat, String line ) {
+		if ( jobLog != null ) {
+			jobLog.println ( timeFormat.format(new Date()) + " " + line );
+		}
+	}
+
+	/**
+	 * Write the command failures and warnings to the job log.
+	 * @param jobLog job log writer, or null if no job log
+	 * @param timeFormat format for the line timestamp
+	 * @param processor processor that ran the commands
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void writeJobProblems ( PrintWriter jobLog, SimpleDateFormat timeFormat, TSCommandProcessor processor ) {
+		if ( jobLog == null ) {
+			return;
+		}
+		List commands = processor.getCommands();
+		CommandPhaseType [] commandPhases = { CommandPhaseType.RUN };
+		CommandStatusType [] statusTypes = { CommandStatusType.FAILURE, CommandStatusType.WARNING };
+		List<CommandLogRecord> logRecordList = CommandStatusUtil.getLogRecordList ( commands, commandPhases, statusTypes );
+		for ( CommandLogRecord logRecord : logRecordList ) {
+			writeJobLog ( jobLog, timeFormat, logRecord.getSeverity() + ": " + logRecord.getProblem().replace('\n', ' ') );
+		}
+		writeJobLog ( jobLog, timeFormat, "There were " + logRecordList.size() + " failures and warnings processing " +
+			commands.size() + " commands." );
+	}
+
+}
@@ -0,0 +1,496 @@
+// BatchServerHotFolder - watch the batch server hot folder for command files that are ready to process
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Watch the batch server hot folder for files that are ready to process.
+ * A WatchService is used to be notified when files are added or changed so that the folder is not listed continuously.
+ * Polling is used instead if the file system does not support watch events (e.g., network file systems),
+ * or if requested with mode "Poll".
+ *
+ * A file is ready when its size and modification time have not changed for the stable time,
+ * so that a file that is being copied into the folder is not read before it is complete.
+ * Files can also be written elsewhere (or with a temporary name) and renamed into the folder (an atomic move),
+ * in which case the stable time can be set to 0 to process the files without delay.
+ * Hidden files and files ending in .tmp or .part are ignored so that they can be used as temporary names for renames.
+ * Ready files are returned oldest first (by modification time, then name).
+ *
+ * Subfolders of the hot folder can also be watched (see addFolder()), for example to indicate job priority.
+ *
+ * A file is returned once.  It is returned again only if it is modified or is deleted and added again,
+ * so a file that the server does not delete (e.g., because of an error) is not processed repeatedly.
+ */
+public class BatchServerHotFolder {
+
+	/**
+	 * Mode to use WatchService if supported, otherwise polling.
+	 */
+	public static final String MODE_AUTO = "Auto";
+
+	/**
+	 * Mode to always poll.
+	 */
+	public static final String MODE_POLL = "Poll";
+
+	/**
+	 * Mode to always use WatchService, even if the file system type indicates that events may not be delivered.
+	 */
+	public static final String MODE_WATCH = "Watch";
+
+	/**
+	 * File system types for which WatchService events are not delivered for changes made by other computers,
+	 * so polling is used in "Auto" mode.
+	 */
+	private static final String [] POLLED_FILE_STORE_TYPES = {
+		"nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "fuse.sshfs", "9p", "afpfs", "webdav", "davfs"
+	};
+
+	/**
+	 * Hot folder being watched.
+	 */
+	private File folder;
+
+	/**
+	 * Folders being watched, the hot folder and its subfolders that have been added.
+	 */
+	private List<File> folderList = new ArrayList<>();
+
+	/**
+	 * Time in milliseconds that a file's size and modification time must be unchanged before it is ready.
+	 */
+	private long stableMs;
+
+	/**
+	 * Interval in milliseconds to list the folder when polling.
+	 */
+	private long pollMs;
+
+	/**
+	 * Interval in milliseconds to list the folder when using WatchService,
+	 * to recover from missed or overflowed events.
+	 */
+	private long rescanMs;
+
+	/**
+	 * Requested mode, see MODE_*.
+	 */
+	private String mode;
+
+	/**
+	 * WatchService, or null if polling.
+	 */
+	private WatchService watchService = null;
+
+	/**
+	 * Time of the last folder listing, milliseconds.
+	 */
+	private long lastScanTime = 0;
+
+	/**
+	 * Files that have been seen and are not yet returned, by absolute path.
+	 */
+	private Map<String,PendingFile> pendingMap = new HashMap<>();
+
+	/**
+	 * Files that have been returned, with their modification time when returned, by absolute path.
+	 */
+	private Map<String,Long> returnedMap = new HashMap<>();
+
+	/**
+	 * Constructor.
+	 * @param folder hot folder to watch
+	 * @param mode mode, see MODE_*
+	 * @param stableMs time in milliseconds that a file must be unchanged before it is processed
+	 * @param pollMs interval in milliseconds to list the folder when polling
+	 * @param rescanMs interval in milliseconds to list the folder when using WatchService, to catch missed events
+	 */
+	public BatchServerHotFolder ( File folder, String mode, long stableMs, long pollMs, long rescanMs ) {
+		this.folder = folder.getAbsoluteFile();
+		this.folderList.add ( this.folder );
+		this.mode = mode;
+		this.stableMs = stableMs;
+		this.pollMs = pollMs;
+		this.rescanMs = rescanMs;
+	}
+
+	/**
+	 * Add a subfolder of the hot folder to watch.  This must be called before open().
+	 * @param subfolder subfolder to watch, which must exist
+	 */
+	public void addFolder ( File subfolder ) {
+		this.folderList.add ( subfolder.getAbsoluteFile() );
+	}
+
+	/**
+	 * Close the WatchService.
+	 */
+	public void close () {
+		if ( this.watchService != null ) {
+			try {
+				this.watchService.close();
+			}
+			catch ( IOException e ) {
+				// Ignore.
+			}
+			this.watchService = null;
+		}
+	}
+
+	/**
+	 * Return the hot folder.
+	 * @return the hot folder
+	 */
+	public File getFolder () {
+		return this.folder;
+	}
+
+	/**
+	 * Return the number of files that have been seen and not yet returned, including files that are not yet stable.
+	 * @return the number of pending files
+	 */
+	public int getPendingCount () {
+		return this.pendingMap.size();
+	}
+
+	/**
+	 * Indicate whether a file name should be ignored.
+	 * @param name file name without path
+	 * @return true if the file should be ignored
+	 */
+	private boolean ignoreFile ( String name ) {
+		String upper = name.toUpperCase();
+		return name.startsWith(".") || name.startsWith("~") || upper.endsWith(".TMP") || upper.endsWith(".PART");
+	}
+
+	/**
+	 * Indicate whether the folder is being polled.
+	 * @return true if polling, false if using WatchService
+	 */
+	public boolean isPolling () {
+		return this.watchService == null;
+	}
+
+	/**
+	 * Observe a file, adding to the pending files or updating its size and modification time.
+	 * @param file file to observe
+	 * @param now current time, milliseconds
+	 */
+	private void observe ( File file, long now ) {
+		if ( ignoreFile(file.getName()) ) {
+			return;
+		}
+		String path = file.getPath();
+		if ( !file.isFile() ) {
+			// Deleted or a folder.
+			this.pendingMap.remove(path);
+			this.returnedMap.remove(path);
+			return;
+		}
+		long size = file.length();
+		long lastModified = file.lastModified();
+		Long returnedModified = this.returnedMap.get(path);
+		if ( returnedModified != null ) {
+			if ( returnedModified.longValue() == lastModified ) {
+				// Already returned and not changed.
+				return;
+			}
+			// Modified since returned so process again.
+			this.returnedMap.remove(path);
+		}
+		PendingFile pending = this.pendingMap.get(path);
+		if ( pending == null ) {
+			this.pendingMap.put(path, new PendingFile(file, size, lastModified, now));
+		}
+		else if ( (pending.size != size) || (pending.lastModified != lastModified) ) {
+			pending.size = size;
+			pending.lastModified = lastModified;
+			pending.lastChangeTime = now;
+		}
+	}
+
+	/**
+	 * Open the hot folder, starting the WatchService if used, and list the files that already exist.
+	 */
+	public void open () {
+		String routine = getClass().getSimpleName() + ".open";
+		if ( !this.mode.equalsIgnoreCase(MODE_POLL) ) {
+			Path path = this.folder.toPath();
+			String fileStoreType = "";
+			try {
+				fileStoreType = Files.getFileStore(path).type();
+			}
+			catch ( IOException e ) {
+				// Use the watch service.
+			}
+			boolean polledType = false;
+			for ( String type : POLLED_FILE_STORE_TYPES ) {
+				if ( fileStoreType.equalsIgnoreCase(type) ) {
+					polledType = true;
+					break;
+				}
+			}
+			if ( polledType && !this.mode.equalsIgnoreCase(MODE_WATCH) ) {
+				Message.printStatus(2, routine, "Hot folder file system type \"" + fileStoreType +
+					"\" may not deliver watch events - using polling.");
+			}
+			else {
+				try {
+					this.watchService = FileSystems.getDefault().newWatchService();
+					for ( File folder : this.folderList ) {
+						folder.toPath().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+					}
+				}
+				catch ( IOException | UnsupportedOperationException e ) {
+					Message.printWarning(2, routine, "Unable to watch hot folder \"" + this.folder + "\" (" + e + ") - using polling.");
+					close();
+				}
+			}
+		}
+		if ( this.folderList.size() > 1 ) {
+			Message.printStatus(2, routine, "Hot folder subfolders are also watched: " + this.folderList.subList(1, this.folderList.size()) );
+		}
+		if ( isPolling() ) {
+			Message.printStatus(2, routine, "Polling hot folder \"" + this.folder + "\" every " + this.pollMs + " ms, stable time " +
+				this.stableMs + " ms.");
+		}
+		else {
+			Message.printStatus(2, routine, "Watching hot folder \"" + this.folder + "\" for events, rescanning every " +
+				this.rescanMs + " ms, stable time " + this.stableMs + " ms.");
+		}
+		scan();
+	}
+
+	/**
+	 * Remove and return the oldest file that is ready to process.
+	 * @param now current time, milliseconds
+	 * @return the oldest ready file or null if no files are ready
+	 */
+	private File removeOldestReadyFile ( long now ) {
+		PendingFile oldest = null;
+		for ( PendingFile pending : this.pendingMap.values() ) {
+			if ( (now - Math.max(pending.lastChangeTime, pending.lastModified)) < this.stableMs ) {
+				// Still changing.
+				continue;
+			}
+			if ( (oldest == null) || (pending.lastModified < oldest.lastModified) ||
+				((pending.lastModified == oldest.lastModified) && (pending.file.getName().compareTo(oldest.file.getName()) < 0)) ) {
+				oldest = pending;
+			}
+		}
+		if ( oldest == null ) {
+			return null;
+		}
+		String path = oldest.file.getPath();
+		this.pendingMap.remove(path);
+		if ( !oldest.file.isFile() ) {
+			// Deleted since observed.
+			return null;
+		}
+		this.returnedMap.put(path, oldest.file.lastModified());
+		return oldest.file;
+	}
+
+	/**
+	 * List the folders and observe all files, removing pending and returned files that no longer exist.
+	 */
+	private void scan () {
+		long now = System.currentTimeMillis();
+		this.lastScanTime = now;
+		List<String> paths = new ArrayList<>();
+		for ( File folder : this.folderList ) {
+			File [] files = folder.listFiles();
+			if ( files == null ) {
+				continue;
+			}
+			for ( File file : files ) {
+				File absFile = file.getAbsoluteFile();
+				observe ( absFile, now );
+				paths.add(absFile.getPath());
+			}
+		}
+		Collections.sort(paths);
+		for ( Iterator<String> it = this.pendingMap.keySet().iterator(); it.hasNext(); ) {
+			if ( Collections.binarySearch(paths, it.next()) < 0 ) {
+				it.remove();
+			}
+		}
+		for ( Iterator<String> it = this.returnedMap.keySet().iterator(); it.hasNext(); ) {
+			if ( Collections.binarySearch(paths, it.next()) < 0 ) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next file that is ready to process.
+	 * @return the oldest ready file
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public File waitForNextFile () throws InterruptedException {
+		return waitForNextFile ( Long.MAX_VALUE );
+	}
+
+	/**
+	 * Wait for the next file that is ready to process, up to a maximum time.
+	 * @param timeoutMs maximum time to wait, milliseconds, or 0 to only check events that have already occurred
+	 * @return the oldest ready file, or null if no file is ready before the timeout
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public File waitForNextFile ( long timeoutMs ) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		boolean firstCheck = true;
+		while ( true ) {
+			long now = System.currentTimeMillis();
+			File file = removeOldestReadyFile ( now );
+			if ( file != null ) {
+				return file;
+			}
+			long remaining = (timeoutMs == Long.MAX_VALUE) ? Long.MAX_VALUE : (start + timeoutMs - now);
+			if ( (remaining <= 0) && !firstCheck ) {
+				return null;
+			}
+			firstCheck = false;
+			// Wait for events, a pending file to become stable, or the next scan.
+			long scanInterval = isPolling() ? this.pollMs : this.rescanMs;
+			long wait = Math.max(1, this.lastScanTime + scanInterval - now);
+			if ( !this.pendingMap.isEmpty() ) {
+				// Check pending files often enough to process them soon after they are stable.
+				wait = Math.min(wait, Math.max(50, this.stableMs/4));
+			}
+			wait = Math.min(wait, Math.max(0, remaining));
+			if ( wait == 0 ) {
+				if ( !isPolling() ) {
+					waitForEvents ( 0 );
+				}
+			}
+			else if ( isPolling() ) {
+				Thread.sleep(wait);
+			}
+			else {
+				waitForEvents ( wait );
+			}
+			if ( (System.currentTimeMillis() - this.lastScanTime) >= scanInterval ) {
+				scan();
+			}
+		}
+	}
+
+	/**
+	 * Wait for WatchService events and observe the files for the events.
+	 * @param wait maximum time to wait, milliseconds
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	private void waitForEvents ( long wait ) throws InterruptedException {
+		WatchKey key;
+		try {
+			if ( wait == 0 ) {
+				key = this.watchService.poll();
+			}
+			else {
+				key = this.watchService.poll(wait, TimeUnit.MILLISECONDS);
+			}
+		}
+		catch ( ClosedWatchServiceException e ) {
+			Thread.sleep(wait);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		while ( key != null ) {
+			File keyFolder = ((Path)key.watchable()).toFile();
+			for ( WatchEvent<?> event : key.pollEvents() ) {
+				if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+					// Events were lost so list the folder.
+					scan();
+				}
+				else {
+					Path name = (Path)event.context();
+					observe ( new File(keyFolder, name.toString()), now );
+				}
+			}
+			if ( !key.reset() ) {
+				// The folder is no longer accessible so poll, which will show warnings.
+				Message.printWarning(2, getClass().getSimpleName() + ".waitForEvents",
+					"Hot folder \"" + keyFolder + "\" is no longer watched - using polling.");
+				close();
+				return;
+			}
+			// Drain events that are already queued.
+			key = this.watchService.poll();
+		}
+	}
+
+	/**
+	 * File that has been seen and is not yet ready or returned.
+	 */
+	private static class PendingFile {
+		/**
+		 * File, absolute path.
+		 */
+		File file;
+
+		/**
+		 * Size when last observed.
+		 */
+		long size;
+
+		/**
+		 * Modification time when last observed.
+		 */
+		long lastModified;
+
+		/**
+		 * Time when the size or modification time was last observed to change.
+		 */
+		long lastChangeTime;
+
+		PendingFile ( File file, long size, long lastModified, long lastChangeTime ) {
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.lastChangeTime = lastChangeTime;
+		}
+	}
+
+}
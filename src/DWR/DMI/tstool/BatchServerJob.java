@@ -0,0 +1,390 @@
+// BatchServerJob - batch server job, which runs a command file from the hot folder
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch server job, which runs a command file that was copied into the hot folder.
+ * The job is created when the command file is taken from the hot folder,
+ * and the command file is then moved to the journal "processing" folder while the job is queued and running.
+ */
+public class BatchServerJob {
+
+	/**
+	 * High priority, for example operational jobs.
+	 */
+	public static final int PRIORITY_HIGH = 0;
+
+	/**
+	 * Normal priority, the default.
+	 */
+	public static final int PRIORITY_NORMAL = 1;
+
+	/**
+	 * Low priority, for example large ad hoc jobs.
+	 */
+	public static final int PRIORITY_LOW = 2;
+
+	/**
+	 * Priority names, in order of PRIORITY_* values, also used as the hot folder subfolder names.
+	 */
+	public static final String [] PRIORITY_NAMES = { "high", "normal", "low" };
+
+	/**
+	 * Job identifier, unique over server restarts.
+	 */
+	private String id;
+
+	/**
+	 * Command file name, as copied into the hot folder.
+	 */
+	private String name;
+
+	/**
+	 * Command file, initially in the hot folder and then in the journal folders.
+	 */
+	private File commandFile;
+
+	/**
+	 * Time that the job was submitted, which is the time that the command file was queued, milliseconds.
+	 */
+	private long submitTime;
+
+	/**
+	 * Time that the job was taken from the hot folder, milliseconds.
+	 */
+	private long enqueueTime;
+
+	/**
+	 * Time that the job was started, milliseconds.
+	 */
+	private long startTime = 0;
+
+	/**
+	 * Time that the job finished, milliseconds.
+	 */
+	private long finishTime = 0;
+
+	/**
+	 * Run status, 0 for success and 1 for error (same as the batch mode exit status).
+	 */
+	private int status = 0;
+
+	/**
+	 * Name of the worker that ran the job.
+	 */
+	private String worker = "";
+
+	/**
+	 * Job priority, see PRIORITY_*.
+	 */
+	private int priority = PRIORITY_NORMAL;
+
+	/**
+	 * Fair share key, for example the user that submitted the job.
+	 */
+	private String shareKey = "";
+
+	/**
+	 * Whether the job was skipped because the command file was unchanged since the last successful run (incremental mode).
+	 */
+	private boolean skipped = false;
+
+	/**
+	 * Reason that the job was canceled because it exceeded its time or memory limit, or null if not exceeded.
+	 */
+	private String budgetExceededReason = null;
+
+	/**
+	 * Whether the job's lease was lost because another batch server node requeued the job.
+	 */
+	private volatile boolean leaseLost = false;
+
+	/**
+	 * Identifier of the job that ran an identical command file for this job, or null if this job was run.
+	 */
+	private String coalescedWithId = null;
+
+	/**
+	 * Jobs with identical command files that are coalesced with this job, which finish when this job finishes.
+	 */
+	private List<BatchServerJob> coalescedJobs = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 * @param id job identifier
+	 * @param commandFile command file in the hot folder
+	 * @param submitTime time that the command file was submitted (queued), milliseconds
+	 */
+	public BatchServerJob ( String id, File commandFile, long submitTime ) {
+		this.id = id;
+		this.name = commandFile.getName();
+		this.commandFile = commandFile;
+		this.submitTime = submitTime;
+		this.enqueueTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Add a job with an identical command file, which finishes when this job finishes.
+	 * @param job job to coalesce with this job
+	 */
+	public void addCoalescedJob ( BatchServerJob job ) {
+		job.coalescedWithId = this.id;
+		this.coalescedJobs.add ( job );
+	}
+
+	/**
+	 * Return the reason that the job was canceled because it exceeded its time or memory limit.
+	 * @return the reason, or null if the job did not exceed its limits
+	 */
+	public String getBudgetExceededReason () {
+		return this.budgetExceededReason;
+	}
+
+	/**
+	 * Return the jobs with identical command files that are coalesced with this job.
+	 * @return the coalesced jobs, which may be empty
+	 */
+	public List<BatchServerJob> getCoalescedJobs () {
+		return this.coalescedJobs;
+	}
+
+	/**
+	 * Return the identifier of the job that ran an identical command file for this job.
+	 * @return the job identifier, or null if this job was run
+	 */
+	public String getCoalescedWithId () {
+		return this.coalescedWithId;
+	}
+
+	/**
+	 * Return the command file, which is in the journal "processing" folder while the job is queued and running.
+	 * @return the command file
+	 */
+	public File getCommandFile () {
+		return this.commandFile;
+	}
+
+	/**
+	 * Return the run time, milliseconds.
+	 * @return the run time, or 0 if not finished
+	 */
+	public long getDurationMs () {
+		if ( (this.startTime == 0) || (this.finishTime == 0) ) {
+			return 0;
+		}
+		return this.finishTime - this.startTime;
+	}
+
+	/**
+	 * Return the time that the job was taken from the hot folder, milliseconds.
+	 * @return the enqueue time
+	 */
+	public long getEnqueueTime () {
+		return this.enqueueTime;
+	}
+
+	/**
+	 * Return the job identifier.
+	 * @return the job identifier
+	 */
+	public String getId () {
+		return this.id;
+	}
+
+	/**
+	 * Return the command file name, as copied into the hot folder.
+	 * @return the command file name
+	 */
+	public String getName () {
+		return this.name;
+	}
+
+	/**
+	 * Return the job priority.
+	 * @return the job priority, see PRIORITY_*
+	 */
+	public int getPriority () {
+		return this.priority;
+	}
+
+	/**
+	 * Return the job priority name.
+	 * @return the job priority name, see PRIORITY_NAMES
+	 */
+	public String getPriorityName () {
+		return PRIORITY_NAMES[this.priority];
+	}
+
+	/**
+	 * Return the time from submitting the command file until the job started, milliseconds.
+	 * @return the queue time, or 0 if not started
+	 */
+	public long getQueueMs () {
+		if ( this.startTime == 0 ) {
+			return 0;
+		}
+		return Math.max(0, this.startTime - this.submitTime);
+	}
+
+	/**
+	 * Return the run status.
+	 * @return the run status, 0 for success and 1 for error
+	 */
+	public int getStatus () {
+		return this.status;
+	}
+
+	/**
+	 * Return the fair share key.
+	 * @return the fair share key
+	 */
+	public String getShareKey () {
+		return this.shareKey;
+	}
+
+	/**
+	 * Return the time that the command file was submitted, milliseconds.
+	 * @return the submit time
+	 */
+	public long getSubmitTime () {
+		return this.submitTime;
+	}
+
+	/**
+	 * Return the name of the worker that ran the job.
+	 * @return the worker name
+	 */
+	public String getWorker () {
+		return this.worker;
+	}
+
+	/**
+	 * Indicate whether the job's lease was lost because another batch server node requeued the job.
+	 * @return true if the lease was lost
+	 */
+	public boolean isLeaseLost () {
+		return this.leaseLost;
+	}
+
+	/**
+	 * Indicate whether the job was skipped because the command file was unchanged since the last successful run.
+	 * @return true if the job was skipped
+	 */
+	public boolean isSkipped () {
+		return this.skipped;
+	}
+
+	/**
+	 * Set the reason that the job was canceled because it exceeded its time or memory limit.
+	 * @param budgetExceededReason the reason
+	 */
+	public void setBudgetExceededReason ( String budgetExceededReason ) {
+		this.budgetExceededReason = budgetExceededReason;
+	}
+
+	/**
+	 * Set the command file, when moved between folders.
+	 * @param commandFile command file
+	 */
+	public void setCommandFile ( File commandFile ) {
+		this.commandFile = commandFile;
+	}
+
+	/**
+	 * Indicate that the job finished.
+	 * @param status run status, 0 for success and 1 for error
+	 */
+	public void setFinished ( int status ) {
+		this.status = status;
+		this.finishTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Set whether the job's lease was lost because another batch server node requeued the job.
+	 * @param leaseLost true if the lease was lost
+	 */
+	public void setLeaseLost ( boolean leaseLost ) {
+		this.leaseLost = leaseLost;
+	}
+
+	/**
+	 * Set the job priority.
+	 * @param priority job priority, see PRIORITY_*
+	 */
+	public void setPriority ( int priority ) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Set the fair share key.
+	 * @param shareKey fair share key
+	 */
+	public void setShareKey ( String shareKey ) {
+		this.shareKey = shareKey;
+	}
+
+	/**
+	 * Set whether the job was skipped because the command file was unchanged since the last successful run.
+	 * @param skipped true if the job was skipped
+	 */
+	public void setSkipped ( boolean skipped ) {
+		this.skipped = skipped;
+	}
+
+	/**
+	 * Indicate that the job started.
+	 * @param worker name of the worker that is running the job
+	 */
+	public void setStarted ( String worker ) {
+		this.worker = worker;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Parse a priority name.
+	 * @param name priority name (case-insensitive), see PRIORITY_NAMES
+	 * @return the priority, see PRIORITY_*, or -1 if not a priority name
+	 */
+	public static int parsePriority ( String name ) {
+		for ( int i = 0; i < PRIORITY_NAMES.length; i++ ) {
+			if ( PRIORITY_NAMES[i].equalsIgnoreCase(name.trim()) ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return a string for messages.
+	 * @return the job identifier and command file name
+	 */
+	public String toString () {
+		return this.id + " (" + this.name + ")";
+	}
+
+}
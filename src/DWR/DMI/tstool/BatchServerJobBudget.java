@@ -0,0 +1,464 @@
+// BatchServerJobBudget - per-job wall time and memory limits for the batch server
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import RTi.TS.TS;
+import RTi.TS.TSUtil;
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandProcessorListener;
+import RTi.Util.Message.Message;
+import RTi.Util.String.StringUtil;
+import RTi.Util.Time.TimeInterval;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Wall time and memory budget for a batch server job, so that one runaway command file
+ * (for example a ReadTimeSeries command with a very long period) is canceled rather than exhausting the heap
+ * and stopping the server.
+ *
+ * The limits default to the BatchServerJobTimeLimit (seconds), BatchServerJobMemoryLimit (MB),
+ * and BatchServerJobAllocationLimit (MB) configuration properties and are overridden by "#@timeLimit Seconds",
+ * "#@memoryLimit MB", and "#@allocationLimit MB" comments in the command file.
+ * A limit of 0 means no limit.
+ *
+ * The retained heap cannot be measured for a single job because jobs share the heap, so two limits are used:
+ *   - The memory limit is compared with the size of the time series results, estimated when each command completes
+ *     (number of values in the period of each regular interval time series times 8 bytes).
+ *   - The allocation limit is compared with the bytes allocated by the worker thread while running the current command,
+ *     if the JVM supports measuring it, which catches a command that reads a very large time series before
+ *     it is added to the results.  Allocation includes garbage (for example, each line of a file that is read
+ *     and each temporary array), so a command that streams through a large input allocates far more than it retains.
+ *     Therefore, the allocation limit must be much larger than the memory limit and by default is
+ *     DEFAULT_ALLOCATION_LIMIT_FACTOR times the memory limit.
+ *
+ * The budget is checked by the server about once per second.  When a limit is exceeded, cancel is requested from the
+ * processor and the worker thread is interrupted.  The server then fails the job and clears its results.
+ * Cancel is handled by the processor between commands and by commands that check for cancel,
+ * so a command that does not check for cancel runs to completion before the job ends.
+ * The server also uses the budget to cancel a job for other reasons, for example when the job's lease is lost.
+ */
+public class BatchServerJobBudget implements CommandProcessorListener {
+
+	/**
+	 * Command file annotation used to specify the wall time limit in seconds.
+	 */
+	public static final String TIME_LIMIT_ANNOTATION = "#@timeLimit";
+
+	/**
+	 * Command file annotation used to specify the memory limit in MB.
+	 */
+	public static final String MEMORY_LIMIT_ANNOTATION = "#@memoryLimit";
+
+	/**
+	 * Command file annotation used to specify the allocation limit for a command in MB.
+	 */
+	public static final String ALLOCATION_LIMIT_ANNOTATION = "#@allocationLimit";
+
+	/**
+	 * Allocation limit as a multiple of the memory limit, if the allocation limit is not specified.
+	 */
+	public static final int DEFAULT_ALLOCATION_LIMIT_FACTOR = 20;
+
+	/**
+	 * Maximum number of lines to read from a command file when looking for the annotations.
+	 */
+	private static final int ANNOTATION_MAX_LINES = 200;
+
+	/**
+	 * Estimated bytes for each time series value (the double value, data flags are not included).
+	 */
+	private static final long BYTES_PER_VALUE = 8;
+
+	/**
+	 * Job that the budget is for.
+	 */
+	private BatchServerJob job = null;
+
+	/**
+	 * Wall time limit in seconds, 0 for no limit.
+	 */
+	private int timeLimitSeconds = 0;
+
+	/**
+	 * Memory limit in MB, 0 for no limit.
+	 */
+	private long memoryLimitMb = 0;
+
+	/**
+	 * Allocation limit for a command in MB, 0 for no limit, or -1 to use DEFAULT_ALLOCATION_LIMIT_FACTOR times the memory limit.
+	 */
+	private long allocationLimitMb = -1;
+
+	/**
+	 * Processor running the job's commands, set when started.
+	 */
+	private TSCommandProcessor processor = null;
+
+	/**
+	 * Worker thread running the job's commands, set when started.
+	 */
+	private Thread runThread = null;
+
+	/**
+	 * Time that the budget was started, milliseconds.
+	 */
+	private volatile long startTime = 0;
+
+	/**
+	 * Estimated bytes for the time series results, updated as commands complete.
+	 */
+	private volatile long resultsBytes = 0;
+
+	/**
+	 * Bytes allocated by the worker thread when the running command started, or -1 if not measured.
+	 */
+	private volatile long commandStartAllocatedBytes = -1;
+
+	/**
+	 * Reason that the budget was exceeded, or null if not exceeded.
+	 */
+	private volatile String exceededReason = null;
+
+	/**
+	 * Reason that the job was canceled, or null if not canceled.
+	 */
+	private volatile String canceledReason = null;
+
+	/**
+	 * Constructor, which reads the limit annotations from the job's command file.
+	 * @param job job that the budget is for
+	 * @param defaultTimeLimitSeconds default wall time limit in seconds, 0 for no limit
+	 * @param defaultMemoryLimitMb default memory limit in MB, 0 for no limit
+	 * @param defaultAllocationLimitMb default allocation limit for a command in MB, 0 for no limit,
+	 * or -1 to use DEFAULT_ALLOCATION_LIMIT_FACTOR times the memory limit
+	 */
+	public BatchServerJobBudget ( BatchServerJob job, int defaultTimeLimitSeconds, long defaultMemoryLimitMb,
+		long defaultAllocationLimitMb ) {
+		this.job = job;
+		this.timeLimitSeconds = Math.max(0, defaultTimeLimitSeconds);
+		this.memoryLimitMb = Math.max(0, defaultMemoryLimitMb);
+		this.allocationLimitMb = Math.max(-1, defaultAllocationLimitMb);
+		readAnnotations ( job.getCommandFile() );
+		if ( this.allocationLimitMb < 0 ) {
+			this.allocationLimitMb = this.memoryLimitMb*DEFAULT_ALLOCATION_LIMIT_FACTOR;
+		}
+	}
+
+	/**
+	 * Check the budget, called periodically by the server from a thread other than the worker thread.
+	 * If a limit is exceeded, cancel is requested and the worker thread is interrupted.
+	 * @return true if the budget was exceeded
+	 */
+	public boolean check () {
+		if ( this.exceededReason != null ) {
+			// Already canceled.
+			return true;
+		}
+		if ( this.startTime == 0 ) {
+			// Not started.
+			return false;
+		}
+		long elapsedMs = System.currentTimeMillis() - this.startTime;
+		if ( (this.timeLimitSeconds > 0) && (elapsedMs > this.timeLimitSeconds*1000L) ) {
+			exceed ( "Job exceeded the time limit of " + this.timeLimitSeconds + " seconds." );
+			return true;
+		}
+		if ( this.memoryLimitMb > 0 ) {
+			long estimatedBytes = getEstimatedBytes();
+			if ( estimatedBytes > this.memoryLimitMb*1024L*1024L ) {
+				exceed ( "Job exceeded the memory limit of " + this.memoryLimitMb + " MB (estimated results " +
+					(estimatedBytes/(1024L*1024L)) + " MB)." );
+				return true;
+			}
+		}
+		if ( this.allocationLimitMb > 0 ) {
+			long allocatedBytes = getCommandAllocatedBytes();
+			if ( allocatedBytes > this.allocationLimitMb*1024L*1024L ) {
+				exceed ( "Command exceeded the allocation limit of " + this.allocationLimitMb + " MB (allocated " +
+					(allocatedBytes/(1024L*1024L)) + " MB, including garbage)." );
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Cancel the job:  request cancel from the processor and interrupt the worker thread.
+	 * @param reason the reason, for logging
+	 */
+	public synchronized void cancel ( String reason ) {
+		if ( this.canceledReason != null ) {
+			return;
+		}
+		this.canceledReason = reason;
+		Message.printWarning ( 1, getClass().getSimpleName() + ".cancel", "Canceling job " + this.job + ":  " + reason );
+		this.processor.setCancelProcessingRequested ( true );
+		// Interrupt in case the command is waiting on a blocking call that responds to interrupts.
+		this.runThread.interrupt();
+	}
+
+	/**
+	 * Canceled commands are handled when the run ends.
+	 */
+	public void commandCanceled ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+	}
+
+	/**
+	 * Update the results estimate for a completed command.
+	 */
+	public void commandCompleted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+		// Called in the worker thread, so the results list is not being modified.
+		if ( this.memoryLimitMb > 0 ) {
+			this.resultsBytes = estimateResultsBytes();
+		}
+		this.commandStartAllocatedBytes = getAllocatedBytes();
+	}
+
+	/**
+	 * Progress is not used by the budget.
+	 */
+	public void commandProgress ( int istep, int nstep, Command command, float percentComplete, String message ) {
+	}
+
+	/**
+	 * Start measuring the allocation for the command that is starting.
+	 */
+	public void commandStarted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+		this.commandStartAllocatedBytes = getAllocatedBytes();
+	}
+
+	/**
+	 * Estimate the bytes used by the processor's time series results.
+	 * Only regular interval time series are estimated because the size of irregular time series is not known from the period.
+	 * @return the estimated bytes
+	 */
+	@SuppressWarnings("unchecked")
+	private long estimateResultsBytes () {
+		long bytes = 0;
+		try {
+			Object o = this.processor.getPropContents ( "TSResultsList" );
+			if ( o == null ) {
+				return 0;
+			}
+			for ( TS ts : (List<TS>)o ) {
+				if ( (ts == null) || (ts.getDate1() == null) || (ts.getDate2() == null) ||
+					(ts.getDataIntervalBase() == TimeInterval.IRREGULAR) ) {
+					continue;
+				}
+				bytes += BYTES_PER_VALUE*TSUtil.calculateDataSize ( ts.getDate1(), ts.getDate2(),
+					ts.getDataIntervalBase(), ts.getDataIntervalMult() );
+			}
+		}
+		catch ( Exception e ) {
+			// Use the estimate so far.
+			Message.printWarning ( 3, getClass().getSimpleName() + ".estimateResultsBytes", e );
+		}
+		return bytes;
+	}
+
+	/**
+	 * Handle a limit that has been exceeded by canceling the job.
+	 * @param reason the reason, for logging
+	 */
+	private void exceed ( String reason ) {
+		this.exceededReason = reason;
+		cancel ( reason );
+	}
+
+	/**
+	 * Return the bytes allocated by the worker thread, if the JVM supports measuring allocation.
+	 * @return the allocated bytes, or -1 if not supported
+	 */
+	private long getAllocatedBytes () {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if ( !(threadBean instanceof com.sun.management.ThreadMXBean) ) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean)threadBean;
+		if ( !sunThreadBean.isThreadAllocatedMemorySupported() || !sunThreadBean.isThreadAllocatedMemoryEnabled() ) {
+			return -1;
+		}
+		return sunThreadBean.getThreadAllocatedBytes ( this.runThread.getId() );
+	}
+
+	/**
+	 * Return the allocation limit.
+	 * @return the allocation limit for a command in MB, 0 for no limit
+	 */
+	public long getAllocationLimitMb () {
+		return this.allocationLimitMb;
+	}
+
+	/**
+	 * Return the bytes allocated by the worker thread while running the current command, which includes garbage.
+	 * @return the allocated bytes, or 0 if not measured
+	 */
+	public long getCommandAllocatedBytes () {
+		long startAllocatedBytes = this.commandStartAllocatedBytes;
+		if ( startAllocatedBytes < 0 ) {
+			return 0;
+		}
+		return Math.max(0, getAllocatedBytes() - startAllocatedBytes);
+	}
+
+	/**
+	 * Return the estimated retained bytes for the job, which is the size of the time series results
+	 * when the last command completed.
+	 * @return the estimated bytes
+	 */
+	public long getEstimatedBytes () {
+		return this.resultsBytes;
+	}
+
+	/**
+	 * Return the reason that the job was canceled.
+	 * @return the reason, or null if the job was not canceled
+	 */
+	public String getCanceledReason () {
+		return this.canceledReason;
+	}
+
+	/**
+	 * Return the reason that the budget was exceeded.
+	 * @return the reason, or null if the budget was not exceeded
+	 */
+	public String getExceededReason () {
+		return this.exceededReason;
+	}
+
+	/**
+	 * Return the job that the budget is for.
+	 * @return the job
+	 */
+	public BatchServerJob getJob () {
+		return this.job;
+	}
+
+	/**
+	 * Return the memory limit.
+	 * @return the memory limit in MB, 0 for no limit
+	 */
+	public long getMemoryLimitMb () {
+		return this.memoryLimitMb;
+	}
+
+	/**
+	 * Return the wall time limit.
+	 * @return the wall time limit in seconds, 0 for no limit
+	 */
+	public int getTimeLimitSeconds () {
+		return this.timeLimitSeconds;
+	}
+
+	/**
+	 * Indicate whether the budget has any limits.
+	 * @return true if a wall time or memory limit is set
+	 */
+	public boolean hasLimits () {
+		return (this.timeLimitSeconds > 0) || (this.memoryLimitMb > 0) || (this.allocationLimitMb > 0);
+	}
+
+	/**
+	 * Read the limit annotations from the command file, which override the defaults.
+	 * @param commandFile command file
+	 */
+	private void readAnnotations ( File commandFile ) {
+		String routine = getClass().getSimpleName() + ".readAnnotations";
+		try ( BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(commandFile), StandardCharsets.UTF_8)) ) {
+			String line;
+			int lineCount = 0;
+			while ( ((line = in.readLine()) != null) && (lineCount < ANNOTATION_MAX_LINES) ) {
+				++lineCount;
+				line = line.trim();
+				if ( line.regionMatches(true, 0, TIME_LIMIT_ANNOTATION, 0, TIME_LIMIT_ANNOTATION.length()) ) {
+					String value = line.substring(TIME_LIMIT_ANNOTATION.length()).trim();
+					if ( StringUtil.isInteger(value) && (Integer.parseInt(value) >= 0) ) {
+						this.timeLimitSeconds = Integer.parseInt(value);
+					}
+					else {
+						Message.printWarning ( 2, routine, "Invalid time limit annotation \"" + line + "\" in \"" + commandFile +
+							"\" - should be: " + TIME_LIMIT_ANNOTATION + " Seconds - ignoring." );
+					}
+				}
+				else if ( line.regionMatches(true, 0, MEMORY_LIMIT_ANNOTATION, 0, MEMORY_LIMIT_ANNOTATION.length()) ) {
+					String value = line.substring(MEMORY_LIMIT_ANNOTATION.length()).trim();
+					if ( StringUtil.isLong(value) && (Long.parseLong(value) >= 0) ) {
+						this.memoryLimitMb = Long.parseLong(value);
+					}
+					else {
+						Message.printWarning ( 2, routine, "Invalid memory limit annotation \"" + line + "\" in \"" + commandFile +
+							"\" - should be: " + MEMORY_LIMIT_ANNOTATION + " MB - ignoring." );
+					}
+				}
+				else if ( line.regionMatches(true, 0, ALLOCATION_LIMIT_ANNOTATION, 0, ALLOCATION_LIMIT_ANNOTATION.length()) ) {
+					String value = line.substring(ALLOCATION_LIMIT_ANNOTATION.length()).trim();
+					if ( StringUtil.isLong(value) && (Long.parseLong(value) >= 0) ) {
+						this.allocationLimitMb = Long.parseLong(value);
+					}
+					else {
+						Message.printWarning ( 2, routine, "Invalid allocation limit annotation \"" + line + "\" in \"" + commandFile +
+							"\" - should be: " + ALLOCATION_LIMIT_ANNOTATION + " MB - ignoring." );
+					}
+				}
+			}
+		}
+		catch ( IOException e ) {
+			// Use the defaults.  Errors will be handled when the file is run.
+		}
+	}
+
+	/**
+	 * Start the budget, which starts the wall time and adds the budget as a processor listener.
+	 * This must be called in the worker thread that runs the commands, which is interrupted if a limit is exceeded.
+	 * @param processor processor that runs the job's commands
+	 */
+	public void start ( TSCommandProcessor processor ) {
+		this.processor = processor;
+		this.runThread = Thread.currentThread();
+		this.startTime = System.currentTimeMillis();
+		this.commandStartAllocatedBytes = getAllocatedBytes();
+		processor.addCommandProcessorListener ( this );
+	}
+
+	/**
+	 * Return a string for the limits, for logging.
+	 * @return the limits
+	 */
+	public String toString () {
+		return "time limit " + ((this.timeLimitSeconds > 0) ? (this.timeLimitSeconds + " seconds") : "none") +
+			", memory limit " + ((this.memoryLimitMb > 0) ? (this.memoryLimitMb + " MB") : "none") +
+			", command allocation limit " + ((this.allocationLimitMb > 0) ? (this.allocationLimitMb + " MB") : "none");
+	}
+
+}
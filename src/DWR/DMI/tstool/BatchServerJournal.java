@@ -0,0 +1,550 @@
+// BatchServerJournal - durable job journal and job folders for the batch server
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Durable job journal and job folders for the batch server, in the ".tstool-jobs" folder under the hot folder:
+ * <pre>
+ * .tstool-jobs/
+ *   journal.jsonl   Append-only journal, one JSON object per line, for enqueue, start, coalesce, finish, and requeue events.
+ *   processing/     Command files for jobs that are running, named JobId_Name,
+ *                   in the "high" and "low" subfolders for jobs with those priorities.
+ *   done/           Command files for jobs that finished successfully.
+ *   failed/         Command files for jobs that failed.
+ *   logs/           Job log files, named JobId_Name.log.
+ *   status.json     Server status and metrics, written periodically (see BatchServerMetrics).
+ * </pre>
+ * A command file is moved from the hot folder to "processing" when it is taken by the server,
+ * and is moved to "done" or "failed" when the job finishes, so a command file is only in one place at a time.
+ * If the server stops while jobs are in "processing" (e.g., because of a crash or power failure),
+ * the command files are moved back to the hot folder (or its "high" and "low" subfolders)
+ * when the server restarts so that the jobs are run again.
+ *
+ * Journal records have the properties:
+ * Time (ISO 8601), Event, JobId, Name, and depending on the event, SubmitTime, Priority, ShareKey, Worker,
+ * QueueDepth, Status, QueueMs, DurationMs, Skipped, BudgetExceeded, LeaseLost, CoalescedWith, Folder.
+ * Files older than the retention period are removed from "done", "failed", and "logs" when the server starts.
+ *
+ * When several batch server nodes share the hot folder (see BatchServerLeases), each node writes its own journal file,
+ * named journal-NodeId.jsonl, and status file, named status-NodeId.json, and job identifiers end in the node identifier.
+ * A command file is only requeued when its lease has expired, which is checked periodically while the server runs,
+ * and a job whose lease was lost is recorded with LeaseLost and its command file is left where the other node moved it.
+ * Command files must be moved atomically so that only one node can claim a command file.
+ */
+public class BatchServerJournal {
+
+	/**
+	 * Name of the journal folder under the hot folder.
+	 */
+	public static final String JOBS_FOLDER_NAME = ".tstool-jobs";
+
+	/**
+	 * Name of the journal file.
+	 */
+	public static final String JOURNAL_FILE_NAME = "journal.jsonl";
+
+	/**
+	 * Name of the server status file.
+	 */
+	public static final String STATUS_FILE_NAME = "status.json";
+
+	/**
+	 * Journal event when a job is coalesced with a job that runs an identical command file.
+	 */
+	public static final String EVENT_COALESCE = "coalesce";
+
+	/**
+	 * Journal event when a job is taken from the hot folder.
+	 */
+	public static final String EVENT_ENQUEUE = "enqueue";
+
+	/**
+	 * Journal event when a job finishes.
+	 */
+	public static final String EVENT_FINISH = "finish";
+
+	/**
+	 * Journal event when a job that was processing when the server stopped is moved back to the hot folder.
+	 */
+	public static final String EVENT_REQUEUE = "requeue";
+
+	/**
+	 * Journal event when a job starts running.
+	 */
+	public static final String EVENT_START = "start";
+
+	/**
+	 * Pattern for the job identifier prefix on file names in the job folders.
+	 */
+	private static final Pattern JOB_ID_PREFIX_PATTERN = Pattern.compile("^\\d{8}-\\d{9}-\\d+(-[A-Za-z0-9.-]+)?_");
+
+	/**
+	 * Journal folder.
+	 */
+	private File jobsFolder;
+
+	/**
+	 * Folder for jobs that are queued or running.
+	 */
+	private File processingFolder;
+
+	/**
+	 * Folder for jobs that finished successfully.
+	 */
+	private File doneFolder;
+
+	/**
+	 * Folder for jobs that failed.
+	 */
+	private File failedFolder;
+
+	/**
+	 * Folder for job log files.
+	 */
+	private File logsFolder;
+
+	/**
+	 * Hot folder.
+	 */
+	private File hotFolder;
+
+	/**
+	 * Number of days to keep files in the done, failed, and logs folders, or 0 to keep all.
+	 */
+	private int retentionDays;
+
+	/**
+	 * Job leases when several nodes share the hot folder, or null for a single node.
+	 */
+	private BatchServerLeases leases = null;
+
+	/**
+	 * Journal output stream, open for append.
+	 */
+	private FileOutputStream journalStream = null;
+
+	/**
+	 * Mapper used to format journal records.
+	 */
+	private ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Count of job identifiers that have been created, to make identifiers unique within a millisecond.
+	 */
+	private int jobIdCount = 0;
+
+	/**
+	 * Constructor.
+	 * @param hotFolder batch server hot folder
+	 * @param retentionDays number of days to keep files in the done, failed, and logs folders, or 0 to keep all
+	 */
+	public BatchServerJournal ( File hotFolder, int retentionDays ) {
+		this ( hotFolder, retentionDays, null );
+	}
+
+	/**
+	 * Constructor for a node of several batch server nodes that share the hot folder.
+	 * @param hotFolder batch server hot folder
+	 * @param retentionDays number of days to keep files in the done, failed, and logs folders, or 0 to keep all
+	 * @param leases job leases for this node, or null for a single node
+	 */
+	public BatchServerJournal ( File hotFolder, int retentionDays, BatchServerLeases leases ) {
+		this.leases = leases;
+		this.hotFolder = hotFolder.getAbsoluteFile();
+		this.jobsFolder = new File ( this.hotFolder, JOBS_FOLDER_NAME );
+		this.processingFolder = new File ( this.jobsFolder, "processing" );
+		this.doneFolder = new File ( this.jobsFolder, "done" );
+		this.failedFolder = new File ( this.jobsFolder, "failed" );
+		this.logsFolder = new File ( this.jobsFolder, "logs" );
+		this.retentionDays = retentionDays;
+	}
+
+	/**
+	 * Close the journal.
+	 */
+	public synchronized void close () {
+		if ( this.journalStream != null ) {
+			try {
+				this.journalStream.close();
+			}
+			catch ( IOException e ) {
+				// Ignore.
+			}
+			this.journalStream = null;
+		}
+	}
+
+	/**
+	 * Record that a job was coalesced with a job that runs an identical command file.
+	 * @param job job that was coalesced, which will finish when the other job finishes
+	 */
+	public void coalesce ( BatchServerJob job ) {
+		Map<String,Object> record = createRecord ( EVENT_COALESCE, job );
+		record.put("CoalescedWith", job.getCoalescedWithId());
+		writeRecord ( record );
+	}
+
+	/**
+	 * Create a job identifier, which sorts by time and is unique over server restarts.
+	 * @return a new job identifier
+	 */
+	private synchronized String createJobId () {
+		++this.jobIdCount;
+		String jobId = new SimpleDateFormat("yyyyMMdd-HHmmssSSS").format(new Date()) + "-" + this.jobIdCount;
+		if ( this.leases != null ) {
+			// Unique between nodes.
+			jobId = jobId + "-" + this.leases.getNodeId();
+		}
+		return jobId;
+	}
+
+	/**
+	 * Create a job for a command file that was taken from the hot folder,
+	 * moving the command file to the "processing" folder and recording the enqueue event.
+	 * @param commandFile command file in the hot folder
+	 * @param priority job priority, see BatchServerJob.PRIORITY_*
+	 * @param shareKey fair share key for the job
+	 * @param submitTime time that the command file was submitted (queued), milliseconds
+	 * @return the job
+	 * @throws IOException if the command file cannot be moved, for example if it was removed from the hot folder
+	 */
+	public BatchServerJob enqueue ( File commandFile, int priority, String shareKey, long submitTime ) throws IOException {
+		BatchServerJob job = new BatchServerJob ( createJobId(), commandFile, submitTime );
+		job.setPriority ( priority );
+		job.setShareKey ( shareKey );
+		File processingFile = new File ( getProcessingFolder(priority), job.getId() + "_" + job.getName() );
+		moveFile ( commandFile, processingFile );
+		job.setCommandFile ( processingFile );
+		if ( this.leases != null ) {
+			this.leases.acquire ( job );
+		}
+		Map<String,Object> record = createRecord ( EVENT_ENQUEUE, job );
+		record.put("SubmitTime", formatTime(job.getSubmitTime()));
+		record.put("Priority", job.getPriorityName());
+		record.put("ShareKey", job.getShareKey());
+		writeRecord ( record );
+		return job;
+	}
+
+	/**
+	 * Create a journal record with the properties that are common to all events.
+	 * @param event event name, see EVENT_*
+	 * @param job job for the event
+	 * @return the journal record
+	 */
+	private Map<String,Object> createRecord ( String event, BatchServerJob job ) {
+		Map<String,Object> record = new LinkedHashMap<>();
+		record.put("Time", formatTime(System.currentTimeMillis()));
+		record.put("Event", event);
+		record.put("JobId", job.getId());
+		record.put("Name", job.getName());
+		return record;
+	}
+
+	/**
+	 * Record that a job finished, moving the command file to the "done" or "failed" folder.
+	 * @param job job that finished
+	 */
+	public void finish ( BatchServerJob job ) {
+		String routine = getClass().getSimpleName() + ".finish";
+		File folder = (job.getStatus() == 0) ? this.doneFolder : this.failedFolder;
+		if ( this.leases != null ) {
+			this.leases.release ( job );
+		}
+		if ( !job.isLeaseLost() ) {
+			// If the lease was lost, the command file was requeued by another node.
+			File finishedFile = new File ( folder, job.getCommandFile().getName() );
+			try {
+				moveFile ( job.getCommandFile(), finishedFile );
+				job.setCommandFile ( finishedFile );
+			}
+			catch ( IOException e ) {
+				Message.printWarning ( 2, routine, "Error moving command file for job " + job + " to \"" + folder + "\" (" + e + ")." );
+			}
+		}
+		Map<String,Object> record = createRecord ( EVENT_FINISH, job );
+		record.put("Worker", job.getWorker());
+		record.put("Status", job.getStatus());
+		record.put("QueueMs", job.getQueueMs());
+		record.put("DurationMs", job.getDurationMs());
+		record.put("Skipped", job.isSkipped());
+		if ( job.getBudgetExceededReason() != null ) {
+			record.put("BudgetExceeded", job.getBudgetExceededReason());
+		}
+		if ( job.isLeaseLost() ) {
+			record.put("LeaseLost", true);
+		}
+		if ( job.getCoalescedWithId() != null ) {
+			record.put("CoalescedWith", job.getCoalescedWithId());
+		}
+		if ( !job.isLeaseLost() ) {
+			record.put("Folder", folder.getName());
+		}
+		writeRecord ( record );
+	}
+
+	/**
+	 * Format a time for the journal.
+	 * @param time time in milliseconds
+	 * @return ISO 8601 time with time zone offset
+	 */
+	private String formatTime ( long time ) {
+		return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").format(new Date(time));
+	}
+
+	/**
+	 * Return the journal file, which is named for the node when several nodes share the hot folder.
+	 * @return the journal file
+	 */
+	private File getJournalFile () {
+		if ( this.leases != null ) {
+			return new File ( this.jobsFolder, JOURNAL_FILE_NAME.replace(".jsonl", "-" + this.leases.getNodeId() + ".jsonl") );
+		}
+		return new File ( this.jobsFolder, JOURNAL_FILE_NAME );
+	}
+
+	/**
+	 * Return the job log file for a job.
+	 * @param job job
+	 * @return the job log file
+	 */
+	public File getLogFile ( BatchServerJob job ) {
+		return new File ( this.logsFolder, job.getId() + "_" + job.getName() + ".log" );
+	}
+
+	/**
+	 * Return the processing folder for a priority.
+	 * @param priority job priority, see BatchServerJob.PRIORITY_*
+	 * @return the processing folder, the "processing" folder for normal priority and a subfolder for other priorities
+	 */
+	private File getProcessingFolder ( int priority ) {
+		if ( priority == BatchServerJob.PRIORITY_NORMAL ) {
+			return this.processingFolder;
+		}
+		return new File ( this.processingFolder, BatchServerJob.PRIORITY_NAMES[priority] );
+	}
+
+	/**
+	 * Move a file, atomically if supported by the file system.
+	 * When several nodes share the hot folder the move must be atomic so that only one node can move the file.
+	 * @param from file to move
+	 * @param to new file location
+	 */
+	private void moveFile ( File from, File to ) throws IOException {
+		try {
+			Files.move ( from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch ( AtomicMoveNotSupportedException e ) {
+			if ( this.leases != null ) {
+				throw new IOException ( "The file system does not support atomic move, which is required for batch server nodes", e );
+			}
+			Files.move ( from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
+
+	/**
+	 * Return the server status file, which is named for the node when several nodes share the hot folder.
+	 * @return the status file
+	 */
+	public File getStatusFile () {
+		if ( this.leases != null ) {
+			return new File ( this.jobsFolder, STATUS_FILE_NAME.replace(".json", "-" + this.leases.getNodeId() + ".json") );
+		}
+		return new File ( this.jobsFolder, STATUS_FILE_NAME );
+	}
+
+	/**
+	 * Open the journal, creating the folders if necessary and removing old files.
+	 * @throws IOException if the folders cannot be created or the journal cannot be opened
+	 */
+	public void open () throws IOException {
+		String routine = getClass().getSimpleName() + ".open";
+		for ( File folder : new File[] { this.processingFolder, getProcessingFolder(BatchServerJob.PRIORITY_HIGH),
+			getProcessingFolder(BatchServerJob.PRIORITY_LOW), this.doneFolder, this.failedFolder, this.logsFolder } ) {
+			if ( !folder.exists() && !folder.mkdirs() ) {
+				throw new IOException ( "Unable to create batch server job folder \"" + folder + "\"." );
+			}
+		}
+		if ( this.leases != null ) {
+			this.leases.open();
+		}
+		this.journalStream = new FileOutputStream ( getJournalFile(), true );
+		if ( this.retentionDays > 0 ) {
+			long cutoff = System.currentTimeMillis() - this.retentionDays*86400000L;
+			int count = 0;
+			for ( File folder : new File[] { this.doneFolder, this.failedFolder, this.logsFolder } ) {
+				File [] files = folder.listFiles();
+				if ( files == null ) {
+					continue;
+				}
+				for ( File file : files ) {
+					if ( file.isFile() && (file.lastModified() < cutoff) && file.delete() ) {
+						++count;
+					}
+				}
+			}
+			Message.printStatus ( 2, routine, "Removed " + count + " job files older than " + this.retentionDays + " days." );
+		}
+		Message.printStatus ( 2, routine, "Batch server job journal is \"" + getJournalFile() + "\"." );
+	}
+
+	/**
+	 * Move the command files for jobs that were processing when the server stopped back to the hot folder,
+	 * so that the jobs are run again.  This should be called after open() and before the hot folder is watched.
+	 * When several nodes share the hot folder, only command files with expired leases are moved,
+	 * and this should also be called periodically to requeue jobs for nodes that stopped.
+	 * @return the list of command files that were moved back to the hot folder
+	 */
+	public List<File> recover () {
+		List<File> requeuedList = new ArrayList<>();
+		List<File> processingFileList = new ArrayList<>();
+		for ( int priority = 0; priority < BatchServerJob.PRIORITY_NAMES.length; priority++ ) {
+			File [] files = getProcessingFolder(priority).listFiles();
+			if ( files == null ) {
+				continue;
+			}
+			// Move back to the hot folder subfolder for the priority, if it exists.
+			File requeueFolder = this.hotFolder;
+			if ( priority != BatchServerJob.PRIORITY_NORMAL ) {
+				File priorityFolder = new File ( this.hotFolder, BatchServerJob.PRIORITY_NAMES[priority] );
+				if ( priorityFolder.isDirectory() ) {
+					requeueFolder = priorityFolder;
+				}
+			}
+			for ( File file : files ) {
+				if ( !file.isFile() ) {
+					continue;
+				}
+				processingFileList.add ( file );
+				if ( (this.leases != null) && !this.leases.isExpired(file) ) {
+					continue;
+				}
+				File hotFile = requeue ( file, requeueFolder );
+				if ( hotFile != null ) {
+					requeuedList.add ( hotFile );
+				}
+				if ( this.leases != null ) {
+					this.leases.remove ( file );
+				}
+			}
+		}
+		if ( this.leases != null ) {
+			this.leases.retainObserved ( processingFileList );
+		}
+		return requeuedList;
+	}
+
+	/**
+	 * Move the command file for a job that was processing when the server stopped back to the hot folder.
+	 * @param file command file in the processing folder
+	 * @param requeueFolder hot folder or subfolder to move the file to
+	 * @return the command file in the hot folder, or null if it could not be moved
+	 */
+	private File requeue ( File file, File requeueFolder ) {
+		String routine = getClass().getSimpleName() + ".requeue";
+		String name = JOB_ID_PREFIX_PATTERN.matcher(file.getName()).replaceFirst("");
+		String jobId = file.getName().substring(0, file.getName().length() - name.length());
+		if ( jobId.endsWith("_") ) {
+			jobId = jobId.substring(0, jobId.length() - 1);
+		}
+		File hotFile = new File ( requeueFolder, name );
+		if ( hotFile.exists() ) {
+			// A new command file with the same name has been submitted so keep the job identifier in the name.
+			hotFile = new File ( requeueFolder, file.getName() );
+		}
+		try {
+			moveFile ( file, hotFile );
+		}
+		catch ( NoSuchFileException e ) {
+			// Requeued by another node or finished.
+			return null;
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 2, routine, "Error moving unfinished job command file \"" + file + "\" to the hot folder (" + e + ")." );
+			return null;
+		}
+		Map<String,Object> record = new LinkedHashMap<>();
+		record.put("Time", formatTime(System.currentTimeMillis()));
+		record.put("Event", EVENT_REQUEUE);
+		record.put("JobId", jobId);
+		record.put("Name", hotFile.getName());
+		writeRecord ( record );
+		Message.printStatus ( 2, routine, "Requeued job " + jobId + " that was processing when the server stopped:  \"" +
+			hotFile + "\"" );
+		return hotFile;
+	}
+
+	/**
+	 * Record that a job started.
+	 * @param job job that started
+	 * @param queueDepth number of jobs waiting when the job started
+	 */
+	public void start ( BatchServerJob job, int queueDepth ) {
+		Map<String,Object> record = createRecord ( EVENT_START, job );
+		record.put("Worker", job.getWorker());
+		record.put("QueueMs", job.getQueueMs());
+		record.put("QueueDepth", queueDepth);
+		writeRecord ( record );
+	}
+
+	/**
+	 * Append a record to the journal and force it to disk.
+	 * @param record journal record
+	 */
+	private synchronized void writeRecord ( Map<String,Object> record ) {
+		if ( this.journalStream == null ) {
+			return;
+		}
+		try {
+			String line = this.mapper.writeValueAsString(record) + "\n";
+			this.journalStream.write ( line.getBytes(StandardCharsets.UTF_8) );
+			this.journalStream.flush();
+			this.journalStream.getFD().sync();
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 2, getClass().getSimpleName() + ".writeRecord", "Error writing batch server job journal (" + e + ")." );
+		}
+	}
+
+}
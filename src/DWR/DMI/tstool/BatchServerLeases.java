@@ -0,0 +1,341 @@
+// BatchServerLeases - job leases for batch servers that share a hot folder
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Job leases for several batch server nodes (TSTool instances on the same or different computers)
+ * that share a hot folder, so that each job runs on one node and jobs that were running on a node that stopped
+ * are run again by another node.  Leases are files in the journal "leases" folder:
+ * <pre>
+ * .tstool-jobs/
+ *   leases/
+ *     JobId_Name.lease   Lease for the command file JobId_Name in the "processing" folder.
+ * </pre>
+ * A node claims a command file by moving it from the hot folder to the "processing" folder with an atomic rename,
+ * which only succeeds for one node, and then writes the lease file.
+ * The node rewrites its lease files every heartbeat interval while the jobs run and removes them when the jobs finish.
+ *
+ * A lease has expired when the lease file has not changed (or has been missing) for the lease timeout,
+ * measured with the clock of the node that checks the lease so that clocks do not need to be synchronized between computers.
+ * The command file for an expired lease is moved back to the hot folder so that it is claimed again.
+ * A lease for this node that is not held by this node is from before this node restarted and has expired immediately,
+ * so the node identifier should be the same when a node is restarted.
+ * If a node finds that the command file for one of its leases is no longer in the "processing" folder,
+ * another node has requeued the job and the lease is lost, in which case the job is canceled.
+ *
+ * The lease timeout should be several heartbeat intervals, so that a busy node does not lose its leases.
+ */
+public class BatchServerLeases {
+
+	/**
+	 * Name of the leases folder under the journal folder.
+	 */
+	public static final String LEASES_FOLDER_NAME = "leases";
+
+	/**
+	 * Lease file extension.
+	 */
+	public static final String LEASE_FILE_EXTENSION = ".lease";
+
+	/**
+	 * Leases folder.
+	 */
+	private File leasesFolder;
+
+	/**
+	 * Identifier for this node, unique between nodes that share the hot folder.
+	 */
+	private String nodeId;
+
+	/**
+	 * Lease timeout in milliseconds.
+	 */
+	private long leaseTimeoutMs;
+
+	/**
+	 * Heartbeat interval in milliseconds.
+	 */
+	private long heartbeatMs;
+
+	/**
+	 * Jobs for leases held by this node, by lease file name.
+	 */
+	private Map<String,BatchServerJob> heldLeaseMap = new HashMap<>();
+
+	/**
+	 * Leases that are not held by this node, by processing command file path, used to determine when leases expire.
+	 */
+	private Map<String,ObservedLease> observedLeaseMap = new HashMap<>();
+
+	/**
+	 * Count of heartbeats, written to lease files so that the content changes with each heartbeat.
+	 */
+	private long heartbeatCount = 0;
+
+	/**
+	 * Constructor.
+	 * @param hotFolder batch server hot folder
+	 * @param nodeId identifier for this node, unique between nodes that share the hot folder
+	 * @param leaseTimeoutMs lease timeout in milliseconds, after which jobs for a node that stopped are run again
+	 * @param heartbeatMs heartbeat interval in milliseconds
+	 */
+	public BatchServerLeases ( File hotFolder, String nodeId, long leaseTimeoutMs, long heartbeatMs ) {
+		this.leasesFolder = new File ( new File(hotFolder.getAbsoluteFile(), BatchServerJournal.JOBS_FOLDER_NAME), LEASES_FOLDER_NAME );
+		this.nodeId = nodeId;
+		this.heartbeatMs = Math.max(1000, heartbeatMs);
+		this.leaseTimeoutMs = Math.max(2*this.heartbeatMs, leaseTimeoutMs);
+	}
+
+	/**
+	 * Acquire the lease for a job, after the command file has been moved to the "processing" folder.
+	 * If the lease file cannot be written, it is written again at the next heartbeat.
+	 * @param job job, with the command file in the "processing" folder
+	 */
+	public synchronized void acquire ( BatchServerJob job ) {
+		this.heldLeaseMap.put ( getLeaseFile(job.getCommandFile()).getName(), job );
+		try {
+			writeLease ( job );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 2, getClass().getSimpleName() + ".acquire", "Error writing lease for job " + job +
+				" (" + e + ") - will try again at the next heartbeat." );
+		}
+	}
+
+	/**
+	 * Return the heartbeat interval.
+	 * @return the heartbeat interval in milliseconds
+	 */
+	public long getHeartbeatMs () {
+		return this.heartbeatMs;
+	}
+
+	/**
+	 * Return the lease file for a command file in the "processing" folder.
+	 * @param processingFile command file in the "processing" folder
+	 * @return the lease file
+	 */
+	private File getLeaseFile ( File processingFile ) {
+		return new File ( this.leasesFolder, processingFile.getName() + LEASE_FILE_EXTENSION );
+	}
+
+	/**
+	 * Return the identifier for this node.
+	 * @return the node identifier
+	 */
+	public String getNodeId () {
+		return this.nodeId;
+	}
+
+	/**
+	 * Renew the leases held by this node, called every heartbeat interval.
+	 * @return the jobs whose leases were lost because another node requeued the job, which should be canceled
+	 */
+	public synchronized List<BatchServerJob> heartbeat () {
+		String routine = getClass().getSimpleName() + ".heartbeat";
+		++this.heartbeatCount;
+		List<BatchServerJob> lostList = new ArrayList<>();
+		Iterator<Map.Entry<String,BatchServerJob>> it = this.heldLeaseMap.entrySet().iterator();
+		while ( it.hasNext() ) {
+			BatchServerJob job = it.next().getValue();
+			if ( !job.getCommandFile().exists() ) {
+				Message.printWarning ( 2, routine, "Lease for job " + job + " was lost because another node requeued the job." );
+				lostList.add ( job );
+				it.remove();
+				// Remove the lease file in case it was rewritten after the other node removed it.
+				getLeaseFile(job.getCommandFile()).delete();
+				continue;
+			}
+			try {
+				writeLease ( job );
+			}
+			catch ( IOException e ) {
+				// Try again at the next heartbeat.
+				Message.printWarning ( 2, routine, "Error renewing lease for job " + job + " (" + e + ")." );
+			}
+		}
+		return lostList;
+	}
+
+	/**
+	 * Indicate whether the lease for a command file in the "processing" folder has expired,
+	 * in which case the command file should be requeued.  This should be called periodically for each command file
+	 * in the "processing" folder because expiration is determined from changes to the lease file between calls.
+	 * @param processingFile command file in the "processing" folder
+	 * @return true if the lease has expired
+	 */
+	public synchronized boolean isExpired ( File processingFile ) {
+		File leaseFile = getLeaseFile ( processingFile );
+		if ( this.heldLeaseMap.containsKey(leaseFile.getName()) ) {
+			return false;
+		}
+		String content = null;
+		try {
+			content = new String ( Files.readAllBytes(leaseFile.toPath()), StandardCharsets.UTF_8 );
+		}
+		catch ( IOException e ) {
+			// No lease file, which is checked for changes the same as a lease file.
+		}
+		if ( content != null ) {
+			Properties props = new Properties();
+			try {
+				props.load ( new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) );
+			}
+			catch ( IOException e ) {
+				// Should not happen reading from memory.
+			}
+			if ( this.nodeId.equals(props.getProperty("Node")) ) {
+				// Lease for this node before it was restarted.
+				return true;
+			}
+		}
+		long now = System.currentTimeMillis();
+		String key = processingFile.getPath();
+		ObservedLease observedLease = this.observedLeaseMap.get ( key );
+		if ( (observedLease == null) || !equals(observedLease.content, content) ) {
+			this.observedLeaseMap.put ( key, new ObservedLease(content, now) );
+			return false;
+		}
+		return (now - observedLease.changeTime) > this.leaseTimeoutMs;
+	}
+
+	/**
+	 * Compare lease file content, which may be null.
+	 * @param content1 content to compare
+	 * @param content2 content to compare
+	 * @return true if the content is the same
+	 */
+	private boolean equals ( String content1, String content2 ) {
+		return (content1 == null) ? (content2 == null) : content1.equals(content2);
+	}
+
+	/**
+	 * Open the leases, creating the leases folder if necessary.
+	 * @throws IOException if the leases folder cannot be created
+	 */
+	public void open () throws IOException {
+		if ( !this.leasesFolder.exists() && !this.leasesFolder.mkdirs() ) {
+			throw new IOException ( "Unable to create batch server leases folder \"" + this.leasesFolder + "\"." );
+		}
+		Message.printStatus ( 2, getClass().getSimpleName() + ".open", "Batch server node \"" + this.nodeId +
+			"\" is using leases in \"" + this.leasesFolder + "\" with heartbeat " + this.heartbeatMs +
+			" ms and timeout " + this.leaseTimeoutMs + " ms." );
+	}
+
+	/**
+	 * Release the lease for a job that finished, removing the lease file.
+	 * @param job job that finished
+	 */
+	public synchronized void release ( BatchServerJob job ) {
+		File leaseFile = getLeaseFile ( job.getCommandFile() );
+		this.heldLeaseMap.remove ( leaseFile.getName() );
+		leaseFile.delete();
+	}
+
+	/**
+	 * Remove the lease file for a command file that was requeued, after its lease expired.
+	 * @param processingFile command file that was in the "processing" folder
+	 */
+	public synchronized void remove ( File processingFile ) {
+		this.observedLeaseMap.remove ( processingFile.getPath() );
+		getLeaseFile(processingFile).delete();
+	}
+
+	/**
+	 * Remove observations for command files that are no longer in the "processing" folder,
+	 * called after all the command files in the "processing" folder have been checked.
+	 * @param processingFileList command files that are in the "processing" folder
+	 */
+	public synchronized void retainObserved ( List<File> processingFileList ) {
+		List<String> keyList = new ArrayList<>();
+		for ( File processingFile : processingFileList ) {
+			keyList.add ( processingFile.getPath() );
+		}
+		this.observedLeaseMap.keySet().retainAll ( keyList );
+	}
+
+	/**
+	 * Write the lease file for a job, atomically so that other nodes do not read a partial file.
+	 * @param job job, with the command file in the "processing" folder
+	 * @throws IOException if the lease file cannot be written
+	 */
+	private void writeLease ( BatchServerJob job ) throws IOException {
+		File leaseFile = getLeaseFile ( job.getCommandFile() );
+		File tmpFile = new File ( this.leasesFolder, leaseFile.getName() + "." + this.nodeId + ".tmp" );
+		String content = "Node=" + this.nodeId + "\n" +
+			"JobId=" + job.getId() + "\n" +
+			"Heartbeat=" + this.heartbeatCount + "\n";
+		Files.write ( tmpFile.toPath(), content.getBytes(StandardCharsets.UTF_8) );
+		try {
+			Files.move ( tmpFile.toPath(), leaseFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+		}
+		catch ( IOException e ) {
+			tmpFile.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Lease that is not held by this node, as last observed.
+	 */
+	private static class ObservedLease {
+
+		/**
+		 * Lease file content, or null if there was no lease file.
+		 */
+		private String content;
+
+		/**
+		 * Time that the content was observed to change, milliseconds, using this node's clock.
+		 */
+		private long changeTime;
+
+		/**
+		 * Constructor.
+		 * @param content lease file content, or null if there was no lease file
+		 * @param changeTime time that the content was observed to change, milliseconds
+		 */
+		private ObservedLease ( String content, long changeTime ) {
+			this.content = content;
+			this.changeTime = changeTime;
+		}
+
+	}
+
+}
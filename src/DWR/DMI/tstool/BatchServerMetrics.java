@@ -0,0 +1,586 @@
+// BatchServerMetrics - operational metrics for the batch server
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandProcessorListener;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import riverside.datastore.DataStore;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+import rti.tscommandprocessor.core.TSCommandProcessorUtil;
+
+/**
+ * Operational metrics for the batch server, so that monitoring can alert on backlog growth and slow jobs
+ * without reading the log file:
+ * <ul>
+ * <li> job counts:  queued, running, succeeded, failed, skipped, coalesced, and canceled</li>
+ * <li> queue:  longest wait of a queued command file</li>
+ * <li> job duration percentiles, for the most recent jobs that were run</li>
+ * <li> datastore read count, mean, and 90th percentile time, by datastore,
+ *      for Read* and TSID commands that read from a datastore</li>
+ * <li> JVM heap and garbage collection</li>
+ * </ul>
+ * The metrics are written periodically to the status file in the journal folder and are available with JMX
+ * (see BatchServerMetricsMXBean).
+ */
+public class BatchServerMetrics implements BatchServerMetricsMXBean {
+
+	/**
+	 * JMX object name for the metrics.
+	 */
+	public static final String OBJECT_NAME = "DWR.DMI.tstool:type=BatchServer";
+
+	/**
+	 * Number of recent job durations that are used for percentiles.
+	 */
+	private static final int JOB_DURATION_SAMPLES = 1000;
+
+	/**
+	 * Number of recent datastore read times, for each datastore, that are used for percentiles.
+	 */
+	private static final int DATASTORE_READ_SAMPLES = 200;
+
+	/**
+	 * Scheduler, used for the queue metrics.
+	 */
+	private BatchServerScheduler scheduler;
+
+	/**
+	 * Time that the metrics were created, milliseconds.
+	 */
+	private long startTime;
+
+	/**
+	 * Number of running jobs.
+	 */
+	private int jobsRunning = 0;
+
+	/**
+	 * Number of jobs that succeeded.
+	 */
+	private long jobsSucceeded = 0;
+
+	/**
+	 * Number of jobs that failed.
+	 */
+	private long jobsFailed = 0;
+
+	/**
+	 * Number of jobs that were skipped.
+	 */
+	private long jobsSkipped = 0;
+
+	/**
+	 * Number of jobs that were coalesced.
+	 */
+	private long jobsCoalesced = 0;
+
+	/**
+	 * Number of jobs that were canceled.
+	 */
+	private long jobsCanceled = 0;
+
+	/**
+	 * Recent job durations, milliseconds.
+	 */
+	private Samples jobDurations = new Samples ( JOB_DURATION_SAMPLES );
+
+	/**
+	 * Datastore read times, milliseconds, by datastore name.
+	 */
+	private Map<String,Samples> dataStoreReadMap = new TreeMap<>();
+
+	/**
+	 * JMX object name that the metrics are registered with, or null if not registered.
+	 */
+	private ObjectName objectName = null;
+
+	/**
+	 * Mapper used to format the status file.
+	 */
+	private ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	/**
+	 * Constructor.
+	 * @param scheduler scheduler, used for the queue metrics
+	 */
+	public BatchServerMetrics ( BatchServerScheduler scheduler ) {
+		this.scheduler = scheduler;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Create a listener that measures the datastore read times for a job's processor.
+	 * The listener should be added to the processor before the commands are run.
+	 * @param processor processor that runs the job's commands
+	 * @return the listener
+	 */
+	public CommandProcessorListener createDataStoreReadListener ( final TSCommandProcessor processor ) {
+		return new CommandProcessorListener() {
+			// Commands are run sequentially, so only one read is timed at a time.
+			private String dataStoreName = null;
+			private long readStartNanos = 0;
+			public void commandCanceled ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+				this.dataStoreName = null;
+			}
+			public void commandCompleted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+				if ( this.dataStoreName != null ) {
+					dataStoreRead ( this.dataStoreName, (System.nanoTime() - this.readStartNanos)/1000000L );
+					this.dataStoreName = null;
+				}
+			}
+			public void commandProgress ( int istep, int nstep, Command command, float percentComplete, String message ) {
+			}
+			public void commandStarted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+				this.dataStoreName = getReadDataStoreName ( processor, command );
+				this.readStartNanos = System.nanoTime();
+			}
+		};
+	}
+
+	/**
+	 * Record a datastore read.
+	 * @param dataStoreName datastore name
+	 * @param readMs read time in milliseconds
+	 */
+	public synchronized void dataStoreRead ( String dataStoreName, long readMs ) {
+		Samples samples = this.dataStoreReadMap.get ( dataStoreName );
+		if ( samples == null ) {
+			samples = new Samples ( DATASTORE_READ_SAMPLES );
+			this.dataStoreReadMap.put ( dataStoreName, samples );
+		}
+		samples.add ( readMs );
+	}
+
+	/**
+	 * Return the number of datastore reads by datastore name.
+	 */
+	public synchronized Map<String,Long> getDataStoreReadCount () {
+		Map<String,Long> map = new TreeMap<>();
+		for ( Map.Entry<String,Samples> entry : this.dataStoreReadMap.entrySet() ) {
+			map.put ( entry.getKey(), entry.getValue().count );
+		}
+		return map;
+	}
+
+	/**
+	 * Return the mean datastore read time in milliseconds by datastore name.
+	 */
+	public synchronized Map<String,Long> getDataStoreReadMeanMs () {
+		Map<String,Long> map = new TreeMap<>();
+		for ( Map.Entry<String,Samples> entry : this.dataStoreReadMap.entrySet() ) {
+			map.put ( entry.getKey(), entry.getValue().getMean() );
+		}
+		return map;
+	}
+
+	/**
+	 * Return the 90th percentile of recent datastore read times in milliseconds by datastore name.
+	 */
+	public synchronized Map<String,Long> getDataStoreReadP90Ms () {
+		Map<String,Long> map = new TreeMap<>();
+		for ( Map.Entry<String,Samples> entry : this.dataStoreReadMap.entrySet() ) {
+			map.put ( entry.getKey(), entry.getValue().getPercentile(90) );
+		}
+		return map;
+	}
+
+	/**
+	 * Return the number of garbage collections, for all collectors.
+	 */
+	public long getGcCount () {
+		long count = 0;
+		for ( GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans() ) {
+			count += Math.max(0, gcBean.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Return the time spent in garbage collection, for all collectors.
+	 */
+	public long getGcTimeMs () {
+		long timeMs = 0;
+		for ( GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans() ) {
+			timeMs += Math.max(0, gcBean.getCollectionTime());
+		}
+		return timeMs;
+	}
+
+	/**
+	 * Return the maximum heap size.
+	 */
+	public long getHeapMaxBytes () {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+	}
+
+	/**
+	 * Return the heap that is used.
+	 */
+	public long getHeapUsedBytes () {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Return the maximum duration of recent jobs.
+	 */
+	public synchronized long getJobDurationMaxMs () {
+		return this.jobDurations.getPercentile(100);
+	}
+
+	/**
+	 * Return the median duration of recent jobs.
+	 */
+	public synchronized long getJobDurationP50Ms () {
+		return this.jobDurations.getPercentile(50);
+	}
+
+	/**
+	 * Return the 90th percentile duration of recent jobs.
+	 */
+	public synchronized long getJobDurationP90Ms () {
+		return this.jobDurations.getPercentile(90);
+	}
+
+	/**
+	 * Return the 99th percentile duration of recent jobs.
+	 */
+	public synchronized long getJobDurationP99Ms () {
+		return this.jobDurations.getPercentile(99);
+	}
+
+	/**
+	 * Return the number of jobs that were canceled.
+	 */
+	public synchronized long getJobsCanceled () {
+		return this.jobsCanceled;
+	}
+
+	/**
+	 * Return the number of jobs that were coalesced.
+	 */
+	public synchronized long getJobsCoalesced () {
+		return this.jobsCoalesced;
+	}
+
+	/**
+	 * Return the number of jobs that failed.
+	 */
+	public synchronized long getJobsFailed () {
+		return this.jobsFailed;
+	}
+
+	/**
+	 * Return the number of command files that are queued.
+	 */
+	public int getJobsQueued () {
+		return this.scheduler.getQueueDepth();
+	}
+
+	/**
+	 * Return the number of jobs that are running.
+	 */
+	public synchronized int getJobsRunning () {
+		return this.jobsRunning;
+	}
+
+	/**
+	 * Return the number of jobs that were skipped.
+	 */
+	public synchronized long getJobsSkipped () {
+		return this.jobsSkipped;
+	}
+
+	/**
+	 * Return the number of jobs that succeeded.
+	 */
+	public synchronized long getJobsSucceeded () {
+		return this.jobsSucceeded;
+	}
+
+	/**
+	 * Return the longest time that a queued command file has waited.
+	 */
+	public long getQueueLongestWaitMs () {
+		return this.scheduler.getLongestWaitMs();
+	}
+
+	/**
+	 * Return the name of the datastore that a command reads from.
+	 * The datastore is the DataStore parameter of a Read* command,
+	 * or the input name of the time series identifier for a ReadTimeSeries or TSID command.
+	 * @param processor processor that runs the command
+	 * @param command command
+	 * @return the datastore name, or null if the command does not read from an open datastore
+	 */
+	private String getReadDataStoreName ( TSCommandProcessor processor, Command command ) {
+		String commandName = command.getCommandName();
+		if ( (commandName == null) || (!commandName.toUpperCase().startsWith("READ") && !commandName.equalsIgnoreCase("TSID")) ) {
+			return null;
+		}
+		String dataStoreName = null;
+		PropList parameters = command.getCommandParameters();
+		if ( (parameters != null) && (parameters.getValue("DataStore") != null) ) {
+			dataStoreName = TSCommandProcessorUtil.expandParameterValue ( processor, command, parameters.getValue("DataStore") );
+		}
+		else {
+			String tsid = commandName.equalsIgnoreCase("TSID") ? command.toString() :
+				((parameters == null) ? null : parameters.getValue("TSID"));
+			if ( (tsid != null) && (tsid.indexOf('~') > 0) ) {
+				dataStoreName = tsid.substring(tsid.lastIndexOf('~') + 1).trim();
+			}
+		}
+		if ( (dataStoreName == null) || dataStoreName.isEmpty() ||
+			(processor.getDataStoreForName(dataStoreName, DataStore.class) == null) ) {
+			// Input type that is not a datastore, such as a file.
+			return null;
+		}
+		return dataStoreName;
+	}
+
+	/**
+	 * Return the time since the server started.
+	 */
+	public long getUptimeMs () {
+		return System.currentTimeMillis() - this.startTime;
+	}
+
+	/**
+	 * Record that a job finished.
+	 * @param job job that finished
+	 */
+	public synchronized void jobFinished ( BatchServerJob job ) {
+		if ( job.getCoalescedWithId() == null ) {
+			--this.jobsRunning;
+			if ( !job.isSkipped() ) {
+				this.jobDurations.add ( job.getDurationMs() );
+			}
+		}
+		else {
+			++this.jobsCoalesced;
+		}
+		if ( job.getStatus() == 0 ) {
+			++this.jobsSucceeded;
+		}
+		else {
+			++this.jobsFailed;
+		}
+		if ( job.isSkipped() ) {
+			++this.jobsSkipped;
+		}
+		if ( (job.getBudgetExceededReason() != null) || job.isLeaseLost() ) {
+			++this.jobsCanceled;
+		}
+	}
+
+	/**
+	 * Record that a job started.
+	 */
+	public synchronized void jobStarted () {
+		++this.jobsRunning;
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server, for JMX.  Errors are logged.
+	 * @param nodeId batch server node identifier, or null for a single batch server
+	 */
+	public void register ( String nodeId ) {
+		String routine = getClass().getSimpleName() + ".register";
+		try {
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName ( (nodeId == null) ? OBJECT_NAME : (OBJECT_NAME + ",node=" + nodeId) );
+			mbeanServer.registerMBean ( this, objectName );
+			this.objectName = objectName;
+			Message.printStatus ( 2, routine, "Registered batch server metrics with JMX as \"" + objectName + "\"." );
+		}
+		catch ( Exception e ) {
+			Message.printWarning ( 2, routine, "Unable to register batch server metrics with JMX (" + e + ")." );
+		}
+	}
+
+	/**
+	 * Return the metrics as a map, for the status file.
+	 * @return the metrics
+	 */
+	private Map<String,Object> toMap () {
+		Map<String,Object> jobs = new LinkedHashMap<>();
+		jobs.put("Queued", getJobsQueued());
+		jobs.put("Running", getJobsRunning());
+		jobs.put("Succeeded", getJobsSucceeded());
+		jobs.put("Failed", getJobsFailed());
+		jobs.put("Skipped", getJobsSkipped());
+		jobs.put("Coalesced", getJobsCoalesced());
+		jobs.put("Canceled", getJobsCanceled());
+		jobs.put("QueueLongestWaitMs", getQueueLongestWaitMs());
+		Map<String,Object> durations = new LinkedHashMap<>();
+		durations.put("P50Ms", getJobDurationP50Ms());
+		durations.put("P90Ms", getJobDurationP90Ms());
+		durations.put("P99Ms", getJobDurationP99Ms());
+		durations.put("MaxMs", getJobDurationMaxMs());
+		Map<String,Object> dataStores = new TreeMap<>();
+		Map<String,Long> readCounts = getDataStoreReadCount();
+		Map<String,Long> readMeans = getDataStoreReadMeanMs();
+		Map<String,Long> readP90s = getDataStoreReadP90Ms();
+		for ( String dataStoreName : readCounts.keySet() ) {
+			Map<String,Object> dataStore = new LinkedHashMap<>();
+			dataStore.put("Reads", readCounts.get(dataStoreName));
+			dataStore.put("ReadMeanMs", readMeans.get(dataStoreName));
+			dataStore.put("ReadP90Ms", readP90s.get(dataStoreName));
+			dataStores.put(dataStoreName, dataStore);
+		}
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		Map<String,Object> jvm = new LinkedHashMap<>();
+		jvm.put("HeapUsedBytes", heap.getUsed());
+		jvm.put("HeapCommittedBytes", heap.getCommitted());
+		jvm.put("HeapMaxBytes", heap.getMax());
+		jvm.put("GcCount", getGcCount());
+		jvm.put("GcTimeMs", getGcTimeMs());
+		Map<String,Object> status = new LinkedHashMap<>();
+		status.put("Time", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").format(new Date()));
+		status.put("UptimeMs", getUptimeMs());
+		status.put("Jobs", jobs);
+		status.put("JobDuration", durations);
+		status.put("DataStores", dataStores);
+		status.put("JVM", jvm);
+		return status;
+	}
+
+	/**
+	 * Unregister the metrics from the platform MBean server, when the server stops.
+	 */
+	public void unregister () {
+		if ( this.objectName != null ) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean ( this.objectName );
+			}
+			catch ( Exception e ) {
+				// Ignore.
+			}
+			this.objectName = null;
+		}
+	}
+
+	/**
+	 * Write the metrics to the status file, atomically so that monitoring does not read a partial file.  Errors are logged.
+	 * @param statusFile status file
+	 */
+	public void writeStatusFile ( File statusFile ) {
+		File tmpFile = new File ( statusFile.getPath() + ".tmp" );
+		try {
+			Files.write ( tmpFile.toPath(), this.mapper.writeValueAsString(toMap()).getBytes(StandardCharsets.UTF_8) );
+			Files.move ( tmpFile.toPath(), statusFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 3, getClass().getSimpleName() + ".writeStatusFile",
+				"Error writing batch server status file \"" + statusFile + "\" (" + e + ")." );
+		}
+	}
+
+	/**
+	 * Recent values, used for percentiles, and the count and total of all values.
+	 */
+	private static class Samples {
+
+		/**
+		 * Recent values, used as a circular buffer.
+		 */
+		private long [] values;
+
+		/**
+		 * Number of values that have been added.
+		 */
+		private long count = 0;
+
+		/**
+		 * Total of the values that have been added.
+		 */
+		private long total = 0;
+
+		/**
+		 * Constructor.
+		 * @param size number of recent values to keep
+		 */
+		private Samples ( int size ) {
+			this.values = new long[size];
+		}
+
+		/**
+		 * Add a value.
+		 * @param value value to add
+		 */
+		private void add ( long value ) {
+			this.values[(int)(this.count % this.values.length)] = value;
+			++this.count;
+			this.total += value;
+		}
+
+		/**
+		 * Return the mean of all values.
+		 * @return the mean, 0 if no values
+		 */
+		private long getMean () {
+			return (this.count == 0) ? 0 : (this.total/this.count);
+		}
+
+		/**
+		 * Return a percentile of the recent values, using the nearest rank.
+		 * @param percent percentile (0-100)
+		 * @return the percentile, 0 if no values
+		 */
+		private long getPercentile ( int percent ) {
+			int size = (int)Math.min(this.count, this.values.length);
+			if ( size == 0 ) {
+				return 0;
+			}
+			long [] sorted = Arrays.copyOf ( this.values, size );
+			Arrays.sort ( sorted );
+			int rank = (int)Math.ceil(percent/100.0*size);
+			return sorted[Math.max(0, Math.min(size, rank) - 1)];
+		}
+
+	}
+
+}
@@ -0,0 +1,159 @@
+// BatchServerMetricsMXBean - JMX interface for batch server metrics
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.util.Map;
+
+/**
+ * JMX interface for batch server metrics, registered as "DWR.DMI.tstool:type=BatchServer"
+ * (with ",node=NodeId" when several nodes share the hot folder), so that monitoring tools can read the metrics
+ * with JMX (e.g., jconsole or a JMX exporter).  The same metrics are written to the status file.
+ * Durations are for recent jobs, see BatchServerMetrics.
+ */
+public interface BatchServerMetricsMXBean {
+
+	/**
+	 * Return the number of datastore reads by datastore name.
+	 * @return the number of datastore reads by datastore name
+	 */
+	public Map<String,Long> getDataStoreReadCount ();
+
+	/**
+	 * Return the mean datastore read time in milliseconds by datastore name.
+	 * @return the mean datastore read time in milliseconds by datastore name
+	 */
+	public Map<String,Long> getDataStoreReadMeanMs ();
+
+	/**
+	 * Return the 90th percentile of recent datastore read times in milliseconds by datastore name.
+	 * @return the 90th percentile of recent datastore read times in milliseconds by datastore name
+	 */
+	public Map<String,Long> getDataStoreReadP90Ms ();
+
+	/**
+	 * Return the number of garbage collections, for all collectors.
+	 * @return the number of garbage collections
+	 */
+	public long getGcCount ();
+
+	/**
+	 * Return the time spent in garbage collection, for all collectors.
+	 * @return the garbage collection time in milliseconds
+	 */
+	public long getGcTimeMs ();
+
+	/**
+	 * Return the maximum heap size.
+	 * @return the maximum heap size in bytes, or -1 if not defined
+	 */
+	public long getHeapMaxBytes ();
+
+	/**
+	 * Return the heap that is used.
+	 * @return the used heap in bytes
+	 */
+	public long getHeapUsedBytes ();
+
+	/**
+	 * Return the median duration of recent jobs.
+	 * @return the median job duration in milliseconds, 0 if no jobs have run
+	 */
+	public long getJobDurationP50Ms ();
+
+	/**
+	 * Return the 90th percentile duration of recent jobs.
+	 * @return the 90th percentile job duration in milliseconds, 0 if no jobs have run
+	 */
+	public long getJobDurationP90Ms ();
+
+	/**
+	 * Return the 99th percentile duration of recent jobs.
+	 * @return the 99th percentile job duration in milliseconds, 0 if no jobs have run
+	 */
+	public long getJobDurationP99Ms ();
+
+	/**
+	 * Return the maximum duration of recent jobs.
+	 * @return the maximum job duration in milliseconds, 0 if no jobs have run
+	 */
+	public long getJobDurationMaxMs ();
+
+	/**
+	 * Return the number of jobs that were canceled because they exceeded their limits or lost their lease.
+	 * These jobs are also counted as failed.
+	 * @return the number of canceled jobs
+	 */
+	public long getJobsCanceled ();
+
+	/**
+	 * Return the number of jobs that were coalesced with a job for an identical command file.
+	 * These jobs are also counted as succeeded or failed.
+	 * @return the number of coalesced jobs
+	 */
+	public long getJobsCoalesced ();
+
+	/**
+	 * Return the number of jobs that failed.
+	 * @return the number of failed jobs
+	 */
+	public long getJobsFailed ();
+
+	/**
+	 * Return the number of command files that are queued.
+	 * @return the number of queued command files
+	 */
+	public int getJobsQueued ();
+
+	/**
+	 * Return the number of jobs that are running.
+	 * @return the number of running jobs
+	 */
+	public int getJobsRunning ();
+
+	/**
+	 * Return the number of jobs that were skipped because they were unchanged since the last successful run.
+	 * These jobs are also counted as succeeded.
+	 * @return the number of skipped jobs
+	 */
+	public long getJobsSkipped ();
+
+	/**
+	 * Return the number of jobs that succeeded.
+	 * @return the number of successful jobs
+	 */
+	public long getJobsSucceeded ();
+
+	/**
+	 * Return the longest time that a queued command file has waited.
+	 * @return the longest queue wait in milliseconds, 0 if no command files are queued
+	 */
+	public long getQueueLongestWaitMs ();
+
+	/**
+	 * Return the time since the server started.
+	 * @return the server uptime in milliseconds
+	 */
+	public long getUptimeMs ();
+
+}
@@ -0,0 +1,487 @@
+// BatchServerScheduler - priority and fair-share scheduling of batch server command files
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Priority and fair-share scheduling of command files that are ready in the batch server hot folder.
+ * Command files are added to the queue when they are ready and the next file is selected when a worker is idle,
+ * so the command files remain in the hot folder until they are run.
+ *
+ * The priority of a command file is "high" or "low" if the file is in the hot folder subfolder of that name,
+ * and is otherwise "normal".  A "#@priority high|normal|low" comment in the command file overrides the folder.
+ * Jobs with higher priority are run first.  To prevent starvation, a job's priority is raised one level for each
+ * aging interval that it has waited, so low priority jobs eventually run even when higher priority jobs are continually added.
+ *
+ * Within the same priority, jobs are shared fairly between submitters (the owner of the command file,
+ * or all jobs have the same share if fair share is disabled):  the submitter with the fewest running jobs,
+ * and then the submitter whose last job started longest ago, is selected, and then the oldest file for that submitter.
+ * The age of a file is the time that it was queued, not its modification time,
+ * because copying tools may preserve the modification time of the original file.
+ *
+ * The content of each queued file is hashed so that the server can coalesce requests for identical command files
+ * (see removeDuplicates()).
+ */
+public class BatchServerScheduler {
+
+	/**
+	 * Fair share mode where jobs are shared between command file owners.
+	 */
+	public static final String FAIR_SHARE_OWNER = "Owner";
+
+	/**
+	 * Fair share mode where all jobs are in the same share, so jobs of the same priority are run oldest first.
+	 */
+	public static final String FAIR_SHARE_NONE = "None";
+
+	/**
+	 * Command file annotation used to specify the priority.
+	 */
+	public static final String PRIORITY_ANNOTATION = "#@priority";
+
+	/**
+	 * Maximum number of lines to read from a command file when looking for the priority annotation.
+	 */
+	private static final int PRIORITY_ANNOTATION_MAX_LINES = 200;
+
+	/**
+	 * Hot folder.
+	 */
+	private File hotFolder;
+
+	/**
+	 * Fair share mode, see FAIR_SHARE_*.
+	 */
+	private String fairShare;
+
+	/**
+	 * Aging interval in milliseconds, after which a waiting job's priority is raised one level, or 0 to not age.
+	 */
+	private long agingMs;
+
+	/**
+	 * Queued command files.
+	 */
+	private List<QueuedFile> queue = new ArrayList<>();
+
+	/**
+	 * Number of running jobs for each share.
+	 */
+	private Map<String,Integer> runningCountMap = new HashMap<>();
+
+	/**
+	 * Time that the last job was started for each share, milliseconds.
+	 */
+	private Map<String,Long> lastStartMap = new HashMap<>();
+
+	/**
+	 * Count of files that have been queued, used to order files that are queued in the same millisecond.
+	 */
+	private long queuedCount = 0;
+
+	/**
+	 * Constructor.
+	 * @param hotFolder batch server hot folder
+	 * @param fairShare fair share mode, see FAIR_SHARE_*
+	 * @param agingMs aging interval in milliseconds, after which a waiting job's priority is raised one level, or 0 to not age
+	 */
+	public BatchServerScheduler ( File hotFolder, String fairShare, long agingMs ) {
+		this.hotFolder = hotFolder.getAbsoluteFile();
+		this.fairShare = fairShare;
+		this.agingMs = agingMs;
+	}
+
+	/**
+	 * Add a command file to the queue.  If the file is already queued (because it was modified), it is replaced.
+	 * The submit time of the file is the current time.
+	 * @param commandFile command file that is ready in the hot folder
+	 * @return the queued file
+	 */
+	public synchronized QueuedFile add ( File commandFile ) {
+		return add ( commandFile, System.currentTimeMillis() );
+	}
+
+	/**
+	 * Add a command file to the queue.  If the file is already queued (because it was modified), it is replaced.
+	 * @param commandFile command file that is ready in the hot folder
+	 * @param submitTime time that the file was submitted, milliseconds, used for the age of the file
+	 * @return the queued file
+	 */
+	public synchronized QueuedFile add ( File commandFile, long submitTime ) {
+		remove ( commandFile );
+		++this.queuedCount;
+		QueuedFile queuedFile = new QueuedFile ( commandFile, determinePriority(commandFile), determineShareKey(commandFile),
+			determineContentKey(commandFile), submitTime, this.queuedCount );
+		this.queue.add ( queuedFile );
+		Message.printStatus ( 2, getClass().getSimpleName() + ".add", "Queued \"" + commandFile + "\" with priority " +
+			BatchServerJob.PRIORITY_NAMES[queuedFile.priority] + ", share \"" + queuedFile.shareKey + "\".  " + getStatus() );
+		return queuedFile;
+	}
+
+	/**
+	 * Determine the content key of a command file, which is the same for command files with identical content.
+	 * @param commandFile command file
+	 * @return the SHA-256 hash of the command file content, or null if the file could not be read
+	 */
+	private String determineContentKey ( File commandFile ) {
+		try {
+			byte [] hash = MessageDigest.getInstance("SHA-256").digest ( Files.readAllBytes(commandFile.toPath()) );
+			StringBuilder b = new StringBuilder();
+			for ( byte x : hash ) {
+				b.append ( String.format("%02x", x) );
+			}
+			return b.toString();
+		}
+		catch ( IOException | NoSuchAlgorithmException e ) {
+			// Don't coalesce.  Errors will be handled when the file is run.
+			return null;
+		}
+	}
+
+	/**
+	 * Determine the priority of a command file, from the annotation in the file or the hot folder subfolder.
+	 * @param commandFile command file
+	 * @return the priority, see BatchServerJob.PRIORITY_*
+	 */
+	private int determinePriority ( File commandFile ) {
+		int priority = BatchServerJob.PRIORITY_NORMAL;
+		File folder = commandFile.getParentFile();
+		if ( (folder != null) && !folder.equals(this.hotFolder) ) {
+			int folderPriority = BatchServerJob.parsePriority ( folder.getName() );
+			if ( folderPriority >= 0 ) {
+				priority = folderPriority;
+			}
+		}
+		try ( BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(commandFile), StandardCharsets.UTF_8)) ) {
+			String line;
+			int lineCount = 0;
+			while ( ((line = in.readLine()) != null) && (lineCount < PRIORITY_ANNOTATION_MAX_LINES) ) {
+				++lineCount;
+				line = line.trim();
+				if ( line.regionMatches(true, 0, PRIORITY_ANNOTATION, 0, PRIORITY_ANNOTATION.length()) ) {
+					int annotationPriority = BatchServerJob.parsePriority ( line.substring(PRIORITY_ANNOTATION.length()) );
+					if ( annotationPriority >= 0 ) {
+						priority = annotationPriority;
+					}
+					else {
+						Message.printWarning ( 2, getClass().getSimpleName() + ".determinePriority",
+							"Invalid priority annotation \"" + line + "\" in \"" + commandFile + "\" - ignoring." );
+					}
+					break;
+				}
+			}
+		}
+		catch ( IOException e ) {
+			// Use the folder priority.  Errors will be handled when the file is run.
+		}
+		return priority;
+	}
+
+	/**
+	 * Determine the fair share key of a command file.
+	 * @param commandFile command file
+	 * @return the fair share key
+	 */
+	private String determineShareKey ( File commandFile ) {
+		if ( this.fairShare.equalsIgnoreCase(FAIR_SHARE_OWNER) ) {
+			try {
+				return Files.getOwner(commandFile.toPath()).getName();
+			}
+			catch ( IOException | UnsupportedOperationException e ) {
+				return "unknown";
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * Return the effective priority of a queued file, which is raised for the time that the file has waited.
+	 * @param queuedFile queued file
+	 * @param now current time, milliseconds
+	 * @return the effective priority
+	 */
+	private int getEffectivePriority ( QueuedFile queuedFile, long now ) {
+		if ( this.agingMs <= 0 ) {
+			return queuedFile.priority;
+		}
+		long levels = Math.max(0, now - queuedFile.submitTime)/this.agingMs;
+		return (int)Math.max(BatchServerJob.PRIORITY_HIGH, queuedFile.priority - levels);
+	}
+
+	/**
+	 * Return the number of queued command files.
+	 * @return the number of queued command files
+	 */
+	public synchronized int getQueueDepth () {
+		return this.queue.size();
+	}
+
+	/**
+	 * Return the longest time that a queued command file has waited since it was submitted.
+	 * @return the longest wait in milliseconds, or 0 if the queue is empty
+	 */
+	public synchronized long getLongestWaitMs () {
+		long now = System.currentTimeMillis();
+		long maxWaitMs = 0;
+		for ( QueuedFile queuedFile : this.queue ) {
+			maxWaitMs = Math.max(maxWaitMs, now - queuedFile.submitTime);
+		}
+		return maxWaitMs;
+	}
+
+	/**
+	 * Return the queue status, for messages.
+	 * @return queue depth by priority and the longest wait time
+	 */
+	public synchronized String getStatus () {
+		int [] counts = new int[BatchServerJob.PRIORITY_NAMES.length];
+		long now = System.currentTimeMillis();
+		long maxWaitMs = 0;
+		for ( QueuedFile queuedFile : this.queue ) {
+			++counts[queuedFile.priority];
+			maxWaitMs = Math.max(maxWaitMs, now - queuedFile.submitTime);
+		}
+		StringBuilder b = new StringBuilder ( "Queue depth " + this.queue.size() + " (" );
+		for ( int i = 0; i < counts.length; i++ ) {
+			if ( i > 0 ) {
+				b.append(", ");
+			}
+			b.append(BatchServerJob.PRIORITY_NAMES[i] + " " + counts[i]);
+		}
+		b.append("), longest wait " + (maxWaitMs/1000) + " s.");
+		return b.toString();
+	}
+
+	/**
+	 * Indicate that a job finished, or could not be started, to update the running count for its share.
+	 * @param shareKey fair share key of the job
+	 */
+	public synchronized void jobFinished ( String shareKey ) {
+		Integer count = this.runningCountMap.get(shareKey);
+		if ( (count == null) || (count.intValue() <= 1) ) {
+			this.runningCountMap.remove(shareKey);
+		}
+		else {
+			this.runningCountMap.put(shareKey, count - 1);
+		}
+	}
+
+	/**
+	 * Remove and return the next command file to run, and count it as running for its share.
+	 * jobFinished() must be called when the job finishes.
+	 * @return the next command file to run, or null if the queue is empty
+	 */
+	public synchronized QueuedFile next () {
+		long now = System.currentTimeMillis();
+		QueuedFile best = null;
+		int bestPriority = 0;
+		for ( QueuedFile queuedFile : this.queue ) {
+			int priority = getEffectivePriority ( queuedFile, now );
+			if ( (best == null) || (priority < bestPriority) ||
+				((priority == bestPriority) && isBeforeInShare(queuedFile, best)) ) {
+				best = queuedFile;
+				bestPriority = priority;
+			}
+		}
+		if ( best != null ) {
+			this.queue.remove ( best );
+			Integer count = this.runningCountMap.get(best.shareKey);
+			this.runningCountMap.put(best.shareKey, (count == null) ? 1 : (count + 1));
+			this.lastStartMap.put(best.shareKey, now);
+		}
+		return best;
+	}
+
+	/**
+	 * Indicate whether a queued file should run before another queued file of the same effective priority.
+	 * @param a queued file to check
+	 * @param b queued file to compare with
+	 * @return true if a should run before b
+	 */
+	private boolean isBeforeInShare ( QueuedFile a, QueuedFile b ) {
+		if ( !a.shareKey.equals(b.shareKey) ) {
+			Integer aRunning = this.runningCountMap.get(a.shareKey);
+			Integer bRunning = this.runningCountMap.get(b.shareKey);
+			int aCount = (aRunning == null) ? 0 : aRunning;
+			int bCount = (bRunning == null) ? 0 : bRunning;
+			if ( aCount != bCount ) {
+				return aCount < bCount;
+			}
+			Long aStart = this.lastStartMap.get(a.shareKey);
+			Long bStart = this.lastStartMap.get(b.shareKey);
+			long aTime = (aStart == null) ? 0 : aStart;
+			long bTime = (bStart == null) ? 0 : bStart;
+			if ( aTime != bTime ) {
+				return aTime < bTime;
+			}
+		}
+		if ( a.submitTime != b.submitTime ) {
+			return a.submitTime < b.submitTime;
+		}
+		return a.sequence < b.sequence;
+	}
+
+	/**
+	 * Remove a command file from the queue, for example if it was modified.
+	 * @param commandFile command file to remove
+	 */
+	public synchronized void remove ( File commandFile ) {
+		for ( Iterator<QueuedFile> it = this.queue.iterator(); it.hasNext(); ) {
+			if ( it.next().file.equals(commandFile) ) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove and return the queued command files that have the specified content, to coalesce them with a job
+	 * that runs an identical command file.  The removed files are not counted as running for their share.
+	 * @param contentKey content key of the command file that is being run
+	 * @return the removed files, oldest first, which may be empty
+	 */
+	public synchronized List<QueuedFile> removeDuplicates ( String contentKey ) {
+		List<QueuedFile> duplicates = new ArrayList<>();
+		if ( contentKey == null ) {
+			return duplicates;
+		}
+		for ( Iterator<QueuedFile> it = this.queue.iterator(); it.hasNext(); ) {
+			QueuedFile queuedFile = it.next();
+			if ( contentKey.equals(queuedFile.contentKey) ) {
+				duplicates.add ( queuedFile );
+				it.remove();
+			}
+		}
+		duplicates.sort ( new Comparator<QueuedFile>() {
+			public int compare ( QueuedFile a, QueuedFile b ) {
+				if ( a.submitTime != b.submitTime ) {
+					return Long.compare ( a.submitTime, b.submitTime );
+				}
+				return Long.compare ( a.sequence, b.sequence );
+			}
+		});
+		return duplicates;
+	}
+
+	/**
+	 * Command file in the queue.
+	 */
+	public static class QueuedFile {
+		/**
+		 * Command file in the hot folder.
+		 */
+		File file;
+
+		/**
+		 * Priority, see BatchServerJob.PRIORITY_*.
+		 */
+		int priority;
+
+		/**
+		 * Fair share key.
+		 */
+		String shareKey;
+
+		/**
+		 * Content key (hash of the file content), or null if not known.
+		 */
+		String contentKey;
+
+		/**
+		 * Time that the file was submitted (queued), milliseconds.
+		 */
+		long submitTime;
+
+		/**
+		 * Order in which the file was queued.
+		 */
+		long sequence;
+
+		QueuedFile ( File file, int priority, String shareKey, String contentKey, long submitTime, long sequence ) {
+			this.file = file;
+			this.priority = priority;
+			this.shareKey = shareKey;
+			this.contentKey = contentKey;
+			this.submitTime = submitTime;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Return the content key, which is the same for command files with identical content.
+		 * @return the content key, or null if not known
+		 */
+		public String getContentKey () {
+			return this.contentKey;
+		}
+
+		/**
+		 * Return the command file.
+		 * @return the command file
+		 */
+		public File getFile () {
+			return this.file;
+		}
+
+		/**
+		 * Return the priority.
+		 * @return the priority, see BatchServerJob.PRIORITY_*
+		 */
+		public int getPriority () {
+			return this.priority;
+		}
+
+		/**
+		 * Return the time that the file was submitted (queued).
+		 * @return the submit time, milliseconds
+		 */
+		public long getSubmitTime () {
+			return this.submitTime;
+		}
+
+		/**
+		 * Return the fair share key.
+		 * @return the fair share key
+		 */
+		public String getShareKey () {
+			return this.shareKey;
+		}
+	}
+
+}
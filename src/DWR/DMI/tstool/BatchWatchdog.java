@@ -0,0 +1,335 @@
+// BatchWatchdog - background watchdog that ends a batch run that exceeds its global or per-command timeout
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandProcessorListener;
+import RTi.Util.Message.Message;
+import RTi.Util.String.StringUtil;
+import rti.tscommandprocessor.commands.util.Comment_Command;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Background watchdog for batch runs, which checks a global deadline (--batchTimeout) and per-command deadlines.
+ * A per-command timeout in seconds is specified with a "#@timeout Seconds" comment immediately before a command,
+ * or for all commands with the CommandTimeout processor property (e.g., CommandTimeout==600 on the command line
+ * or SetProperty in the command file).  The annotation takes precedence over the property.
+ *
+ * When a deadline expires, a thread dump and the running command are written to the log file and
+ * cancel is requested from the processor, and the thread running the commands is interrupted.
+ * If the run does not end within the cancel wait time, TSTool exits with EXIT_TIMEOUT.
+ * The watchdog runs in its own daemon thread so that it does not block the run that it guards.
+ */
+public class BatchWatchdog implements CommandProcessorListener {
+
+	/**
+	 * Exit status when a batch run times out, the same as the Linux timeout program.
+	 */
+	public static final int EXIT_TIMEOUT = 124;
+
+	/**
+	 * Annotation used in a comment before a command to set the command timeout in seconds.
+	 */
+	public static final String TIMEOUT_ANNOTATION = "#@timeout";
+
+	/**
+	 * Processor property for the default command timeout in seconds.
+	 */
+	public static final String COMMAND_TIMEOUT_PROPERTY = "CommandTimeout";
+
+	/**
+	 * Processor running the commands.
+	 */
+	private TSCommandProcessor processor = null;
+
+	/**
+	 * Thread that is running the commands, interrupted when the timeout expires.
+	 */
+	private Thread runThread = null;
+
+	/**
+	 * Global timeout in seconds, 0 if no global timeout.
+	 */
+	private int globalTimeoutSeconds = 0;
+
+	/**
+	 * Global deadline in milliseconds (System.currentTimeMillis), 0 if no global timeout.
+	 */
+	private long globalDeadline = 0;
+
+	/**
+	 * Seconds to wait after requesting cancel before exiting.
+	 */
+	private int cancelWaitSeconds = 30;
+
+	/**
+	 * Command that is running, null if no command is running.
+	 */
+	private volatile Command runningCommand = null;
+
+	/**
+	 * Number of the running command (1+), for messages.
+	 */
+	private volatile int runningCommandNumber = 0;
+
+	/**
+	 * Timeout for the running command in seconds, 0 if no timeout.
+	 */
+	private volatile int commandTimeoutSeconds = 0;
+
+	/**
+	 * Deadline for the running command in milliseconds (System.currentTimeMillis), 0 if no timeout.
+	 */
+	private volatile long commandDeadline = 0;
+
+	/**
+	 * Time after which TSTool exits if the run has not ended after cancel was requested, 0 if not expired.
+	 */
+	private volatile long exitDeadline = 0;
+
+	/**
+	 * Scheduler that runs the checks.
+	 */
+	private ScheduledExecutorService scheduler = null;
+
+	/**
+	 * Construct the watchdog.  Call start() to start checking.
+	 * @param processor processor that runs the commands
+	 * @param globalTimeoutSeconds global timeout in seconds, from the start() call (0 or less for no global timeout)
+	 * @param cancelWaitSeconds seconds to wait after requesting cancel before exiting
+	 */
+	public BatchWatchdog ( TSCommandProcessor processor, int globalTimeoutSeconds, int cancelWaitSeconds ) {
+		this.processor = processor;
+		this.globalTimeoutSeconds = Math.max(0, globalTimeoutSeconds);
+		this.cancelWaitSeconds = Math.max(0, cancelWaitSeconds);
+	}
+
+	/**
+	 * Check the deadlines, called by the scheduler.
+	 */
+	private void check () {
+		long now = System.currentTimeMillis();
+		if ( this.exitDeadline > 0 ) {
+			if ( now > this.exitDeadline ) {
+				Message.printWarning ( 1, getClass().getSimpleName() + ".check", "Run did not end within " +
+					this.cancelWaitSeconds + " seconds of requesting cancel.  Exiting with status " + EXIT_TIMEOUT + "." );
+				logThreadDump();
+				TSToolMain.quitProgram ( EXIT_TIMEOUT );
+			}
+			return;
+		}
+		if ( (this.globalDeadline > 0) && (now > this.globalDeadline) ) {
+			expire ( "Batch run exceeded the timeout of " + this.globalTimeoutSeconds + " seconds." );
+		}
+		else if ( (this.commandDeadline > 0) && (now > this.commandDeadline) ) {
+			expire ( "Command " + this.runningCommandNumber + " exceeded the timeout of " + this.commandTimeoutSeconds + " seconds." );
+		}
+	}
+
+	/**
+	 * Handle the timeout for a canceled command.
+	 */
+	public void commandCanceled ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+		this.commandDeadline = 0;
+		this.runningCommand = null;
+	}
+
+	/**
+	 * Handle the timeout for a completed command.
+	 */
+	public void commandCompleted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+		this.commandDeadline = 0;
+		this.runningCommand = null;
+	}
+
+	/**
+	 * Progress is not used by the watchdog.
+	 */
+	public void commandProgress ( int istep, int nstep, Command command, float percentComplete, String message ) {
+	}
+
+	/**
+	 * Set the deadline for the command that is starting.
+	 */
+	public void commandStarted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+		this.runningCommand = command;
+		this.runningCommandNumber = icommand + 1;
+		this.commandTimeoutSeconds = getCommandTimeout ( icommand );
+		if ( this.commandTimeoutSeconds > 0 ) {
+			this.commandDeadline = System.currentTimeMillis() + this.commandTimeoutSeconds*1000L;
+		}
+		else {
+			this.commandDeadline = 0;
+		}
+	}
+
+	/**
+	 * Handle a deadline that has expired: log the thread dump, request cancel, and set the exit deadline.
+	 * @param reason the reason, for logging
+	 */
+	private void expire ( String reason ) {
+		String routine = getClass().getSimpleName() + ".expire";
+		this.exitDeadline = System.currentTimeMillis() + this.cancelWaitSeconds*1000L;
+		Message.printWarning ( 1, routine, reason );
+		Command command = this.runningCommand;
+		if ( command != null ) {
+			Message.printWarning ( 1, routine, "Running command " + this.runningCommandNumber + ": " + command );
+		}
+		logThreadDump();
+		Message.printWarning ( 1, routine, "Requesting cancel and waiting up to " + this.cancelWaitSeconds + " seconds for the run to end." );
+		this.processor.setCancelProcessingRequested ( true );
+		if ( this.runThread != null ) {
+			// Interrupt in case the command is waiting on a blocking call that responds to interrupts.
+			this.runThread.interrupt();
+		}
+	}
+
+	/**
+	 * Return the timeout for a command in seconds,
+	 * from a #@timeout annotation in the comments before the command or the CommandTimeout processor property.
+	 * @param icommand index of the command in the processor (0+)
+	 * @return the command timeout in seconds, or 0 if no timeout
+	 */
+	private int getCommandTimeout ( int icommand ) {
+		String routine = getClass().getSimpleName() + ".getCommandTimeout";
+		List<Command> commands = this.processor.getCommands();
+		// Check the comments immediately before the command.
+		for ( int i = icommand - 1; (i >= 0) && (i < commands.size()); i-- ) {
+			Command command = commands.get(i);
+			if ( !(command instanceof Comment_Command) ) {
+				break;
+			}
+			String commandString = ((Comment_Command)command).getCommandString().trim();
+			if ( commandString.toLowerCase().startsWith(TIMEOUT_ANNOTATION) ) {
+				String value = commandString.substring(TIMEOUT_ANNOTATION.length()).trim();
+				if ( StringUtil.isInteger(value) ) {
+					return Integer.parseInt(value);
+				}
+				Message.printWarning ( 2, routine, "Invalid timeout annotation \"" + commandString + "\" - should be: " +
+					TIMEOUT_ANNOTATION + " Seconds" );
+			}
+		}
+		// Check the processor property, which may be set at runtime.
+		try {
+			Object o = this.processor.getPropContents ( COMMAND_TIMEOUT_PROPERTY );
+			if ( (o != null) && StringUtil.isInteger(o.toString()) ) {
+				return Integer.parseInt(o.toString().trim());
+			}
+		}
+		catch ( Exception e ) {
+			// Property is not set.
+		}
+		return 0;
+	}
+
+	/**
+	 * Indicate whether a deadline expired.
+	 * @return true if a deadline expired, in which case the run was canceled
+	 */
+	public boolean isExpired () {
+		return this.exitDeadline > 0;
+	}
+
+	/**
+	 * Write a full thread dump to the log file, including locks, to troubleshoot hung runs.
+	 */
+	private void logThreadDump () {
+		String routine = getClass().getSimpleName() + ".logThreadDump";
+		String nl = System.getProperty("line.separator");
+		StringBuilder sb = new StringBuilder("Thread dump:" + nl);
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Map<Thread,StackTraceElement[]> stackTraces = Thread.getAllStackTraces();
+		for ( Map.Entry<Thread,StackTraceElement[]> entry : stackTraces.entrySet() ) {
+			Thread thread = entry.getKey();
+			sb.append("\"" + thread.getName() + "\"" + (thread.isDaemon() ? " daemon" : "") + " state=" + thread.getState());
+			ThreadInfo threadInfo = threadBean.getThreadInfo(thread.getId());
+			if ( (threadInfo != null) && (threadInfo.getLockName() != null) ) {
+				sb.append(" waiting on " + threadInfo.getLockName());
+				if ( threadInfo.getLockOwnerName() != null ) {
+					sb.append(" owned by \"" + threadInfo.getLockOwnerName() + "\"");
+				}
+			}
+			sb.append(nl);
+			for ( StackTraceElement element : entry.getValue() ) {
+				sb.append("    at " + element + nl);
+			}
+			sb.append(nl);
+		}
+		Message.printWarning ( 2, routine, sb.toString() );
+	}
+
+	/**
+	 * Start the watchdog, which starts the global timeout and adds the watchdog as a processor listener.
+	 * The thread that calls this method is the thread that is interrupted if a deadline expires,
+	 * and should be the thread that runs the commands.
+	 */
+	public void start () {
+		String routine = getClass().getSimpleName() + ".start";
+		this.runThread = Thread.currentThread();
+		if ( this.globalTimeoutSeconds > 0 ) {
+			this.globalDeadline = System.currentTimeMillis() + this.globalTimeoutSeconds*1000L;
+			Message.printStatus ( 2, routine, "Batch run will time out if not done after " + this.globalTimeoutSeconds + " seconds." );
+		}
+		this.processor.addCommandProcessorListener ( this );
+		this.scheduler = Executors.newSingleThreadScheduledExecutor ( new ThreadFactory() {
+			public Thread newThread ( Runnable r ) {
+				Thread thread = new Thread ( r, "TSTool-batch-watchdog" );
+				thread.setDaemon ( true );
+				return thread;
+			}
+		});
+		this.scheduler.scheduleWithFixedDelay ( new Runnable() {
+			public void run () {
+				try {
+					check();
+				}
+				catch ( Throwable e ) {
+					// Keep checking.
+					Message.printWarning ( 3, routine, e );
+				}
+			}
+		}, 1, 1, TimeUnit.SECONDS );
+	}
+
+	/**
+	 * Stop the watchdog, for example when the run is complete and windows are shown with --nomaingui.
+	 */
+	public void stop () {
+		// The watchdog remains a processor listener but deadlines are no longer checked.
+		if ( this.scheduler != null ) {
+			this.scheduler.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,346 @@
+// DataStoreOpenTask - open one or more datastore configurations that share a datastore name
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import RTi.DMI.DatabaseDataStore;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import RTi.Util.Time.StopWatch;
+import riverside.datastore.DataStore;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Task to open the datastore configurations that have the same datastore name,
+ * used by TSToolMain.openDataStoresAtStartup() to open independent datastores concurrently.
+ * The configurations are opened in order (user configuration first, then installation configuration)
+ * and processing stops when an enabled datastore is opened, which is the same precedence as sequential opening.
+ * Datastores are NOT added to the processor here - the caller adds the datastores in a deterministic order
+ * after all tasks have completed or timed out.
+ * A datastore that finishes opening after the timeout is closed because the caller does not use it.
+ * The permit that limits concurrent opens is released when the task times out, rather than when the thread exits,
+ * so that an open that never returns does not prevent other datastores from opening.
+ */
+class DataStoreOpenTask implements Runnable {
+
+	/**
+	 * Datastore name shared by all the configurations.
+	 */
+	private String dataStoreName = "";
+
+	/**
+	 * Datastore configuration properties, in order of precedence.
+	 */
+	private List<PropList> dataStorePropsList = new ArrayList<>();
+
+	/**
+	 * Data needed by TSToolMain.openDataStore().
+	 */
+	private TSToolSession session = null;
+	private TSCommandProcessor processor = null;
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginDataStoreClassList = null;
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginDataStoreFactoryClassList = null;
+	private boolean isBatch = true;
+
+	/**
+	 * Timeout in seconds for opening the datastore, or 0 to wait indefinitely.
+	 */
+	private int timeoutSeconds = 0;
+
+	/**
+	 * Scheduler used to run the timeout, or null if the task is run on the calling thread without a timeout.
+	 */
+	private ScheduledExecutorService scheduler = null;
+
+	/**
+	 * Permits that limit the number of datastores that are opened concurrently,
+	 * or null if the task is run on the calling thread.
+	 */
+	private Semaphore permits = null;
+
+	/**
+	 * Latch that is counted down when the task completes or times out.
+	 */
+	private CountDownLatch doneLatch = null;
+
+	/**
+	 * Indicates whether the task has completed (normally or due to timeout).
+	 * Only the first of completion and timeout is handled.
+	 */
+	private AtomicBoolean isComplete = new AtomicBoolean(false);
+
+	/**
+	 * Whether the task timed out.
+	 */
+	private volatile boolean isTimedOut = false;
+
+	/**
+	 * Configuration properties for the datastore that is being opened, used to create a placeholder if a timeout occurs.
+	 */
+	private volatile PropList currentDataStoreProps = null;
+
+	/**
+	 * Thread that runs the task, interrupted if a timeout occurs.
+	 */
+	private volatile Thread thread = null;
+
+	/**
+	 * Datastores that were opened, in order.
+	 */
+	private List<DataStore> dataStoreList = new ArrayList<>();
+
+	/**
+	 * Messages indicating time to open each datastore, for the log file summary.
+	 */
+	private List<String> timingList = new ArrayList<>();
+
+	/**
+	 * Construct the task.
+	 * @param dataStoreName datastore name shared by all the configurations
+	 * @param dataStorePropsList datastore configurations, in order of precedence
+	 * @param session TSTool session
+	 * @param processor processor that will use the datastores (datastores are not added to the processor here)
+	 * @param pluginDataStoreClassList list of plugin datastore classes
+	 * @param pluginDataStoreFactoryClassList list of plugin datastore factory classes
+	 * @param isBatch whether running in batch mode
+	 * @param timeoutSeconds timeout in seconds to open the datastore, or 0 to wait indefinitely
+	 * @param scheduler scheduler used to run the timeout, or null if no timeout is used
+	 * @param permits permits used to limit concurrent opens (released when complete), or null if not used
+	 * @param doneLatch latch that is counted down when the task completes or times out
+	 */
+	public DataStoreOpenTask ( String dataStoreName, List<PropList> dataStorePropsList,
+		TSToolSession session, TSCommandProcessor processor,
+		@SuppressWarnings("rawtypes") List<Class> pluginDataStoreClassList,
+		@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryClassList,
+		boolean isBatch, int timeoutSeconds, ScheduledExecutorService scheduler, Semaphore permits, CountDownLatch doneLatch ) {
+		this.dataStoreName = dataStoreName;
+		this.dataStorePropsList = dataStorePropsList;
+		this.session = session;
+		this.processor = processor;
+		this.pluginDataStoreClassList = pluginDataStoreClassList;
+		this.pluginDataStoreFactoryClassList = pluginDataStoreFactoryClassList;
+		this.isBatch = isBatch;
+		this.timeoutSeconds = timeoutSeconds;
+		this.scheduler = scheduler;
+		this.permits = permits;
+		this.doneLatch = doneLatch;
+	}
+
+	/**
+	 * Close a datastore that will not be used, if it has a database connection.
+	 * @param dataStore datastore to close
+	 */
+	static void closeDataStore ( DataStore dataStore ) {
+		if ( dataStore instanceof DatabaseDataStore ) {
+			try {
+				((DatabaseDataStore)dataStore).getDMI().close();
+			}
+			catch ( Exception e ) {
+				// May be a timeout or already closed - the datastore is not used so just continue.
+				Message.printWarning ( 3, DataStoreOpenTask.class.getSimpleName() + ".closeDataStore",
+					"Error closing datastore \"" + dataStore.getName() + "\" (" + e + ")." );
+			}
+		}
+	}
+
+	/**
+	 * Mark the task as complete, release the permit, and count down the latch.
+	 * The permit is released on timeout even though the open may still be running, see the class documentation.
+	 * @param isTimeout whether completion is due to a timeout
+	 */
+	private void complete ( boolean isTimeout ) {
+		if ( !this.isComplete.compareAndSet(false, true) ) {
+			// Already completed or timed out.
+			return;
+		}
+		if ( isTimeout ) {
+			this.isTimedOut = true;
+			Thread t = this.thread;
+			if ( t != null ) {
+				// Try to interrupt the open, although some database and network calls ignore the interrupt.
+				t.interrupt();
+			}
+		}
+		if ( this.permits != null ) {
+			this.permits.release();
+		}
+		this.doneLatch.countDown();
+	}
+
+	/**
+	 * Return the datastores that were opened.
+	 * @return the datastores that were opened, in order of precedence
+	 */
+	public synchronized List<DataStore> getDataStoreList () {
+		return new ArrayList<>(this.dataStoreList);
+	}
+
+	/**
+	 * Return the datastore name for the task.
+	 * @return the datastore name for the task
+	 */
+	public String getDataStoreName () {
+		return this.dataStoreName;
+	}
+
+	/**
+	 * Return the configuration properties for the datastore that was being opened when a timeout occurred.
+	 * @return the configuration properties for the datastore that was being opened
+	 */
+	public PropList getTimedOutDataStoreProps () {
+		return this.currentDataStoreProps;
+	}
+
+	/**
+	 * Return the timeout in seconds.
+	 * @return the timeout in seconds
+	 */
+	public int getTimeoutSeconds () {
+		return this.timeoutSeconds;
+	}
+
+	/**
+	 * Return the timing messages for datastores that were opened.
+	 * @return the timing messages for datastores that were opened
+	 */
+	public synchronized List<String> getTimingList () {
+		return new ArrayList<>(this.timingList);
+	}
+
+	/**
+	 * Indicate whether the task timed out.
+	 * @return true if the task timed out
+	 */
+	public boolean isTimedOut () {
+		return this.isTimedOut;
+	}
+
+	/**
+	 * Open the datastore configurations in order until an enabled datastore is opened.
+	 */
+	@Override
+	public void run () {
+		String routine = getClass().getSimpleName() + ".run";
+		this.thread = Thread.currentThread();
+		// Start the timeout when the open starts so that time waiting for a permit is not counted.
+		startTimeout();
+		try {
+			for ( PropList dataStoreProps : this.dataStorePropsList ) {
+				if ( this.isComplete.get() ) {
+					// Timed out so don't try additional configurations.
+					break;
+				}
+				this.currentDataStoreProps = dataStoreProps;
+				String dataStoreConfigFile = dataStoreProps.getValue("DataStoreConfigFile");
+				Message.printStatus ( 2, routine, "Start opening datastore using properties in \"" + dataStoreConfigFile + "\".");
+				StopWatch sw = new StopWatch();
+				sw.start();
+				StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_DATASTORE, this.dataStoreName);
+				DataStore dataStore = null;
+				try {
+					dataStore = TSToolMain.openDataStore ( this.session, dataStoreProps, this.processor,
+						this.pluginDataStoreClassList, this.pluginDataStoreFactoryClassList, this.isBatch, false, true );
+				}
+				catch ( ClassNotFoundException e ) {
+					Message.printWarning (2,routine, "  Datastore class for \"" + this.dataStoreName +
+						"\" is not in the class path - report to software support (" + e + ")." );
+					Message.printWarning(2, routine, e);
+				}
+				catch( InstantiationException e ) {
+					Message.printWarning (2,routine, "  Error instantiating datastore \"" + this.dataStoreName +
+						"\" - report to software support (" + e + ")." );
+					Message.printWarning(2, routine, e);
+				}
+				catch( IllegalAccessException e ) {
+					Message.printWarning (2,routine, "  Datastore class for \"" + this.dataStoreName +
+						"\" needs a no-argument constructor - report to software support (" + e + ")." );
+					Message.printWarning(2, routine, e);
+				}
+				catch ( Exception e ) {
+					Message.printWarning (2,routine,"  Error opening datastore using configuration file \"" +
+						dataStoreConfigFile + "\" - not opening datastore (" + e + ")." );
+					Message.printWarning(2, routine, e);
+				}
+				sw.stop();
+				phase.end();
+				synchronized ( this ) {
+					if ( this.isComplete.get() ) {
+						// The open finished after the timeout so the datastore will not be used:
+						// - close it so that the database connection is not left open
+						Message.printWarning(2, routine, "Datastore \"" + this.dataStoreName + "\" finished opening after " +
+							sw.getMilliseconds() + " ms, which is after the " + this.timeoutSeconds + " second timeout.  Closing the datastore.");
+						closeDataStore ( dataStore );
+						break;
+					}
+					this.timingList.add("Datastore \"" + this.dataStoreName + "\" from \"" + dataStoreConfigFile + "\" took " +
+						sw.getMilliseconds() + " ms to open.");
+					if ( dataStore != null ) {
+						// DataStore will be null if disabled or a serious error occurred opening.
+						this.dataStoreList.add(dataStore);
+					}
+				}
+				Message.printStatus ( 2, routine, "  Done opening datastore using properties in \"" + dataStoreConfigFile + "\".");
+				if ( dataStore != null ) {
+					// If the datastore is enabled, don't open other configurations for the same datastore name:
+					// - user datastores are opened before installation datastores
+					String prop = dataStore.getProperty("Enabled");
+					if ( (prop != null) && prop.equalsIgnoreCase("true") ) {
+						if ( this.dataStorePropsList.size() > 1 ) {
+							Message.printStatus ( 2, routine, "  Datastore \"" + this.dataStoreName +
+								"\" is enabled so other configurations with the same name will be skipped (user datastores are used before system datastores).");
+						}
+						break;
+					}
+				}
+			}
+		}
+		finally {
+			complete ( false );
+		}
+	}
+
+	/**
+	 * Start the timeout for the task, if a scheduler and timeout were specified.
+	 */
+	private void startTimeout () {
+		if ( (this.scheduler == null) || (this.timeoutSeconds <= 0) ) {
+			return;
+		}
+		this.scheduler.schedule ( new Runnable() {
+			public void run () {
+				complete ( true );
+			}
+		}, this.timeoutSeconds, TimeUnit.SECONDS );
+	}
+
+}
@@ -0,0 +1,345 @@
+// DataStoreReloader - reload datastores whose configuration files changed, for long-running server modes
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import RTi.Util.String.StringUtil;
+import riverside.datastore.DataStore;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Reload datastores whose configuration files have changed, used by the batch server and daemon
+ * so that adding a datastore or changing a password does not require restarting TSTool.
+ * The state of the datastore configuration files (modification time and size) is saved when the reloader is created,
+ * which should be immediately after the datastores are opened at startup, and when reload() is called.
+ *
+ * When reloading, only datastores with a configuration file that was added, changed, or removed are affected:
+ * <ul>
+ * <li>added or changed - the datastore is opened and replaces the datastore with the same name in the processor,
+ *     and the old datastore's database connection is closed</li>
+ * <li>removed (or changed so that it is disabled or fails to open) - the datastore is replaced with an
+ *     UnopenedDataStore so that it is listed with an error status and commands cannot use it</li>
+ * </ul>
+ * Other datastores and other processor state are not changed.
+ * The caller must ensure that commands are not running with the old datastores, for example by reloading between jobs.
+ */
+public class DataStoreReloader {
+
+	/**
+	 * TSTool session, used to find datastore configuration files.
+	 */
+	private TSToolSession session = null;
+
+	/**
+	 * Processor that holds the open datastores.
+	 */
+	private TSCommandProcessor processor = null;
+
+	/**
+	 * Plugin datastore classes, used to open plugin datastores.
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginDataStoreClassList = null;
+
+	/**
+	 * Plugin datastore factory classes, used to open plugin datastores.
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginDataStoreFactoryClassList = null;
+
+	/**
+	 * Default timeout in seconds to open each datastore, 0 to wait indefinitely.
+	 */
+	private int defaultTimeoutSeconds = 0;
+
+	/**
+	 * State of the datastore configuration files when last loaded, by full path.
+	 */
+	private Map<String,ConfigFileState> configFileStateMap = new HashMap<>();
+
+	/**
+	 * Constructor, which saves the state of the datastore configuration files.
+	 * @param session TSTool session
+	 * @param processor processor that holds the datastores that were opened at startup
+	 * @param pluginDataStoreClassList plugin datastore classes
+	 * @param pluginDataStoreFactoryClassList plugin datastore factory classes
+	 * @param defaultTimeoutSeconds default timeout in seconds to open each datastore, 0 to wait indefinitely
+	 */
+	public DataStoreReloader ( TSToolSession session, TSCommandProcessor processor,
+		@SuppressWarnings("rawtypes") List<Class> pluginDataStoreClassList,
+		@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryClassList, int defaultTimeoutSeconds ) {
+		this.session = session;
+		this.processor = processor;
+		this.pluginDataStoreClassList = pluginDataStoreClassList;
+		this.pluginDataStoreFactoryClassList = pluginDataStoreFactoryClassList;
+		this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+		this.configFileStateMap = readConfigFiles();
+	}
+
+	/**
+	 * Add the upper case datastore name from a configuration file state to a set.
+	 * @param names set of names to add to
+	 * @param state configuration file state, can be null
+	 */
+	private void addName ( Set<String> names, ConfigFileState state ) {
+		if ( (state != null) && (state.dataStoreProps != null) ) {
+			names.add ( state.dataStoreProps.getValue("Name").toUpperCase() );
+		}
+	}
+
+	/**
+	 * Find a datastore in the processor.
+	 * @param name datastore name (case-insensitive)
+	 * @return the datastore, or null if not found
+	 */
+	private DataStore findDataStore ( String name ) {
+		for ( DataStore dataStore : TSToolMain.getDataStores(this.processor) ) {
+			if ( dataStore.getName().equalsIgnoreCase(name) ) {
+				return dataStore;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read the datastore configuration files.
+	 * @return the configuration file state, by full path, in the order returned by TSToolMain.getDataStoreConfigFiles()
+	 */
+	private Map<String,ConfigFileState> readConfigFiles () {
+		String routine = getClass().getSimpleName() + ".readConfigFiles";
+		Map<String,ConfigFileState> stateMap = new LinkedHashMap<>();
+		for ( String dataStoreFile : TSToolMain.getDataStoreConfigFiles(this.session) ) {
+			File f = new File ( dataStoreFile );
+			ConfigFileState state = new ConfigFileState ( f.lastModified(), f.length() );
+			PropList dataStoreProps = new PropList("");
+			dataStoreProps.setPersistentName(dataStoreFile);
+			try {
+				dataStoreProps.readPersistent();
+				dataStoreProps.set("DataStoreConfigFile",dataStoreFile);
+				if ( dataStoreProps.getValue("Name") != null ) {
+					state.dataStoreProps = dataStoreProps;
+				}
+			}
+			catch ( Exception e ) {
+				Message.printWarning ( 2, routine, "Error reading datastore configuration file \"" + dataStoreFile + "\" (" + e + ")." );
+			}
+			stateMap.put ( dataStoreFile, state );
+		}
+		return stateMap;
+	}
+
+	/**
+	 * Reload datastores whose configuration files were added, changed, or removed since the last load.
+	 * @return a summary of the datastores that were reloaded, for messages
+	 */
+	public synchronized String reload () {
+		String routine = getClass().getSimpleName() + ".reload";
+		Map<String,ConfigFileState> newStateMap = readConfigFiles();
+		// Determine the datastore names (upper case) affected by changed configuration files,
+		// including the old name if the name was changed in a file.
+		Set<String> changedNames = new LinkedHashSet<>();
+		for ( Map.Entry<String,ConfigFileState> entry : newStateMap.entrySet() ) {
+			ConfigFileState oldState = this.configFileStateMap.get(entry.getKey());
+			ConfigFileState newState = entry.getValue();
+			if ( (oldState == null) || !oldState.isSameFile(newState) ) {
+				Message.printStatus ( 2, routine, "Datastore configuration file was " + ((oldState == null) ? "added" : "changed") +
+					":  \"" + entry.getKey() + "\"" );
+				addName ( changedNames, newState );
+				addName ( changedNames, oldState );
+			}
+		}
+		for ( Map.Entry<String,ConfigFileState> entry : this.configFileStateMap.entrySet() ) {
+			if ( !newStateMap.containsKey(entry.getKey()) ) {
+				Message.printStatus ( 2, routine, "Datastore configuration file was removed:  \"" + entry.getKey() + "\"" );
+				addName ( changedNames, entry.getValue() );
+			}
+		}
+		if ( changedNames.isEmpty() ) {
+			this.configFileStateMap = newStateMap;
+			return "No datastore configuration files changed.";
+		}
+		// Group the current configurations for the changed names, user configurations first (same as at startup).
+		Map<String,List<PropList>> dataStorePropsMap = new LinkedHashMap<>();
+		List<ConfigFileState> newStates = new ArrayList<>(newStateMap.values());
+		for ( int i = newStates.size() - 1; i >= 0; i-- ) {
+			PropList dataStoreProps = newStates.get(i).dataStoreProps;
+			if ( (dataStoreProps != null) && changedNames.contains(dataStoreProps.getValue("Name").toUpperCase()) ) {
+				String key = dataStoreProps.getValue("Name").toUpperCase();
+				List<PropList> dataStorePropsList = dataStorePropsMap.get(key);
+				if ( dataStorePropsList == null ) {
+					dataStorePropsList = new ArrayList<>();
+					dataStorePropsMap.put(key, dataStorePropsList);
+				}
+				dataStorePropsList.add(dataStoreProps);
+			}
+		}
+		// Open the changed datastores concurrently, each with a timeout, using the same task as at startup.
+		List<DataStoreOpenTask> taskList = new ArrayList<>();
+		CountDownLatch doneLatch = new CountDownLatch(dataStorePropsMap.size());
+		ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor ( new ThreadFactory() {
+			public Thread newThread ( Runnable r ) {
+				Thread t = new Thread ( r, "TSTool-datastore-reload-timeout" );
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			for ( List<PropList> dataStorePropsList : dataStorePropsMap.values() ) {
+				String dataStoreName = dataStorePropsList.get(0).getValue("Name");
+				int timeoutSeconds = this.defaultTimeoutSeconds;
+				for ( PropList dataStoreProps : dataStorePropsList ) {
+					String propValue = dataStoreProps.getValue("OpenTimeout");
+					if ( (propValue != null) && StringUtil.isInteger(propValue) ) {
+						timeoutSeconds = Integer.parseInt(propValue.trim());
+					}
+				}
+				// Prompting for login is not possible in server modes so open as batch.
+				DataStoreOpenTask task = new DataStoreOpenTask ( dataStoreName, dataStorePropsList, this.session, this.processor,
+					this.pluginDataStoreClassList, this.pluginDataStoreFactoryClassList, true, timeoutSeconds, timeoutScheduler, null, doneLatch );
+				taskList.add(task);
+				Thread t = new Thread ( task, "TSTool-datastore-reload-" + dataStoreName );
+				t.setDaemon(true);
+				t.start();
+			}
+			doneLatch.await();
+		}
+		catch ( InterruptedException e ) {
+			Message.printWarning ( 2, routine, "Interrupted waiting for datastores to reload.  Reloading the remaining datastores." );
+		}
+		finally {
+			timeoutScheduler.shutdownNow();
+		}
+		// Replace the datastores in the processor and close the old datastores.
+		List<String> reloadedNames = new ArrayList<>();
+		List<String> unopenedNames = new ArrayList<>();
+		for ( String key : changedNames ) {
+			DataStoreOpenTask task = null;
+			for ( DataStoreOpenTask t : taskList ) {
+				if ( t.getDataStoreName().equalsIgnoreCase(key) ) {
+					task = t;
+				}
+			}
+			DataStore oldDataStore = findDataStore ( key );
+			List<DataStore> dataStoreList = ((task == null) || task.isTimedOut()) ? new ArrayList<DataStore>() : task.getDataStoreList();
+			try {
+				if ( !dataStoreList.isEmpty() ) {
+					synchronized ( this.processor ) {
+						for ( DataStore dataStore : dataStoreList ) {
+							// Replaces the datastore with the same name.
+							this.processor.setPropContents ( "DataStore", dataStore );
+						}
+					}
+					reloadedNames.add ( dataStoreList.get(0).getName() );
+				}
+				else if ( oldDataStore != null ) {
+					// Removed, disabled, failed to open, or timed out, so replace with a placeholder so that commands can't use the old datastore.
+					String message;
+					PropList dataStoreProps;
+					if ( task == null ) {
+						message = "Datastore configuration file was removed.";
+						dataStoreProps = new PropList("");
+						dataStoreProps.set("Name", oldDataStore.getName());
+					}
+					else if ( task.isTimedOut() ) {
+						message = "Datastore \"" + task.getDataStoreName() + "\" did not open within the " + task.getTimeoutSeconds() +
+							" second timeout when reloading.";
+						dataStoreProps = task.getTimedOutDataStoreProps();
+					}
+					else {
+						message = "Datastore is disabled or could not be opened when reloading - see the log file.";
+						dataStoreProps = dataStorePropsMap.get(key).get(0);
+					}
+					Message.printWarning ( 2, routine, "Datastore \"" + oldDataStore.getName() + "\":  " + message );
+					synchronized ( this.processor ) {
+						this.processor.setPropContents ( "DataStore", new UnopenedDataStore ( dataStoreProps, message ) );
+					}
+					unopenedNames.add ( oldDataStore.getName() );
+				}
+			}
+			catch ( Exception e ) {
+				// The old datastore is still in the processor so don't close it.
+				Message.printWarning ( 2, routine, "Error replacing datastore \"" + key + "\" in processor (" + e + ")." );
+				Message.printWarning ( 3, routine, e );
+				continue;
+			}
+			if ( (oldDataStore != null) && !dataStoreList.contains(oldDataStore) ) {
+				DataStoreOpenTask.closeDataStore ( oldDataStore );
+			}
+		}
+		this.configFileStateMap = newStateMap;
+		String summary = "Reloaded " + reloadedNames.size() + " datastore(s) " + reloadedNames + " and removed or could not open " +
+			unopenedNames.size() + " datastore(s) " + unopenedNames + ".  Other datastores were not changed.";
+		Message.printStatus ( 2, routine, summary );
+		return summary;
+	}
+
+	/**
+	 * State of a datastore configuration file.
+	 */
+	private static class ConfigFileState {
+		/**
+		 * File modification time, milliseconds.
+		 */
+		long lastModified;
+
+		/**
+		 * File size, bytes.
+		 */
+		long length;
+
+		/**
+		 * Datastore properties from the file, or null if the file could not be read.
+		 */
+		PropList dataStoreProps = null;
+
+		ConfigFileState ( long lastModified, long length ) {
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		/**
+		 * Indicate whether the file is unchanged.
+		 * @param other state of the same file at another time
+		 * @return true if the modification time and size are the same
+		 */
+		boolean isSameFile ( ConfigFileState other ) {
+			return (this.lastModified == other.lastModified) && (this.length == other.length);
+		}
+	}
+
+}
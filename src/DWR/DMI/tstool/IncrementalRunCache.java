@@ -0,0 +1,366 @@
+// IncrementalRunCache - content fingerprint cache used to skip batch runs whose inputs have not changed
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import RTi.Util.IO.Command;
+import RTi.Util.IO.IOUtil;
+import RTi.Util.IO.Prop;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+import rti.tscommandprocessor.core.TSCommandProcessorUtil;
+
+/**
+ * Cache of fingerprints for successful batch runs, used by incremental mode (--incremental) to skip running
+ * a command file when its inputs have not changed since the last successful run.
+ *
+ * The fingerprint is a SHA-256 hash of the TSTool version, the command file text, the processor properties from the
+ * command line (Name==Value), and the path, modification time, and size of the input files for all commands.
+ * Any command parameter with "File" in its name that is not an output file (see isOutputFileParameter())
+ * is treated as an input file, for example InputFile, TSProductFile, and InputFile1 for CompareFiles.
+ * A run is skipped if the fingerprint matches the last successful run and the output files from that run
+ * still exist with the same content hashes.
+ *
+ * Only command files where all inputs can be determined before running are cached.
+ * Command files are not cached (and are always run) if they read from datastores or web services,
+ * run other programs or command files, use input file names with properties that are set while running,
+ * use dates relative to the current time (for example InputStart="CurrentToDay - 7Day"),
+ * or do not create any output files.
+ * A file that is written by one command and read by a later command is an input file,
+ * and because it is rewritten by each run the command file is always run.
+ */
+public class IncrementalRunCache {
+
+	/**
+	 * Names of commands (upper case) that have inputs or side effects that cannot be fingerprinted.
+	 */
+	private static final String [] UNCACHEABLE_COMMANDS = {
+		"RUNCOMMANDS", "RUNPROGRAM", "RUNPYTHON", "RUNR", "RUNSQL", "WEBGET", "TSID",
+		"READTIMESERIES", "READTIMESERIESLIST", "SETPROPERTYFROMENVIRONMENT",
+		// The time series product file can read time series that are not parameters of the command.
+		"PROCESSTSPRODUCT"
+	};
+
+	/**
+	 * Pattern for a date relative to the current time in a command parameter value, for example "CurrentToDay - 7Day".
+	 */
+	private static final Pattern CURRENT_DATE_PATTERN = Pattern.compile ( "\\bCurrent(To[A-Za-z]+)?\\b", Pattern.CASE_INSENSITIVE );
+
+	/**
+	 * Folder containing cache entries, one properties file per command file.
+	 */
+	private File cacheFolder;
+
+	/**
+	 * Constructor.
+	 * @param cacheFolder folder for cache entries, which is created if necessary
+	 */
+	public IncrementalRunCache ( File cacheFolder ) {
+		this.cacheFolder = cacheFolder;
+	}
+
+	/**
+	 * Compute the fingerprint for a command file that has been read by the processor.
+	 * @param commandFile command file that was read
+	 * @param processor processor that read the command file, used to get commands and expand properties
+	 * @param processorProps processor properties from the command line
+	 * @param workingDir working directory used to resolve relative input file paths
+	 * @return the fingerprint, or null if the command file cannot be cached
+	 */
+	@SuppressWarnings("unchecked")
+	public String computeFingerprint ( File commandFile, TSCommandProcessor processor, PropList processorProps, String workingDir ) {
+		String routine = getClass().getSimpleName() + ".computeFingerprint";
+		MessageDigest digest = createDigest();
+		try {
+			update ( digest, "TSToolVersion=" + TSToolMain.PROGRAM_VERSION );
+			digest.update ( Files.readAllBytes(commandFile.toPath()) );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 3, routine, "Error reading command file \"" + commandFile + "\" (" + e + ")." );
+			return null;
+		}
+		// Processor properties, sorted so that the order on the command line does not matter.
+		TreeSet<String> propStrings = new TreeSet<>();
+		if ( processorProps != null ) {
+			for ( int i = 0; i < processorProps.size(); i++ ) {
+				Prop prop = processorProps.elementAt(i);
+				propStrings.add ( prop.getKey() + "==" + prop.getValue() );
+			}
+		}
+		for ( String propString : propStrings ) {
+			update ( digest, "Property:" + propString );
+		}
+		// Input files for all commands.
+		TreeSet<String> inputFiles = new TreeSet<>();
+		for ( Command command : (List<Command>)processor.getCommands() ) {
+			String commandName = command.getCommandName().toUpperCase();
+			for ( String uncacheable : UNCACHEABLE_COMMANDS ) {
+				if ( commandName.equals(uncacheable) ) {
+					Message.printStatus ( 2, routine, "Command file uses " + command.getCommandName() + "() - not using incremental cache." );
+					return null;
+				}
+			}
+			PropList parameters = command.getCommandParameters();
+			if ( (parameters == null) || command.getClass().getSimpleName().startsWith("Comment") ) {
+				continue;
+			}
+			if ( parameters.getValue("DataStore") != null ) {
+				Message.printStatus ( 2, routine, "Command file uses a datastore (" + command.getCommandName() +
+					"()) - not using incremental cache." );
+				return null;
+			}
+			boolean haveInputFile = false;
+			for ( int i = 0; i < parameters.size(); i++ ) {
+				Prop parameter = parameters.elementAt(i);
+				if ( (parameter.getValue() != null) && CURRENT_DATE_PATTERN.matcher(parameter.getValue()).find() ) {
+					Message.printStatus ( 2, routine, "Command " + command.getCommandName() + "() uses a date relative to the current time (" +
+						parameter.getKey() + "=\"" + parameter.getValue() + "\") - not using incremental cache." );
+					return null;
+				}
+				String name = parameter.getKey().toUpperCase();
+				if ( (name.indexOf("FILE") < 0) || isOutputFileParameter(name) ) {
+					continue;
+				}
+				String value = TSCommandProcessorUtil.expandParameterValue ( processor, command, parameter.getValue() );
+				if ( (value == null) || value.isEmpty() ) {
+					continue;
+				}
+				if ( (value.indexOf("${") >= 0) || (value.indexOf('*') >= 0) ) {
+					Message.printStatus ( 2, routine, "Input file \"" + parameter.getValue() + "\" for " + command.getCommandName() +
+						"() is set when running - not using incremental cache." );
+					return null;
+				}
+				haveInputFile = true;
+				File inputFile = new File ( IOUtil.verifyPathForOS(IOUtil.toAbsolutePath(workingDir, value)) );
+				inputFiles.add ( inputFile.getAbsolutePath() + "|" + inputFile.lastModified() + "|" + inputFile.length() );
+			}
+			if ( commandName.startsWith("READ") && !haveInputFile ) {
+				// Reads from a database or web service.
+				Message.printStatus ( 2, routine, "Command " + command.getCommandName() +
+					"() does not read from a file - not using incremental cache." );
+				return null;
+			}
+		}
+		for ( String inputFile : inputFiles ) {
+			update ( digest, "InputFile:" + inputFile );
+		}
+		return toHex ( digest.digest() );
+	}
+
+	/**
+	 * Create a SHA-256 digest.
+	 * @return a new digest
+	 */
+	private static MessageDigest createDigest () {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch ( NoSuchAlgorithmException e ) {
+			// SHA-256 is required to be supported by all Java implementations.
+			throw new RuntimeException ( e );
+		}
+	}
+
+	/**
+	 * Return the cache entry file for a cache key.
+	 * @param cacheKey cache key, typically the full path to the command file as submitted
+	 * @return the cache entry file
+	 */
+	private File getEntryFile ( String cacheKey ) {
+		MessageDigest digest = createDigest();
+		update ( digest, cacheKey );
+		return new File ( this.cacheFolder, toHex(digest.digest()) + ".properties" );
+	}
+
+	/**
+	 * Compute the SHA-256 hash of a file's content.
+	 * @param file file to hash
+	 * @return the hash as a hexadecimal string
+	 */
+	private static String hashFile ( File file ) throws IOException {
+		MessageDigest digest = createDigest();
+		byte [] buffer = new byte[65536];
+		try ( InputStream in = new FileInputStream(file) ) {
+			int n;
+			while ( (n = in.read(buffer)) > 0 ) {
+				digest.update ( buffer, 0, n );
+			}
+		}
+		return toHex ( digest.digest() );
+	}
+
+	/**
+	 * Indicate whether a command parameter is an output file, which is not part of the fingerprint.
+	 * @param name parameter name, upper case
+	 * @return true if the parameter name contains "OUTPUT" (for example OutputFile) or is LogFile (StartLog)
+	 */
+	private static boolean isOutputFileParameter ( String name ) {
+		return (name.indexOf("OUTPUT") >= 0) || name.equals("LOGFILE");
+	}
+
+	/**
+	 * Indicate whether a run is up to date, meaning that the fingerprint matches the last successful run
+	 * and the output files from that run exist with the same content.
+	 * @param cacheKey cache key, typically the full path to the command file as submitted
+	 * @param fingerprint fingerprint from computeFingerprint()
+	 * @return true if the run can be skipped
+	 */
+	public boolean isUpToDate ( String cacheKey, String fingerprint ) {
+		String routine = getClass().getSimpleName() + ".isUpToDate";
+		File entryFile = getEntryFile ( cacheKey );
+		if ( (fingerprint == null) || !entryFile.exists() ) {
+			return false;
+		}
+		Properties entry = new Properties();
+		try ( InputStream in = new FileInputStream(entryFile) ) {
+			entry.load ( in );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 3, routine, "Error reading incremental cache entry \"" + entryFile + "\" (" + e + ")." );
+			return false;
+		}
+		if ( !fingerprint.equals(entry.getProperty("Fingerprint")) ) {
+			Message.printStatus ( 2, routine, "Inputs have changed since the last successful run - running." );
+			return false;
+		}
+		int outputFileCount = Integer.parseInt(entry.getProperty("OutputFileCount", "0"));
+		for ( int i = 1; i <= outputFileCount; i++ ) {
+			File outputFile = new File ( entry.getProperty("OutputFile." + i, "") );
+			try {
+				if ( !outputFile.isFile() || !hashFile(outputFile).equals(entry.getProperty("OutputHash." + i)) ) {
+					Message.printStatus ( 2, routine, "Output file \"" + outputFile + "\" is missing or has changed - running." );
+					return false;
+				}
+			}
+			catch ( IOException e ) {
+				return false;
+			}
+		}
+		Message.printStatus ( 2, routine, "Inputs and " + outputFileCount + " output files are unchanged since the successful run at " +
+			entry.getProperty("Created") + "." );
+		return outputFileCount > 0;
+	}
+
+	/**
+	 * Save the cache entry for a successful run.
+	 * @param cacheKey cache key, typically the full path to the command file as submitted
+	 * @param fingerprint fingerprint from computeFingerprint(), computed before the run
+	 * @param processor processor that ran the commands, used to get the output files
+	 */
+	@SuppressWarnings("unchecked")
+	public void save ( String cacheKey, String fingerprint, TSCommandProcessor processor ) {
+		String routine = getClass().getSimpleName() + ".save";
+		if ( fingerprint == null ) {
+			return;
+		}
+		File entryFile = getEntryFile ( cacheKey );
+		List<File> outputFileList = new ArrayList<>();
+		try {
+			Object o = processor.getPropContents("OutputFileList");
+			if ( o != null ) {
+				outputFileList.addAll ( (List<File>)o );
+			}
+		}
+		catch ( Exception e ) {
+			// No output files.
+		}
+		if ( outputFileList.isEmpty() ) {
+			// Can't confirm that the run's results still exist, so always run.
+			entryFile.delete();
+			return;
+		}
+		Collections.sort ( outputFileList );
+		Properties entry = new Properties();
+		entry.setProperty("CacheKey", cacheKey);
+		entry.setProperty("Fingerprint", fingerprint);
+		entry.setProperty("Created", new Date().toString());
+		int count = 0;
+		try {
+			for ( File outputFile : outputFileList ) {
+				if ( !outputFile.isFile() ) {
+					continue;
+				}
+				++count;
+				entry.setProperty("OutputFile." + count, outputFile.getAbsolutePath());
+				entry.setProperty("OutputHash." + count, hashFile(outputFile));
+			}
+			entry.setProperty("OutputFileCount", "" + count);
+			if ( !this.cacheFolder.exists() ) {
+				this.cacheFolder.mkdirs();
+			}
+			// Write to a temporary file and rename so that concurrent runs do not see a partial entry.
+			File tempFile = new File ( entryFile.getPath() + "." + Thread.currentThread().getId() + ".tmp" );
+			try ( OutputStream out = new FileOutputStream(tempFile) ) {
+				entry.store ( out, "TSTool incremental run cache entry" );
+			}
+			Files.move ( tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+			Message.printStatus ( 2, routine, "Saved incremental cache entry with " + count + " output files for \"" + cacheKey + "\"." );
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 3, routine, "Error saving incremental cache entry \"" + entryFile + "\" (" + e + ")." );
+		}
+	}
+
+	/**
+	 * Convert bytes to a hexadecimal string.
+	 * @param bytes bytes to convert
+	 * @return hexadecimal string
+	 */
+	private static String toHex ( byte [] bytes ) {
+		StringBuilder b = new StringBuilder();
+		for ( byte x : bytes ) {
+			b.append ( String.format("%02x", x) );
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Update a digest with a string followed by a newline, so that adjacent strings are distinct.
+	 * @param digest digest to update
+	 * @param s string to add
+	 */
+	private static void update ( MessageDigest digest, String s ) {
+		digest.update ( (s + "\n").getBytes(StandardCharsets.UTF_8) );
+	}
+
+}
@@ -0,0 +1,231 @@
+// LazyDataStore - placeholder for a datastore that is opened when referenced
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import riverside.datastore.AbstractDataStore;
+import riverside.datastore.DataStore;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Placeholder for a datastore that has Lazy=True in its configuration file (or when lazy datastores are enabled globally).
+ * The configuration file properties are read at startup but the datastore factory is not called until open() is called,
+ * which occurs when the datastore is referenced:
+ * <ul>
+ * <li>before commands are run, if the commands reference the datastore
+ *     (see TSToolMain.openLazyDataStoresReferencedByCommands(), which describes how references are detected)</li>
+ * <li>when the datastore is selected in the UI</li>
+ * <li>when the HTTP server reads the datastore's time series catalog</li>
+ * </ul>
+ * When opened, the real datastore replaces the placeholder in the processor, using the same name.
+ * This is not a proxy that opens when a command first calls it:  commands request datastores from the processor
+ * using specific datastore classes (for example HydroBaseDataStore), which the placeholder cannot impersonate,
+ * so the placeholder must be opened before commands that use the datastore are run.
+ * For the same reason, the placeholder is not returned when datastores are requested by class
+ * (for example by command editors) until it has been opened, but it is returned with all datastores
+ * (View / Datastores and the UI datastore choice), and getUnopenedDataStores() returns the datastores that have not been opened.
+ * If opening fails, for example because a database or web service is temporarily unavailable,
+ * the placeholder remains in the processor and opening is tried again after the retry interval,
+ * so that a long-running server (daemon, batch server, HTTP server) recovers without reloading datastores.
+ * The processor's datastores are accessed while synchronized on the processor (see TSToolMain.getDataStores()), but the datastore is opened without
+ * holding the processor's monitor, so that a server can open a datastore for one request while other requests use the processor.
+ */
+public class LazyDataStore extends AbstractDataStore {
+
+	/**
+	 * Datastore configuration properties.
+	 */
+	private PropList dataStoreProps = null;
+
+	/**
+	 * Data needed by TSToolMain.openDataStore().
+	 */
+	private TSToolSession session = null;
+	private TSCommandProcessor processor = null;
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginDataStoreClassList = null;
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginDataStoreFactoryClassList = null;
+	private boolean isBatch = true;
+
+	/**
+	 * Time to wait after a failed open before open() tries again, milliseconds.
+	 */
+	public static final long OPEN_RETRY_MS = 60000L;
+
+	/**
+	 * Whether open() is opening the datastore.
+	 */
+	private volatile boolean opening = false;
+
+	/**
+	 * Time of the last failed open, milliseconds, or -1 if open has not failed.
+	 */
+	private volatile long openFailureTime = -1;
+
+	/**
+	 * The datastore that was opened, or null if not opened.
+	 */
+	private volatile DataStore dataStore = null;
+
+	/**
+	 * Construct the placeholder.
+	 * @param session TSTool session
+	 * @param dataStoreProps datastore configuration properties
+	 * @param processor processor that will use the datastore, will be updated with the real datastore when opened
+	 * @param pluginDataStoreClassList list of plugin datastore classes
+	 * @param pluginDataStoreFactoryClassList list of plugin datastore factory classes
+	 * @param isBatch whether running in batch mode
+	 */
+	public LazyDataStore ( TSToolSession session, PropList dataStoreProps, TSCommandProcessor processor,
+		@SuppressWarnings("rawtypes") List<Class> pluginDataStoreClassList,
+		@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryClassList, boolean isBatch ) {
+		this.session = session;
+		this.dataStoreProps = dataStoreProps;
+		this.processor = processor;
+		this.pluginDataStoreClassList = pluginDataStoreClassList;
+		this.pluginDataStoreFactoryClassList = pluginDataStoreFactoryClassList;
+		this.isBatch = isBatch;
+		setName ( dataStoreProps.getValue("Name") );
+		String description = dataStoreProps.getValue("Description");
+		if ( description == null ) {
+			description = "";
+		}
+		setDescription ( description );
+		setProperties ( dataStoreProps );
+		// Status is OK because the datastore has not had a chance to fail.
+		setStatus ( 0 );
+		setStatusMessage ( "Not opened (lazy datastore of type " + getDataStoreType() + ") - will be opened when referenced by commands or selected." );
+	}
+
+	/**
+	 * Return the datastore type from the configuration file (e.g., HydroBaseDataStore).
+	 * @return the datastore type from the configuration file
+	 */
+	public String getDataStoreType () {
+		return this.dataStoreProps.getValue("Type");
+	}
+
+	/**
+	 * Return the lazy datastores in the processor that need to be opened (see isOpenNeeded()).
+	 * @param processor the processor to check
+	 * @return the lazy datastores that need to be opened, guaranteed to be non-null
+	 */
+	public static List<LazyDataStore> getUnopenedDataStores ( TSCommandProcessor processor ) {
+		List<LazyDataStore> lazyList = new ArrayList<>();
+		synchronized ( processor ) {
+			for ( DataStore dataStore : processor.getDataStores() ) {
+				if ( dataStore instanceof LazyDataStore ) {
+					LazyDataStore lazyDataStore = (LazyDataStore)dataStore;
+					if ( lazyDataStore.isOpenNeeded() ) {
+						lazyList.add(lazyDataStore);
+					}
+				}
+			}
+		}
+		return lazyList;
+	}
+
+	/**
+	 * Indicate whether open() needs to be called, which is the case if the datastore has not been opened,
+	 * is not being opened, and did not fail to open within the retry interval.
+	 * This method does not wait for an open that is in progress, so it can be called from the UI thread.
+	 * @return true if open() needs to be called
+	 */
+	public boolean isOpenNeeded () {
+		if ( (this.dataStore != null) || this.opening ) {
+			return false;
+		}
+		return (this.openFailureTime < 0) || ((System.currentTimeMillis() - this.openFailureTime) >= OPEN_RETRY_MS);
+	}
+
+	/**
+	 * Open the datastore using the datastore factory and replace the placeholder in the processor with the opened datastore.
+	 * Once opened, the opened datastore is returned.  If the open failed, the open is not tried again until the
+	 * retry interval has passed, so that a datastore that is unavailable does not delay every request.
+	 * @return the opened datastore, or null if the datastore could not be opened
+	 */
+	public synchronized DataStore open () {
+		String routine = getClass().getSimpleName() + ".open";
+		if ( (this.dataStore != null) || !isOpenNeeded() ) {
+			return this.dataStore;
+		}
+		Message.printStatus(2, routine, "Opening lazy datastore \"" + getName() + "\"" +
+			((this.openFailureTime < 0) ? " when referenced." : " again after failing to open.") );
+		this.opening = true;
+		DataStore openedDataStore = null;
+		try {
+			// Do not allow the datastore to be lazy again and let this method add to the processor below.
+			openedDataStore = TSToolMain.openDataStore ( this.session, this.dataStoreProps, this.processor,
+				this.pluginDataStoreClassList, this.pluginDataStoreFactoryClassList, this.isBatch, false, false );
+		}
+		catch ( Exception e ) {
+			Message.printWarning(2, routine, "Error opening lazy datastore \"" + getName() + "\" (" + e + ")." );
+			Message.printWarning(3, routine, e);
+			openedDataStore = null;
+		}
+		String failureMessage = "Error opening lazy datastore - see the log file";
+		if ( (openedDataStore != null) && (openedDataStore.getStatus() != 0) ) {
+			// Factories may return a datastore that did not connect, rather than throwing an exception,
+			// so handle as a failure so that the open is tried again.
+			Message.printWarning(2, routine, "Lazy datastore \"" + getName() + "\" did not open (" +
+				openedDataStore.getStatusMessage() + ")." );
+			failureMessage = "Error opening lazy datastore (" + openedDataStore.getStatusMessage() + ")";
+			openedDataStore = null;
+		}
+		// Set the result before clearing the opening flag so that isOpenNeeded() is consistent.
+		if ( openedDataStore == null ) {
+			this.openFailureTime = System.currentTimeMillis();
+		}
+		else {
+			this.dataStore = openedDataStore;
+		}
+		this.opening = false;
+		if ( openedDataStore == null ) {
+			// Leave the placeholder in the processor so that View / Datastores shows the problem, and try again after the retry interval.
+			setStatus ( 1 );
+			setStatusMessage ( failureMessage + " - will try again after " +
+				(OPEN_RETRY_MS/1000) + " seconds." );
+			return null;
+		}
+		try {
+			// Datastore with the same name replaces the placeholder.
+			synchronized ( this.processor ) {
+				this.processor.setPropContents ( "DataStore", this.dataStore );
+			}
+		}
+		catch ( Exception e ) {
+			Message.printWarning(2, routine, "Error replacing lazy datastore \"" + getName() + "\" in processor (" + e + ")." );
+			Message.printWarning(3, routine, e);
+		}
+		setStatus ( this.dataStore.getStatus() );
+		setStatusMessage ( "Opened when referenced - see datastore \"" + getName() + "\"." );
+		return this.dataStore;
+	}
+
+}
@@ -28,9 +28,6 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.jar.Attributes;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
 
 import RTi.Util.Message.Message;
 
@@ -49,8 +46,21 @@ import RTi.Util.Message.Message;
  */
 public class PluginDataStoreClassLoader extends URLClassLoader {
 
+	static {
+		// Allow classes with different names to be loaded concurrently,
+		// which requires locking on getClassLoadingLock(className) rather than the class loader.
+		ClassLoader.registerAsParallelCapable();
+	}
+
 	private ChildClassLoader childClassLoader = null;
 
+	/**
+	 * Index of jar file MANIFEST entries, used so that each jar file MANIFEST is read at most once,
+	 * and not at all if the jar file is unchanged in the persistent index.
+	 * An in-memory index is used if setManifestIndex() is not called.
+	 */
+	private PluginManifestIndex manifestIndex = new PluginManifestIndex ( null );
+
 	/**
 	 * TODO smalers 2020-07-26 this is new code to try to overcome class cast exception for same calls in different loaders.
 	 * Construct the class loader with a list of jar files that are candidates to load,
@@ -101,6 +111,20 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 		this.childClassLoader = new ChildClassLoader(dataStoreJarList, new DetectClass(this.getParent()));
 	}
 
+	/**
+	 * Return the MANIFEST entries for a jar file from the manifest index.
+	 * @param jarUrl URL for the jar file
+	 * @return the MANIFEST entries for the jar file
+	 * @exception IOException if the jar file does not exist or the MANIFEST cannot be read
+	 */
+	private PluginManifestIndex.Entry getManifestEntry ( URL jarUrl ) throws IOException {
+		PluginManifestIndex.Entry manifestEntry = this.manifestIndex.getEntry ( jarUrl );
+		if ( manifestEntry == null ) {
+			throw new IOException ( "Unable to read MANIFEST from \"" + jarUrl + "\"" );
+		}
+		return manifestEntry;
+	}
+
 	/**
 	 * Load the command classes found in the jar file.
 	 * TODO smalers 2020-07-26 copied the code here because using different class loaders was causing class cast exception
@@ -113,15 +137,16 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 		List<Class> pluginCommandList = new ArrayList<>();
 		// Loop through all of the URLs.
 		for ( int i = 0; i < pluginClassURLs.length; i++ ) {
-			JarInputStream jarStream = null;
 			String commandClassToLoad = null;
 			try {
-				// Open the META-INF/MANIFEST.MF file and get the property Command-Class, which is what needs to be loaded.
-				jarStream = new JarInputStream(pluginClassURLs[i].openStream());
-				Manifest manifest = jarStream.getManifest();
-				Attributes attributes = manifest.getMainAttributes();
+				// Get the META-INF/MANIFEST.MF property Command-Class, which is what needs to be loaded.
+				PluginManifestIndex.Entry manifestEntry = getManifestEntry(pluginClassURLs[i]);
+				List<String> commandClassList = manifestEntry.getCommandClassList();
 				for ( int iCommand = 1 ; ; ++iCommand ) {
-					commandClassToLoad = attributes.getValue("Command-Class" + iCommand);
+					commandClassToLoad = null;
+					if ( iCommand <= commandClassList.size() ) {
+						commandClassToLoad = commandClassList.get(iCommand - 1);
+					}
 					if ( commandClassToLoad == null ) {
 						// No more command classes so break out of the loop.
 						if ( Message.isDebugOn ) {
@@ -154,16 +179,6 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 				Message.printWarning(2, routine,"  Trying to load command class \"" + commandClassToLoad + "\"");
 				Message.printWarning(3,routine,"  Is there a typo in the META-INF/MANIFEST.MF file?");
 			}
-			finally {
-				if ( jarStream != null ) {
-					try {
-						jarStream.close();
-					}
-					catch ( IOException e ) {
-						// Ignore - should not happen.
-					}
-				}
-			}
 		}
 		return pluginCommandList;
 	}
@@ -182,16 +197,13 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 		List<Class> pluginDataStoreList = new ArrayList<Class>();
 		// Loop through all of the URLs
 		for ( int i = 0; i < pluginClassURLs.length; i++ ) {
-			JarInputStream jarStream = null;
 			String dataStoreClassToLoad = null;
 			try {
-				// Open the META-INF/MANIFEST.MF file and get the property Datastore-Class, which is what needs to be loaded.
-				jarStream = new JarInputStream(pluginClassURLs[i].openStream());
-				Manifest manifest = jarStream.getManifest();
+				// Get the META-INF/MANIFEST.MF property Datastore-Class, which is what needs to be loaded.
+				PluginManifestIndex.Entry manifestEntry = getManifestEntry(pluginClassURLs[i]);
 				// Try finding "Datastore-Class" in the main attributes, which was used in TSTool 12.06.00 and earlier.
-				Attributes attributes = manifest.getMainAttributes();
 				// TODO SAM 2016-04-03 may also need the datastore factory class.
-				dataStoreClassToLoad = attributes.getValue("Datastore-Class");
+				dataStoreClassToLoad = manifestEntry.getDataStoreClass();
 				if ( dataStoreClassToLoad == null ) {
 					if ( Message.isDebugOn ) {
 						Message.printStatus(2, routine,
@@ -220,16 +232,6 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 				Message.printWarning(2, routine,"  Trying to load datastore class \"" + dataStoreClassToLoad + "\"");
 				Message.printWarning(3,routine,"  Is there a typo in the META-INF/MANIFEST.MF file?");
 			}
-			finally {
-				if ( jarStream != null ) {
-					try {
-						jarStream.close();
-					}
-					catch ( IOException e ) {
-						// Ignore - should not happen.
-					}
-				}
-			}
 		}
 		return pluginDataStoreList;
 	}
@@ -248,18 +250,12 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 		List<Class> pluginDataStoreFactoryList = new ArrayList<Class>();
 		// Loop through all of the URLs.
 		for ( int i = 0; i < pluginClassURLs.length; i++ ) {
-			JarInputStream jarStream = null;
 			String dataStoreFactoryClassToLoad = null;
 			try {
-				// Open the META-INF/MANIFEST.MF file and get the property DatastoreFactory-Class, which is what needs to be loaded.
-				jarStream = new JarInputStream(pluginClassURLs[i].openStream());
-				Manifest manifest = jarStream.getManifest();
-				Attributes attributes = manifest.getMainAttributes();
-				dataStoreFactoryClassToLoad = attributes.getValue("DataStoreFactory-Class");
-				if ( dataStoreFactoryClassToLoad == null ) {
-					// Try old spelling - if null then have an issue.
-					dataStoreFactoryClassToLoad = attributes.getValue("DatastoreFactory-Class");
-				}
+				// Get the META-INF/MANIFEST.MF property DataStoreFactory-Class, which is what needs to be loaded:
+				// - the index also checks the old spelling DatastoreFactory-Class
+				PluginManifestIndex.Entry manifestEntry = getManifestEntry(pluginClassURLs[i]);
+				dataStoreFactoryClassToLoad = manifestEntry.getDataStoreFactoryClass();
 				// If additional jar files are located in the path, they may be supporting packages rather than DataStore files.
 				if ( dataStoreFactoryClassToLoad == null ) {
 					if ( Message.isDebugOn ) {
@@ -306,20 +302,20 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 				Message.printWarning(2, routine,"  Trying to load datastore factory class \"" + dataStoreFactoryClassToLoad + "\"");
 				Message.printWarning(3,routine,"  Is there a typo in the META-INF/MANIFEST.MF file?");
 			}
-			finally {
-				if ( jarStream != null ) {
-					try {
-						jarStream.close();
-					}
-					catch ( IOException e ) {
-						// Ignore - should not happen.
-					}
-				}
-			}
 		}
 		return pluginDataStoreFactoryList;
 	}
 
+	/**
+	 * Set the index of jar file MANIFEST entries, typically the persistent index shared by all plugin class loaders.
+	 * @param manifestIndex index of jar file MANIFEST entries
+	 */
+	public void setManifestIndex ( PluginManifestIndex manifestIndex ) {
+		if ( manifestIndex != null ) {
+			this.manifestIndex = manifestIndex;
+		}
+	}
+
 	// This method was added to support dependency loading.
 	/**
 	 * Override the ClassLoader.loadClass() method, thereby allowing control of class loading before the parent class loader
@@ -328,28 +324,35 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 	 * @param resolve if true, then resolve the class (normally the case?)
 	 */
     @Override
-    protected synchronized Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+    protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
       	if ( this.childClassLoader == null ) {
-       		// Load classes as normal.
+       		// Load classes as normal:
+       		// - URLClassLoader.loadClass() locks on the class name since this class loader is parallel capable
           	return super.loadClass(className, resolve);
        	}
        	else {
-       		try {
-       			// Load classes using the child class loader first, then the parent.
+       		// The child class loader defines the class and locks on its class loading lock for the class name,
+       		// which is the same lock that is used when the JVM loads classes referenced by the plugin classes.
+   			try {
+   				// Load classes using the child class loader first, then the parent.
 				if ( Message.isDebugOn ) {
 					Message.printStatus(2, "PluginDataStoreClassLoader", "Calling childClassLoader.findClass(" + className + ").");
 				}
-           		return childClassLoader.findClass(className);
-       		}
-        	catch( ClassNotFoundException e ) {
-        		// Unable to use child class loader so use the parent class.
-            	return super.loadClass(className, resolve);
-        	}
+       			return childClassLoader.findClass(className);
+   			}
+    		catch( ClassNotFoundException e ) {
+    			// Unable to use child class loader so use the parent class:
+    			// - URLClassLoader.loadClass() locks on the class name in this class loader
+        		return super.loadClass(className, resolve);
+    		}
         }
     }
 
 	// This private class was added to support dependency loading.
     private static class ChildClassLoader extends URLClassLoader {
+        static {
+        	ClassLoader.registerAsParallelCapable();
+        }
         private DetectClass realParent;
         public ChildClassLoader( URL[] urls, DetectClass realParent ) {
             super(urls, null);
@@ -358,25 +361,30 @@ public class PluginDataStoreClassLoader extends URLClassLoader {
 
         @Override
         public Class<?> findClass(String className) throws ClassNotFoundException {
-            try {
-				if ( Message.isDebugOn ) {
-					Message.printStatus(2, "ChildClassLoader.findClass", "Calling super.findLoadedClass(" + className + ").");
-				}
-            	Class<?> loaded = super.findLoadedClass(className);
-                if ( loaded != null ) {
-                	if ( Message.isDebugOn ) {
-                		Message.printStatus(2, "ChildClassLoader.findClass", "Class is already loaded: " + className );
-                	}
-                    return loaded;
-                }
-               	if ( Message.isDebugOn ) {
-               		Message.printStatus(2, "ChildClassLoader.findClass", "Calling super.findClass(" + className + ").");
-               	}
-                return super.findClass(className);
-            }
-            catch( ClassNotFoundException e ) {
-                return realParent.loadClass(className);
-            }
+        	// Lock on the class name in this class loader, which defines the class, so that the class is only defined once:
+        	// - this is the same lock that ClassLoader.loadClass() uses when the JVM loads classes referenced by plugin classes
+        	// - different classes can be loaded concurrently because the class loader is parallel capable
+        	synchronized ( getClassLoadingLock(className) ) {
+	            try {
+					if ( Message.isDebugOn ) {
+						Message.printStatus(2, "ChildClassLoader.findClass", "Calling super.findLoadedClass(" + className + ").");
+					}
+	            	Class<?> loaded = super.findLoadedClass(className);
+	                if ( loaded != null ) {
+	                	if ( Message.isDebugOn ) {
+	                		Message.printStatus(2, "ChildClassLoader.findClass", "Class is already loaded: " + className );
+	                	}
+	                    return loaded;
+	                }
+	               	if ( Message.isDebugOn ) {
+	               		Message.printStatus(2, "ChildClassLoader.findClass", "Calling super.findClass(" + className + ").");
+	               	}
+	                return super.findClass(className);
+	            }
+	            catch( ClassNotFoundException e ) {
+	                return realParent.loadClass(className);
+	            }
+        	}
         }
     }
 
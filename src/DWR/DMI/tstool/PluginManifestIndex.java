@@ -0,0 +1,467 @@
+// PluginManifestIndex - persistent index of plugin jar file MANIFEST entries
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+import RTi.Util.IO.IOUtil;
+import RTi.Util.Message.Message;
+
+/**
+ * Persistent index of the plugin jar file MANIFEST entries used by TSTool to load plugin datastores and commands.
+ * Each jar file entry is keyed by the jar file path, size, and modification time.
+ * If the jar file has not changed since the index was written, the MANIFEST is not read,
+ * which avoids opening every plugin and dependency jar file at startup.
+ * The list of "dep" jar files for a plugin jar file is also saved and is reused if the "dep" folder has not changed.
+ * The index is saved as a simple property=value text file in the user's .tstool/N/system folder,
+ * with entries for a jar file starting with a Jar= line.
+ * Entries for jar files that are not used in a run are removed when the index is written.
+ */
+public class PluginManifestIndex {
+
+	/**
+	 * Name of the index file in the user's system folder.
+	 */
+	public static final String INDEX_FILE_NAME = "plugin-manifest-index.txt";
+
+	/**
+	 * Index file.
+	 */
+	private File indexFile = null;
+
+	/**
+	 * Index entries, keyed by the absolute jar file path.
+	 */
+	private Map<String,Entry> entryMap = new LinkedHashMap<>();
+
+	/**
+	 * Jar file paths that were requested in this run, used to remove old entries when writing.
+	 */
+	private Set<String> usedJarSet = new HashSet<>();
+
+	/**
+	 * Whether the index has changed since it was read.
+	 */
+	private boolean isDirty = false;
+
+	/**
+	 * Count of lookups for jar files that were found in the index and not changed, for logging.
+	 */
+	private int hitCount = 0;
+
+	/**
+	 * Count of jar files that were read because they were not in the index or had changed, for logging.
+	 */
+	private int missCount = 0;
+
+	/**
+	 * Index entry for a jar file.
+	 */
+	public static class Entry {
+		/**
+		 * Absolute path to the jar file.
+		 */
+		private String jarPath = "";
+
+		/**
+		 * Jar file size in bytes.
+		 */
+		private long size = -1;
+
+		/**
+		 * Jar file modification time, milliseconds.
+		 */
+		private long modified = -1;
+
+		/**
+		 * MANIFEST Datastore-Class, or null if not specified.
+		 */
+		private String dataStoreClass = null;
+
+		/**
+		 * MANIFEST DataStoreFactory-Class (or old DatastoreFactory-Class), or null if not specified.
+		 */
+		private String dataStoreFactoryClass = null;
+
+		/**
+		 * MANIFEST Command-Class1, Command-Class2, etc., in order.
+		 */
+		private List<String> commandClassList = new ArrayList<>();
+
+		/**
+		 * Modification time of the "dep" folder when the dependency jar list was determined,
+		 * or -1 if the dependency list has not been determined.
+		 */
+		private long depFolderModified = -1;
+
+		/**
+		 * Absolute paths to the jar files in the "dep" folder.
+		 */
+		private List<String> depJarList = new ArrayList<>();
+
+		/**
+		 * Return the command classes from the MANIFEST.
+		 * @return the command classes from the MANIFEST, guaranteed to be non-null
+		 */
+		public List<String> getCommandClassList () {
+			return this.commandClassList;
+		}
+
+		/**
+		 * Return the datastore class from the MANIFEST.
+		 * @return the datastore class from the MANIFEST, or null if not specified
+		 */
+		public String getDataStoreClass () {
+			return this.dataStoreClass;
+		}
+
+		/**
+		 * Return the datastore factory class from the MANIFEST.
+		 * @return the datastore factory class from the MANIFEST, or null if not specified
+		 */
+		public String getDataStoreFactoryClass () {
+			return this.dataStoreFactoryClass;
+		}
+
+		/**
+		 * Return the jar file path.
+		 * @return the jar file path
+		 */
+		public String getJarPath () {
+			return this.jarPath;
+		}
+	}
+
+	/**
+	 * Construct an empty index.
+	 * @param indexFile index file to read and write, or null if the index is only used in memory
+	 */
+	public PluginManifestIndex ( File indexFile ) {
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * Return the index file used for the session, in the user's system folder.
+	 * @param session TSTool session
+	 * @return the index file
+	 */
+	public static File getIndexFile ( TSToolSession session ) {
+		return new File ( session.getUserSystemFolder() + File.separator + INDEX_FILE_NAME );
+	}
+
+	/**
+	 * Return the dependency jar files for a plugin jar file, which are the jar files in the "dep" folder next to the jar file.
+	 * The saved list is used if the "dep" folder modification time has not changed.
+	 * @param pluginJar path to the plugin jar file
+	 * @return the dependency jar files, guaranteed to be non-null
+	 */
+	public List<File> getDepJarFiles ( String pluginJar ) {
+		File jarFile = new File(pluginJar);
+		Entry entry = getEntry ( jarFile );
+		File depFolder = new File(jarFile.getParent() + File.separator + "dep");
+		// Returns 0 if the folder does not exist.
+		long depFolderModified = depFolder.lastModified();
+		if ( entry != null ) {
+			synchronized ( this ) {
+				if ( entry.depFolderModified == depFolderModified ) {
+					List<File> depJarFiles = new ArrayList<>();
+					for ( String depJar : entry.depJarList ) {
+						depJarFiles.add(new File(depJar));
+					}
+					return depJarFiles;
+				}
+			}
+		}
+		// Determine the list of dependency jar files.
+		List<File> depJarFiles = IOUtil.getFilesMatchingPattern(depFolder.getPath(), "jar", false);
+		if ( entry != null ) {
+			List<String> depJarList = new ArrayList<>();
+			for ( File depJarFile : depJarFiles ) {
+				depJarList.add(depJarFile.getAbsolutePath());
+			}
+			synchronized ( this ) {
+				entry.depFolderModified = depFolderModified;
+				entry.depJarList = depJarList;
+				this.isDirty = true;
+			}
+		}
+		return depJarFiles;
+	}
+
+	/**
+	 * Return the index entry for a jar file, reading the jar file MANIFEST if the jar file is not in the index or has changed.
+	 * @param jarFile jar file of interest
+	 * @return the index entry for the jar file, or null if the jar file does not exist or the MANIFEST could not be read
+	 */
+	public Entry getEntry ( File jarFile ) {
+		String routine = getClass().getSimpleName() + ".getEntry";
+		String jarPath = jarFile.getAbsolutePath();
+		// Returns 0 if the file does not exist.
+		long size = jarFile.length();
+		long modified = jarFile.lastModified();
+		synchronized ( this ) {
+			this.usedJarSet.add(jarPath);
+			Entry entry = this.entryMap.get(jarPath);
+			if ( (entry != null) && (entry.size == size) && (entry.modified == modified) ) {
+				++this.hitCount;
+				return entry;
+			}
+			++this.missCount;
+		}
+		// Read the MANIFEST without holding the lock so that jar files can be read concurrently.
+		Entry newEntry = null;
+		if ( jarFile.isFile() ) {
+			if ( Message.isDebugOn ) {
+				Message.printStatus(2, routine, "Reading MANIFEST for new or changed jar file \"" + jarPath + "\"" );
+			}
+			try {
+				newEntry = readManifest ( jarFile );
+				newEntry.size = size;
+				newEntry.modified = modified;
+			}
+			catch ( IOException e ) {
+				Message.printWarning(3, routine, "Error reading MANIFEST from \"" + jarPath + "\" (" + e + ")." );
+			}
+		}
+		synchronized ( this ) {
+			if ( newEntry == null ) {
+				this.entryMap.remove(jarPath);
+			}
+			else {
+				this.entryMap.put(jarPath, newEntry);
+			}
+			this.isDirty = true;
+		}
+		return newEntry;
+	}
+
+	/**
+	 * Return the index entry for a jar file URL, as used by PluginDataStoreClassLoader.
+	 * @param jarUrl URL for the jar file, in format file:///path
+	 * @return the index entry for the jar file, or null if the jar file does not exist or the MANIFEST could not be read
+	 */
+	public Entry getEntry ( URL jarUrl ) {
+		return getEntry ( toFile(jarUrl) );
+	}
+
+	/**
+	 * Read the index.  If the index file does not exist or cannot be read, an empty index is returned.
+	 * @param indexFile index file to read
+	 * @return the index, guaranteed to be non-null
+	 */
+	public static PluginManifestIndex read ( File indexFile ) {
+		String routine = PluginManifestIndex.class.getSimpleName() + ".read";
+		PluginManifestIndex index = new PluginManifestIndex ( indexFile );
+		if ( !indexFile.isFile() ) {
+			Message.printStatus(2, routine, "Plugin manifest index \"" + indexFile + "\" does not exist - will create." );
+			return index;
+		}
+		try ( BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8)) ) {
+			Entry entry = null;
+			String line;
+			while ( (line = in.readLine()) != null ) {
+				line = line.trim();
+				if ( line.isEmpty() || line.startsWith("#") ) {
+					continue;
+				}
+				int pos = line.indexOf('=');
+				if ( pos <= 0 ) {
+					continue;
+				}
+				String name = line.substring(0, pos);
+				String value = line.substring(pos + 1);
+				if ( name.equals("Jar") ) {
+					entry = new Entry();
+					entry.jarPath = value;
+					index.entryMap.put(value, entry);
+				}
+				else if ( entry == null ) {
+					// Property before the first jar - ignore.
+					continue;
+				}
+				else if ( name.equals("Size") ) {
+					entry.size = Long.parseLong(value);
+				}
+				else if ( name.equals("Modified") ) {
+					entry.modified = Long.parseLong(value);
+				}
+				else if ( name.equals("Datastore-Class") ) {
+					entry.dataStoreClass = value;
+				}
+				else if ( name.equals("DataStoreFactory-Class") ) {
+					entry.dataStoreFactoryClass = value;
+				}
+				else if ( name.startsWith("Command-Class") ) {
+					entry.commandClassList.add(value);
+				}
+				else if ( name.equals("DepFolderModified") ) {
+					entry.depFolderModified = Long.parseLong(value);
+				}
+				else if ( name.equals("DepJar") ) {
+					entry.depJarList.add(value);
+				}
+			}
+		}
+		catch ( Exception e ) {
+			// Corrupt or unreadable index - start over, which will rewrite the index.
+			Message.printWarning(3, routine, "Error reading plugin manifest index \"" + indexFile + "\" (" + e + ") - will recreate." );
+			index = new PluginManifestIndex ( indexFile );
+			index.isDirty = true;
+			return index;
+		}
+		Message.printStatus(2, routine, "Read " + index.entryMap.size() + " jar files from plugin manifest index \"" + indexFile + "\"." );
+		return index;
+	}
+
+	/**
+	 * Read a jar file MANIFEST and create an index entry.
+	 * @param jarFile jar file to read
+	 * @return new index entry, with size and modified time not set
+	 */
+	private Entry readManifest ( File jarFile ) throws IOException {
+		Entry entry = new Entry();
+		entry.jarPath = jarFile.getAbsolutePath();
+		try ( JarInputStream jarStream = new JarInputStream(new FileInputStream(jarFile)) ) {
+			Manifest manifest = jarStream.getManifest();
+			if ( manifest == null ) {
+				// Jar file without a MANIFEST, which is OK for a dependency.
+				return entry;
+			}
+			Attributes attributes = manifest.getMainAttributes();
+			entry.dataStoreClass = attributes.getValue("Datastore-Class");
+			entry.dataStoreFactoryClass = attributes.getValue("DataStoreFactory-Class");
+			if ( entry.dataStoreFactoryClass == null ) {
+				// Try old spelling.
+				entry.dataStoreFactoryClass = attributes.getValue("DatastoreFactory-Class");
+			}
+			for ( int iCommand = 1 ; ; ++iCommand ) {
+				String commandClass = attributes.getValue("Command-Class" + iCommand);
+				if ( commandClass == null ) {
+					break;
+				}
+				entry.commandClassList.add(commandClass);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Convert a jar file URL to a file.
+	 * Plugin URLs are created using "file:///" + path with forward slashes, without URL encoding.
+	 * @param jarUrl jar file URL
+	 * @return file corresponding to the URL
+	 */
+	private static File toFile ( URL jarUrl ) {
+		String path = jarUrl.getPath();
+		if ( (path.length() > 2) && (path.charAt(0) == '/') && (path.charAt(2) == ':') ) {
+			// Windows path like /C:/... so remove the leading slash.
+			path = path.substring(1);
+		}
+		return new File(path);
+	}
+
+	/**
+	 * Write the index if it has changed since it was read.
+	 * Entries for jar files that were not requested in this run are removed.
+	 * The file is written to a temporary file and then renamed so that other TSTool instances don't read a partial file.
+	 */
+	public synchronized void write () {
+		String routine = getClass().getSimpleName() + ".write";
+		Message.printStatus(2, routine, "Plugin manifest index had " + this.hitCount + " lookups of unchanged jar files and read " +
+			this.missCount + " new or changed jar files." );
+		// Remove entries for jar files that are no longer used.
+		if ( this.entryMap.keySet().retainAll(this.usedJarSet) ) {
+			this.isDirty = true;
+		}
+		if ( !this.isDirty ) {
+			return;
+		}
+		File folder = this.indexFile.getParentFile();
+		if ( (folder == null) || !folder.isDirectory() ) {
+			// The system folder is created when the session is initialized so don't create here.
+			Message.printWarning(3, routine, "Folder for plugin manifest index \"" + this.indexFile + "\" does not exist - not writing." );
+			return;
+		}
+		String nl = System.getProperty("line.separator");
+		StringBuilder sb = new StringBuilder();
+		sb.append("# TSTool plugin manifest index, automatically created and updated - can be deleted to force a rebuild" + nl);
+		for ( Entry entry : this.entryMap.values() ) {
+			sb.append(nl);
+			sb.append("Jar=" + entry.jarPath + nl);
+			sb.append("Size=" + entry.size + nl);
+			sb.append("Modified=" + entry.modified + nl);
+			if ( entry.dataStoreClass != null ) {
+				sb.append("Datastore-Class=" + entry.dataStoreClass + nl);
+			}
+			if ( entry.dataStoreFactoryClass != null ) {
+				sb.append("DataStoreFactory-Class=" + entry.dataStoreFactoryClass + nl);
+			}
+			int iCommand = 0;
+			for ( String commandClass : entry.commandClassList ) {
+				sb.append("Command-Class" + (++iCommand) + "=" + commandClass + nl);
+			}
+			if ( entry.depFolderModified >= 0 ) {
+				sb.append("DepFolderModified=" + entry.depFolderModified + nl);
+				for ( String depJar : entry.depJarList ) {
+					sb.append("DepJar=" + depJar + nl);
+				}
+			}
+		}
+		File tempFile = new File(this.indexFile.getPath() + ".tmp");
+		try {
+			Files.write(tempFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+			try {
+				Files.move(tempFile.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch ( AtomicMoveNotSupportedException e ) {
+				Files.move(tempFile.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			this.isDirty = false;
+			Message.printStatus(2, routine, "Wrote " + this.entryMap.size() + " jar files to plugin manifest index \"" + this.indexFile + "\"." );
+		}
+		catch ( IOException e ) {
+			Message.printWarning(3, routine, "Error writing plugin manifest index \"" + this.indexFile + "\" (" + e + ")." );
+			tempFile.delete();
+		}
+	}
+
+}
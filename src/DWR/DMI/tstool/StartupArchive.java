@@ -0,0 +1,301 @@
+// StartupArchive - create and check the Java class data sharing (AppCDS) archive used to speed TSTool startup
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import RTi.Util.Message.Message;
+
+/**
+ * Create and check the Java class data sharing (AppCDS) archive that is used to speed TSTool startup.
+ * The archive is created with "tstool --create-startup-archive[=SampleCommandFile]", which runs a training run of TSTool
+ * in a separate JVM with -XX:ArchiveClassesAtExit.  The training run loads plugins, opens datastores,
+ * and reads (but does not run) the sample command file, and then exits, causing the JVM to save the loaded classes
+ * in the archive.  The launch script uses the archive with -XX:SharedArchiveFile when it exists.
+ * Dynamic archives require Java 13 or later.
+ *
+ * The JVM ignores an archive that does not match the JVM or class path,
+ * so a stale archive only loses the speedup.
+ * A properties file is saved next to the archive with a fingerprint of the JVM and class path jar files,
+ * which is checked at startup so that the log file indicates when the archive should be recreated.
+ */
+public class StartupArchive {
+
+	/**
+	 * Name of the archive file.
+	 */
+	public static final String ARCHIVE_FILE_NAME = "tstool-startup.jsa";
+
+	/**
+	 * Name of the archive fingerprint properties file, saved next to the archive.
+	 */
+	public static final String FINGERPRINT_FILE_NAME = ARCHIVE_FILE_NAME + ".properties";
+
+	/**
+	 * Minimum Java version that supports dynamic archives (-XX:ArchiveClassesAtExit).
+	 */
+	public static final int MINIMUM_JAVA_VERSION = 13;
+
+	/**
+	 * JVM option used for the training run.
+	 */
+	private static final String ARCHIVE_AT_EXIT_OPTION = "-XX:ArchiveClassesAtExit=";
+
+	/**
+	 * JVM option used to run with an archive.
+	 */
+	private static final String SHARED_ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+
+	/**
+	 * Check the archive used by the running JVM, if any, and log whether the archive matches the JVM and class path.
+	 * This is called at startup after the log file is opened.
+	 */
+	public static void checkArchiveInUse () {
+		String routine = StartupArchive.class.getSimpleName() + ".checkArchiveInUse";
+		String archivePath = getJvmOptionValue ( SHARED_ARCHIVE_OPTION );
+		if ( archivePath == null ) {
+			Message.printStatus(2, routine, "Not using a startup archive (see tstool --create-startup-archive)." );
+			return;
+		}
+		File fingerprintFile = new File ( archivePath + ".properties" );
+		if ( !fingerprintFile.exists() ) {
+			Message.printStatus(2, routine, "Using startup archive \"" + archivePath + "\" (no fingerprint file to check)." );
+			return;
+		}
+		try {
+			Properties props = readProperties ( fingerprintFile );
+			Properties current = getFingerprint();
+			List<String> differences = new ArrayList<>();
+			for ( String name : current.stringPropertyNames() ) {
+				if ( !current.getProperty(name).equals(props.getProperty(name)) ) {
+					differences.add(name);
+				}
+			}
+			if ( differences.isEmpty() ) {
+				Message.printStatus(2, routine, "Using startup archive \"" + archivePath + "\" created " +
+					props.getProperty("Created") + "." );
+			}
+			else {
+				Message.printWarning(2, routine, "Startup archive \"" + archivePath + "\" does not match the current " + differences +
+					" and will be partially or fully ignored by Java - recreate with: tstool --create-startup-archive" );
+			}
+		}
+		catch ( Exception e ) {
+			Message.printWarning(3, routine, "Error checking startup archive fingerprint \"" + fingerprintFile + "\" (" + e + ")." );
+		}
+	}
+
+	/**
+	 * Create the archive by running a training run of TSTool in a separate JVM.
+	 * This is called by TSToolMain.main() when --create-startup-archive is specified and the
+	 * JVM is not already a training run.  Output from the training run is printed to the console.
+	 * @param args TSTool command line arguments, passed to the training run
+	 * @return the exit status for TSTool
+	 */
+	public static int createArchive ( String [] args ) {
+		int javaVersion = getJavaVersion();
+		if ( javaVersion < MINIMUM_JAVA_VERSION ) {
+			System.err.println("Creating a startup archive requires Java " + MINIMUM_JAVA_VERSION + " or later.  Java version is " +
+				System.getProperty("java.version") + " (" + System.getProperty("java.home") + ").");
+			return 1;
+		}
+		File archiveFile = getArchiveFile ( args );
+		File fingerprintFile = new File ( archiveFile.getPath() + ".properties" );
+		// Remove the old archive so that the training run does not use it.
+		archiveFile.delete();
+		fingerprintFile.delete();
+
+		// Run the training run using the same JVM, JVM options and class path.
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		for ( String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments() ) {
+			if ( !jvmArg.startsWith(SHARED_ARCHIVE_OPTION) && !jvmArg.startsWith(ARCHIVE_AT_EXIT_OPTION) &&
+				!jvmArg.startsWith("-Xshare") ) {
+				command.add(jvmArg);
+			}
+		}
+		command.add(ARCHIVE_AT_EXIT_OPTION + archiveFile.getPath());
+		command.add("-Djava.awt.headless=true");
+		command.add("-classpath");
+		command.add(System.getProperty("java.class.path"));
+		command.add(TSToolMain.class.getName());
+		for ( String arg : args ) {
+			command.add(arg);
+		}
+		System.err.println("Creating startup archive \"" + archiveFile + "\" using training run:");
+		System.err.println("  " + String.join(" ", command));
+		long start = System.currentTimeMillis();
+		int status;
+		try {
+			ProcessBuilder pb = new ProcessBuilder(command);
+			pb.inheritIO();
+			status = pb.start().waitFor();
+		}
+		catch ( Exception e ) {
+			System.err.println("Error running startup archive training run (" + e + ").");
+			return 1;
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		if ( (status != 0) || !archiveFile.exists() ) {
+			System.err.println("Startup archive training run failed (exit status " + status + ") - archive was not created.");
+			return (status == 0) ? 1 : status;
+		}
+		try {
+			Properties props = getFingerprint();
+			props.setProperty("Created", new java.util.Date().toString());
+			props.setProperty("TrainingRunMs", "" + elapsed);
+			try ( OutputStream out = new FileOutputStream(fingerprintFile) ) {
+				props.store(out, "TSTool startup archive fingerprint, created by tstool --create-startup-archive");
+			}
+		}
+		catch ( IOException e ) {
+			System.err.println("Error writing startup archive fingerprint \"" + fingerprintFile + "\" (" + e + ").");
+		}
+		System.err.println("Created startup archive \"" + archiveFile + "\" (" + (archiveFile.length()/1024/1024) +
+			" MB, training run " + elapsed + " ms).");
+		if ( !archiveFile.getParentFile().equals(getInstallSystemFolder(args)) ) {
+			System.err.println("The install folder is not writable.  To use the archive, set the environment variable:");
+			System.err.println("  TSTOOL_STARTUP_ARCHIVE=" + archiveFile);
+		}
+		System.err.println("Compare startup time before and after using: tstool -- --startup-profile --commands File.tstool");
+		return 0;
+	}
+
+	/**
+	 * Return the archive file to create, in the install system folder if writable,
+	 * or the user's system folder if the install folder is not writable.
+	 * @param args TSTool command line arguments, used to determine the install folder
+	 * @return the archive file
+	 */
+	private static File getArchiveFile ( String [] args ) {
+		File installSystemFolder = getInstallSystemFolder(args);
+		if ( (installSystemFolder != null) && installSystemFolder.canWrite() ) {
+			return new File(installSystemFolder, ARCHIVE_FILE_NAME);
+		}
+		int majorVersion = Integer.parseInt(TSToolMain.PROGRAM_VERSION.split("\\.")[0].trim());
+		TSToolSession session = TSToolSession.getInstance(majorVersion);
+		return new File(session.getUserSystemFolder(), ARCHIVE_FILE_NAME);
+	}
+
+	/**
+	 * Return the fingerprint of the JVM and class path jar files.
+	 * Plugin jar files are not included because classes from plugin jars that have changed are
+	 * loaded normally by Java.
+	 * @return the fingerprint properties
+	 */
+	private static Properties getFingerprint () {
+		Properties props = new Properties();
+		props.setProperty("JavaHome", System.getProperty("java.home"));
+		props.setProperty("JavaVmVersion", System.getProperty("java.vm.version"));
+		props.setProperty("TSToolVersion", TSToolMain.PROGRAM_VERSION);
+		// The launcher expands wildcards such as bin/* in the class path.
+		CRC32 crc = new CRC32();
+		int count = 0;
+		for ( String path : System.getProperty("java.class.path").split(File.pathSeparator) ) {
+			File f = new File(path);
+			String s = f.getAbsolutePath() + "|" + f.length() + "|" + f.lastModified() + "\n";
+			crc.update(s.getBytes());
+			++count;
+		}
+		props.setProperty("ClassPath", count + " entries, CRC " + Long.toHexString(crc.getValue()));
+		return props;
+	}
+
+	/**
+	 * Return the install system folder using the --home command line parameter.
+	 * @param args TSTool command line arguments
+	 * @return the install system folder, or null if --home is not specified
+	 */
+	private static File getInstallSystemFolder ( String [] args ) {
+		for ( int i = 0; i < (args.length - 1); i++ ) {
+			if ( args[i].equalsIgnoreCase("-home") || args[i].equalsIgnoreCase("--home") ) {
+				return new File(args[i + 1], "system").getAbsoluteFile();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return the Java feature version (e.g., 8 for 1.8, 17 for 17).
+	 * @return the Java feature version
+	 */
+	private static int getJavaVersion () {
+		String version = System.getProperty("java.specification.version");
+		if ( version.startsWith("1.") ) {
+			version = version.substring(2);
+		}
+		try {
+			return Integer.parseInt(version);
+		}
+		catch ( NumberFormatException e ) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Return the value of a JVM option (e.g., -XX:SharedArchiveFile=) for the running JVM.
+	 * @param option JVM option including trailing =
+	 * @return the option value or null if the option was not specified
+	 */
+	private static String getJvmOptionValue ( String option ) {
+		for ( String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments() ) {
+			if ( jvmArg.startsWith(option) ) {
+				return jvmArg.substring(option.length());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Indicate whether the running JVM is a training run that will save the archive when it exits.
+	 * @return true if a training run
+	 */
+	public static boolean isTrainingRun () {
+		return getJvmOptionValue ( ARCHIVE_AT_EXIT_OPTION ) != null;
+	}
+
+	/**
+	 * Read a properties file.
+	 * @param file properties file to read
+	 * @return the properties
+	 */
+	private static Properties readProperties ( File file ) throws IOException {
+		Properties props = new Properties();
+		try ( InputStream in = new FileInputStream(file) ) {
+			props.load(in);
+		}
+		return props;
+	}
+
+}
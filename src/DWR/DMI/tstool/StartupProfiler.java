@@ -0,0 +1,385 @@
+// StartupProfiler - record the time and resources used by TSTool startup phases
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import RTi.Util.IO.IOUtil;
+import RTi.Util.Message.Message;
+
+/**
+ * Record the wall time, CPU time, and allocated bytes for TSTool startup phases,
+ * enabled with the --startup-profile command line parameter.
+ * Phases are recorded by calling begin() and then end() on the returned phase, on the same thread.
+ * Phases can be nested (for example a plugin jar file within plugin loading) and can be recorded on multiple threads.
+ * When startup is complete, finish() writes the timeline as JSON and CSV files next to the log file
+ * and prints a summary table to the log file.
+ * If the profiler is not enabled, begin() returns a phase that does nothing, so calling code does not need to check.
+ */
+public class StartupProfiler {
+
+	/**
+	 * Category for top-level startup phases.
+	 */
+	public static final String CATEGORY_PHASE = "phase";
+
+	/**
+	 * Category for a datastore that is opened.
+	 */
+	public static final String CATEGORY_DATASTORE = "datastore";
+
+	/**
+	 * Category for a plugin jar file that is loaded.
+	 */
+	public static final String CATEGORY_PLUGIN = "plugin";
+
+	/**
+	 * Whether profiling is enabled.
+	 */
+	private static volatile boolean isEnabled = false;
+
+	/**
+	 * Whether finish() has been called, after which phases are not recorded.
+	 */
+	private static volatile boolean isFinished = false;
+
+	/**
+	 * System.nanoTime() when the profiler was enabled, used as the origin for phase start times.
+	 */
+	private static long originNanos = 0;
+
+	/**
+	 * Milliseconds from JVM start until the profiler was enabled.
+	 */
+	private static long jvmStartOffsetMs = 0;
+
+	/**
+	 * Phases that have ended, in order of ending.
+	 */
+	private static final List<Phase> phaseList = new ArrayList<>();
+
+	/**
+	 * Phase that does nothing, returned by begin() when profiling is not enabled.
+	 */
+	private static final Phase NO_OP_PHASE = new Phase ( null, null );
+
+	/**
+	 * A startup phase, created by begin() and completed by end().
+	 */
+	public static class Phase {
+		private String category = null;
+		private String name = null;
+		private String threadName = null;
+		private long startNanos = 0;
+		private long startCpuNanos = -1;
+		private long startAllocatedBytes = -1;
+		private long wallMs = -1;
+		private long cpuMs = -1;
+		private long allocatedBytes = -1;
+		private boolean isEnded = false;
+
+		/**
+		 * Create a phase.  Use StartupProfiler.begin() rather than calling directly.
+		 * @param category phase category (see CATEGORY_*)
+		 * @param name phase name
+		 */
+		private Phase ( String category, String name ) {
+			this.category = category;
+			this.name = name;
+		}
+
+		/**
+		 * End the phase and add to the timeline.  Must be called on the thread that called begin().
+		 * Calling more than once has no effect.
+		 */
+		public void end () {
+			if ( (this.category == null) || this.isEnded ) {
+				// No-op phase or already ended.
+				return;
+			}
+			this.isEnded = true;
+			this.wallMs = (System.nanoTime() - this.startNanos)/1000000;
+			long cpuNanos = getCurrentThreadCpuNanos();
+			if ( (cpuNanos >= 0) && (this.startCpuNanos >= 0) ) {
+				this.cpuMs = (cpuNanos - this.startCpuNanos)/1000000;
+			}
+			long allocatedBytes = getCurrentThreadAllocatedBytes();
+			if ( (allocatedBytes >= 0) && (this.startAllocatedBytes >= 0) ) {
+				this.allocatedBytes = allocatedBytes - this.startAllocatedBytes;
+			}
+			addPhase ( this );
+		}
+	}
+
+	/**
+	 * Add a phase to the timeline, if the profiler has not finished.
+	 * @param phase phase to add
+	 */
+	private static void addPhase ( Phase phase ) {
+		synchronized ( phaseList ) {
+			if ( !isFinished ) {
+				phaseList.add ( phase );
+			}
+		}
+	}
+
+	/**
+	 * Begin a startup phase.
+	 * @param category phase category (see CATEGORY_*)
+	 * @param name phase name, for example the method name, datastore name, or plugin jar file name
+	 * @return the phase, on which end() should be called when the phase is complete
+	 */
+	public static Phase begin ( String category, String name ) {
+		if ( !isEnabled || isFinished ) {
+			return NO_OP_PHASE;
+		}
+		Phase phase = new Phase ( category, name );
+		phase.threadName = Thread.currentThread().getName();
+		phase.startCpuNanos = getCurrentThreadCpuNanos();
+		phase.startAllocatedBytes = getCurrentThreadAllocatedBytes();
+		// Get the wall time last so that the overhead of the above is not included.
+		phase.startNanos = System.nanoTime();
+		return phase;
+	}
+
+	/**
+	 * Enable the profiler.  This should be called as early as possible in TSToolMain.main().
+	 */
+	public static void enable () {
+		if ( isEnabled ) {
+			return;
+		}
+		originNanos = System.nanoTime();
+		try {
+			jvmStartOffsetMs = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		}
+		catch ( Exception e ) {
+			jvmStartOffsetMs = 0;
+		}
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		try {
+			if ( threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled() ) {
+				threadBean.setThreadCpuTimeEnabled(true);
+			}
+		}
+		catch ( Exception e ) {
+			// CPU time will not be available.
+		}
+		isEnabled = true;
+	}
+
+	/**
+	 * Finish profiling, write the timeline files next to the log file, and print a summary to the log file.
+	 * Phases that end after this call are not recorded.  Calling more than once has no effect.
+	 * @param logFile path to the log file, used to determine the output file names;
+	 * if null the files are written to the current working directory
+	 */
+	public static void finish ( String logFile ) {
+		String routine = StartupProfiler.class.getSimpleName() + ".finish";
+		List<Phase> phases = null;
+		synchronized ( phaseList ) {
+			if ( !isEnabled || isFinished ) {
+				return;
+			}
+			isFinished = true;
+			phases = new ArrayList<>(phaseList);
+		}
+		long totalMs = (System.nanoTime() - originNanos)/1000000;
+		String fileBase = null;
+		if ( logFile == null ) {
+			fileBase = IOUtil.getProgramWorkingDir() + File.separator + "TSTool";
+		}
+		else {
+			fileBase = logFile;
+			if ( fileBase.toLowerCase().endsWith(".log") ) {
+				fileBase = fileBase.substring(0, fileBase.length() - 4);
+			}
+		}
+		String jsonFile = fileBase + "-startup-profile.json";
+		String csvFile = fileBase + "-startup-profile.csv";
+		try {
+			writeJson ( jsonFile, phases, totalMs );
+			Message.printStatus ( 2, routine, "Wrote startup profile JSON file \"" + jsonFile + "\"." );
+		}
+		catch ( Exception e ) {
+			Message.printWarning ( 2, routine, "Error writing startup profile JSON file \"" + jsonFile + "\" (" + e + ")." );
+		}
+		try {
+			writeCsv ( csvFile, phases );
+			Message.printStatus ( 2, routine, "Wrote startup profile CSV file \"" + csvFile + "\"." );
+		}
+		catch ( Exception e ) {
+			Message.printWarning ( 2, routine, "Error writing startup profile CSV file \"" + csvFile + "\" (" + e + ")." );
+		}
+		printSummary ( phases, totalMs );
+	}
+
+	/**
+	 * Return the allocated bytes for the current thread.
+	 * @return the allocated bytes for the current thread, or -1 if not supported by the JVM
+	 */
+	private static long getCurrentThreadAllocatedBytes () {
+		try {
+			ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+			if ( threadBean instanceof com.sun.management.ThreadMXBean ) {
+				com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean)threadBean;
+				if ( sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled() ) {
+					return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+				}
+			}
+		}
+		catch ( Exception e ) {
+			// Not supported.
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the CPU time for the current thread.
+	 * @return the CPU time for the current thread in nanoseconds, or -1 if not supported by the JVM
+	 */
+	private static long getCurrentThreadCpuNanos () {
+		try {
+			ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+			if ( threadBean.isCurrentThreadCpuTimeSupported() ) {
+				return threadBean.getCurrentThreadCpuTime();
+			}
+		}
+		catch ( Exception e ) {
+			// Not supported.
+		}
+		return -1;
+	}
+
+	/**
+	 * Indicate whether the profiler is enabled.
+	 * @return true if the profiler is enabled
+	 */
+	public static boolean isEnabled () {
+		return isEnabled;
+	}
+
+	/**
+	 * Print a summary table of the phases to the log file.
+	 * @param phases phases to print
+	 * @param totalMs total milliseconds from enable() to finish()
+	 */
+	private static void printSummary ( List<Phase> phases, long totalMs ) {
+		String routine = StartupProfiler.class.getSimpleName() + ".printSummary";
+		Message.printStatus ( 2, routine, "Startup profile (JVM start to TSToolMain.main() " + jvmStartOffsetMs +
+			" ms, TSToolMain.main() to end of startup " + totalMs + " ms):" );
+		Message.printStatus ( 2, routine, String.format("  %-10s %-40s %10s %10s %10s %14s  %s",
+			"Category", "Name", "Start(ms)", "Wall(ms)", "CPU(ms)", "Allocated(KB)", "Thread") );
+		for ( Phase phase : sortByStart(phases) ) {
+			Message.printStatus ( 2, routine, String.format("  %-10s %-40s %10d %10d %10s %14s  %s",
+				phase.category, phase.name, (phase.startNanos - originNanos)/1000000, phase.wallMs,
+				(phase.cpuMs < 0 ? "" : "" + phase.cpuMs),
+				(phase.allocatedBytes < 0 ? "" : "" + phase.allocatedBytes/1024),
+				phase.threadName) );
+		}
+	}
+
+	/**
+	 * Return a copy of the phases sorted by start time.
+	 * @param phases phases to sort
+	 * @return phases sorted by start time
+	 */
+	private static List<Phase> sortByStart ( List<Phase> phases ) {
+		List<Phase> sorted = new ArrayList<>(phases);
+		sorted.sort ( new Comparator<Phase>() {
+			public int compare ( Phase p1, Phase p2 ) {
+				return Long.compare(p1.startNanos, p2.startNanos);
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Write the phases to a CSV file, one row per phase, sorted by start time.
+	 * @param csvFile path to the CSV file
+	 * @param phases phases to write
+	 */
+	private static void writeCsv ( String csvFile, List<Phase> phases ) throws IOException {
+		try ( PrintWriter out = new PrintWriter(Files.newBufferedWriter(new File(csvFile).toPath(), StandardCharsets.UTF_8)) ) {
+			out.println("Category,Name,Thread,StartMs,WallMs,CpuMs,AllocatedBytes");
+			for ( Phase phase : sortByStart(phases) ) {
+				out.println ( phase.category + ",\"" + phase.name.replace("\"", "\"\"") + "\",\"" + phase.threadName + "\"," +
+					(phase.startNanos - originNanos)/1000000 + "," + phase.wallMs + "," +
+					(phase.cpuMs < 0 ? "" : "" + phase.cpuMs) + "," +
+					(phase.allocatedBytes < 0 ? "" : "" + phase.allocatedBytes) );
+			}
+		}
+	}
+
+	/**
+	 * Write the phases to a JSON file, sorted by start time.
+	 * @param jsonFile path to the JSON file
+	 * @param phases phases to write
+	 * @param totalMs total milliseconds from enable() to finish()
+	 */
+	private static void writeJson ( String jsonFile, List<Phase> phases, long totalMs ) throws IOException {
+		Map<String,Object> profileMap = new LinkedHashMap<>();
+		profileMap.put("programName", IOUtil.getProgramName());
+		profileMap.put("programVersion", IOUtil.getProgramVersion());
+		profileMap.put("javaVersion", System.getProperty("java.version"));
+		profileMap.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+		profileMap.put("jvmStartToMainMs", jvmStartOffsetMs);
+		profileMap.put("totalMs", totalMs);
+		List<Map<String,Object>> phaseMapList = new ArrayList<>();
+		for ( Phase phase : sortByStart(phases) ) {
+			Map<String,Object> phaseMap = new LinkedHashMap<>();
+			phaseMap.put("category", phase.category);
+			phaseMap.put("name", phase.name);
+			phaseMap.put("thread", phase.threadName);
+			phaseMap.put("startMs", (phase.startNanos - originNanos)/1000000);
+			phaseMap.put("wallMs", phase.wallMs);
+			phaseMap.put("cpuMs", (phase.cpuMs < 0 ? null : phase.cpuMs));
+			phaseMap.put("allocatedBytes", (phase.allocatedBytes < 0 ? null : phase.allocatedBytes));
+			phaseMapList.add(phaseMap);
+		}
+		profileMap.put("phases", phaseMapList);
+		ObjectMapper mapper = new ObjectMapper();
+		DefaultPrettyPrinter.Indenter indenter = new DefaultIndenter("  ", DefaultIndenter.SYS_LF);
+		DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
+		printer.indentObjectsWith(indenter);
+		printer.indentArraysWith(indenter);
+		mapper.writer(printer).writeValue(new File(jsonFile), profileMap);
+	}
+
+}
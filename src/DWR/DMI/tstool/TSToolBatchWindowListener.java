@@ -24,10 +24,14 @@ NoticeEnd */
 package DWR.DMI.tstool;
 
 import java.awt.Component;
+import java.awt.Frame;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 
+import RTi.GRTS.TSViewGraphJFrame;
 import RTi.GRTS.TSViewJFrame;
+import RTi.GRTS.TSViewSummaryJFrame;
+import RTi.GRTS.TSViewTableJFrame;
 
 /**
  * This class listens for WindowEvents and is used when TSTool is run in batch mode.
@@ -42,6 +46,29 @@ public class TSToolBatchWindowListener implements WindowListener {
     public TSToolBatchWindowListener () {
     }
 
+    /**
+    Check for windows that could be open as part of visualization,
+    including the graph, summary, and table windows.
+    If any are visible, then need to wait until the user closes all.
+    Then windowClosed() will be called since no more windows are shown.
+    @return true if a visualization window is open and visible
+    */
+    public static boolean isViewWindowOpen () {
+        Frame [] frameArray = Frame.getFrames();
+        if ( frameArray == null ) {
+            return false;
+        }
+        for ( int i = 0; i < frameArray.length; i++ ) {
+            if ( frameArray[i] instanceof TSViewGraphJFrame || frameArray[i] instanceof TSViewSummaryJFrame ||
+                frameArray[i] instanceof TSViewTableJFrame ) {
+                if ( frameArray[i].isVisible() ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
     Needed for WindowListener interface.  Currently does nothing.
     */
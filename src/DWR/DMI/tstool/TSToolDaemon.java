@@ -0,0 +1,426 @@
+// TSToolDaemon - resident TSTool process that runs command files requested by TSToolDaemonClient
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandLogRecord;
+import RTi.Util.IO.CommandPhaseType;
+import RTi.Util.IO.CommandProcessorListener;
+import RTi.Util.IO.CommandStatusType;
+import RTi.Util.IO.CommandStatusUtil;
+import RTi.Util.IO.Prop;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import RTi.Util.Time.StopWatch;
+import riverside.datastore.DataStore;
+import riverside.datastore.DataStoreSubstitute;
+import rti.tscommandprocessor.core.TSCommandFileRunner;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Resident TSTool process, started with --daemon, that keeps plugins loaded and datastores open
+ * and runs command files requested by TSToolDaemonClient (tstool --client --commands CommandFile).
+ * This avoids JVM startup, plugin loading, and datastore connection time for each batch run.
+ * The daemon listens on a loopback socket and only accepts requests that include the token
+ * from the daemon file in the user's .tstool/N/system folder, which is only readable by the user.
+ * Requests are run one at a time, each with a new command processor that shares the open datastores.
+ *
+ * The protocol is UTF-8 text lines.  The request is:
+ * <pre>
+ * TSToolDaemon-1
+ * Token=token
+ * Request=Run (or Stop, or ReloadDataStores to reload datastores whose configuration files have changed)
+ * CommandFile=/path/to/commands.tstool
+ * WorkingDir=/client/working/dir
+ * Property=Name==Value (zero or more processor properties, same as the batch command line)
+ * (blank line)
+ * </pre>
+ * The response is lines starting with "STATUS " or "WARNING ", ending with "EXIT status".
+ * Each request line must be received within 10 seconds, otherwise the connection is closed without a response.
+ */
+public class TSToolDaemon {
+
+	/**
+	 * Protocol identifier, sent as the first line of a request.
+	 */
+	public static final String PROTOCOL = "TSToolDaemon-1";
+
+	/**
+	 * Name of the daemon file in the user's system folder, which contains the port and token.
+	 */
+	public static final String DAEMON_FILE_NAME = "daemon.properties";
+
+	/**
+	 * Time to wait for a client to send each line of the request, milliseconds,
+	 * so that a client that connects and does not send a request does not block the daemon for other clients.
+	 */
+	private static final int REQUEST_READ_TIMEOUT_MS = 10000;
+
+	/**
+	 * TSTool session.
+	 */
+	private TSToolSession session = null;
+
+	/**
+	 * Processor that holds the open datastores, shared by all runs.
+	 */
+	private TSCommandProcessor warmProcessor = null;
+
+	/**
+	 * Processor properties from the daemon command line, used as the base for each run.
+	 */
+	private PropList processorProps = null;
+
+	/**
+	 * Plugin command classes, passed to each command processor.
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginCommandClassList = null;
+
+	/**
+	 * Datastore substitutes from the daemon command line.
+	 */
+	private List<DataStoreSubstitute> datastoreSubstituteList = null;
+
+	/**
+	 * Port to listen on, 0 to use any free port.
+	 */
+	private int port = 0;
+
+	/**
+	 * Reloads datastores whose configuration files have changed, or null if reloading is not enabled.
+	 */
+	private DataStoreReloader dataStoreReloader = null;
+
+	/**
+	 * Token that clients must provide.
+	 */
+	private String token = null;
+
+	/**
+	 * Number of runs that have been processed, for logging.
+	 */
+	private int runCount = 0;
+
+	/**
+	 * Construct the daemon.
+	 * @param session TSTool session, used to locate the daemon file
+	 * @param warmProcessor processor with open datastores, shared by all runs
+	 * @param processorProps processor properties from the daemon command line
+	 * @param pluginCommandClassList plugin command classes
+	 * @param datastoreSubstituteList datastore substitutes from the daemon command line
+	 * @param port port to listen on, 0 to use any free port (the port is saved in the daemon file)
+	 */
+	public TSToolDaemon ( TSToolSession session, TSCommandProcessor warmProcessor, PropList processorProps,
+		@SuppressWarnings("rawtypes") List<Class> pluginCommandClassList,
+		List<DataStoreSubstitute> datastoreSubstituteList, int port ) {
+		this.session = session;
+		this.warmProcessor = warmProcessor;
+		this.processorProps = processorProps;
+		this.pluginCommandClassList = pluginCommandClassList;
+		this.datastoreSubstituteList = datastoreSubstituteList;
+		this.port = port;
+	}
+
+	/**
+	 * Create a token for the daemon file.
+	 * @return a random token
+	 */
+	private static String createToken () {
+		byte [] bytes = new byte[24];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder sb = new StringBuilder();
+		for ( byte b : bytes ) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Return the daemon file, which contains the port and token for clients.
+	 * @param session TSTool session
+	 * @return the daemon file
+	 */
+	public static File getDaemonFile ( TSToolSession session ) {
+		return new File ( session.getUserSystemFolder() + File.separator + DAEMON_FILE_NAME );
+	}
+
+	/**
+	 * Handle a client connection.
+	 * @param socket client socket
+	 * @return true if the daemon should stop
+	 */
+	private boolean handleConnection ( Socket socket ) throws IOException {
+		String routine = getClass().getSimpleName() + ".handleConnection";
+		// Requests are handled one at a time so do not wait indefinitely for the request.
+		socket.setSoTimeout ( REQUEST_READ_TIMEOUT_MS );
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)), true);
+		// Read the request.
+		String line = in.readLine();
+		if ( (line == null) || !line.equals(PROTOCOL) ) {
+			out.println("WARNING Unknown protocol - expecting " + PROTOCOL);
+			out.println("EXIT 1");
+			return false;
+		}
+		String requestToken = null;
+		String request = "Run";
+		String commandFile = null;
+		String workingDir = null;
+		List<String> propertyList = new ArrayList<>();
+		while ( ((line = in.readLine()) != null) && !line.isEmpty() ) {
+			int pos = line.indexOf('=');
+			if ( pos <= 0 ) {
+				continue;
+			}
+			String name = line.substring(0, pos);
+			String value = line.substring(pos + 1);
+			if ( name.equals("Token") ) {
+				requestToken = value;
+			}
+			else if ( name.equals("Request") ) {
+				request = value;
+			}
+			else if ( name.equals("CommandFile") ) {
+				commandFile = value;
+			}
+			else if ( name.equals("WorkingDir") ) {
+				workingDir = value;
+			}
+			else if ( name.equals("Property") ) {
+				propertyList.add(value);
+			}
+		}
+		// Compare the token in constant time so that the comparison time does not reveal the token.
+		if ( (requestToken == null) ||
+			!MessageDigest.isEqual(requestToken.getBytes(StandardCharsets.UTF_8), this.token.getBytes(StandardCharsets.UTF_8)) ) {
+			Message.printWarning(2, routine, "Rejecting daemon request with invalid token." );
+			out.println("WARNING Invalid token - the daemon may have been restarted.");
+			out.println("EXIT 1");
+			return false;
+		}
+		if ( request.equalsIgnoreCase("Stop") ) {
+			Message.printStatus(2, routine, "Stopping daemon at client request." );
+			out.println("STATUS Stopping TSTool daemon.");
+			out.println("EXIT 0");
+			return true;
+		}
+		if ( request.equalsIgnoreCase("ReloadDataStores") ) {
+			// Requests are run one at a time so no command file is running with the datastores that are replaced.
+			if ( this.dataStoreReloader == null ) {
+				out.println("WARNING Reloading datastores is not enabled.");
+				out.println("EXIT 1");
+				return false;
+			}
+			Message.printStatus(2, routine, "Reloading datastores at client request." );
+			out.println("STATUS " + this.dataStoreReloader.reload());
+			out.println("EXIT 0");
+			return false;
+		}
+		if ( commandFile == null ) {
+			out.println("WARNING No command file was specified.");
+			out.println("EXIT 1");
+			return false;
+		}
+		// Resolve the command file relative to the client's working directory.
+		File f = new File(commandFile);
+		if ( !f.isAbsolute() && (workingDir != null) ) {
+			f = new File(workingDir, commandFile);
+		}
+		int status = runCommandFile ( f.getCanonicalPath(), propertyList, out );
+		out.println("EXIT " + status);
+		return false;
+	}
+
+	/**
+	 * Set the datastore reloader, used for ReloadDataStores requests.
+	 * @param dataStoreReloader datastore reloader, or null to not allow reloading
+	 */
+	public void setDataStoreReloader ( DataStoreReloader dataStoreReloader ) {
+		this.dataStoreReloader = dataStoreReloader;
+	}
+
+	/**
+	 * Run the daemon, which returns when a stop request is received or an error occurs listening on the socket.
+	 */
+	public void run () throws IOException {
+		String routine = getClass().getSimpleName() + ".run";
+		File daemonFile = getDaemonFile(this.session);
+		try ( ServerSocket serverSocket = new ServerSocket(this.port, 50, InetAddress.getLoopbackAddress()) ) {
+			this.token = createToken();
+			writeDaemonFile ( daemonFile, serverSocket.getLocalPort() );
+			Message.printStatus(1, routine, "TSTool daemon is listening on " + serverSocket.getInetAddress().getHostAddress() +
+				":" + serverSocket.getLocalPort() + " (daemon file \"" + daemonFile + "\")." );
+			boolean doStop = false;
+			while ( !doStop ) {
+				// Requests are run one at a time because the warm processor and datastores are shared:
+				// - other clients wait in the socket backlog
+				try ( Socket socket = serverSocket.accept() ) {
+					doStop = handleConnection ( socket );
+				}
+				catch ( IOException e ) {
+					// Error with one client, for example the client was killed - continue with the next client.
+					Message.printWarning(2, routine, "Error handling daemon client (" + e + ")." );
+					Message.printWarning(3, routine, e);
+				}
+			}
+		}
+		finally {
+			daemonFile.delete();
+		}
+	}
+
+	/**
+	 * Run a command file, similar to batch mode, sending status to the client.
+	 * @param commandFileFull full path to the command file
+	 * @param propertyList processor properties from the client, in format Name==Value
+	 * @param out writer to send status to the client
+	 * @return the run status, 0 for success and 1 for error (same as the batch mode exit status)
+	 */
+	private int runCommandFile ( String commandFileFull, List<String> propertyList, final PrintWriter out ) {
+		String routine = getClass().getSimpleName() + ".runCommandFile";
+		++this.runCount;
+		Message.printStatus(2, routine, "Running command file for daemon client (run " + this.runCount + "): \"" + commandFileFull + "\"" );
+		out.println("STATUS Running command file \"" + commandFileFull + "\"");
+		StopWatch sw = new StopWatch();
+		sw.start();
+		// Processor properties for the run are the daemon command line properties plus the client properties.
+		PropList runProps = new PropList("ProcessorProps");
+		for ( int i = 0; i < this.processorProps.size(); i++ ) {
+			runProps.set ( this.processorProps.elementAt(i) );
+		}
+		for ( String property : propertyList ) {
+			int pos = property.indexOf("==");
+			if ( pos > 0 ) {
+				Prop prop = new Prop ( property.substring(0,pos), property.substring(pos + 2) );
+				prop.setHowSet ( Prop.SET_AT_RUNTIME_BY_USER );
+				runProps.set ( prop );
+			}
+		}
+		int status = 0;
+		try {
+			// Open lazy datastores used by the command file, in the warm processor so they remain open for later runs.
+			TSToolMain.openLazyDataStoresReferencedByCommandFile ( this.warmProcessor, commandFileFull );
+			// Use a new processor for each run so that results from previous runs are not visible,
+			// but share the datastores that have already been opened.
+			TSCommandFileRunner runner = new TSCommandFileRunner ( runProps, this.pluginCommandClassList );
+			TSCommandProcessor processor = runner.getProcessor();
+			for ( DataStore dataStore : TSToolMain.getDataStores(this.warmProcessor) ) {
+				processor.setPropContents ( "DataStore", dataStore );
+			}
+			Object hbdmiList = this.warmProcessor.getPropContents ( "HydroBaseDMIList" );
+			if ( hbdmiList != null ) {
+				processor.setPropContents ( "HydroBaseDMIList", hbdmiList );
+			}
+			processor.setDatastoreSubstituteList ( this.datastoreSubstituteList );
+			processor.addCommandProcessorListener ( new CommandProcessorListener() {
+				public void commandCanceled ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+					out.println("STATUS Canceled command " + (icommand + 1) + " of " + ncommand + ": " + command );
+				}
+				public void commandCompleted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+					out.println("STATUS Completed command " + (icommand + 1) + " of " + ncommand + ": " + command );
+				}
+				public void commandProgress ( int istep, int nstep, Command command, float percentComplete, String message ) {
+				}
+				public void commandStarted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+					out.println("STATUS Started command " + (icommand + 1) + " of " + ncommand + ": " + command );
+				}
+			});
+			TSToolMain.setWorkingDirUsingCommandFile ( commandFileFull );
+			runner.readCommandFile ( commandFileFull, false );
+			try {
+				// The following will throw an exception if there are any errors running.
+				runner.runCommands();
+			}
+			finally {
+				sendProblems ( processor, out );
+			}
+		}
+		catch ( Exception e ) {
+			Message.printWarning ( 2, routine, "Error running command file \"" + commandFileFull + "\" (" + e + ")." );
+			Message.printWarning ( 3, routine, e );
+			out.println("WARNING Error running command file \"" + commandFileFull + "\" (" + e + ").");
+			status = 1;
+		}
+		sw.stop();
+		Message.printStatus(2, routine, "Daemon run " + this.runCount + " finished with status " + status + " in " + sw.getMilliseconds() + " ms." );
+		out.println("STATUS Finished running command file in " + sw.getMilliseconds() + " ms.");
+		return status;
+	}
+
+	/**
+	 * Send the command failures and warnings to the client.
+	 * @param processor processor that ran the commands
+	 * @param out writer to send status to the client
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void sendProblems ( TSCommandProcessor processor, PrintWriter out ) {
+		List commands = processor.getCommands();
+		CommandPhaseType [] commandPhases = { CommandPhaseType.RUN };
+		CommandStatusType [] statusTypes = { CommandStatusType.FAILURE, CommandStatusType.WARNING };
+		List<CommandLogRecord> logRecordList = CommandStatusUtil.getLogRecordList ( commands, commandPhases, statusTypes );
+		for ( CommandLogRecord logRecord : logRecordList ) {
+			out.println("WARNING " + logRecord.getSeverity() + ": " + logRecord.getProblem().replace('\n', ' ') );
+		}
+		out.println("STATUS There were " + logRecordList.size() + " failures and warnings processing " + commands.size() + " commands.");
+	}
+
+	/**
+	 * Write the daemon file, readable only by the user, containing the port and token.
+	 * @param daemonFile daemon file to write
+	 * @param localPort port that the daemon is listening on
+	 */
+	private void writeDaemonFile ( File daemonFile, int localPort ) throws IOException {
+		String nl = System.getProperty("line.separator");
+		StringBuilder sb = new StringBuilder();
+		sb.append("# TSTool daemon information, created when TSTool is started with --daemon and removed when the daemon stops" + nl);
+		sb.append("Port=" + localPort + nl);
+		sb.append("Token=" + this.token + nl);
+		// Create the file empty and restrict permissions before writing the token.
+		Files.write(daemonFile.toPath(), new byte[0]);
+		daemonFile.setReadable(false, false);
+		daemonFile.setReadable(true, true);
+		daemonFile.setWritable(false, false);
+		daemonFile.setWritable(true, true);
+		Files.write(daemonFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,188 @@
+// TSToolDaemonClient - client that forwards a command file to a running TSToolDaemon
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Thin client for TSToolDaemon, used with:
+ * <pre>
+ * tstool --client --commands CommandFile [Name==Value ...] [--daemon-port=N] [--stop] [--reload-datastores]
+ * </pre>
+ * The command file, working directory, and processor properties are sent to the daemon,
+ * the daemon's status and warning lines are printed, and the run status is returned as the exit status.
+ * The client does not initialize logging, plugins, or datastores so that it starts quickly,
+ * and only prints to the console.
+ */
+public class TSToolDaemonClient {
+
+	/**
+	 * Exit status when the daemon cannot be contacted, which allows schedulers to fall back to a normal batch run.
+	 */
+	public static final int EXIT_NO_DAEMON = 2;
+
+	/**
+	 * Read the daemon file properties.
+	 * @param daemonFile daemon file to read
+	 * @return the daemon file properties
+	 */
+	private static Properties readDaemonFile ( File daemonFile ) throws IOException {
+		Properties props = new Properties();
+		try ( InputStream in = new FileInputStream(daemonFile) ) {
+			props.load(in);
+		}
+		return props;
+	}
+
+	/**
+	 * Run the client.
+	 * @param args command line arguments from TSToolMain.main()
+	 * @return the exit status, the run status from the daemon or EXIT_NO_DAEMON if the daemon could not be contacted
+	 */
+	public static int run ( String [] args ) {
+		String commandFile = null;
+		String request = "Run";
+		int port = -1;
+		List<String> propertyList = new ArrayList<>();
+		for ( int i = 0; i < args.length; i++ ) {
+			if ( args[i].equalsIgnoreCase("-commands") || args[i].equalsIgnoreCase("--commands") ) {
+				if ( (i + 1) < args.length ) {
+					++i;
+					commandFile = args[i];
+				}
+			}
+			else if ( args[i].toLowerCase().startsWith("--daemon-port=") ) {
+				try {
+					port = Integer.parseInt(args[i].substring(args[i].indexOf("=") + 1).trim());
+				}
+				catch ( NumberFormatException e ) {
+					System.err.println("Bad parameter \"" + args[i] + "\", should be: --daemon-port=N");
+					return 1;
+				}
+			}
+			else if ( args[i].equalsIgnoreCase("--stop") ) {
+				request = "Stop";
+			}
+			else if ( args[i].equalsIgnoreCase("--reload-datastores") ) {
+				request = "ReloadDataStores";
+			}
+			else if ( args[i].indexOf("==") > 0 ) {
+				// Processor property, same as the batch command line.
+				propertyList.add(args[i]);
+			}
+			else if ( (commandFile == null) && args[i].toUpperCase().endsWith(".TSTOOL") ) {
+				// Command file without --commands, same as the batch command line.
+				commandFile = args[i];
+			}
+		}
+		if ( request.equals("Run") && (commandFile == null) ) {
+			System.err.println("No command file specified - use --client --commands CommandFile");
+			return 1;
+		}
+
+		// Get the daemon port and token from the daemon file.
+		int majorVersion = Integer.parseInt(TSToolMain.PROGRAM_VERSION.split("\\.")[0].trim());
+		TSToolSession session = TSToolSession.getInstance(majorVersion);
+		File daemonFile = TSToolDaemon.getDaemonFile(session);
+		if ( !daemonFile.exists() ) {
+			System.err.println("TSTool daemon is not running (no daemon file \"" + daemonFile + "\") - start with: tstool --daemon");
+			return EXIT_NO_DAEMON;
+		}
+		String token = null;
+		try {
+			Properties daemonProps = readDaemonFile(daemonFile);
+			token = daemonProps.getProperty("Token");
+			if ( port < 0 ) {
+				port = Integer.parseInt(daemonProps.getProperty("Port","").trim());
+			}
+		}
+		catch ( Exception e ) {
+			System.err.println("Error reading daemon file \"" + daemonFile + "\" (" + e + ").");
+			return EXIT_NO_DAEMON;
+		}
+
+		// Send the request and print the response.
+		String workingDir = System.getProperty("user.dir");
+		int status = 1;
+		boolean haveExit = false;
+		try ( Socket socket = new Socket(InetAddress.getLoopbackAddress(), port) ) {
+			PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+			out.print(TSToolDaemon.PROTOCOL + "\n");
+			out.print("Token=" + token + "\n");
+			out.print("Request=" + request + "\n");
+			if ( commandFile != null ) {
+				// The daemon resolves a relative command file using the working directory.
+				out.print("CommandFile=" + commandFile + "\n");
+			}
+			out.print("WorkingDir=" + workingDir + "\n");
+			for ( String property : propertyList ) {
+				out.print("Property=" + property + "\n");
+			}
+			out.print("\n");
+			out.flush();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			String line;
+			while ( (line = in.readLine()) != null ) {
+				if ( line.startsWith("EXIT ") ) {
+					status = Integer.parseInt(line.substring(5).trim());
+					haveExit = true;
+					break;
+				}
+				else if ( line.startsWith("WARNING ") ) {
+					System.err.println(line.substring(8));
+				}
+				else if ( line.startsWith("STATUS ") ) {
+					System.out.println(line.substring(7));
+				}
+				else {
+					System.out.println(line);
+				}
+			}
+		}
+		catch ( IOException e ) {
+			System.err.println("Unable to connect to TSTool daemon on port " + port + " (" + e + ").");
+			return EXIT_NO_DAEMON;
+		}
+		if ( !haveExit ) {
+			System.err.println("TSTool daemon closed the connection before the run completed.");
+			return 1;
+		}
+		return status;
+	}
+
+}
@@ -0,0 +1,264 @@
+// TSToolHttpBulkRead - read many time series for one HTTP request, in parallel by datastore
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import RTi.TS.TS;
+import RTi.Util.Time.DateTime;
+
+/**
+ * Read many time series for one HTTP request (see UrlHandler), for example all the stations in a basin.
+ * The time series identifiers are grouped by datastore and each group is read in parallel by the server's read pool
+ * for the datastore (see TSToolHttpServer.submitDataStoreRead()), so that a slow datastore does not delay the others.
+ * Results are returned by next() in the order that the reads finish, so that each time series can be written
+ * to the client as soon as it is ready.
+ * At most the datastore read concurrency reads are submitted for each group at a time, and the next read for a group
+ * is submitted when a result is taken, so that time series that are waiting to be written to a slow client
+ * do not accumulate in memory.
+ * The request thread calls start(), next(), and cancel(), and the read pools only add to the result queue.
+ */
+public class TSToolHttpBulkRead {
+
+	/**
+	 * Server that reads the time series.
+	 */
+	private TSToolHttpServer server;
+
+	/**
+	 * Start of the period to read, or null to read the full period.
+	 */
+	private DateTime readStart;
+
+	/**
+	 * End of the period to read, or null to read the full period.
+	 */
+	private DateTime readEnd;
+
+	/**
+	 * Time series identifiers that have not been submitted, by datastore read group.
+	 */
+	private Map<String,LinkedList<String>> groupMap = new LinkedHashMap<>();
+
+	/**
+	 * Number of time series identifiers to read.
+	 */
+	private int tsidCount = 0;
+
+	/**
+	 * Number of results that have been returned by next().
+	 */
+	private int resultCount = 0;
+
+	/**
+	 * Results for reads that have finished and have not been returned by next().
+	 */
+	private BlockingQueue<Result> resultQueue = new LinkedBlockingQueue<>();
+
+	/**
+	 * Submitted reads, used to cancel.
+	 */
+	private List<Future<?>> futureList = new ArrayList<>();
+
+	/**
+	 * Whether the reads were canceled.
+	 */
+	private volatile boolean canceled = false;
+
+	/**
+	 * Constructor, which groups the time series identifiers by datastore.  Call start() to start reading.
+	 * @param server server that reads the time series
+	 * @param tsidList time series identifiers to read
+	 * @param readStart start of the period to read, or null to read the full period
+	 * @param readEnd end of the period to read, or null to read the full period
+	 */
+	public TSToolHttpBulkRead ( TSToolHttpServer server, List<String> tsidList, DateTime readStart, DateTime readEnd ) {
+		this.server = server;
+		this.readStart = readStart;
+		this.readEnd = readEnd;
+		for ( String tsid : tsidList ) {
+			String group = server.getDataStoreReadGroup ( tsid );
+			LinkedList<String> groupTsidList = this.groupMap.get ( group );
+			if ( groupTsidList == null ) {
+				groupTsidList = new LinkedList<>();
+				this.groupMap.put ( group, groupTsidList );
+			}
+			groupTsidList.add ( tsid );
+		}
+		this.tsidCount = tsidList.size();
+	}
+
+	/**
+	 * Cancel reads that have not started, for example when the client disconnects.
+	 * Reads that have started are allowed to finish.
+	 */
+	public void cancel () {
+		this.canceled = true;
+		for ( Future<?> future : this.futureList ) {
+			future.cancel ( false );
+		}
+	}
+
+	/**
+	 * Return the number of datastore read groups.
+	 * @return the number of datastore read groups
+	 */
+	public int getGroupCount () {
+		return this.groupMap.size();
+	}
+
+	/**
+	 * Return the next result, waiting for a read to finish if necessary.
+	 * @return the next result, in the order that the reads finished, or null if all results have been returned
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Result next () throws InterruptedException {
+		if ( this.resultCount == this.tsidCount ) {
+			return null;
+		}
+		Result result = this.resultQueue.take();
+		++this.resultCount;
+		// Replace the finished read with the next read for the same datastore.
+		submitNext ( result.group );
+		return result;
+	}
+
+	/**
+	 * Start reading, submitting up to the datastore read concurrency reads for each datastore.
+	 */
+	public void start () {
+		int concurrency = this.server.getDataStoreReadConcurrency();
+		for ( String group : this.groupMap.keySet() ) {
+			for ( int i = 0; i < concurrency; i++ ) {
+				submitNext ( group );
+			}
+		}
+	}
+
+	/**
+	 * Submit the next read for a datastore read group, if any.
+	 * @param group datastore read group
+	 */
+	private void submitNext ( final String group ) {
+		LinkedList<String> groupTsidList = this.groupMap.get ( group );
+		if ( this.canceled || groupTsidList.isEmpty() ) {
+			return;
+		}
+		final String tsid = groupTsidList.removeFirst();
+		try {
+			this.futureList.add ( this.server.submitDataStoreRead ( group, new Runnable() {
+				public void run () {
+					if ( canceled ) {
+						return;
+					}
+					// Always add a result, even for an Error, so that next() does not wait forever.
+					try {
+						resultQueue.add ( new Result ( group, tsid, server.readTimeSeries(tsid, readStart, readEnd), null ) );
+					}
+					catch ( Throwable e ) {
+						resultQueue.add ( new Result ( group, tsid, null, (e.getMessage() == null) ? e.toString() : e.getMessage() ) );
+					}
+				}
+			}));
+		}
+		catch ( RejectedExecutionException e ) {
+			// The server is stopping.
+			this.resultQueue.add ( new Result ( group, tsid, null, "The server is stopping." ) );
+		}
+	}
+
+	/**
+	 * Result of reading one time series.
+	 */
+	public static class Result {
+
+		/**
+		 * Datastore read group.
+		 */
+		private String group;
+
+		/**
+		 * Time series identifier that was requested.
+		 */
+		private String tsid;
+
+		/**
+		 * Time series that was read, or null if there was an error.
+		 */
+		private TS ts;
+
+		/**
+		 * Error message, or null if the time series was read.
+		 */
+		private String error;
+
+		/**
+		 * Constructor.
+		 * @param group datastore read group
+		 * @param tsid time series identifier that was requested
+		 * @param ts time series that was read, or null if there was an error
+		 * @param error error message, or null if the time series was read
+		 */
+		private Result ( String group, String tsid, TS ts, String error ) {
+			this.group = group;
+			this.tsid = tsid;
+			this.ts = ts;
+			this.error = error;
+		}
+
+		/**
+		 * Return the error message.
+		 * @return the error message, or null if the time series was read
+		 */
+		public String getError () {
+			return this.error;
+		}
+
+		/**
+		 * Return the time series.
+		 * @return the time series that was read, or null if there was an error
+		 */
+		public TS getTS () {
+			return this.ts;
+		}
+
+		/**
+		 * Return the time series identifier that was requested.
+		 * @return the time series identifier that was requested
+		 */
+		public String getTSID () {
+			return this.tsid;
+		}
+
+	}
+
+}
@@ -0,0 +1,211 @@
+// TSToolHttpCatalog - time series catalog read for HTTP requests, which is paged, filtered, and projected
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import cdss.app.tstool.datastore.TimeSeriesCatalog;
+
+/**
+ * Time series catalog (the list of available time series) that was read for an HTTP request (see UrlHandler),
+ * which is kept by the server (see TSToolHttpServer.readTimeSeriesCatalog()) so that clients can page through
+ * a large catalog without the datastore being queried for each page.
+ * The catalog rows are the datastore metadata (see cdss.app.tstool.datastore.TimeSeriesCatalogService)
+ * and each page is formatted from the catalog values, so that only the requested rows and columns are formatted.
+ * The catalog is not changed after it is read and can be used by more than one request at a time.
+ */
+public class TSToolHttpCatalog {
+
+	/**
+	 * Catalog that was read.
+	 */
+	private TimeSeriesCatalog catalog;
+
+	/**
+	 * Column names.
+	 */
+	private List<String> columnNames;
+
+	/**
+	 * Time that the catalog was read, milliseconds.
+	 */
+	private long readTime;
+
+	/**
+	 * Constructor.
+	 * @param catalog catalog that was read
+	 */
+	public TSToolHttpCatalog ( TimeSeriesCatalog catalog ) {
+		this.catalog = catalog;
+		this.columnNames = catalog.getColumnNames();
+		this.readTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Return the index of a column, ignoring case.
+	 * @param columnName column name
+	 * @return the column index
+	 * @throws IllegalArgumentException if the column is not found
+	 */
+	private int getColumnIndex ( String columnName ) {
+		for ( int icol = 0; icol < this.columnNames.size(); icol++ ) {
+			if ( this.columnNames.get(icol).equalsIgnoreCase(columnName.trim()) ) {
+				return icol;
+			}
+		}
+		throw new IllegalArgumentException ( "Column \"" + columnName + "\" is not in the catalog - columns are " +
+			this.columnNames + "." );
+	}
+
+	/**
+	 * Return the column names.
+	 * @return the column names
+	 */
+	public List<String> getColumnNames () {
+		return this.columnNames;
+	}
+
+	/**
+	 * Return the datastore name.
+	 * @return the datastore name
+	 */
+	public String getDataStoreName () {
+		return this.catalog.getDataStoreName();
+	}
+
+	/**
+	 * Return a page of the catalog, for the JSON response.
+	 * @param fieldList columns to include, or an empty list to include all columns
+	 * @param filterList row filters, each in format "Column;Pattern", where the pattern is matched to the formatted
+	 * column value ignoring case, and * matches any characters; rows must match all filters
+	 * @param offset number of matching rows to skip
+	 * @param limit maximum number of rows to return
+	 * @return the page, with "Total" matching rows, "Offset", "Limit", "NextOffset" (null if no more rows),
+	 * "Columns", and "Rows" as a list of objects with the column values
+	 * @throws IllegalArgumentException if a field or filter is not valid
+	 */
+	public Map<String,Object> getPage ( List<String> fieldList, List<String> filterList, int offset, int limit ) {
+		List<Integer> fieldColumns = new ArrayList<>();
+		for ( String field : fieldList ) {
+			fieldColumns.add ( getColumnIndex(field) );
+		}
+		if ( fieldColumns.isEmpty() ) {
+			for ( int icol = 0; icol < this.columnNames.size(); icol++ ) {
+				fieldColumns.add ( icol );
+			}
+		}
+		int nfilter = filterList.size();
+		int [] filterColumns = new int[nfilter];
+		Pattern [] filterPatterns = new Pattern[nfilter];
+		for ( int ifilter = 0; ifilter < nfilter; ifilter++ ) {
+			String filter = filterList.get(ifilter);
+			int pos = filter.indexOf(';');
+			if ( pos <= 0 ) {
+				throw new IllegalArgumentException ( "Filter \"" + filter + "\" is not valid - use Column;Pattern." );
+			}
+			filterColumns[ifilter] = getColumnIndex ( filter.substring(0, pos) );
+			filterPatterns[ifilter] = toPattern ( filter.substring(pos + 1) );
+		}
+		// Count all the matching rows so that clients know how many pages there are, but only format the page rows.
+		List<Map<String,Object>> rows = new ArrayList<>();
+		int total = 0;
+		int nrows = this.catalog.getRowCount();
+		for ( int irow = 0; irow < nrows; irow++ ) {
+			boolean matches = true;
+			for ( int ifilter = 0; ifilter < nfilter; ifilter++ ) {
+				Object value = this.catalog.getValue ( irow, filterColumns[ifilter] );
+				if ( !filterPatterns[ifilter].matcher((value == null) ? "" : value.toString()).matches() ) {
+					matches = false;
+					break;
+				}
+			}
+			if ( !matches ) {
+				continue;
+			}
+			if ( (total >= offset) && (rows.size() < limit) ) {
+				Map<String,Object> row = new LinkedHashMap<>();
+				for ( Integer icol : fieldColumns ) {
+					row.put ( this.columnNames.get(icol), this.catalog.getValue(irow, icol) );
+				}
+				rows.add ( row );
+			}
+			++total;
+		}
+		List<String> columns = new ArrayList<>();
+		for ( Integer icol : fieldColumns ) {
+			columns.add ( this.columnNames.get(icol) );
+		}
+		Map<String,Object> map = new LinkedHashMap<>();
+		map.put("DataStore", this.catalog.getDataStoreName());
+		map.put("DataType", this.catalog.getDataType());
+		map.put("Interval", this.catalog.getTimeStep());
+		map.put("Total", total);
+		map.put("Offset", offset);
+		map.put("Limit", limit);
+		map.put("NextOffset", ((offset + rows.size()) < total) ? Integer.valueOf(offset + rows.size()) : null);
+		map.put("Columns", columns);
+		map.put("Rows", rows);
+		return map;
+	}
+
+	/**
+	 * Return the time that the catalog was read.
+	 * @return the time that the catalog was read, milliseconds
+	 */
+	public long getReadTime () {
+		return this.readTime;
+	}
+
+	/**
+	 * Return the number of rows in the catalog.
+	 * @return the number of rows in the catalog
+	 */
+	public int getRowCount () {
+		return this.catalog.getRowCount();
+	}
+
+	/**
+	 * Convert a filter pattern to a regular expression that ignores case, where * matches any characters.
+	 * @param pattern filter pattern
+	 * @return the regular expression
+	 */
+	private Pattern toPattern ( String pattern ) {
+		StringBuilder b = new StringBuilder();
+		String [] parts = pattern.split("\\*", -1);
+		for ( int i = 0; i < parts.length; i++ ) {
+			if ( i > 0 ) {
+				b.append ( ".*" );
+			}
+			if ( !parts[i].isEmpty() ) {
+				b.append ( Pattern.quote(parts[i]) );
+			}
+		}
+		return Pattern.compile ( b.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL );
+	}
+
+}
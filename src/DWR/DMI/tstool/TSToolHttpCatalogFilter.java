@@ -0,0 +1,189 @@
+// TSToolHttpCatalogFilter - input filter for a time series catalog read for an HTTP request
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.util.List;
+
+import DWR.DMI.HydroBaseDMI.HydroBaseDMI;
+import DWR.DMI.HydroBaseDMI.HydroBaseDataStore;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_AgriculturalCASSCropStats_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_AgriculturalCASSLivestockStats_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_AgriculturalNASSCropStats_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_CUPopulation_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_GroundWater_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_StationGeolocMeasType_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_StructureGeolocStructMeasType_InputFilter_JPanel;
+import DWR.DMI.HydroBaseDMI.HydroBase_GUI_StructureIrrigSummaryTS_InputFilter_JPanel;
+import RTi.Util.GUI.InputFilter_JPanel;
+import cdss.app.tstool.datastore.HydroBaseCatalogFilterType;
+import cdss.app.tstool.datastore.TimeSeriesCatalogWhere;
+import riverside.datastore.DataStore;
+import riverside.datastore.GenericDatabaseDataStore;
+import riverside.datastore.GenericDatabaseDataStore_TimeSeries_InputFilter_JPanel;
+import riverside.datastore.PluginDataStore;
+import rti.tscommandprocessor.commands.rccacis.RccAcisDataStore;
+import rti.tscommandprocessor.commands.rccacis.RccAcis_TimeSeries_InputFilter_JPanel;
+import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDBDataStore;
+import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDB_TimeSeries_InputFilter_JPanel;
+import rti.tscommandprocessor.commands.usgs.nwis.daily.UsgsNwisDailyDataStore;
+import rti.tscommandprocessor.commands.usgs.nwis.daily.UsgsNwisDaily_TimeSeries_InputFilter_JPanel;
+import rti.tscommandprocessor.commands.usgs.nwis.groundwater.UsgsNwisGroundwaterDataStore;
+import rti.tscommandprocessor.commands.usgs.nwis.groundwater.UsgsNwisGroundwater_TimeSeries_InputFilter_JPanel;
+import rti.tscommandprocessor.commands.usgs.nwis.instantaneous.UsgsNwisInstantaneousDataStore;
+import rti.tscommandprocessor.commands.usgs.nwis.instantaneous.UsgsNwisInstantaneous_TimeSeries_InputFilter_JPanel;
+
+/**
+ * Input filter for a time series catalog that is read for an HTTP request (see TSToolHttpServer.readTimeSeriesCatalog()).
+ * The datastore catalog read methods (see cdss.app.tstool.datastore.TimeSeriesCatalogService) take the datastore's
+ * input filter panel, so the filters that were parsed from the request (see TimeSeriesCatalogWhere) are set in
+ * the same type of panel that the UI uses for the datastore, data type, and time step,
+ * the same as read commands do for their WhereN parameters.
+ * The panel is created on the request thread, is only used by that thread, and is never displayed,
+ * so the event dispatch thread is not used and the server can run headless.
+ */
+public class TSToolHttpCatalogFilter {
+
+	/**
+	 * Constructor, not used because the class only has static methods.
+	 */
+	private TSToolHttpCatalogFilter () {
+	}
+
+	/**
+	 * Create the HydroBase input filter panel for a data type and time step,
+	 * the same type as TSTool_HydroBase.setInputFilterForSelections() selects.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @return the input filter panel, or null if the data type does not use an input filter panel
+	 */
+	private static InputFilter_JPanel createHydroBaseInputFilterPanel ( HydroBaseDataStore ds, String dataType, String timeStep )
+	throws Exception {
+		HydroBaseCatalogFilterType filterType =
+			HydroBaseCatalogFilterType.valueOfDataType ( (HydroBaseDMI)ds.getDMI(), dataType, timeStep );
+		if ( filterType == HydroBaseCatalogFilterType.AGRICULTURAL_CASS_CROP_STATS ) {
+			return new HydroBase_GUI_AgriculturalCASSCropStats_InputFilter_JPanel ( ds );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.AGRICULTURAL_CASS_LIVESTOCK_STATS ) {
+			return new HydroBase_GUI_AgriculturalCASSLivestockStats_InputFilter_JPanel ( ds );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.AGRICULTURAL_NASS_CROP_STATS ) {
+			return new HydroBase_GUI_AgriculturalNASSCropStats_InputFilter_JPanel ( ds );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.CU_POPULATION ) {
+			return new HydroBase_GUI_CUPopulation_InputFilter_JPanel ( ds );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.GROUNDWATER_WELL ) {
+			return new HydroBase_GUI_GroundWater_InputFilter_JPanel ( ds, null, true );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.IRRIG_SUMMARY ) {
+			return new HydroBase_GUI_StructureIrrigSummaryTS_InputFilter_JPanel ( ds );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.STATION ) {
+			return new HydroBase_GUI_StationGeolocMeasType_InputFilter_JPanel ( ds );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.STRUCTURE ) {
+			return new HydroBase_GUI_StructureGeolocStructMeasType_InputFilter_JPanel ( ds, false );
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.STRUCTURE_SFUT ) {
+			return new HydroBase_GUI_StructureGeolocStructMeasType_InputFilter_JPanel ( ds, true );
+		}
+		else {
+			return null;
+		}
+	}
+
+	/**
+	 * Create the input filter panel for a catalog read and set its filters.
+	 * @param dataStore datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param whereList filters that were parsed from the request, in filter group order
+	 * @return the input filter panel, or null if the catalog does not use an input filter panel
+	 * @throws IllegalArgumentException if the datastore catalog cannot be read or a filter is not valid for the panel
+	 */
+	public static InputFilter_JPanel createInputFilterPanel ( DataStore dataStore, String dataType, String timeStep,
+		List<TimeSeriesCatalogWhere> whereList ) throws Exception {
+		InputFilter_JPanel filterPanel = null;
+		if ( dataStore instanceof GenericDatabaseDataStore ) {
+			filterPanel = new GenericDatabaseDataStore_TimeSeries_InputFilter_JPanel((GenericDatabaseDataStore)dataStore, 3);
+		}
+		else if ( dataStore instanceof HydroBaseDataStore ) {
+			filterPanel = createHydroBaseInputFilterPanel ( (HydroBaseDataStore)dataStore, dataType, timeStep );
+		}
+		else if ( dataStore instanceof PluginDataStore ) {
+			filterPanel = ((PluginDataStore)dataStore).createTimeSeriesListInputFilterPanel();
+		}
+		else if ( dataStore instanceof RccAcisDataStore ) {
+			filterPanel = new RccAcis_TimeSeries_InputFilter_JPanel((RccAcisDataStore)dataStore, 3);
+		}
+		else if ( dataStore instanceof ReclamationHDBDataStore ) {
+			filterPanel = new ReclamationHDB_TimeSeries_InputFilter_JPanel((ReclamationHDBDataStore)dataStore, 3);
+		}
+		else if ( dataStore instanceof UsgsNwisDailyDataStore ) {
+			filterPanel = new UsgsNwisDaily_TimeSeries_InputFilter_JPanel((UsgsNwisDailyDataStore)dataStore, 3);
+		}
+		else if ( dataStore instanceof UsgsNwisGroundwaterDataStore ) {
+			filterPanel = new UsgsNwisGroundwater_TimeSeries_InputFilter_JPanel((UsgsNwisGroundwaterDataStore)dataStore, 3);
+		}
+		else if ( dataStore instanceof UsgsNwisInstantaneousDataStore ) {
+			filterPanel = new UsgsNwisInstantaneous_TimeSeries_InputFilter_JPanel((UsgsNwisInstantaneousDataStore)dataStore, 3);
+		}
+		else {
+			throw new IllegalArgumentException ( "Reading the time series catalog for datastore \"" + dataStore.getName() +
+				"\" is not supported." );
+		}
+		setInputFilters ( filterPanel, whereList );
+		return filterPanel;
+	}
+
+	/**
+	 * Set the filters in an input filter panel, the same as read commands set their WhereN parameters.
+	 * @param filterPanel input filter panel, or null if the catalog does not use an input filter panel
+	 * @param whereList filters, in filter group order
+	 * @throws IllegalArgumentException if a filter group is not in the panel or a filter is not valid for the panel
+	 */
+	private static void setInputFilters ( InputFilter_JPanel filterPanel, List<TimeSeriesCatalogWhere> whereList ) {
+		int nfg = (filterPanel == null) ? 0 : filterPanel.getNumFilterGroups();
+		for ( TimeSeriesCatalogWhere where : whereList ) {
+			int ifg = where.getFilterGroup();
+			if ( ifg >= nfg ) {
+				throw new IllegalArgumentException ( "Where" + (ifg + 1) + " is not allowed - the datastore has " + nfg + " filters." );
+			}
+			try {
+				filterPanel.setInputFilter ( ifg, where.toString(), TimeSeriesCatalogWhere.DELIMITER );
+			}
+			catch ( Exception e ) {
+				throw new IllegalArgumentException ( "Where" + (ifg + 1) + " \"" + where + "\" is not valid (" + e + ")." );
+			}
+		}
+		if ( filterPanel != null ) {
+			String warning = filterPanel.checkInputFilters(false);
+			if ( (warning != null) && !warning.isEmpty() ) {
+				throw new IllegalArgumentException ( warning );
+			}
+		}
+	}
+
+}
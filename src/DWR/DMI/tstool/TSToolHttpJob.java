@@ -0,0 +1,328 @@
+// TSToolHttpJob - command file run that was submitted to the HTTP server
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * Command file run that was submitted to the HTTP server (see TSToolHttpServer).
+ * The job is queued when submitted, runs on a worker, and is kept after it finishes so that clients can
+ * get the status, log, and output files, until it is removed after the retention time.
+ * Methods are synchronized because the job is updated by the worker and read by request threads.
+ */
+public class TSToolHttpJob {
+
+	/**
+	 * Job state when waiting for a worker.
+	 */
+	public static final String STATE_QUEUED = "queued";
+
+	/**
+	 * Job state when running.
+	 */
+	public static final String STATE_RUNNING = "running";
+
+	/**
+	 * Job state when finished successfully.
+	 */
+	public static final String STATE_SUCCEEDED = "succeeded";
+
+	/**
+	 * Job state when finished with an error or canceled.
+	 */
+	public static final String STATE_FAILED = "failed";
+
+	/**
+	 * Job identifier.
+	 */
+	private String id;
+
+	/**
+	 * Command file to run.
+	 */
+	private File commandFile;
+
+	/**
+	 * Working directory for the command file, or null to use the command file folder.
+	 */
+	private String workingDir;
+
+	/**
+	 * Folder for the job's files, for example inline commands, or null if no folder.
+	 */
+	private File jobFolder;
+
+	/**
+	 * Processor properties from the request, in format Name==Value.
+	 */
+	private List<String> propertyList;
+
+	/**
+	 * Job state, see STATE_*.
+	 */
+	private String state = STATE_QUEUED;
+
+	/**
+	 * Run status, 0 for success and 1 for error (same as the batch mode exit status).
+	 */
+	private int status = 0;
+
+	/**
+	 * Time that the job was submitted, milliseconds.
+	 */
+	private long submitTime;
+
+	/**
+	 * Time that the job started, milliseconds.
+	 */
+	private long startTime = 0;
+
+	/**
+	 * Time that the job finished, milliseconds.
+	 */
+	private long finishTime = 0;
+
+	/**
+	 * Job log lines, with command progress and problems.
+	 */
+	private List<String> logLines = new ArrayList<>();
+
+	/**
+	 * Output files created by the job.
+	 */
+	private List<File> outputFileList = new ArrayList<>();
+
+	/**
+	 * Processor that runs the job, while running, used to cancel.
+	 */
+	private TSCommandProcessor processor = null;
+
+	/**
+	 * Whether cancel was requested.
+	 */
+	private boolean cancelRequested = false;
+
+	/**
+	 * Constructor.
+	 * @param id job identifier
+	 * @param commandFile command file to run
+	 * @param workingDir working directory for the command file, or null to use the command file folder
+	 * @param jobFolder folder for the job's files, or null if no folder
+	 * @param propertyList processor properties from the request, in format Name==Value
+	 */
+	public TSToolHttpJob ( String id, File commandFile, String workingDir, File jobFolder, List<String> propertyList ) {
+		this.id = id;
+		this.commandFile = commandFile;
+		this.workingDir = workingDir;
+		this.jobFolder = jobFolder;
+		this.propertyList = propertyList;
+		this.submitTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Add a line to the job log.
+	 * @param line line to add
+	 */
+	public synchronized void addLogLine ( String line ) {
+		this.logLines.add ( new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date()) + " " + line );
+	}
+
+	/**
+	 * Request that the job be canceled.
+	 * A queued job is canceled when it would start and a running job is canceled by the processor.
+	 * @return true if the job was queued or running, false if it already finished
+	 */
+	public synchronized boolean cancel () {
+		if ( isFinished() ) {
+			return false;
+		}
+		this.cancelRequested = true;
+		if ( this.processor != null ) {
+			this.processor.setCancelProcessingRequested ( true );
+		}
+		return true;
+	}
+
+	/**
+	 * Return the command file.
+	 * @return the command file
+	 */
+	public File getCommandFile () {
+		return this.commandFile;
+	}
+
+	/**
+	 * Return the time that the job finished.
+	 * @return the finish time in milliseconds, 0 if not finished
+	 */
+	public synchronized long getFinishTime () {
+		return this.finishTime;
+	}
+
+	/**
+	 * Return the job identifier.
+	 * @return the job identifier
+	 */
+	public String getId () {
+		return this.id;
+	}
+
+	/**
+	 * Return the folder for the job's files.
+	 * @return the job folder, or null if no folder
+	 */
+	public File getJobFolder () {
+		return this.jobFolder;
+	}
+
+	/**
+	 * Return a copy of the job log lines.
+	 * @return the job log lines
+	 */
+	public synchronized List<String> getLogLines () {
+		return new ArrayList<>(this.logLines);
+	}
+
+	/**
+	 * Return a copy of the output files.
+	 * @return the output files, empty until the job finishes
+	 */
+	public synchronized List<File> getOutputFileList () {
+		return new ArrayList<>(this.outputFileList);
+	}
+
+	/**
+	 * Return the processor properties from the request.
+	 * @return the processor properties, in format Name==Value
+	 */
+	public List<String> getPropertyList () {
+		return this.propertyList;
+	}
+
+	/**
+	 * Return the job state.
+	 * @return the job state, see STATE_*
+	 */
+	public synchronized String getState () {
+		return this.state;
+	}
+
+	/**
+	 * Return the working directory.
+	 * @return the working directory, or null to use the command file folder
+	 */
+	public String getWorkingDir () {
+		return this.workingDir;
+	}
+
+	/**
+	 * Indicate whether cancel was requested.
+	 * @return true if cancel was requested
+	 */
+	public synchronized boolean isCancelRequested () {
+		return this.cancelRequested;
+	}
+
+	/**
+	 * Indicate whether the job finished.
+	 * @return true if the job finished
+	 */
+	public synchronized boolean isFinished () {
+		return this.state.equals(STATE_SUCCEEDED) || this.state.equals(STATE_FAILED);
+	}
+
+	/**
+	 * Indicate that the job finished.
+	 * @param status run status, 0 for success and 1 for error
+	 * @param outputFileList output files created by the job
+	 */
+	public synchronized void setFinished ( int status, List<File> outputFileList ) {
+		this.status = status;
+		this.state = (status == 0) ? STATE_SUCCEEDED : STATE_FAILED;
+		this.finishTime = System.currentTimeMillis();
+		this.processor = null;
+		if ( outputFileList != null ) {
+			this.outputFileList = new ArrayList<>(outputFileList);
+		}
+	}
+
+	/**
+	 * Indicate that the job started.
+	 * @param processor processor that runs the job, used to cancel
+	 */
+	public synchronized void setStarted ( TSCommandProcessor processor ) {
+		this.state = STATE_RUNNING;
+		this.startTime = System.currentTimeMillis();
+		this.processor = processor;
+		if ( this.cancelRequested ) {
+			processor.setCancelProcessingRequested ( true );
+		}
+	}
+
+	/**
+	 * Return the job status as a map, for the JSON response.
+	 * @param outputUrl URL prefix for the output files, to which the output file index is appended
+	 * @return the job status
+	 */
+	public synchronized Map<String,Object> toMap ( String outputUrl ) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+		Map<String,Object> map = new LinkedHashMap<>();
+		map.put("JobId", this.id);
+		map.put("State", this.state);
+		if ( isFinished() ) {
+			map.put("Status", this.status);
+		}
+		map.put("CommandFile", this.commandFile.getPath());
+		map.put("SubmitTime", format.format(new Date(this.submitTime)));
+		if ( this.startTime > 0 ) {
+			map.put("StartTime", format.format(new Date(this.startTime)));
+		}
+		if ( this.finishTime > 0 ) {
+			map.put("FinishTime", format.format(new Date(this.finishTime)));
+			if ( this.startTime > 0 ) {
+				map.put("DurationMs", this.finishTime - this.startTime);
+			}
+		}
+		map.put("CancelRequested", this.cancelRequested);
+		List<Map<String,Object>> outputList = new ArrayList<>();
+		for ( int i = 0; i < this.outputFileList.size(); i++ ) {
+			File outputFile = this.outputFileList.get(i);
+			Map<String,Object> output = new LinkedHashMap<>();
+			output.put("File", outputFile.getPath());
+			output.put("Url", outputUrl + i);
+			outputList.add(output);
+		}
+		map.put("OutputFiles", outputList);
+		return map;
+	}
+
+}
@@ -0,0 +1,1189 @@
+// TSToolHttpServer - HTTP server that runs command files submitted by clients
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpServer;
+
+import RTi.TS.TS;
+import RTi.Util.GUI.InputFilter_JPanel;
+import RTi.Util.IO.Command;
+import RTi.Util.IO.CommandLogRecord;
+import RTi.Util.IO.CommandPhaseType;
+import RTi.Util.IO.CommandProcessorListener;
+import RTi.Util.IO.CommandStatusType;
+import RTi.Util.IO.CommandStatusUtil;
+import RTi.Util.IO.Prop;
+import RTi.Util.IO.PropList;
+import RTi.Util.Message.Message;
+import RTi.Util.Time.DateTime;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
+import cdss.app.tstool.datastore.TimeSeriesCatalogWhere;
+import riverside.datastore.DataStore;
+import riverside.datastore.DataStoreSubstitute;
+import rti.tscommandprocessor.commands.ts.TSID_Command;
+import rti.tscommandprocessor.core.TSCommandFactory;
+import rti.tscommandprocessor.core.TSCommandFileRunner;
+import rti.tscommandprocessor.core.TSCommandProcessor;
+
+/**
+ * HTTP server, started with --httpServer, that runs command files submitted by clients as asynchronous jobs
+ * (see UrlHandler for the API).  Similar to the daemon, plugins are loaded and datastores are opened once,
+ * and each job runs with a new command processor that shares the open datastores.
+ *
+ * Requests are handled with a virtual thread per request when running on Java 21 or later, and otherwise with a pool
+ * of request threads, so that requests that wait for datastores or slow clients do not block other clients.
+ * Jobs are run by a bounded pool of workers with a bounded queue, so that many clients can submit jobs
+ * without overloading the datastores.  A job that is submitted when the queue is full is rejected and the client should try again.
+ * Because many requests can wait at the same time, the number of concurrent datastore calls
+ * (running jobs and requests that read from datastores, see callDataStore()) is limited separately,
+ * and a request that cannot start a datastore call within the wait time is rejected.
+ * Bulk time series reads (see TSToolHttpBulkRead) are run by a small pool of read threads for each datastore,
+ * so that reads from one datastore are done in parallel without one bulk request using all of the datastore calls.
+ * Time series catalogs (see TSToolHttpCatalog) are kept for a short time after they are read,
+ * so that clients can page through a large catalog with one datastore query.
+ * Jobs are kept in memory after they finish, so that clients can get the status, log, and output files,
+ * and are removed after the job retention time, along with the job folder that is used for inline commands.
+ *
+ * The server listens on the loopback address by default because command files can run programs and write files.
+ * If a token is configured, clients must send it in the "Authorization: Bearer token" header,
+ * and the server does not start on other addresses unless a token is configured.
+ */
+public class TSToolHttpServer {
+
+	/**
+	 * Root path for the API.
+	 */
+	public static final String ROOT_PATH = "/tstool";
+
+	/**
+	 * Name of the folder in the user's system folder for job folders.
+	 */
+	public static final String JOBS_FOLDER_NAME = "http-jobs";
+
+	/**
+	 * Name of the command file that is written for inline commands, in the job folder.
+	 */
+	public static final String INLINE_COMMAND_FILE_NAME = "commands.tstool";
+
+	/**
+	 * Processor that holds the open datastores, shared by all jobs.
+	 */
+	private TSCommandProcessor warmProcessor = null;
+
+	/**
+	 * Processor properties from the command line, used as the base for each job.
+	 */
+	private PropList processorProps = null;
+
+	/**
+	 * Plugin command classes, passed to each command processor.
+	 */
+	@SuppressWarnings("rawtypes")
+	private List<Class> pluginCommandClassList = null;
+
+	/**
+	 * Datastore substitutes from the command line.
+	 */
+	private List<DataStoreSubstitute> datastoreSubstituteList = null;
+
+	/**
+	 * Address to listen on.
+	 */
+	private InetAddress address = InetAddress.getLoopbackAddress();
+
+	/**
+	 * Port to listen on.
+	 */
+	private int port = 8000;
+
+	/**
+	 * Number of workers that run jobs.
+	 */
+	private int workerCount = 1;
+
+	/**
+	 * Maximum number of jobs waiting for a worker.
+	 */
+	private int queueSize = 100;
+
+	/**
+	 * Number of threads that handle requests, if virtual threads are not used.
+	 */
+	private int requestThreadCount = 16;
+
+	/**
+	 * Whether to handle requests with virtual threads, if available.
+	 */
+	private boolean useVirtualThreads = true;
+
+	/**
+	 * Whether requests are being handled with virtual threads.
+	 */
+	private boolean virtualThreadsUsed = false;
+
+	/**
+	 * Maximum number of concurrent datastore calls.
+	 */
+	private int dataStoreConcurrency = 16;
+
+	/**
+	 * Permits for concurrent datastore calls, fair so that waiting calls run in order.
+	 */
+	private Semaphore dataStorePermits = new Semaphore(16, true);
+
+	/**
+	 * Time that a request waits to start a datastore call before it is rejected, milliseconds.
+	 */
+	private long dataStoreWaitMs = 60000L;
+
+	/**
+	 * Maximum number of concurrent bulk time series reads from each datastore.
+	 */
+	private int dataStoreReadConcurrency = 4;
+
+	/**
+	 * Pools that run bulk time series reads, by datastore read group (see getDataStoreReadGroup()).
+	 */
+	private Map<String,ThreadPoolExecutor> dataStoreReadPoolMap = new HashMap<>();
+
+	/**
+	 * Maximum number of time series catalogs to keep, 0 to not keep catalogs.
+	 */
+	private int catalogCacheSize = 20;
+
+	/**
+	 * Time to keep a time series catalog after it is read, milliseconds.
+	 */
+	private long catalogCacheMs = 300000L;
+
+	/**
+	 * Time series catalogs that have been read, by datastore name, data type, interval, and where strings,
+	 * in access order so that the least recently used catalog is removed when the cache is full.
+	 */
+	@SuppressWarnings("serial")
+	private Map<String,TSToolHttpCatalog> catalogCache = new LinkedHashMap<String,TSToolHttpCatalog>(16, 0.75f, true) {
+		protected boolean removeEldestEntry ( Map.Entry<String,TSToolHttpCatalog> eldest ) {
+			return size() > catalogCacheSize;
+		}
+	};
+
+	/**
+	 * Token that clients must provide, or null if not required.
+	 */
+	private String token = null;
+
+	/**
+	 * Time to keep jobs after they finish, milliseconds.
+	 */
+	private long jobRetentionMs = 3600000L;
+
+	/**
+	 * Folder for job folders.
+	 */
+	private File jobsFolder = null;
+
+	/**
+	 * Reloads datastores whose configuration files have changed, or null if reloading is not enabled.
+	 */
+	private DataStoreReloader dataStoreReloader = null;
+
+	/**
+	 * Jobs by job identifier, in the order submitted.
+	 */
+	private Map<String,TSToolHttpJob> jobMap = new LinkedHashMap<>();
+
+	/**
+	 * Count of jobs that have been submitted, used for job identifiers.
+	 */
+	private AtomicInteger jobCount = new AtomicInteger(0);
+
+	/**
+	 * Lock that is held for read by running jobs and datastore calls and for write when reloading datastores,
+	 * so that datastores are not replaced while jobs are using them.
+	 * The warm processor's datastore list is accessed while synchronized on the warm processor,
+	 * which is also held while reloading, so that the list can be read without waiting for running jobs.
+	 */
+	private ReentrantReadWriteLock dataStoreLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Workers that run jobs.
+	 */
+	private ThreadPoolExecutor workerPool = null;
+
+	/**
+	 * Latch that is released when the server should stop.
+	 */
+	private CountDownLatch stopLatch = new CountDownLatch(1);
+
+	/**
+	 * Construct the HTTP server.
+	 * @param session TSTool session, used to locate the jobs folder
+	 * @param warmProcessor processor with open datastores, shared by all jobs
+	 * @param processorProps processor properties from the command line
+	 * @param pluginCommandClassList plugin command classes
+	 * @param datastoreSubstituteList datastore substitutes from the command line
+	 * @param port port to listen on
+	 * @param workerCount number of workers that run jobs
+	 */
+	public TSToolHttpServer ( TSToolSession session, TSCommandProcessor warmProcessor, PropList processorProps,
+		@SuppressWarnings("rawtypes") List<Class> pluginCommandClassList,
+		List<DataStoreSubstitute> datastoreSubstituteList, int port, int workerCount ) {
+		this.warmProcessor = warmProcessor;
+		this.processorProps = processorProps;
+		this.pluginCommandClassList = pluginCommandClassList;
+		this.datastoreSubstituteList = datastoreSubstituteList;
+		this.port = port;
+		this.workerCount = Math.max(1, workerCount);
+		this.jobsFolder = new File ( session.getUserSystemFolder(), JOBS_FOLDER_NAME );
+	}
+
+	/**
+	 * Run a call that uses datastores, limiting the number of concurrent datastore calls
+	 * so that many waiting requests do not overload the databases and web services behind the datastores.
+	 * Datastores are not reloaded while the call runs, and the call waits for a reload that has started,
+	 * within the same wait time.
+	 * @param call call that uses datastores
+	 * @return the result of the call
+	 * @throws RejectedExecutionException if the call could not start within the datastore wait time
+	 * @throws Exception if the call throws an exception
+	 */
+	public <T> T callDataStore ( Callable<T> call ) throws Exception {
+		long start = System.currentTimeMillis();
+		if ( !this.dataStorePermits.tryAcquire(this.dataStoreWaitMs, TimeUnit.MILLISECONDS) ) {
+			throw new RejectedExecutionException ( "Timed out waiting for other datastore requests to finish - try again later." );
+		}
+		try {
+			long remainingMs = Math.max ( 0, this.dataStoreWaitMs - (System.currentTimeMillis() - start) );
+			if ( !this.dataStoreLock.readLock().tryLock(remainingMs, TimeUnit.MILLISECONDS) ) {
+				throw new RejectedExecutionException ( "Timed out waiting for datastores to be reloaded - try again later." );
+			}
+			try {
+				return call.call();
+			}
+			finally {
+				this.dataStoreLock.readLock().unlock();
+			}
+		}
+		finally {
+			this.dataStorePermits.release();
+		}
+	}
+
+	/**
+	 * Request that a job be canceled.
+	 * @param job job to cancel
+	 * @return true if the job was queued or running, false if it already finished
+	 */
+	public boolean cancelJob ( TSToolHttpJob job ) {
+		boolean canceled = job.cancel();
+		if ( canceled ) {
+			Message.printStatus ( 2, getClass().getSimpleName() + ".cancelJob", "Cancel requested for job " + job.getId() + "." );
+			job.addLogLine ( "Cancel requested." );
+		}
+		return canceled;
+	}
+
+	/**
+	 * Create the executor that handles requests, using a virtual thread per request if enabled and available
+	 * (Java 21 or later), and otherwise a pool of request threads.
+	 * @return the executor that handles requests
+	 */
+	private ExecutorService createRequestExecutor () {
+		String routine = getClass().getSimpleName() + ".createRequestExecutor";
+		if ( this.useVirtualThreads ) {
+			try {
+				// Use reflection so that TSTool can still be compiled and run with Java versions that do not have virtual threads.
+				Method method = Executors.class.getMethod ( "newVirtualThreadPerTaskExecutor" );
+				ExecutorService executor = (ExecutorService)method.invoke ( null );
+				this.virtualThreadsUsed = true;
+				return executor;
+			}
+			catch ( Exception e ) {
+				Message.printStatus ( 2, routine, "Virtual threads are not available in Java " + System.getProperty("java.version") +
+					" - using " + this.requestThreadCount + " request threads." );
+			}
+		}
+		this.virtualThreadsUsed = false;
+		return Executors.newFixedThreadPool ( this.requestThreadCount, new NamedThreadFactory("TSTool-http-request-") );
+	}
+
+	/**
+	 * Create a runner for a job or request, with a new processor that shares the warm processor's datastores.
+	 * @param commandFileFull full path to the command file, or null if the commands are added to the processor
+	 * @param commandText text of the commands that are added to the processor, used to open lazy datastores,
+	 * or null if a command file is used
+	 * @param propertyList processor properties from the request, in format Name==Value
+	 * @return the runner
+	 */
+	private TSCommandFileRunner createJobRunner ( String commandFileFull, String commandText, List<String> propertyList )
+		throws Exception {
+		// Processor properties for the job are the command line properties plus the request properties.
+		PropList runProps = new PropList("ProcessorProps");
+		for ( int i = 0; i < this.processorProps.size(); i++ ) {
+			runProps.set ( this.processorProps.elementAt(i) );
+		}
+		for ( String property : propertyList ) {
+			int pos = property.indexOf("==");
+			if ( pos > 0 ) {
+				Prop prop = new Prop ( property.substring(0,pos), property.substring(pos + 2) );
+				prop.setHowSet ( Prop.SET_AT_RUNTIME_BY_USER );
+				runProps.set ( prop );
+			}
+		}
+		// Open lazy datastores used by the commands, in the warm processor so they remain open for later jobs.
+		// This is not synchronized on the warm processor so that a slow open does not delay other requests
+		// (LazyDataStore synchronizes on the processor when it changes the datastores).
+		if ( commandFileFull != null ) {
+			TSToolMain.openLazyDataStoresReferencedByCommandFile ( this.warmProcessor, commandFileFull );
+		}
+		else {
+			TSToolMain.openLazyDataStoresReferencedByCommands ( this.warmProcessor, commandText );
+		}
+		synchronized ( this.warmProcessor ) {
+			TSCommandFileRunner runner = new TSCommandFileRunner ( runProps, this.pluginCommandClassList );
+			TSCommandProcessor processor = runner.getProcessor();
+			for ( DataStore dataStore : this.warmProcessor.getDataStores() ) {
+				processor.setPropContents ( "DataStore", dataStore );
+			}
+			Object hbdmiList = this.warmProcessor.getPropContents ( "HydroBaseDMIList" );
+			if ( hbdmiList != null ) {
+				processor.setPropContents ( "HydroBaseDMIList", hbdmiList );
+			}
+			processor.setDatastoreSubstituteList ( this.datastoreSubstituteList );
+			return runner;
+		}
+	}
+
+	/**
+	 * Delete a job folder and its contents.
+	 * @param jobFolder job folder to delete
+	 */
+	private void deleteJobFolder ( File jobFolder ) {
+		List<Path> pathList = new ArrayList<>();
+		try ( Stream<Path> paths = Files.walk(jobFolder.toPath()) ) {
+			Iterator<Path> it = paths.iterator();
+			while ( it.hasNext() ) {
+				pathList.add ( it.next() );
+			}
+		}
+		catch ( IOException e ) {
+			Message.printWarning ( 3, getClass().getSimpleName() + ".deleteJobFolder", "Error deleting job folder \"" +
+				jobFolder + "\" (" + e + ")." );
+		}
+		// Delete files before the folders that contain them.
+		Collections.sort ( pathList, Collections.reverseOrder() );
+		for ( Path path : pathList ) {
+			path.toFile().delete();
+		}
+	}
+
+	/**
+	 * Return an open datastore for reading a time series catalog, opening a lazy datastore if necessary.
+	 * This must be called in a datastore call (see callDataStore()) so that the datastore is not reloaded while it is used.
+	 * @param dataStoreName datastore name, ignoring case
+	 * @return the open datastore
+	 * @throws IllegalArgumentException if the datastore is not found or its catalog cannot be read
+	 * @throws IllegalStateException if a lazy datastore could not be opened
+	 */
+	private DataStore getCatalogDataStore ( String dataStoreName ) {
+		DataStore dataStore = null;
+		synchronized ( this.warmProcessor ) {
+			for ( DataStore ds : this.warmProcessor.getDataStores() ) {
+				if ( ds.getName().equalsIgnoreCase(dataStoreName) ) {
+					dataStore = ds;
+					break;
+				}
+			}
+		}
+		if ( dataStore instanceof LazyDataStore ) {
+			// Open in the warm processor so the datastore remains open for later requests and jobs,
+			// not synchronized on the warm processor so that a slow open does not delay other requests.
+			dataStore = ((LazyDataStore)dataStore).open();
+			if ( dataStore == null ) {
+				throw new IllegalStateException ( "Datastore \"" + dataStoreName + "\" could not be opened - see the log file." );
+			}
+		}
+		if ( dataStore == null ) {
+			throw new IllegalArgumentException ( "Datastore \"" + dataStoreName + "\" was not found." );
+		}
+		if ( !TimeSeriesCatalogService.getInstance().isCatalogSupported(dataStore) ) {
+			throw new IllegalArgumentException ( "Reading the time series catalog for datastore \"" + dataStore.getName() +
+				"\" is not supported." );
+		}
+		return dataStore;
+	}
+
+	/**
+	 * Return the datastores, for the JSON response, indicating whether the time series catalog can be read.
+	 * Lazy datastores that have not been opened are listed with "CatalogSupported" null because the datastore class
+	 * is not known until the datastore is opened.
+	 * @return the datastores, each with "Name", "Type", "Description", and "CatalogSupported"
+	 */
+	public List<Map<String,Object>> getCatalogDataStores () {
+		List<Map<String,Object>> list = new ArrayList<>();
+		TimeSeriesCatalogService service = TimeSeriesCatalogService.getInstance();
+		synchronized ( this.warmProcessor ) {
+			for ( DataStore dataStore : this.warmProcessor.getDataStores() ) {
+				Map<String,Object> map = new LinkedHashMap<>();
+				map.put("Name", dataStore.getName());
+				if ( dataStore instanceof LazyDataStore ) {
+					map.put("Type", ((LazyDataStore)dataStore).getDataStoreType());
+					map.put("Description", dataStore.getDescription());
+					map.put("CatalogSupported", null);
+				}
+				else {
+					map.put("Type", dataStore.getClass().getSimpleName());
+					map.put("Description", dataStore.getDescription());
+					map.put("CatalogSupported", service.isCatalogSupported(dataStore));
+				}
+				list.add ( map );
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Return the maximum number of concurrent bulk time series reads from each datastore.
+	 * @return the maximum number of concurrent bulk time series reads from each datastore
+	 */
+	public int getDataStoreReadConcurrency () {
+		return this.dataStoreReadConcurrency;
+	}
+
+	/**
+	 * Return the datastore read group for a time series identifier, used to read time series in parallel by datastore.
+	 * The group is the open datastore name from the identifier (Loc.Source.Type.Interval~DataStoreName).
+	 * Identifiers that do not use an open datastore, for example ~InputType~InputName, are in one group,
+	 * so that clients cannot create a read pool for any name.
+	 * @param tsid time series identifier
+	 * @return the datastore read group, the datastore name or an empty string for other identifiers
+	 */
+	public String getDataStoreReadGroup ( String tsid ) {
+		int pos = tsid.indexOf('~');
+		if ( pos < 0 ) {
+			return "";
+		}
+		String dataStoreName = tsid.substring(pos + 1);
+		pos = dataStoreName.indexOf('~');
+		if ( pos >= 0 ) {
+			dataStoreName = dataStoreName.substring(0, pos);
+		}
+		synchronized ( this.warmProcessor ) {
+			for ( DataStore dataStore : this.warmProcessor.getDataStores() ) {
+				if ( dataStore.getName().equalsIgnoreCase(dataStoreName) ) {
+					return dataStore.getName();
+				}
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * Return a job.
+	 * @param jobId job identifier
+	 * @return the job, or null if not found (or removed after the retention time)
+	 */
+	public TSToolHttpJob getJob ( String jobId ) {
+		synchronized ( this.jobMap ) {
+			return this.jobMap.get ( jobId );
+		}
+	}
+
+	/**
+	 * Return the jobs, in the order submitted.
+	 * @return the jobs
+	 */
+	public List<TSToolHttpJob> getJobs () {
+		removeExpiredJobs();
+		synchronized ( this.jobMap ) {
+			return new ArrayList<>(this.jobMap.values());
+		}
+	}
+
+	/**
+	 * Return the server status, for the JSON response.
+	 * @return the server status
+	 */
+	public Map<String,Object> getStatus () {
+		Map<String,Object> map = new LinkedHashMap<>();
+		map.put("RequestThreads", this.virtualThreadsUsed ? "virtual" : ("" + this.requestThreadCount));
+		map.put("Workers", this.workerCount);
+		map.put("JobsRunning", this.workerPool.getActiveCount());
+		map.put("JobsQueued", this.workerPool.getQueue().size());
+		map.put("QueueSize", this.queueSize);
+		map.put("JobsSubmitted", this.jobCount.get());
+		synchronized ( this.jobMap ) {
+			map.put("JobsRetained", this.jobMap.size());
+		}
+		map.put("DataStoreConcurrency", this.dataStoreConcurrency);
+		map.put("DataStoreCallsActive", this.dataStoreConcurrency - this.dataStorePermits.availablePermits());
+		map.put("DataStoreCallsWaiting", this.dataStorePermits.getQueueLength());
+		map.put("DataStoreReadConcurrency", this.dataStoreReadConcurrency);
+		int readsQueued = 0;
+		synchronized ( this.dataStoreReadPoolMap ) {
+			for ( ThreadPoolExecutor pool : this.dataStoreReadPoolMap.values() ) {
+				readsQueued += pool.getQueue().size();
+			}
+		}
+		map.put("DataStoreReadsQueued", readsQueued);
+		synchronized ( this.catalogCache ) {
+			map.put("CatalogsCached", this.catalogCache.size());
+		}
+		map.put("DataStoreReloadEnabled", this.dataStoreReloader != null);
+		return map;
+	}
+
+	/**
+	 * Return the token that clients must provide.
+	 * @return the token, or null if not required
+	 */
+	public String getToken () {
+		return this.token;
+	}
+
+	/**
+	 * Read a time series using the open datastores, with a new processor that runs a TSID command,
+	 * the same as a TSID in a command file, so that datastore and ~InputType~InputName identifiers are handled the same way.
+	 * The read is a datastore call, see callDataStore().
+	 * @param tsid time series identifier, for example Loc.Source.Type.Interval~DataStoreName
+	 * @param readStart start of the period to read, or null to read the full period
+	 * @param readEnd end of the period to read, or null to read the full period
+	 * @return the time series
+	 * @throws IllegalArgumentException if the identifier is not valid or the time series cannot be read
+	 * @throws RejectedExecutionException if the read could not start within the datastore wait time
+	 */
+	public TS readTimeSeries ( final String tsid, final DateTime readStart, final DateTime readEnd ) throws Exception {
+		// Only allow a TSID, so that other commands cannot be run.
+		if ( (tsid.indexOf('\n') >= 0) || (tsid.indexOf('\r') >= 0) ) {
+			throw new IllegalArgumentException ( "\"" + tsid + "\" is not a time series identifier." );
+		}
+		Command command = null;
+		try {
+			command = new TSCommandFactory(this.pluginCommandClassList).newCommand ( tsid );
+		}
+		catch ( Exception e ) {
+			// Handled below.
+		}
+		final Command tsidCommand = command;
+		if ( !(tsidCommand instanceof TSID_Command) ) {
+			throw new IllegalArgumentException ( "\"" + tsid + "\" is not a time series identifier." );
+		}
+		return callDataStore ( new Callable<TS>() {
+			@SuppressWarnings("unchecked")
+			public TS call () throws Exception {
+				TSCommandFileRunner runner = createJobRunner ( null, tsid, new ArrayList<String>() );
+				TSCommandProcessor processor = runner.getProcessor();
+				if ( (readStart != null) || (readEnd != null) ) {
+					String periodCommandString = "SetInputPeriod(" +
+						((readStart == null) ? "" : ("InputStart=\"" + readStart + "\"")) +
+						(((readStart != null) && (readEnd != null)) ? "," : "") +
+						((readEnd == null) ? "" : ("InputEnd=\"" + readEnd + "\"")) + ")";
+					Command periodCommand = new TSCommandFactory(pluginCommandClassList).newCommand ( periodCommandString );
+					periodCommand.initializeCommand ( periodCommandString, processor, true );
+					processor.addCommand ( periodCommand );
+				}
+				tsidCommand.initializeCommand ( tsid, processor, true );
+				processor.addCommand ( tsidCommand );
+				try {
+					// The following will throw an exception if there are any errors running.
+					runner.runCommands();
+				}
+				catch ( Exception e ) {
+					List<CommandLogRecord> logRecordList = CommandStatusUtil.getLogRecordList ( processor.getCommands(),
+						new CommandPhaseType[] { CommandPhaseType.RUN }, new CommandStatusType[] { CommandStatusType.FAILURE } );
+					throw new IllegalArgumentException ( "Unable to read time series \"" + tsid + "\" (" +
+						(logRecordList.isEmpty() ? e.toString() : logRecordList.get(0).getProblem().replace('\n', ' ')) + ")." );
+				}
+				List<TS> tslist = (List<TS>)processor.getPropContents ( "TSResultsList" );
+				if ( (tslist == null) || tslist.isEmpty() ) {
+					throw new IllegalArgumentException ( "Unable to read time series \"" + tsid + "\"." );
+				}
+				return tslist.get(0);
+			}
+		});
+	}
+
+	/**
+	 * Read a time series catalog (the list of available time series) for a datastore,
+	 * as datastore metadata rows (see TimeSeriesCatalogService).
+	 * The filters are set in the datastore's input filter panel on the calling thread (see TSToolHttpCatalogFilter).
+	 * The catalog is kept for the catalog cache time so that clients can request more pages without another datastore query.
+	 * The read is a datastore call, see callDataStore().
+	 * @param dataStoreName datastore name
+	 * @param dataType data type, as shown in the UI data type choices
+	 * @param interval interval (time step), as shown in the UI time step choices
+	 * @param whereList filters that are applied by the datastore query, the same as the WhereN command parameters,
+	 * in format "Item;Operator;Value"
+	 * @param refresh if true, read the catalog even if it was read within the catalog cache time
+	 * @return the catalog
+	 * @throws IllegalArgumentException if the datastore is not found, its catalog cannot be read, or a filter is not valid
+	 * @throws RejectedExecutionException if the read could not start within the datastore wait time
+	 */
+	public TSToolHttpCatalog readTimeSeriesCatalog ( final String dataStoreName, final String dataType, final String interval,
+		final List<String> whereList, boolean refresh ) throws Exception {
+		String routine = getClass().getSimpleName() + ".readTimeSeriesCatalog";
+		String key = dataStoreName.toUpperCase() + "|" + dataType + "|" + interval + "|" + String.join("|", whereList);
+		if ( !refresh ) {
+			synchronized ( this.catalogCache ) {
+				TSToolHttpCatalog catalog = this.catalogCache.get ( key );
+				if ( (catalog != null) && ((System.currentTimeMillis() - catalog.getReadTime()) <= this.catalogCacheMs) ) {
+					return catalog;
+				}
+			}
+		}
+		// Check the filters before waiting for the datastore.
+		final List<TimeSeriesCatalogWhere> catalogWhereList = TimeSeriesCatalogWhere.parseList ( whereList );
+		// Find the datastore in the datastore call so that it is not reloaded while the catalog is read.
+		TSToolHttpCatalog catalog = callDataStore ( new Callable<TSToolHttpCatalog>() {
+			public TSToolHttpCatalog call () throws Exception {
+				DataStore dataStore = getCatalogDataStore ( dataStoreName );
+				InputFilter_JPanel filterPanel =
+					TSToolHttpCatalogFilter.createInputFilterPanel ( dataStore, dataType, interval, catalogWhereList );
+				return new TSToolHttpCatalog (
+					TimeSeriesCatalogService.getInstance().readTimeSeriesCatalog(dataStore, dataType, interval, filterPanel) );
+			}
+		});
+		Message.printStatus ( 2, routine, "Read " + catalog.getRowCount() + " catalog rows for datastore \"" +
+			catalog.getDataStoreName() + "\" data type \"" + dataType + "\" interval \"" + interval + "\"." );
+		synchronized ( this.catalogCache ) {
+			this.catalogCache.put ( key, catalog );
+		}
+		return catalog;
+	}
+
+	/**
+	 * Reload datastores whose configuration files have changed,
+	 * after running jobs complete and before other jobs are started.
+	 * @return the reload summary
+	 * @throws IllegalStateException if reloading datastores is not enabled
+	 */
+	public String reloadDataStores () {
+		String routine = getClass().getSimpleName() + ".reloadDataStores";
+		if ( this.dataStoreReloader == null ) {
+			throw new IllegalStateException ( "Reloading datastores is not enabled." );
+		}
+		Message.printStatus ( 2, routine, "Reloading datastores at client request, after running jobs complete." );
+		this.dataStoreLock.writeLock().lock();
+		try {
+			String summary;
+			// Also synchronize on the warm processor so that its datastore list is not read while it is changed.
+			synchronized ( this.warmProcessor ) {
+				summary = this.dataStoreReloader.reload();
+			}
+			// Catalogs for reloaded datastores may be out of date.
+			synchronized ( this.catalogCache ) {
+				this.catalogCache.clear();
+			}
+			Message.printStatus ( 1, routine, summary );
+			return summary;
+		}
+		finally {
+			this.dataStoreLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove jobs that finished more than the retention time ago, and their job folders.
+	 */
+	private void removeExpiredJobs () {
+		long now = System.currentTimeMillis();
+		List<TSToolHttpJob> removedJobs = new ArrayList<>();
+		synchronized ( this.jobMap ) {
+			Iterator<TSToolHttpJob> it = this.jobMap.values().iterator();
+			while ( it.hasNext() ) {
+				TSToolHttpJob job = it.next();
+				if ( job.isFinished() && ((now - job.getFinishTime()) > this.jobRetentionMs) ) {
+					it.remove();
+					removedJobs.add ( job );
+				}
+			}
+		}
+		for ( TSToolHttpJob job : removedJobs ) {
+			if ( job.getJobFolder() != null ) {
+				deleteJobFolder ( job.getJobFolder() );
+			}
+		}
+	}
+
+	/**
+	 * Request that the server stop, after which run() returns when running jobs complete.
+	 */
+	public void requestStop () {
+		Message.printStatus ( 2, getClass().getSimpleName() + ".requestStop", "Stopping HTTP server at client request." );
+		this.stopLatch.countDown();
+	}
+
+	/**
+	 * Run the server, which returns when a stop request is received and running jobs complete.
+	 * Queued jobs that have not started are canceled.
+	 * @throws IllegalStateException if the address is not a loopback address and a token is not configured,
+	 * or the number of workers is not less than the number of concurrent datastore calls
+	 * @throws IOException if the server cannot listen on the port
+	 * @throws InterruptedException if interrupted while waiting for a stop request
+	 */
+	public void run () throws IOException, InterruptedException {
+		String routine = getClass().getSimpleName() + ".run";
+		if ( !this.address.isLoopbackAddress() && (this.token == null) ) {
+			throw new IllegalStateException ( "A token (HttpServerToken) must be configured to listen on address " +
+				this.address.getHostAddress() + ", because clients can run programs and write files." );
+		}
+		if ( this.workerCount >= this.dataStoreConcurrency ) {
+			// Each running job is a datastore call so requests that read from datastores would be rejected.
+			throw new IllegalStateException ( "The number of workers (HttpServerWorkers=" + this.workerCount +
+				") must be less than the number of concurrent datastore calls (HttpServerDataStoreConcurrency=" +
+				this.dataStoreConcurrency + ") so that requests can read from datastores while all workers are running jobs." );
+		}
+		if ( !this.jobsFolder.exists() && !this.jobsFolder.mkdirs() ) {
+			throw new IOException ( "Unable to create HTTP server jobs folder \"" + this.jobsFolder + "\"." );
+		}
+		this.workerPool = new ThreadPoolExecutor ( this.workerCount, this.workerCount, 0L, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(this.queueSize), new NamedThreadFactory("TSTool-http-worker-") );
+		ExecutorService requestPool = createRequestExecutor();
+		HttpServer server = HttpServer.create ( new InetSocketAddress(this.address, this.port), 0 );
+		server.createContext ( ROOT_PATH, new UrlHandler(this) );
+		server.setExecutor ( requestPool );
+		server.start();
+		Message.printStatus ( 1, routine, "TSTool HTTP server is listening on http://" + this.address.getHostAddress() + ":" +
+			server.getAddress().getPort() + ROOT_PATH + " with " + this.workerCount + " workers, " +
+			(this.virtualThreadsUsed ? "virtual request threads" : (this.requestThreadCount + " request threads")) +
+			", and " + this.dataStoreConcurrency + " concurrent datastore calls" +
+			((this.token == null) ? "" : " (token is required)") + "." );
+		try {
+			this.stopLatch.await();
+		}
+		finally {
+			// Stop accepting requests, allowing a short time for the stop response to be sent.
+			server.stop ( 1 );
+			requestPool.shutdown();
+			// Reads that are queued are allowed to run so that bulk requests receive a result for each time series.
+			synchronized ( this.dataStoreReadPoolMap ) {
+				for ( ThreadPoolExecutor pool : this.dataStoreReadPoolMap.values() ) {
+					pool.shutdown();
+				}
+				this.dataStoreReadPoolMap.clear();
+			}
+			// Cancel queued jobs so that clients see that they finished.
+			List<Runnable> notStarted = new ArrayList<>();
+			this.workerPool.getQueue().drainTo ( notStarted );
+			for ( Runnable r : notStarted ) {
+				TSToolHttpJob job = ((JobTask)r).getJob();
+				job.addLogLine ( "Canceled because the server is stopping." );
+				job.setFinished ( 1, null );
+			}
+			if ( !notStarted.isEmpty() ) {
+				Message.printStatus ( 1, routine, "Canceled " + notStarted.size() + " queued jobs." );
+			}
+			// Running jobs are allowed to finish, rather than being interrupted in the middle of writing output.
+			this.workerPool.shutdown();
+			this.workerPool.awaitTermination ( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	/**
+	 * Run a job, similar to batch mode, saving the log and output files in the job.
+	 * @param job job to run
+	 */
+	private void runJob ( final TSToolHttpJob job ) {
+		String routine = getClass().getSimpleName() + "[" + Thread.currentThread().getName() + "].runJob";
+		String commandFileFull = job.getCommandFile().getPath();
+		if ( job.isCancelRequested() ) {
+			job.addLogLine ( "Canceled before starting." );
+			job.setFinished ( 1, null );
+			return;
+		}
+		Message.printStatus ( 2, routine, "Running job " + job.getId() + " command file \"" + commandFileFull + "\"." );
+		int status = 0;
+		TSCommandProcessor processor = null;
+		// Count the job as a datastore call while it runs, because commands can use datastores at any time.
+		try {
+			this.dataStorePermits.acquire();
+		}
+		catch ( InterruptedException e ) {
+			// The server is stopping.
+			job.addLogLine ( "Canceled because the server is stopping." );
+			job.setFinished ( 1, null );
+			return;
+		}
+		// Hold the datastore lock so that datastores are not reloaded while the job is running.
+		this.dataStoreLock.readLock().lock();
+		try {
+			// Use a new processor for each job so that results from other jobs are not visible,
+			// but share the datastores that have already been opened.
+			TSCommandFileRunner runner = createJobRunner ( commandFileFull, null, job.getPropertyList() );
+			processor = runner.getProcessor();
+			job.setStarted ( processor );
+			processor.addCommandProcessorListener ( new CommandProcessorListener() {
+				public void commandCanceled ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+					job.addLogLine ( "Canceled command " + (icommand + 1) + " of " + ncommand + ": " + command );
+				}
+				public void commandCompleted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+					job.addLogLine ( "Completed command " + (icommand + 1) + " of " + ncommand + ": " + command );
+				}
+				public void commandProgress ( int istep, int nstep, Command command, float percentComplete, String message ) {
+				}
+				public void commandStarted ( int icommand, int ncommand, Command command, float percentComplete, String message ) {
+					job.addLogLine ( "Started command " + (icommand + 1) + " of " + ncommand + ": " + command );
+				}
+			});
+			job.addLogLine ( "Running command file \"" + commandFileFull + "\"." );
+			runner.readCommandFile ( commandFileFull, false );
+			// Set the working directory for the processor rather than the global working directory,
+			// which would be changed by other jobs that run at the same time.
+			if ( job.getWorkingDir() != null ) {
+				processor.setPropContents ( "InitialWorkingDir", job.getWorkingDir() );
+			}
+			// The following will throw an exception if there are any errors running.
+			runner.runCommands();
+			if ( job.isCancelRequested() ) {
+				job.addLogLine ( "Canceled at client request." );
+				status = 1;
+			}
+		}
+		catch ( Throwable e ) {
+			// Catch all errors, including Error, so that the worker continues with other jobs.
+			Message.printWarning ( 2, routine, "Error running job " + job.getId() + " command file \"" + commandFileFull + "\" (" + e + ")." );
+			Message.printWarning ( 3, routine, e );
+			job.addLogLine ( "Error running command file (" + e + ")." );
+			status = 1;
+		}
+		finally {
+			this.dataStoreLock.readLock().unlock();
+			this.dataStorePermits.release();
+		}
+		List<File> outputFileList = null;
+		if ( processor != null ) {
+			writeJobProblems ( job, processor );
+			try {
+				@SuppressWarnings("unchecked")
+				List<File> o = (List<File>)processor.getPropContents("OutputFileList");
+				outputFileList = o;
+			}
+			catch ( Exception e ) {
+				// No output files.
+			}
+		}
+		job.setFinished ( status, outputFileList );
+		job.addLogLine ( "Finished with status " + status + "." );
+		Message.printStatus ( 2, routine, "Finished job " + job.getId() + " with status " + status + "." );
+	}
+
+	/**
+	 * Set the address to listen on.
+	 * @param address address to listen on, for example 0.0.0.0 for all interfaces (the default is the loopback address)
+	 */
+	public void setAddress ( InetAddress address ) {
+		this.address = address;
+	}
+
+	/**
+	 * Set the time series catalog cache, used to page through catalogs without reading again.
+	 * @param catalogCacheSize maximum number of catalogs to keep (default is 20), 0 to not keep catalogs
+	 * @param catalogCacheMs time to keep a catalog after it is read, milliseconds (default is 5 minutes)
+	 */
+	public void setCatalogCache ( int catalogCacheSize, long catalogCacheMs ) {
+		this.catalogCacheSize = Math.max(0, catalogCacheSize);
+		this.catalogCacheMs = Math.max(0, catalogCacheMs);
+	}
+
+	/**
+	 * Set the maximum number of concurrent datastore calls, by running jobs and requests that read from datastores.
+	 * @param dataStoreConcurrency maximum number of concurrent datastore calls (default is 16),
+	 * which must be greater than the number of workers because each running job is a datastore call
+	 * @param dataStoreWaitMs time that a request waits to start a datastore call before it is rejected,
+	 * milliseconds (default is 60 seconds)
+	 */
+	public void setDataStoreConcurrency ( int dataStoreConcurrency, long dataStoreWaitMs ) {
+		this.dataStoreConcurrency = Math.max(1, dataStoreConcurrency);
+		this.dataStorePermits = new Semaphore ( this.dataStoreConcurrency, true );
+		this.dataStoreWaitMs = Math.max(0, dataStoreWaitMs);
+	}
+
+	/**
+	 * Set the maximum number of concurrent bulk time series reads from each datastore.
+	 * Each read is also a datastore call, limited by the datastore concurrency.
+	 * @param dataStoreReadConcurrency maximum number of concurrent bulk reads from each datastore (default is 4)
+	 */
+	public void setDataStoreReadConcurrency ( int dataStoreReadConcurrency ) {
+		this.dataStoreReadConcurrency = Math.max(1, dataStoreReadConcurrency);
+	}
+
+	/**
+	 * Set the datastore reloader, used for datastore reload requests.
+	 * @param dataStoreReloader datastore reloader, or null to not allow reloading
+	 */
+	public void setDataStoreReloader ( DataStoreReloader dataStoreReloader ) {
+		this.dataStoreReloader = dataStoreReloader;
+	}
+
+	/**
+	 * Set the time to keep jobs after they finish.
+	 * @param jobRetentionMs job retention time in milliseconds (default is one hour)
+	 */
+	public void setJobRetention ( long jobRetentionMs ) {
+		this.jobRetentionMs = Math.max(0, jobRetentionMs);
+	}
+
+	/**
+	 * Set the maximum number of jobs waiting for a worker.
+	 * @param queueSize maximum number of queued jobs (default is 100)
+	 */
+	public void setQueueSize ( int queueSize ) {
+		this.queueSize = Math.max(1, queueSize);
+	}
+
+	/**
+	 * Set the number of threads that handle requests, if virtual threads are not used.
+	 * @param requestThreadCount number of request threads (default is 16)
+	 */
+	public void setRequestThreads ( int requestThreadCount ) {
+		this.requestThreadCount = Math.max(1, requestThreadCount);
+	}
+
+	/**
+	 * Set the token that clients must provide.
+	 * @param token token, or null or empty to not require a token (the default)
+	 */
+	public void setToken ( String token ) {
+		this.token = ((token == null) || token.isEmpty()) ? null : token;
+	}
+
+	/**
+	 * Set whether to handle requests with virtual threads, if available (Java 21 or later).
+	 * @param useVirtualThreads true to use virtual threads if available (the default), false to use a pool of request threads
+	 */
+	public void setVirtualThreads ( boolean useVirtualThreads ) {
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
+	/**
+	 * Submit a bulk time series read to the read pool for a datastore read group,
+	 * which runs at most the datastore read concurrency reads from the datastore at a time, for all requests.
+	 * Idle read threads are stopped so that pools for datastores that are not used do not hold threads.
+	 * @param group datastore read group, from getDataStoreReadGroup()
+	 * @param read read to run
+	 * @return the future for the read, used to cancel
+	 * @throws RejectedExecutionException if the server is stopping
+	 */
+	public Future<?> submitDataStoreRead ( String group, Runnable read ) {
+		ThreadPoolExecutor pool;
+		synchronized ( this.dataStoreReadPoolMap ) {
+			if ( this.stopLatch.getCount() == 0 ) {
+				throw new RejectedExecutionException ( "The server is stopping." );
+			}
+			pool = this.dataStoreReadPoolMap.get ( group );
+			if ( pool == null ) {
+				pool = new ThreadPoolExecutor ( this.dataStoreReadConcurrency, this.dataStoreReadConcurrency, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new NamedThreadFactory("TSTool-http-read-" + (group.isEmpty() ? "other" : group) + "-") );
+				pool.allowCoreThreadTimeOut ( true );
+				this.dataStoreReadPoolMap.put ( group, pool );
+			}
+		}
+		return pool.submit ( read );
+	}
+
+	/**
+	 * Submit a job to run a command file.
+	 * @param commandFile command file to run, or null if inline commands are provided
+	 * @param commands inline commands, or null if a command file is provided
+	 * @param workingDir working directory for the command file, or null to use the command file folder
+	 * (for inline commands, the job folder)
+	 * @param propertyList processor properties, in format Name==Value
+	 * @return the job
+	 * @throws IllegalArgumentException if the request is invalid
+	 * @throws RejectedExecutionException if the job queue is full
+	 * @throws IOException if the inline commands cannot be saved
+	 */
+	public TSToolHttpJob submitJob ( String commandFile, String commands, String workingDir, List<String> propertyList )
+		throws IOException {
+		String routine = getClass().getSimpleName() + ".submitJob";
+		removeExpiredJobs();
+		String jobId = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + this.jobCount.incrementAndGet();
+		File jobFolder = null;
+		File file;
+		if ( (commands != null) && !commands.trim().isEmpty() ) {
+			if ( (commandFile != null) && !commandFile.isEmpty() ) {
+				throw new IllegalArgumentException ( "Specify a command file or inline commands, not both." );
+			}
+			// Save the inline commands in the job folder, which is also the default working directory.
+			jobFolder = new File ( this.jobsFolder, jobId );
+			if ( !jobFolder.mkdirs() ) {
+				throw new IOException ( "Unable to create job folder \"" + jobFolder + "\"." );
+			}
+			file = new File ( jobFolder, INLINE_COMMAND_FILE_NAME );
+			Files.write ( file.toPath(), commands.getBytes(StandardCharsets.UTF_8) );
+			if ( workingDir == null ) {
+				workingDir = jobFolder.getPath();
+			}
+		}
+		else if ( (commandFile != null) && !commandFile.isEmpty() ) {
+			// Resolve the command file relative to the working directory.
+			file = new File ( commandFile );
+			if ( !file.isAbsolute() ) {
+				if ( workingDir == null ) {
+					throw new IllegalArgumentException ( "The command file path must be absolute if a working directory is not specified." );
+				}
+				file = new File ( workingDir, commandFile );
+			}
+			file = file.getCanonicalFile();
+			if ( !file.isFile() ) {
+				throw new IllegalArgumentException ( "Command file \"" + file + "\" does not exist." );
+			}
+		}
+		else {
+			throw new IllegalArgumentException ( "No command file or inline commands were specified." );
+		}
+		TSToolHttpJob job = new TSToolHttpJob ( jobId, file, workingDir, jobFolder, propertyList );
+		job.addLogLine ( "Queued command file \"" + file + "\"." );
+		synchronized ( this.jobMap ) {
+			this.jobMap.put ( jobId, job );
+		}
+		try {
+			this.workerPool.execute ( new JobTask(job) );
+		}
+		catch ( RejectedExecutionException e ) {
+			synchronized ( this.jobMap ) {
+				this.jobMap.remove ( jobId );
+			}
+			if ( jobFolder != null ) {
+				deleteJobFolder ( jobFolder );
+			}
+			throw new RejectedExecutionException ( "The job queue is full - try again later." );
+		}
+		Message.printStatus ( 2, routine, "Queued job " + jobId + " command file \"" + file + "\"." );
+		return job;
+	}
+
+	/**
+	 * Add the command failures and warnings to the job log.
+	 * @param job job that ran
+	 * @param processor processor that ran the commands
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void writeJobProblems ( TSToolHttpJob job, TSCommandProcessor processor ) {
+		List commands = processor.getCommands();
+		CommandPhaseType [] commandPhases = { CommandPhaseType.RUN };
+		CommandStatusType [] statusTypes = { CommandStatusType.FAILURE, CommandStatusType.WARNING };
+		List<CommandLogRecord> logRecordList = CommandStatusUtil.getLogRecordList ( commands, commandPhases, statusTypes );
+		for ( CommandLogRecord logRecord : logRecordList ) {
+			job.addLogLine ( logRecord.getSeverity() + ": " + logRecord.getProblem().replace('\n', ' ') );
+		}
+		job.addLogLine ( "There were " + logRecordList.size() + " failures and warnings processing " + commands.size() + " commands." );
+	}
+
+	/**
+	 * Task that runs a job in a worker, which provides the job so that queued jobs can be canceled when the server stops.
+	 */
+	private class JobTask implements Runnable {
+
+		/**
+		 * Job to run.
+		 */
+		private TSToolHttpJob job;
+
+		/**
+		 * Constructor.
+		 * @param job job to run
+		 */
+		private JobTask ( TSToolHttpJob job ) {
+			this.job = job;
+		}
+
+		/**
+		 * Return the job to run.
+		 * @return the job to run
+		 */
+		private TSToolHttpJob getJob () {
+			return this.job;
+		}
+
+		public void run () {
+			runJob ( this.job );
+		}
+
+	}
+
+	/**
+	 * Thread factory that names threads so that they can be identified in the log and thread dumps.
+	 */
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		/**
+		 * Thread name prefix, to which the thread number is appended.
+		 */
+		private String prefix;
+
+		/**
+		 * Count of threads that have been created.
+		 */
+		private AtomicInteger count = new AtomicInteger(0);
+
+		/**
+		 * Constructor.
+		 * @param prefix thread name prefix
+		 */
+		private NamedThreadFactory ( String prefix ) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread ( Runnable r ) {
+			return new Thread ( r, this.prefix + this.count.incrementAndGet() );
+		}
+
+	}
+
+}
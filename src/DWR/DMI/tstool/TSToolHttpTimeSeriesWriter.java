@@ -0,0 +1,360 @@
+// TSToolHttpTimeSeriesWriter - write time series to an HTTP response as the values are formatted
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+
+import RTi.TS.DateValueTS;
+import RTi.TS.TS;
+import RTi.TS.TSData;
+import RTi.TS.TSIterator;
+import RTi.Util.Time.DateTime;
+
+/**
+ * Write time series to an HTTP response (see UrlHandler), formatting and writing one value at a time
+ * so that the response is streamed to the client with chunked transfer encoding
+ * rather than being built in memory, which matters for long periods of small-interval data.
+ * The formats are:
+ * <ul>
+ * <li>CSV - columns TSID,DateTime,Value,Flag with a row for each value, time series one after the other</li>
+ * <li>DateValue - TSTool DateValue file, with a column for each time series,
+ *     which requires that all the time series are read before writing</li>
+ * <li>JSON - {"TimeSeries": [{"TSID": ..., "Data": [{"DateTime": ..., "Value": ..., "Flag": ...}, ...]}, ...]}</li>
+ * <li>NDJSON - newline-delimited JSON, with each time series as a JSON object on one line,
+ *     so that clients can process each time series as soon as it is received</li>
+ * </ul>
+ * Missing values are written as an empty CSV value or JSON null.
+ * Because the response status has already been sent, an error reading a time series after the first one is written
+ * into the response (a "# Error" comment line, or a JSON object with "TSID" and "Error").
+ */
+public class TSToolHttpTimeSeriesWriter {
+
+	/**
+	 * CSV format.
+	 */
+	public static final String FORMAT_CSV = "CSV";
+
+	/**
+	 * DateValue format.
+	 */
+	public static final String FORMAT_DATEVALUE = "DateValue";
+
+	/**
+	 * JSON format.
+	 */
+	public static final String FORMAT_JSON = "JSON";
+
+	/**
+	 * NDJSON (newline-delimited JSON) format.
+	 */
+	public static final String FORMAT_NDJSON = "NDJSON";
+
+	/**
+	 * Output format, see FORMAT_*.
+	 */
+	private String format;
+
+	/**
+	 * Writer for the response, buffered so that the response is sent in chunks of several values.
+	 */
+	private Writer writer;
+
+	/**
+	 * JSON generator for the response, for JSON format.
+	 */
+	private JsonGenerator json = null;
+
+	/**
+	 * JSON output context between time series (inside the "TimeSeries" array for JSON format, or the root for NDJSON format),
+	 * used to end a time series that was partly written when an error occurs.
+	 */
+	private JsonStreamContext jsonBetweenContext = null;
+
+	/**
+	 * Constructor, which starts the response.
+	 * @param out output stream for the response body
+	 * @param format output format, see FORMAT_*
+	 * @throws IOException if the response cannot be written
+	 */
+	public TSToolHttpTimeSeriesWriter ( OutputStream out, String format ) throws IOException {
+		this.format = format;
+		this.writer = new BufferedWriter ( new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536 );
+		if ( this.format.equals(FORMAT_JSON) ) {
+			this.json = new JsonFactory().createGenerator ( this.writer );
+			this.json.writeStartObject();
+			this.json.writeArrayFieldStart ( "TimeSeries" );
+		}
+		else if ( this.format.equals(FORMAT_NDJSON) ) {
+			this.json = new JsonFactory().createGenerator ( this.writer );
+			// Each time series is a root value on its own line, see endObject().
+			this.json.setRootValueSeparator ( null );
+		}
+		if ( this.json != null ) {
+			this.jsonBetweenContext = this.json.getOutputContext();
+		}
+		else if ( this.format.equals(FORMAT_CSV) ) {
+			this.writer.write ( "TSID,DateTime,Value,Flag\n" );
+		}
+	}
+
+	/**
+	 * Finish the response and close the output stream.
+	 * @throws IOException if the response cannot be written
+	 */
+	public void close () throws IOException {
+		if ( this.json != null ) {
+			if ( this.format.equals(FORMAT_JSON) ) {
+				this.json.writeEndArray();
+				this.json.writeEndObject();
+			}
+			this.json.close();
+		}
+		this.writer.close();
+	}
+
+	/**
+	 * End the JSON object for a time series or error, flushing the generator so that the object is sent to the client,
+	 * and for NDJSON format, ending the line.
+	 * @throws IOException if the response cannot be written
+	 */
+	private void endObject () throws IOException {
+		this.json.writeEndObject();
+		this.json.flush();
+		if ( this.format.equals(FORMAT_NDJSON) ) {
+			this.writer.write ( '\n' );
+		}
+	}
+
+	/**
+	 * Return the content type for a format.
+	 * @param format output format, see FORMAT_*
+	 * @return the content type for the response
+	 */
+	public static String getContentType ( String format ) {
+		if ( format.equals(FORMAT_JSON) ) {
+			return "application/json; charset=utf-8";
+		}
+		else if ( format.equals(FORMAT_NDJSON) ) {
+			return "application/x-ndjson; charset=utf-8";
+		}
+		else if ( format.equals(FORMAT_CSV) ) {
+			return "text/csv; charset=utf-8";
+		}
+		else {
+			return "text/plain; charset=utf-8";
+		}
+	}
+
+	/**
+	 * Return the format matching a requested format, ignoring case.
+	 * @param format requested format, or null for the default (JSON)
+	 * @return the format, see FORMAT_*
+	 * @throws IllegalArgumentException if the format is not recognized
+	 */
+	public static String parseFormat ( String format ) {
+		if ( (format == null) || format.isEmpty() ) {
+			return FORMAT_JSON;
+		}
+		for ( String f : new String[] { FORMAT_CSV, FORMAT_DATEVALUE, FORMAT_JSON, FORMAT_NDJSON } ) {
+			if ( f.equalsIgnoreCase(format) ) {
+				return f;
+			}
+		}
+		throw new IllegalArgumentException ( "Format \"" + format + "\" is not recognized - use " +
+			FORMAT_DATEVALUE + ", " + FORMAT_CSV + ", " + FORMAT_JSON + ", or " + FORMAT_NDJSON + "." );
+	}
+
+	/**
+	 * Quote a CSV value.
+	 * @param value value to quote
+	 * @return the quoted value
+	 */
+	private String quoteCsv ( String value ) {
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * Write an error for a time series that could not be read or written, after the response has started.
+	 * If the error occurred while writing a time series, the partly written JSON object is ended first
+	 * so that the response is still valid JSON.
+	 * @param tsid time series identifier, or null if not known
+	 * @param message error message
+	 * @throws IOException if the response cannot be written
+	 */
+	public void writeError ( String tsid, String message ) throws IOException {
+		if ( message == null ) {
+			message = "Unknown error.";
+		}
+		if ( this.json != null ) {
+			JsonStreamContext context;
+			boolean partlyWritten = false;
+			while ( (context = this.json.getOutputContext()) != this.jsonBetweenContext ) {
+				partlyWritten = true;
+				if ( context.inArray() ) {
+					this.json.writeEndArray();
+				}
+				else {
+					this.json.writeEndObject();
+				}
+			}
+			if ( partlyWritten && this.format.equals(FORMAT_NDJSON) ) {
+				// A partly written time series was ended above, so end its line.
+				this.json.flush();
+				this.writer.write ( '\n' );
+			}
+			this.json.writeStartObject();
+			this.json.writeStringField ( "TSID", tsid );
+			this.json.writeStringField ( "Error", message );
+			endObject();
+		}
+		else {
+			this.writer.write ( "# Error: " + message.replace('\n', ' ') + "\n" );
+		}
+		this.writer.flush();
+	}
+
+	/**
+	 * Write a time series, one value at a time, for CSV, JSON, and NDJSON formats.
+	 * For DateValue format, use writeTimeSeriesList().
+	 * @param ts time series to write
+	 * @param start start of the period to write, or null to write from the start of the time series
+	 * @param end end of the period to write, or null to write to the end of the time series
+	 * @throws Exception if the time series data cannot be iterated or the response cannot be written
+	 */
+	public void writeTimeSeries ( TS ts, DateTime start, DateTime end ) throws Exception {
+		writeTimeSeries ( null, ts, start, end );
+	}
+
+	/**
+	 * Write a time series, one value at a time, for CSV, JSON, and NDJSON formats.
+	 * For DateValue format, use writeTimeSeriesList().
+	 * @param requestedTsid time series identifier that was requested, written as "RequestedTSID" for JSON formats
+	 * so that clients can match time series that are written in a different order than requested, or null to not write
+	 * @param ts time series to write
+	 * @param start start of the period to write, or null to write from the start of the time series
+	 * @param end end of the period to write, or null to write to the end of the time series
+	 * @throws Exception if the time series data cannot be iterated or the response cannot be written
+	 */
+	public void writeTimeSeries ( String requestedTsid, TS ts, DateTime start, DateTime end ) throws Exception {
+		if ( this.format.equals(FORMAT_DATEVALUE) ) {
+			List<TS> tslist = new ArrayList<>();
+			tslist.add ( ts );
+			writeTimeSeriesList ( tslist, start, end );
+			return;
+		}
+		String tsid = ts.getIdentifierString();
+		if ( this.json != null ) {
+			this.json.writeStartObject();
+			if ( requestedTsid != null ) {
+				this.json.writeStringField ( "RequestedTSID", requestedTsid );
+			}
+			this.json.writeStringField ( "TSID", tsid );
+			this.json.writeStringField ( "Alias", ts.getAlias() );
+			this.json.writeStringField ( "Description", ts.getDescription() );
+			this.json.writeStringField ( "DataType", ts.getDataType() );
+			this.json.writeStringField ( "Units", ts.getDataUnits() );
+			this.json.writeStringField ( "Interval", ts.getIdentifier().getInterval() );
+			this.json.writeStringField ( "Start", (ts.getDate1() == null) ? null : ts.getDate1().toString() );
+			this.json.writeStringField ( "End", (ts.getDate2() == null) ? null : ts.getDate2().toString() );
+			this.json.writeArrayFieldStart ( "Data" );
+		}
+		String tsidCsv = quoteCsv ( tsid );
+		if ( ts.getDate1() != null ) {
+			TSIterator tsi = ts.iterator ( (start == null) ? ts.getDate1() : start, (end == null) ? ts.getDate2() : end );
+			TSData data;
+			while ( (data = tsi.next()) != null ) {
+				double value = data.getDataValue();
+				boolean missing = ts.isDataMissing ( value );
+				String flag = data.getDataFlag();
+				if ( this.json != null ) {
+					this.json.writeStartObject();
+					this.json.writeStringField ( "DateTime", data.getDate().toString() );
+					if ( missing ) {
+						this.json.writeNullField ( "Value" );
+					}
+					else {
+						this.json.writeNumberField ( "Value", value );
+					}
+					if ( (flag != null) && !flag.isEmpty() ) {
+						this.json.writeStringField ( "Flag", flag );
+					}
+					this.json.writeEndObject();
+				}
+				else {
+					this.writer.write ( tsidCsv );
+					this.writer.write ( ',' );
+					this.writer.write ( data.getDate().toString() );
+					this.writer.write ( ',' );
+					if ( !missing ) {
+						this.writer.write ( String.valueOf(value) );
+					}
+					this.writer.write ( ',' );
+					if ( (flag != null) && !flag.isEmpty() ) {
+						this.writer.write ( quoteCsv(flag) );
+					}
+					this.writer.write ( '\n' );
+				}
+			}
+		}
+		if ( this.json != null ) {
+			this.json.writeEndArray();
+			endObject();
+		}
+		this.writer.flush();
+	}
+
+	/**
+	 * Write a list of time series.  For DateValue format, the time series are written as columns in one DateValue file.
+	 * For other formats, the time series are written one after the other.
+	 * @param tslist time series to write
+	 * @param start start of the period to write, or null to write the full period
+	 * @param end end of the period to write, or null to write the full period
+	 * @throws Exception if the response cannot be written
+	 */
+	public void writeTimeSeriesList ( List<TS> tslist, DateTime start, DateTime end ) throws Exception {
+		if ( this.format.equals(FORMAT_DATEVALUE) ) {
+			// The DateValue writer formats one line at a time so the response is still streamed.
+			PrintWriter out = new PrintWriter ( this.writer );
+			DateValueTS.writeTimeSeriesList ( tslist, out, start, end, null, true );
+			out.flush();
+			return;
+		}
+		for ( TS ts : tslist ) {
+			writeTimeSeries ( ts, start, end );
+		}
+	}
+
+}
@@ -29,7 +29,7 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.HttpURLConnection;
-import java.net.InetSocketAddress;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.FileSystems;
@@ -43,22 +43,25 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.awt.Frame;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.awt.GraphicsEnvironment;
 
 import javax.swing.JFrame;
 
 import org.restlet.data.Parameter;
 
-import com.sun.net.httpserver.HttpServer;
 
 import riverside.datastore.DataStore;
 import riverside.datastore.DataStoreConnectionUIProvider;
@@ -69,9 +72,6 @@ import rti.tscommandprocessor.core.TSCommandFileRunner;
 import rti.tscommandprocessor.core.TSCommandProcessor;
 import DWR.DMI.HydroBaseDMI.HydroBaseDMI;
 import DWR.DMI.HydroBaseDMI.HydroBase_Util;
-import RTi.GRTS.TSViewGraphJFrame;
-import RTi.GRTS.TSViewSummaryJFrame;
-import RTi.GRTS.TSViewTableJFrame;
 import RTi.Util.GUI.JGUIUtil;
 import RTi.Util.IO.DataUnits;
 import RTi.Util.IO.IOUtil;
@@ -119,6 +119,16 @@ Path to the batch server hot folder.
 */
 private static String __batchServerHotFolder = "";
 
+/**
+Batch server node identifier, when several batch servers share the hot folder, or null for a single batch server.
+*/
+private static String __batchServerNode = null;
+
+/**
+Number of batch server workers, which run command files concurrently.
+*/
+private static int __batchServerWorkers = 1;
+
 /**
 Timeout when running in batch mode.
 TSTool will exit if processing has not finished (usually because of web service hang-up, etc.)
@@ -147,6 +157,42 @@ Indicates whether TSTool is running in batch server mode (look for command files
 */
 private static boolean __isBatchServer = false;
 
+/**
+Indicates whether TSTool is started in a mode that never shows windows (batch without --nomaingui, servers),
+in which case AWT and Swing initialization is skipped at startup.
+Classes are still loaded if a command needs them, for example to create a graph image file.
+*/
+private static boolean __leanHeadless = false;
+
+/**
+Indicates whether TSTool is running a startup archive training run, from --create-startup-archive.
+*/
+private static boolean __createStartupArchive = false;
+
+/**
+Sample command file to read (but not run) in the startup archive training run,
+from --create-startup-archive=SampleCommandFile.
+*/
+private static String __startupArchiveSampleCommandFile = null;
+
+/**
+Indicates whether TSTool is running in daemon mode (keep plugins loaded and datastores open and
+run command files requested by clients started with --client).
+*/
+private static boolean __isDaemon = false;
+
+/**
+Indicates whether incremental mode is used (--incremental), which skips running a command file in batch and
+batch server mode if its inputs and outputs have not changed since the last successful run.
+*/
+private static boolean __incremental = false;
+
+/**
+Port for the daemon to listen on, from --daemon-port=N.  Zero indicates that any free port is used,
+which is saved in the daemon file for clients.
+*/
+private static int __daemonPort = 0;
+
 /**
 Indicates whether TSTool is running in HTTP server mode (requires command files to match
 REST endpoints and URL parameters will translate to ${Property}).
@@ -158,11 +204,23 @@ Indicates whether TSTool is running in server mode using restlet.
 */
 private static boolean __isRestletServer = false;
 
+/**
+Indicates whether datastores should be opened when referenced rather than at startup (see LazyDataStore),
+from the --lazy-datastores command line parameter.
+The datastore configuration file Lazy property overrides this value.
+*/
+private static boolean __lazyDataStores = false;
+
 /**
 Log file from the command line.  Parent folder must exist to create.
 */
 private static String __logFileFromCommandLine = null;
 
+/**
+Log file that was opened, used to locate the startup profile output files.
+*/
+private static String __logFile = null;
+
 /**
 Indicates whether the command file should run after loading, when used in GUI mode.
 */
@@ -193,9 +251,10 @@ private static List<DataStoreSubstitute> datastoreSubstituteList = new ArrayList
 private static DataStoreEnabledChecker dataStoreEnabledChecker = new DataStoreEnabledChecker();
 
 /**
- * Count of message about --disable-datastores and --enable-datastores not being specified.
+ * Count of message about --disable-datastores and --enable-datastores not being specified,
+ * atomic because datastores are opened concurrently (see DataStoreOpenTask).
  */
-private static int disableDatastoresMessageCount = 0;
+private static AtomicInteger disableDatastoresMessageCount = new AtomicInteger(0);
 
 /**
 Indicates whether the --nomaingui command line argument is set.
@@ -295,6 +354,16 @@ private static void findPluginDataStoreJarFilesOld ( TSToolSession session, List
 	}
 }
 
+/**
+Finish the startup profile, if enabled with --startup-profile, which writes the timeline files next to the log file.
+This is called when startup is complete for the run mode (for the UI, after the input filters are initialized).
+*/
+protected static void finishStartupProfile () {
+	if ( StartupProfiler.isEnabled() ) {
+		StartupProfiler.finish ( __logFile );
+	}
+}
+
 /**
 Return the batch server hot folder.
 @return the batch server hot folder
@@ -303,6 +372,22 @@ public static String getBatchServerHotFolder() {
 	return __batchServerHotFolder;
 }
 
+/**
+Return the batch server node identifier.
+@return the batch server node identifier, or null if a single batch server uses the hot folder
+*/
+public static String getBatchServerNode() {
+	return __batchServerNode;
+}
+
+/**
+Return the number of batch server workers.
+@return the number of batch server workers
+*/
+public static int getBatchServerWorkers() {
+	return __batchServerWorkers;
+}
+
 /**
 Return the command file that is being processed, or null if not being run in batch mode.
 @return the path to the command file to run.
@@ -311,6 +396,17 @@ private static int getBatchTimeout () {
 	return __batchTimeoutSeconds;
 }
 
+/**
+Return the number of seconds to wait for a batch run to end after a timeout cancels the run, before exiting.
+The value is determined from the TSTool.BatchTimeoutCancelWait configuration property,
+which can be overridden by the BatchTimeoutCancelWait user configuration property.
+@param session TSTool session, used to check the user configuration file
+@return the number of seconds to wait after canceling (default is 30)
+*/
+private static int getBatchTimeoutCancelWait ( TSToolSession session ) {
+	return getConfigPropInt ( session, "BatchTimeoutCancelWait", 30 );
+}
+
 /**
 Return the command file that is being processed, or null if not being run in batch mode.
 @return the path to the command file to run.
@@ -319,6 +415,40 @@ private static String getCommandFile () {
 	return __commandFile;
 }
 
+/**
+Return an integer configuration property value.
+The value is determined from the TSTool.Name configuration property,
+which can be overridden by the Name user configuration property.
+@param session TSTool session, used to check the user configuration file
+@param propName property name without leading "TSTool."
+@param defaultValue value to return if the property is not set or is not an integer
+@return the property value
+*/
+private static int getConfigPropInt ( TSToolSession session, String propName, int defaultValue ) {
+	String propValue = getConfigPropValue ( session, propName );
+	if ( (propValue != null) && StringUtil.isInteger(propValue) ) {
+		return Integer.parseInt(propValue.trim());
+	}
+	return defaultValue;
+}
+
+/**
+Return a configuration property value.
+The value is determined from the TSTool.Name configuration property,
+which can be overridden by the Name user configuration property.
+@param session TSTool session, used to check the user configuration file
+@param propName property name without leading "TSTool."
+@return the property value, or null if not set
+*/
+private static String getConfigPropValue ( TSToolSession session, String propName ) {
+	String propValue = getPropValue("TSTool." + propName);
+	String userPropValue = session.getUserConfigPropValue ( propName );
+	if ( (userPropValue != null) && !userPropValue.isEmpty() ) {
+		propValue = userPropValue;
+	}
+	return propValue;
+}
+
 /**
 Return the name of the configuration file for the session.  This file will be determined
 from the -home command line parameter during command line parsing (default) and can be
@@ -329,6 +459,144 @@ public static String getConfigFile () {
     return __configFile;
 }
 
+/**
+Return the datastore configuration files, first the installation datastores folder and then the user's
+.tstool/N/datastores folder.  User configurations have precedence so the list should be processed backwards.
+@param session TSTool session, which provides user and environment information
+@return the datastore configuration file paths
+*/
+protected static List<String> getDataStoreConfigFiles ( TSToolSession session ) {
+	String routine = TSToolMain.class.getSimpleName() + ".getDataStoreConfigFiles";
+	List<String> dataStoreConfigFiles = new ArrayList<String>();
+	// First list the cfg files
+	String installDatastoresFolder = session.getInstallDatastoresFolder();
+	List<File> installConfigFiles = IOUtil.getFilesMatchingPattern(installDatastoresFolder, "cfg", true);
+	Message.printStatus(2, routine, "Found " + installConfigFiles.size() +
+		" installation datastore *.cfg files in \"" + installDatastoresFolder );
+	// Convert to String
+	for ( File f : installConfigFiles ) {
+		dataStoreConfigFiles.add(f.getAbsolutePath());
+	}
+
+    // Also get names of datastore configuration files from configuration files in user's home folder .tstool/N/datastores.
+    if ( session.createUserDatastoresFolder(true) ) {
+	    String datastoreFolder = session.getUserDatastoresFolder();
+	    File f = new File(datastoreFolder);
+	    FilenameFilter ff = new FilenameFilter() {
+	    	public boolean accept(File dir, String name) {
+	    		if ( name.toLowerCase().endsWith(".cfg") ) {
+	    			return true;
+	    		}
+	    		else {
+	    			return false;
+	    		}
+	    	}
+	    };
+	    String [] dfs = f.list(ff); // Returns files without leading path.
+	    if ( dfs != null ) {
+	    	for ( int i = 0; i < dfs.length; i++ ) {
+	    		String datastoreFile = datastoreFolder + File.separator + dfs[i];
+	    		dataStoreConfigFiles.add(datastoreFile);
+	    		Message.printStatus(2, routine, "Found user datastore configuration file: " + datastoreFile );
+	    	}
+	    }
+    }
+    return dataStoreConfigFiles;
+}
+
+/**
+Return the number of threads used to open datastores concurrently at startup.
+The value is determined from the TSTool.DataStoreOpenThreads configuration property,
+which can be overridden by the DataStoreOpenThreads user configuration property.
+An open that times out no longer counts toward the limit, even if its thread is still waiting for the database or
+web service, so that opens that never return do not prevent other datastores from opening.
+Therefore, more opens than the limit (up to the number of datastores) can be in progress if opens time out.
+@param session TSTool session, used to check the user configuration file
+@return the number of threads to open datastores (default is 4, minimum is 1)
+*/
+private static int getDataStoreOpenThreadCount ( TSToolSession session ) {
+	int threadCount = 4;
+	String propValue = getPropValue("TSTool.DataStoreOpenThreads");
+	String userPropValue = session.getUserConfigPropValue ( "DataStoreOpenThreads" );
+	if ( (userPropValue != null) && !userPropValue.isEmpty() ) {
+		propValue = userPropValue;
+	}
+	if ( (propValue != null) && StringUtil.isInteger(propValue) ) {
+		threadCount = Integer.parseInt(propValue.trim());
+	}
+	if ( threadCount < 1 ) {
+		threadCount = 1;
+	}
+	return threadCount;
+}
+
+/**
+Return the default timeout in seconds used when opening each datastore at startup.
+The value is determined from the TSTool.DataStoreOpenTimeout configuration property,
+which can be overridden by the DataStoreOpenTimeout user configuration property.
+Individual datastore configuration files can specify OpenTimeout to override the default.
+@param session TSTool session, used to check the user configuration file
+@return the timeout in seconds (default is 0, meaning no timeout)
+*/
+private static int getDataStoreOpenTimeout ( TSToolSession session ) {
+	int timeoutSeconds = 0;
+	String propValue = getPropValue("TSTool.DataStoreOpenTimeout");
+	String userPropValue = session.getUserConfigPropValue ( "DataStoreOpenTimeout" );
+	if ( (userPropValue != null) && !userPropValue.isEmpty() ) {
+		propValue = userPropValue;
+	}
+	if ( (propValue != null) && StringUtil.isInteger(propValue) ) {
+		timeoutSeconds = Integer.parseInt(propValue.trim());
+	}
+	return timeoutSeconds;
+}
+
+/**
+Return a copy of the processor's datastores.
+Code that reads or changes the datastores of a processor that is shared between threads
+(the UI processor, or the warm processor of a server) synchronizes on the processor,
+because lazy datastores (see LazyDataStore) and datastore reloads (see DataStoreReloader) replace datastores
+while other threads use the processor.
+Lazy datastores that have not been opened are included as LazyDataStore instances.
+@param processor the processor that contains the datastores
+@return a copy of the list of datastores, which can be used without synchronizing
+*/
+public static List<DataStore> getDataStores ( TSCommandProcessor processor ) {
+	synchronized ( processor ) {
+		return new ArrayList<DataStore> ( processor.getDataStores() );
+	}
+}
+
+/**
+Return a copy of the processor's datastores of a type, synchronized on the processor (see getDataStores()).
+Lazy datastores that have not been opened are not included because the datastore class is not known until opened.
+Use LazyDataStore.getUnopenedDataStores() to list them, for example to show their configured type.
+@param processor the processor that contains the datastores
+@param dataStoreClass datastore class
+@return a copy of the list of datastores, which can be used without synchronizing
+*/
+public static List<DataStore> getDataStoresByType ( TSCommandProcessor processor, Class<? extends DataStore> dataStoreClass ) {
+	synchronized ( processor ) {
+		return new ArrayList<DataStore> ( processor.getDataStoresByType(dataStoreClass) );
+	}
+}
+
+/**
+Return the folder for the incremental run cache (--incremental).
+The folder is determined from the TSTool.IncrementalCacheFolder configuration property,
+which can be overridden by the IncrementalCacheFolder user configuration property,
+and defaults to the "incremental-cache" folder in the user's TSTool system folder.
+@param session TSTool session, used to check the user configuration file
+@return the incremental run cache folder
+*/
+private static File getIncrementalCacheFolder ( TSToolSession session ) {
+	String folder = getConfigPropValue ( session, "IncrementalCacheFolder" );
+	if ( (folder == null) || folder.isEmpty() ) {
+		return new File ( session.getUserSystemFolder(), "incremental-cache" );
+	}
+	return new File ( folder );
+}
+
 /**
 Return the JFrame for the main TSTool GUI.
 @return the JFrame instance for use with low-level code that needs to pop up dialogs, etc.
@@ -385,6 +653,29 @@ throws IOException {
     }
 }
 
+/**
+Return the number of threads used to load plugin jar files concurrently at startup.
+The value is determined from the TSTool.PluginLoadThreads configuration property,
+which can be overridden by the PluginLoadThreads user configuration property.
+@param session TSTool session, used to check the user configuration file
+@return the number of threads to load plugin jar files (default is the number of processors up to 4, minimum is 1)
+*/
+private static int getPluginLoadThreadCount ( TSToolSession session ) {
+	int threadCount = Math.min ( 4, Runtime.getRuntime().availableProcessors() );
+	String propValue = getPropValue("TSTool.PluginLoadThreads");
+	String userPropValue = session.getUserConfigPropValue ( "PluginLoadThreads" );
+	if ( (userPropValue != null) && !userPropValue.isEmpty() ) {
+		propValue = userPropValue;
+	}
+	if ( (propValue != null) && StringUtil.isInteger(propValue) ) {
+		threadCount = Integer.parseInt(propValue.trim());
+	}
+	if ( threadCount < 1 ) {
+		threadCount = 1;
+	}
+	return threadCount;
+}
+
 /**
 Return a TSTool property.  The properties are defined in the TSTool configuration file.
 @param propertyExp name of property to look up as a Java regular expression.
@@ -491,6 +782,101 @@ public static boolean isBatchServer() {
 	return __isBatchServer;
 }
 
+/**
+Indicate whether TSTool is running a startup archive training run.
+@return true if running a startup archive training run.
+*/
+public static boolean isCreateStartupArchive() {
+	return __createStartupArchive;
+}
+
+/**
+Indicate whether incremental mode is used, which skips running unchanged command files.
+@return true if incremental mode is used.
+*/
+public static boolean isIncremental() {
+	return __incremental;
+}
+
+/**
+Indicate whether TSTool is running in daemon mode.
+@return true if running in daemon mode.
+*/
+public static boolean isDaemon() {
+	return __isDaemon;
+}
+
+/**
+Determine from the command line whether TSTool is started in a mode that never shows windows,
+which is the case for batch mode without --nomaingui and the server modes.
+This is checked before the command line is parsed because AWT and Swing are otherwise initialized early in startup.
+If running on Linux without a display, the java.awt.headless property is also set (if not already set)
+so that commands that create image files do not try to connect to a display.
+@param args command line arguments
+@return true if windows will never be shown
+*/
+private static boolean isLeanHeadlessStartup ( String [] args ) {
+	boolean haveCommands = false;
+	boolean isServer = false;
+	for ( String arg : args ) {
+		if ( arg.equalsIgnoreCase("-nomaingui") || arg.equalsIgnoreCase("--nomaingui") ) {
+			// Windows are shown without the main UI.
+			return false;
+		}
+		else if ( arg.equalsIgnoreCase("-commands") || arg.equalsIgnoreCase("--commands") ) {
+			haveCommands = true;
+		}
+		else if ( arg.equalsIgnoreCase("-batchServer") || arg.equalsIgnoreCase("--batchServer") ||
+			arg.equalsIgnoreCase("-httpServer") || arg.equalsIgnoreCase("--httpServer") ||
+			arg.equalsIgnoreCase("--daemon") || arg.toLowerCase().startsWith("--create-startup-archive") ) {
+			isServer = true;
+		}
+	}
+	if ( !haveCommands && !isServer ) {
+		return false;
+	}
+	if ( (System.getProperty("java.awt.headless") == null) &&
+		System.getProperty("os.name").toLowerCase().contains("linux") && (System.getenv("DISPLAY") == null) ) {
+		System.setProperty("java.awt.headless", "true");
+	}
+	return true;
+}
+
+/**
+Indicate whether a datastore should be opened lazily (when referenced, see LazyDataStore) rather than at startup.
+The datastore configuration file Lazy property is used if specified.
+Otherwise, the --lazy-datastores command line parameter or the TSTool.DataStoreLazyOpen configuration property
+(which can be overridden by the DataStoreLazyOpen user configuration property) is used.
+Datastores that prompt for login are never lazy.
+@param session TSTool session, used to check the user configuration file
+@param dataStoreProps datastore configuration properties
+@return true if the datastore should be opened when referenced
+*/
+protected static boolean isDataStoreLazy ( TSToolSession session, PropList dataStoreProps ) {
+	String systemLogin = dataStoreProps.getValue("SystemLogin");
+	String systemPassword = dataStoreProps.getValue("SystemPassword");
+	if ( ((systemLogin != null) && systemLogin.equalsIgnoreCase("prompt")) ||
+		((systemPassword != null) && systemPassword.equalsIgnoreCase("prompt")) ) {
+		return false;
+	}
+	String propValue = dataStoreProps.getValue("Lazy");
+	if ( (propValue != null) && !propValue.isEmpty() ) {
+		return propValue.equalsIgnoreCase("True");
+	}
+	if ( __lazyDataStores ) {
+		return true;
+	}
+	propValue = getPropValue("TSTool.DataStoreLazyOpen");
+	String userPropValue = session.getUserConfigPropValue ( "DataStoreLazyOpen" );
+	if ( (userPropValue != null) && !userPropValue.isEmpty() ) {
+		propValue = userPropValue;
+	}
+	if ( (propValue != null) && propValue.equalsIgnoreCase("True") ) {
+		return true;
+	}
+	return false;
+}
+
 /**
 Indicate whether TSTool is running in HTTP server mode.  This feature is under development.
 @return true if running in server mode.
@@ -525,19 +911,31 @@ private static void loadPluginDataStores(TSToolSession session,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryList,
 	@SuppressWarnings("rawtypes") List<Class> pluginCommandList ) {
 	final String routine = TSToolMain.class.getSimpleName() + ".loadPluginDataStores";
+	// Read the plugin manifest index so that unchanged jar files do not need to be opened to read the MANIFEST.
+	PluginManifestIndex manifestIndex = PluginManifestIndex.read ( PluginManifestIndex.getIndexFile(session) );
 	// Find jar files that contain datastores.
 	// First use the old approach (TSTool 12.06.00 and earlier).
 	final List<String> pluginJarListOld = new ArrayList<>();
 	Message.printStatus(2, routine, "Start loading plugin datastores and commands using the old approach...");
+	StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Plugin discovery (old)");
 	findPluginDataStoreJarFilesOld ( session, pluginJarListOld );
-	loadPluginDataStoresOld("", session, pluginJarListOld, pluginDataStoreList, pluginDataStoreFactoryList, pluginCommandList );
+	phase.end();
+	phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Plugin class loading (old)");
+	loadPluginDataStoresOld("", session, manifestIndex, pluginJarListOld, pluginDataStoreList, pluginDataStoreFactoryList, pluginCommandList );
+	phase.end();
 	Message.printStatus(2, routine, "...end loading plugin datastores and commands using the old approach.");
 	// Next use the new approach (TSTool 12.07.00 and later).
 	final List<String> pluginJarListNew = new ArrayList<>();
 	Message.printStatus(2, routine, "Start loading plugin datastores and commands using the new approach...");
+	phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Plugin discovery (new)");
 	findPluginDataStoreJarFilesNew ( session, pluginJarListNew );
-	loadPluginDataStoresNew(session, pluginJarListNew, pluginDataStoreList, pluginDataStoreFactoryList, pluginCommandList );
+	phase.end();
+	phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Plugin class loading (new)");
+	loadPluginDataStoresNew(session, manifestIndex, pluginJarListNew, pluginDataStoreList, pluginDataStoreFactoryList, pluginCommandList );
+	phase.end();
 	Message.printStatus(2, routine, "...end loading plugin datastores and commands using the new approach.");
+	// Save the index for the next run, only written if jar files have changed.
+	manifestIndex.write();
 
 	// Globally save the folders for plugins:
 	// - this allows those folders to be added to the classpath in cases where a separate Java program is run later,
@@ -585,28 +983,30 @@ private static void loadPluginDataStores(TSToolSession session,
  * Load plugin datastore classes using new (TSTool 12.07.00 and later approach).
  * Currently uses the old approach because at this point the list of candidate jar files is processed.
  * @param session
+ * @param manifestIndex index of plugin jar file MANIFEST entries
  * @param pluginJarList
  * @param pluginDataStoreList
  * @param pluginDataStoreFactoryList
  * @param pluginCommandList empty list of plugin commands, will be populated by this method.
  */
-private static void loadPluginDataStoresNew(TSToolSession session, List<String> pluginJarList,
+private static void loadPluginDataStoresNew(TSToolSession session, PluginManifestIndex manifestIndex, List<String> pluginJarList,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreList,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryList,
 	@SuppressWarnings("rawtypes") List<Class> pluginCommandList ) {
 	// Try using the old logic for now.
-	loadPluginDataStoresOld( "New", session, pluginJarList, pluginDataStoreList, pluginDataStoreFactoryList, pluginCommandList );
+	loadPluginDataStoresOld( "New", session, manifestIndex, pluginJarList, pluginDataStoreList, pluginDataStoreFactoryList, pluginCommandList );
 }
 
 /**
  * Load plugin datastore classes using old (TSTool 12.06.00 and earlier approach).
  * @param session
+ * @param manifestIndex index of plugin jar file MANIFEST entries, used to avoid reading unchanged jar files
  * @param pluginJarList
  * @param pluginDataStoreList
  * @param pluginDataStoreFactoryList
  * @param pluginCommandList empty list of plugin commands, will be populated by this method.
  */
-private static void loadPluginDataStoresOld(String messagePrefix, TSToolSession session, List<String> pluginJarList,
+private static void loadPluginDataStoresOld(String messagePrefix, TSToolSession session, PluginManifestIndex manifestIndex, List<String> pluginJarList,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreList,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryList,
 	@SuppressWarnings("rawtypes") List<Class> pluginCommandList ) {
@@ -614,140 +1014,237 @@ private static void loadPluginDataStoresOld(String messagePrefix, TSToolSession
 		messagePrefix = "Old";
 		// Use for messages so it is clear whether processing old or new datastore configurations.
 	}
-	String routine = TSToolMain.class.getSimpleName() + ".loadPluginDataStores" + messagePrefix;
+	final String routine = TSToolMain.class.getSimpleName() + ".loadPluginDataStores" + messagePrefix;
 	// Create a separate class loader for each plugin to maintain separation.
 	// From this point forward the jar file path does not care if in the user folder or TSTool installation folder.
 	Message.printStatus(2, routine, "Trying to load plugin datastores from " + pluginJarList.size() + " candidate jar files.");
-	for ( String pluginJar : pluginJarList ) {
-		// TODO figure out if only the top level datastore Jar file should be included.
-		if ( Message.isDebugOn ) {
-			Message.printStatus(2, routine, "Trying to load plugin datastores from \"" + pluginJar + "\"");
+	// Each jar file has its own class loader so jar files can be processed concurrently:
+	// - the classes for each jar file are saved separately and are merged in jar list order at the end
+	//   so that the order of the classes does not depend on thread timing
+	int threadCount = getPluginLoadThreadCount ( session );
+	if ( threadCount > pluginJarList.size() ) {
+		threadCount = pluginJarList.size();
+	}
+	@SuppressWarnings("rawtypes")
+	List<List<Class>> jarDataStoreLists = new ArrayList<>();
+	@SuppressWarnings("rawtypes")
+	List<List<Class>> jarDataStoreFactoryLists = new ArrayList<>();
+	@SuppressWarnings("rawtypes")
+	List<List<Class>> jarCommandLists = new ArrayList<>();
+	for ( int i = 0; i < pluginJarList.size(); i++ ) {
+		jarDataStoreLists.add(new ArrayList<>());
+		jarDataStoreFactoryLists.add(new ArrayList<>());
+		jarCommandLists.add(new ArrayList<>());
+	}
+	StopWatch sw = new StopWatch();
+	sw.start();
+	if ( threadCount <= 1 ) {
+		for ( int i = 0; i < pluginJarList.size(); i++ ) {
+			loadPluginJar ( routine, manifestIndex, pluginJarList.get(i),
+				jarDataStoreLists.get(i), jarDataStoreFactoryLists.get(i), jarCommandLists.get(i) );
 		}
-		URL [] dataStoreJarURLs = new URL[2];
-		try {
-			// Convert the file system filename to URL using forward slashes.
-			dataStoreJarURLs[0] = new URL("file:///" + pluginJar.replace("\\", "/"));
-			// Also add all the jar files in the "/dep" folder:
-			// - tried to figure out how to use MANIFEST-MF Class-Path property but seemed confusing
-			//   so just add all jar files that are found
-			File f = new File(pluginJar);
-			List<File> depJarFiles = IOUtil.getFilesMatchingPattern(f.getParent() + File.separator + "dep", "jar", false);
-			URL [] dataStoreJarURLs2 = new URL[1 + depJarFiles.size()];
-			dataStoreJarURLs2[0] = dataStoreJarURLs[0];
-			int i = 1;
-			for ( File depJarFile : depJarFiles ) {
-				dataStoreJarURLs2[i++] = new URL("file:///" + depJarFile.getAbsolutePath().replace("\\", "/"));
+	}
+	else {
+		ExecutorService executor = Executors.newFixedThreadPool ( threadCount, new ThreadFactory() {
+			private int threadNum = 0;
+			public synchronized Thread newThread ( Runnable r ) {
+				Thread t = new Thread ( r, "TSTool-plugin-load-" + (++threadNum) );
+				t.setDaemon(true);
+				return t;
 			}
-			dataStoreJarURLs = dataStoreJarURLs2;
-		}
-		catch ( MalformedURLException e ) {
-			Message.printWarning(3,routine,"Error creating URL for datastore plugin jar file \"" + pluginJar + "\" (" + e + ") - skipping plugin" );
-			continue;
-		}
-		// Create a class loader specific to the datastore:
-		// - this expects the datastore to be in the jar file with class name XXXXXDataStore
-		// - TODO smalers 2020-07-26 using different class loaders for datastore and command classes causes an issue later
-		//PluginDataStoreClassLoader pcl = new PluginDataStoreClassLoader ( dataStoreJarURLs );
-		PluginDataStoreClassLoader pcl = null;
-		boolean useChildClassLoader = false;
-		// Create a class loader for plugins.
-		pcl = new PluginDataStoreClassLoader ( dataStoreJarURLs, TSToolMain.class.getClassLoader(), useChildClassLoader );
-		@SuppressWarnings("rawtypes")
-		List<Class> pluginDataStoreList1 = null;
-		@SuppressWarnings("rawtypes")
-		List<Class> pluginDataStoreFactoryList1 = null;
-		// Load datastore classes.
+		});
 		try {
-			pluginDataStoreList1 = pcl.loadDataStoreClasses();
-		}
-		catch ( ClassNotFoundException e ) {
-			Message.printWarning(2,routine,"Error loading datastore plugin classes (" + e + ")." );
-			Message.printWarning(2,routine,e);
-		}
-		// Load datastore factory classes.
-		try {
-			pluginDataStoreFactoryList1 = pcl.loadDataStoreFactoryClasses();
+			List<Future<?>> futureList = new ArrayList<>();
+			for ( int i = 0; i < pluginJarList.size(); i++ ) {
+				final String pluginJar = pluginJarList.get(i);
+				@SuppressWarnings("rawtypes")
+				final List<Class> jarDataStoreList = jarDataStoreLists.get(i);
+				@SuppressWarnings("rawtypes")
+				final List<Class> jarDataStoreFactoryList = jarDataStoreFactoryLists.get(i);
+				@SuppressWarnings("rawtypes")
+				final List<Class> jarCommandList = jarCommandLists.get(i);
+				futureList.add ( executor.submit ( new Runnable() {
+					public void run () {
+						loadPluginJar ( routine, manifestIndex, pluginJar, jarDataStoreList, jarDataStoreFactoryList, jarCommandList );
+					}
+				}));
+			}
+			for ( int i = 0; i < futureList.size(); i++ ) {
+				try {
+					futureList.get(i).get();
+				}
+				catch ( ExecutionException e ) {
+					Message.printWarning(2, routine, "Error loading plugin jar \"" + pluginJarList.get(i) + "\" (" + e.getCause() + ")." );
+					Message.printWarning(3, routine, e);
+				}
+				catch ( InterruptedException e ) {
+					Message.printWarning(2, routine, "Interrupted loading plugin jar \"" + pluginJarList.get(i) + "\"." );
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
 		}
-		catch ( ClassNotFoundException e ) {
-			Message.printWarning(2,routine,"Error loading datastore factory plugin classes (" + e + ")." );
-			Message.printWarning(2,routine,e);
+		finally {
+			executor.shutdown();
 		}
-		// For now require that one datastore class and one datastore class factory are loaded for each datastore.
-		// Add the plugin datastore class to the list.
-		if ( pluginDataStoreList1 == null ) {
-			Message.printWarning(2,routine,"Null datastore for plugin Jar \"" + pluginJar + "\" - skipping plugin datastore." );
+	}
+	// Merge the classes in jar list order.
+	for ( int i = 0; i < pluginJarList.size(); i++ ) {
+		pluginDataStoreList.addAll(jarDataStoreLists.get(i));
+		pluginDataStoreFactoryList.addAll(jarDataStoreFactoryLists.get(i));
+		pluginCommandList.addAll(jarCommandLists.get(i));
+	}
+	sw.stop();
+	Message.printStatus(2, routine, "Loaded plugin classes from " + pluginJarList.size() + " jar files using " +
+		(threadCount < 1 ? 1 : threadCount) + " threads in " + sw.getMilliseconds() + " ms." );
+}
+
+/**
+ * Load the plugin datastore, datastore factory, and command classes from one plugin jar file.
+ * This is called for each jar file by loadPluginDataStoresOld() and may be called concurrently for different jar files.
+ * @param routine routine name to use for messages
+ * @param manifestIndex index of plugin jar file MANIFEST entries, used to avoid reading unchanged jar files
+ * @param pluginJar path to the plugin jar file
+ * @param pluginDataStoreList list of plugin datastore classes for the jar file, will be populated by this method.
+ * @param pluginDataStoreFactoryList list of plugin datastore factory classes for the jar file, will be populated by this method.
+ * @param pluginCommandList list of plugin command classes for the jar file, will be populated by this method.
+ */
+private static void loadPluginJar ( String routine, PluginManifestIndex manifestIndex, String pluginJar,
+	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreList,
+	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryList,
+	@SuppressWarnings("rawtypes") List<Class> pluginCommandList ) {
+	StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PLUGIN, new File(pluginJar).getName());
+	// TODO figure out if only the top level datastore Jar file should be included.
+	if ( Message.isDebugOn ) {
+		Message.printStatus(2, routine, "Trying to load plugin datastores from \"" + pluginJar + "\"");
+	}
+	URL [] dataStoreJarURLs = new URL[2];
+	try {
+		// Convert the file system filename to URL using forward slashes.
+		dataStoreJarURLs[0] = new URL("file:///" + pluginJar.replace("\\", "/"));
+		// Also add all the jar files in the "/dep" folder:
+		// - tried to figure out how to use MANIFEST-MF Class-Path property but seemed confusing
+		//   so just add all jar files that are found
+		// - the index saves the list and only lists the folder again if it has changed
+		List<File> depJarFiles = manifestIndex.getDepJarFiles(pluginJar);
+		URL [] dataStoreJarURLs2 = new URL[1 + depJarFiles.size()];
+		dataStoreJarURLs2[0] = dataStoreJarURLs[0];
+		int i = 1;
+		for ( File depJarFile : depJarFiles ) {
+			dataStoreJarURLs2[i++] = new URL("file:///" + depJarFile.getAbsolutePath().replace("\\", "/"));
+		}
+		dataStoreJarURLs = dataStoreJarURLs2;
+	}
+	catch ( MalformedURLException e ) {
+		Message.printWarning(3,routine,"Error creating URL for datastore plugin jar file \"" + pluginJar + "\" (" + e + ") - skipping plugin" );
+		phase.end();
+		return;
+	}
+	// Create a class loader specific to the datastore:
+	// - this expects the datastore to be in the jar file with class name XXXXXDataStore
+	// - TODO smalers 2020-07-26 using different class loaders for datastore and command classes causes an issue later
+	//PluginDataStoreClassLoader pcl = new PluginDataStoreClassLoader ( dataStoreJarURLs );
+	PluginDataStoreClassLoader pcl = null;
+	boolean useChildClassLoader = false;
+	// Create a class loader for plugins.
+	pcl = new PluginDataStoreClassLoader ( dataStoreJarURLs, TSToolMain.class.getClassLoader(), useChildClassLoader );
+	pcl.setManifestIndex ( manifestIndex );
+	@SuppressWarnings("rawtypes")
+	List<Class> pluginDataStoreList1 = null;
+	@SuppressWarnings("rawtypes")
+	List<Class> pluginDataStoreFactoryList1 = null;
+	// Load datastore classes.
+	try {
+		pluginDataStoreList1 = pcl.loadDataStoreClasses();
+	}
+	catch ( ClassNotFoundException e ) {
+		Message.printWarning(2,routine,"Error loading datastore plugin classes (" + e + ")." );
+		Message.printWarning(2,routine,e);
+	}
+	// Load datastore factory classes.
+	try {
+		pluginDataStoreFactoryList1 = pcl.loadDataStoreFactoryClasses();
+	}
+	catch ( ClassNotFoundException e ) {
+		Message.printWarning(2,routine,"Error loading datastore factory plugin classes (" + e + ")." );
+		Message.printWarning(2,routine,e);
+	}
+	// For now require that one datastore class and one datastore class factory are loaded for each datastore.
+	// Add the plugin datastore class to the list.
+	if ( pluginDataStoreList1 == null ) {
+		Message.printWarning(2,routine,"Null datastore for plugin Jar \"" + pluginJar + "\" - skipping plugin datastore." );
+	}
+	else {
+		if ( pluginDataStoreList1.size() != 1 ) {
+			// This may be due to dependencies so don't print to the log file.
+			if ( Message.isDebugOn ) {
+				Message.printWarning(2,routine,"Datastore plugin list size (" + pluginDataStoreList1.size() +
+					") is not size of 1 for Jar \"" + pluginJar + "\" - skipping plugin." );
+			}
 		}
 		else {
-			if ( pluginDataStoreList1.size() != 1 ) {
-				// This may be due to dependencies so don't print to the log file.
-				if ( Message.isDebugOn ) {
-					Message.printWarning(2,routine,"Datastore plugin list size (" + pluginDataStoreList1.size() +
-						") is not size of 1 for Jar \"" + pluginJar + "\" - skipping plugin." );
-				}
-			}
-			else {
-				// Add to the list to be known to TSTool.
-				pluginDataStoreList.addAll(pluginDataStoreList1);
-			}
+			// Add to the list to be known to TSTool.
+			pluginDataStoreList.addAll(pluginDataStoreList1);
 		}
-		// Add the plugin datastore factory class to the list.
-		if ( pluginDataStoreFactoryList1 == null ) {
-			Message.printWarning(2,routine,"Null datastore factory for plugin Jar \"" + pluginJar + "\" - skipping plugin datastore factory." );
+	}
+	// Add the plugin datastore factory class to the list.
+	if ( pluginDataStoreFactoryList1 == null ) {
+		Message.printWarning(2,routine,"Null datastore factory for plugin Jar \"" + pluginJar + "\" - skipping plugin datastore factory." );
+	}
+	else {
+		if ( pluginDataStoreFactoryList1.size() != 1 ) {
+			// Probably a dependency jar so don't print to the log file.
+			if ( Message.isDebugOn ) {
+				Message.printWarning(2,routine,"Datastore plugin factory list size (" + pluginDataStoreFactoryList1.size() +
+					") is not size of 1 for Jar \"" + pluginJar + "\" - skipping plugin." );
+			}
 		}
 		else {
-			if ( pluginDataStoreFactoryList1.size() != 1 ) {
-				// Probably a dependency jar so don't print to the log file.
-				if ( Message.isDebugOn ) {
-					Message.printWarning(2,routine,"Datastore plugin factory list size (" + pluginDataStoreFactoryList1.size() +
-						") is not size of 1 for Jar \"" + pluginJar + "\" - skipping plugin." );
-				}
-			}
-			else {
-				// Add to the list to be known to TSTool.
-				pluginDataStoreFactoryList.addAll(pluginDataStoreFactoryList1);
-			}
+			// Add to the list to be known to TSTool.
+			pluginDataStoreFactoryList.addAll(pluginDataStoreFactoryList1);
 		}
+	}
 
-		// Add the plugin command class to the list.
-		// Use a class loader to load the class file.
-		@SuppressWarnings("rawtypes")
-		List<Class> pluginCommandList1 = null;
-		// Load command classes.
+	// Add the plugin command class to the list.
+	// Use a class loader to load the class file.
+	@SuppressWarnings("rawtypes")
+	List<Class> pluginCommandList1 = null;
+	// Load command classes.
+	try {
+		// TODO smalers 2020-08-03 for now use method in the datastore class loader.
+		//PluginCommandClassLoader pcl2 = new PluginCommandClassLoader ( dataStoreJarURLs );
+		//pluginCommandList1 = pcl2.loadCommandClasses();
+		pluginCommandList1 = pcl.loadCommandClasses();
+	}
+	catch ( ClassNotFoundException e ) {
+		Message.printWarning(2,routine,"Error loading command plugin classes (" + e + ")." );
+		Message.printWarning(2,routine,e);
+	}
+	finally {
+		/* FIXME SAM 2016-04-03 Try not closing class loader because it is needed for other classes in the plugin.
+	 	* The compiler may show as a warning as a memory leak but it needs to be around throughout the runtime.
 		try {
-			// TODO smalers 2020-08-03 for now use method in the datastore class loader.
-			//PluginCommandClassLoader pcl2 = new PluginCommandClassLoader ( dataStoreJarURLs );
-			//pluginCommandList1 = pcl2.loadCommandClasses();
-			pluginCommandList1 = pcl.loadCommandClasses();
+			pcl.close();
 		}
-		catch ( ClassNotFoundException e ) {
-			Message.printWarning(2,routine,"Error loading command plugin classes (" + e + ")." );
-			Message.printWarning(2,routine,e);
-		}
-		finally {
-			/* FIXME SAM 2016-04-03 Try not closing class loader because it is needed for other classes in the plugin.
-		 	* The compiler may show as a warning as a memory leak but it needs to be around throughout the runtime.
-			try {
-				pcl.close();
-			}
-			catch ( IOException e ) {
-				// For now swallow - not sure what else to do.
-			}
-			*/
-		}
-		if ( pluginCommandList1 == null ) {
-			Message.printWarning(2,routine,"Null plugin command list for plugin Jar \"" + pluginJar + "\" - skipping plugin commands." );
-		}
-		else {
-			// Add to the list to be known to TSTool:
-			// - multiple commands can be associated with a plugin jar file
-			// - other plugins may also add to the list
-			if ( pluginCommandList1.size() > 0 ) {
-				Message.printStatus(2,routine,"Plugin command list for plugin Jar \"" + pluginJar + "\" includes " +
-					pluginCommandList1.size() + " commands." );
-			}
-			pluginCommandList.addAll(pluginCommandList1);
+		catch ( IOException e ) {
+			// For now swallow - not sure what else to do.
 		}
+		*/
 	}
+	if ( pluginCommandList1 == null ) {
+		Message.printWarning(2,routine,"Null plugin command list for plugin Jar \"" + pluginJar + "\" - skipping plugin commands." );
+	}
+	else {
+		// Add to the list to be known to TSTool:
+		// - multiple commands can be associated with a plugin jar file
+		// - other plugins may also add to the list
+		if ( pluginCommandList1.size() > 0 ) {
+			Message.printStatus(2,routine,"Plugin command list for plugin Jar \"" + pluginJar + "\" includes " +
+				pluginCommandList1.size() + " commands." );
+		}
+		pluginCommandList.addAll(pluginCommandList1);
+	}
+	phase.end();
 }
 
 /**
@@ -765,9 +1262,43 @@ public static void main ( String args[] ) {
 	// - TODO smalers 2019-10-07 Need to enable in limited way to troubleshoot
 	//System.setProperty("org.apache.poi.util.POILogger", "org.apache.poi.util.CommonsLogger" );
 
+	// Run as a daemon client before anything else so that startup is as fast as possible:
+	// - the client only forwards the command file to the daemon and does not need plugins, datastores, etc.
+	for ( String arg : args ) {
+		if ( arg.equalsIgnoreCase("--client") ) {
+			System.exit ( TSToolDaemonClient.run ( args ) );
+		}
+	}
+
+	// Create the startup archive using a training run in a separate JVM:
+	// - the training run JVM is run with the same command line parameters and handles --create-startup-archive below
+	if ( !StartupArchive.isTrainingRun() ) {
+		for ( String arg : args ) {
+			if ( arg.toLowerCase().startsWith("--create-startup-archive") ) {
+				System.exit ( StartupArchive.createArchive ( args ) );
+			}
+		}
+	}
+
+	// Enable the startup profiler before anything else so that all startup phases are included:
+	// - the --startup-profile command line parameter is otherwise ignored by parseArgs()
+	for ( String arg : args ) {
+		if ( arg.equalsIgnoreCase("--startup-profile") ) {
+			StartupProfiler.enable();
+			break;
+		}
+	}
+
+	// Determine whether windows will never be shown so that AWT and Swing initialization can be skipped.
+	__leanHeadless = isLeanHeadlessStartup ( args );
+
 	// TSTool session properties are a singleton
+	StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "IOUtil setup");
 	IOUtil.setProgramData ( PROGRAM_NAME, PROGRAM_VERSION, args ); // Do first, needed by session to find local files, plugins, etc.
-	JGUIUtil.setAppNameForWindows("TSTool");
+	if ( !__leanHeadless ) {
+		JGUIUtil.setAppNameForWindows("TSTool");
+	}
+	phase.end();
 	//System.err.println("Program version: " + IOUtil.getProgramVersion());
 	//System.err.println("Program major version: " + getMajorVersion());
 
@@ -777,17 +1308,24 @@ public static void main ( String args[] ) {
 
 	// The first time the following is called the major version is saved in the session.
 	// Subsequent calls without the version will use the saved version.
+	phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Session initialization");
 	TSToolSession session = TSToolSession.getInstance(getMajorVersion());
+	phase.end();
 
 	setWorkingDirInitial ();
 
-	// Set up handler for GUI event queue, for exceptions that may otherwise get swallowed by a JRE launcher.
-	new MessageEventQueue();
+	// Set up handler for GUI event queue, for exceptions that may otherwise get swallowed by a JRE launcher:
+	// - this initializes the AWT toolkit so skip if windows will never be shown
+	if ( !__leanHeadless ) {
+		new MessageEventQueue();
+	}
 
 	// Initialize the logging levels after the lot file is opened:
 	// - note that messages will not be printed to the log file until the log file is opened below
 	initializeLoggingLevelsAfterLogOpened();
 
+	// Parsing the command line also opens the log file and reads the configuration file.
+	phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Parse command line");
 	try {
         parseArgs ( session, args );
         // The result of this is that the full path to the command file will be set.
@@ -798,6 +1336,10 @@ public static void main ( String args[] ) {
             "Error parsing command line arguments.  Using default behavior if necessary." );
 		Message.printWarning ( 3, routine, e );
 	}
+	phase.end();
+
+	// Log whether the JVM is using a startup archive and whether it matches the current software.
+	StartupArchive.checkArchiveInUse();
 
 	// Set the application icon to the CDSS logo by default.
     // Do not do this in pure batch mode because it is not needed and may cause problems with X-Windows on UNIX.
@@ -806,7 +1348,7 @@ public static void main ( String args[] ) {
 	Message.printStatus ( 2, routine, "isBatch=" + IOUtil.isBatch() + " --nomaingui specified = " + __noMainGUIArgSpecified );
 	Message.printStatus ( 2, routine, "Is TSTool running in headless mode = " + GraphicsEnvironment.isHeadless() );
 
-	if ( !IOUtil.isBatch() || __noMainGUIArgSpecified || !isBatchServer() ) {
+	if ( !__leanHeadless && (!IOUtil.isBatch() || __noMainGUIArgSpecified || !isBatchServer()) ) {
 	    // Not "pure" batch so need to have the icon initialized.
 	    try {
 	        setIcon ( "CDSS" );
@@ -820,7 +1362,9 @@ public static void main ( String args[] ) {
 
 	// Read the data units.
 
+	phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Read data units");
 	initializeAfterHomeIsKnown ();
+	phase.end();
 
 	Message.printStatus ( 1, routine, "Setup completed.  showmain = " + __showMainGUI + " isbatch=" + IOUtil.isBatch() );
 
@@ -850,23 +1394,57 @@ public static void main ( String args[] ) {
 
 	// Run TSTool in the run mode indicated by command line parameters.
 
-	if ( IOUtil.isBatch() ) {
+	if ( isCreateStartupArchive() ) {
+		// Startup archive training run:
+		// - do the same work as a batch run except running the commands
+		// - the JVM saves loaded classes to the archive when it exits
+		Message.printStatus ( 1, routine, "Running startup archive training run." );
+		TSCommandFileRunner runner = new TSCommandFileRunner(processorProps, pluginCommandClasses);
+		phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openHydroBase");
+        openHydroBase ( runner.getProcessor() );
+        phase.end();
+        openDataStoresAtStartup ( session, runner.getProcessor(), pluginDataStoreClasses, pluginDataStoreFactoryClasses, true );
+        finishStartupProfile();
+        if ( __startupArchiveSampleCommandFile != null ) {
+        	try {
+        		String commandFileFull = new File(__startupArchiveSampleCommandFile).getCanonicalPath();
+        		Message.printStatus( 1, routine, "Reading sample command file:  \"" + commandFileFull + "\"" );
+        		setWorkingDirUsingCommandFile ( commandFileFull );
+        		openLazyDataStoresReferencedByCommandFile ( runner.getProcessor(), commandFileFull );
+        		runner.readCommandFile ( commandFileFull, __runDiscoveryOnLoad );
+        	}
+        	catch ( Exception e ) {
+        		// Still save the archive because most classes will have been loaded.
+        		Message.printWarning ( 1, routine, "Error reading sample command file \"" + __startupArchiveSampleCommandFile + "\"." );
+        		Message.printWarning ( 3, routine, e );
+        	}
+        }
+        quitProgram ( 0 );
+	}
+	else if ( IOUtil.isBatch() ) {
 		trackUsage ( "batch" );
 		// Running like "tstool --commandfile" (possibly with --nomaingui).
 		TSCommandFileRunner runner = new TSCommandFileRunner(processorProps, pluginCommandClasses);
-		// If the global timeout is set, start a thread that will time out when the batch run is complete.
-		startTimeoutThread ( getBatchTimeout());
+		// Start the watchdog, which runs in the background and ends the run if the global or a command timeout expires.
+		BatchWatchdog watchdog = new BatchWatchdog ( runner.getProcessor(), getBatchTimeout(), getBatchTimeoutCancelWait(session) );
+		watchdog.start();
 	    // Open the HydroBase connection if the configuration file specifies the information.
 		// Do this before reading the command file because commands may try to run discovery during load.
+		phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openHydroBase");
         openHydroBase ( runner.getProcessor() );
+        phase.end();
         // Open datastores in a generic way if the configuration file specifies the information.
         // Do this before reading the command file because commands may try to run discovery during load.
         openDataStoresAtStartup ( session, runner.getProcessor(), pluginDataStoreClasses, pluginDataStoreFactoryClasses, true );
+        // Startup is complete.
+        finishStartupProfile();
         // Set datastore substitutes, used later when requesting datastores.
         runner.getProcessor().setDatastoreSubstituteList(datastoreSubstituteList);
 		try {
 		    String commandFileFull = getCommandFile();
 		    Message.printStatus( 1, routine, "Running command file in batch mode:  \"" + commandFileFull + "\"" );
+		    // Open lazy datastores that are used by the command file, before discovery may need the datastores.
+		    openLazyDataStoresReferencedByCommandFile ( runner.getProcessor(), commandFileFull );
 			runner.readCommandFile ( commandFileFull, __runDiscoveryOnLoad );
 		}
 		catch ( Exception e ) {
@@ -875,6 +1453,21 @@ public static void main ( String args[] ) {
 			Message.printWarning ( 1, routine, e );
 			quitProgram ( 1 );
 		}
+		// In incremental mode, skip the run if the inputs and outputs have not changed since the last successful run.
+		IncrementalRunCache incrementalCache = null;
+		String incrementalFingerprint = null;
+		if ( isIncremental() ) {
+			incrementalCache = new IncrementalRunCache ( getIncrementalCacheFolder(session) );
+			File commandFile = new File ( getCommandFile() );
+			incrementalFingerprint = incrementalCache.computeFingerprint ( commandFile, runner.getProcessor(), processorProps,
+				commandFile.getParent() );
+			if ( incrementalCache.isUpToDate(commandFile.getPath(), incrementalFingerprint) ) {
+				Message.printStatus ( 1, routine, "Command file \"" + getCommandFile() +
+					"\" is unchanged since the last successful run - not running (--incremental)." );
+				watchdog.stop();
+				quitProgram ( 0 );
+			}
+		}
 		// If running with --nomaingui, then plot windows should be displayed and when closed cause the
 		// run to end - this should be used with external applications that use TSTool as a plotting tool.
 		if ( !__showMainGUI ) {
@@ -886,6 +1479,16 @@ public static void main ( String args[] ) {
 		try {
 		    // The following will throw an exception if there are any errors running.
             runner.runCommands();
+            // Don't time out while windows are shown with --nomaingui.
+            watchdog.stop();
+            if ( watchdog.isExpired() ) {
+            	// Commands were canceled because of a timeout.
+                quitProgram ( BatchWatchdog.EXIT_TIMEOUT );
+            }
+            if ( incrementalCache != null ) {
+            	// Save the fingerprint and output files so that the next run can be skipped if nothing changes.
+            	incrementalCache.save ( new File(getCommandFile()).getPath(), incrementalFingerprint, runner.getProcessor() );
+            }
             if ( __showMainGUI ) {
                 // No special handling of windows since --nomaingui was not not specified.  Just exit.
                 quitProgram ( 0 );
@@ -893,26 +1496,10 @@ public static void main ( String args[] ) {
             else {
                 // Not showing the main GUI.  Exit here if there are no plot windows - otherwise will hang.
             	// If windows are found, let the GUI WindowListener handle when to close the application.
-                Frame [] frameArray = Frame.getFrames();
-                int size = 0;
-                if ( frameArray != null ) {
-                    size = frameArray.length;
-                }
-                boolean openWindowFound = false;    // Are any windows open?  If no, exit.
-                // Check for windows that could be open as part of visualization,
-                // including the graph, summary, and table windows.
-                // If any are visible, then need to wait until the user closes all.
-                // Then WindowClosing will be called since no more windows are shown.
-                for ( int i = 0; i < size; i++ ) {
-                    if ( frameArray[i] instanceof TSViewGraphJFrame || frameArray[i] instanceof TSViewSummaryJFrame ||
-                        frameArray[i] instanceof TSViewTableJFrame ) {
-                        if ( frameArray[i].isVisible() ) {
-                            openWindowFound = true;
-                            Message.printStatus(2,routine,
-                                "Open, visible window detected.  Waiting for close of window to exit.");
-                            break;
-                        }
-                    }
+                // The check is in the listener class so that view window classes are only loaded when --nomaingui is used.
+                boolean openWindowFound = TSToolBatchWindowListener.isViewWindowOpen();
+                if ( openWindowFound ) {
+                    Message.printStatus(2,routine, "Open, visible window detected.  Waiting for close of window to exit.");
                 }
                 // If no open window was found quit.  Otherwise let the TSToolBatchWindowListener handle the close.
                 if ( !openWindowFound ) {
@@ -925,6 +1512,9 @@ public static void main ( String args[] ) {
 			// Some type of error.
 			Message.printWarning ( 1, routine, "Error running command file \"" + getCommandFile() + "\"." );
 			Message.printWarning ( 1, routine, e );
+			if ( watchdog.isExpired() ) {
+				quitProgram ( BatchWatchdog.EXIT_TIMEOUT );
+			}
 			quitProgram ( 1 );
 		}
 	}
@@ -932,8 +1522,6 @@ public static void main ( String args[] ) {
 		String batchServerHotFolder0 = getBatchServerHotFolder();
 		trackUsage ( "batchserver" );
 		Message.printStatus ( 1, routine, "Starting in batch server mode with hot folder \"" + batchServerHotFolder0 + "\"" );
-		// TODO SAM 2016-02-09 For now keep code here but may make more modular.
-		// Create a runner that will be re-used.
 		if ( batchServerHotFolder0.isEmpty() ) {
 			Message.printWarning ( 1, routine, "No batch server hot folder specified - use -batchServerHotFolder command line parameter." );
 			quitProgram ( 1 );
@@ -947,88 +1535,171 @@ public static void main ( String args[] ) {
 			Message.printWarning ( 1, routine, "Can't read batch server hot folder \"" + batchServerHotFolder + "\"." );
 			quitProgram ( 1 );
 		}
-		// Create a processor using initial command line properties for the processor.
+		// Create a processor that holds the open datastores, which are shared with the processor for each job.
 		TSCommandFileRunner runner = new TSCommandFileRunner(processorProps, pluginCommandClasses);
 		// Open the HydroBase connection if the configuration file specifies the information.
 		// Do this before reading the command file because commands may try to run discovery during load.
+		phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openHydroBase");
         openHydroBase ( runner.getProcessor() );
+        phase.end();
         // Open datastores in a generic way if the configuration file specifies the information.
         // Do this before reading the command file because commands may try to run discovery during load.
         openDataStoresAtStartup ( session, runner.getProcessor(), pluginDataStoreClasses, pluginDataStoreFactoryClasses, true );
-        File f = null;
-		String commandFileFull = "";
-	    boolean runDiscoveryOnLoad = false;
-	    boolean doStop = false;
-	    long sleep = 50;
-        while ( true ) {
-        	Thread.sleep(sleep); // Do this to keep the loop from eating up a lot of CPU.
-        	// Wait for configured wait time between processing.
-        	// Look for files in the batch server hot folder.
-        	List<File> files = IOUtil.getFilesMatchingPattern(batchServerHotFolder0, "*", true);
-        	//Message.printStatus(1,routine,"Have " + files.size() + " files in hot folder.");
-        	// TODO SAM 2016-02-08 need to sort so oldest file processed first.
-        	// Also perhaps need to check for a command like "End()" to make sure file is complete from copy into hot folder.
-        	for ( int i = 0; i < files.size(); i++ ) {
-        		f = files.get(i);
-        		// Make sure the file exists and is readable.
-        		Message.printStatus(1,routine,"Processing command file \"" + f.getAbsolutePath() + "\".");
-        		if ( f.exists() && f.canRead() ) {
-    				commandFileFull = f.getAbsolutePath();
-        			String filename = f.getName();
-        			// Special actions based on command file name.
-        			if ( filename.equalsIgnoreCase("stop") ) {
-        				doStop = true;
-        				break;
-        			}
-        			if ( !commandFileFull.toUpperCase().endsWith(".TSTOOL") ) {
-        				// Not a command file so don't process.
-        				continue;
-        			}
-        			// Open the command file.
-        			try {
-        			    Message.printStatus( 1, routine, "Running command file in batch server mode:  \"" + commandFileFull + "\"" );
-        				runner.readCommandFile ( commandFileFull, runDiscoveryOnLoad );
-        			}
-        			catch ( Exception e ) {
-        				Message.printWarning ( 1, routine, "Error reading command file \"" + commandFileFull + "\".  Unable to run commands." );
-        				Message.printWarning ( 1, routine, e );
-        				continue;
-        			}
-        			// Run the command file.
-        			try {
-        			    // The following will throw an exception if there are any errors running.
-        	            runner.runCommands();
-        			}
-        			catch ( Exception e ) {
-        				Message.printWarning ( 1, routine, "Error running command file \"" + commandFileFull + "\"." );
-        				Message.printWarning ( 1, routine, e );
-        			}
-        			// Remove the command file.
-        			f.delete();
-        		}
-        	}
-        	if ( doStop ) {
-        		// TODO SAM 2016-02-08 is it necessary to deal with windows/frames?
-        		Message.printStatus ( 1, routine, "Exiting batch server because file named \"stop\" was found in hot folder." );
-        		f.delete();
-        		quitProgram ( 0 );
+        // Startup is complete.
+        finishStartupProfile();
+        // When several batch servers share the hot folder, hold a lease for each job so that jobs for a node that stops are run again.
+        BatchServerLeases leases = null;
+        if ( getBatchServerNode() != null ) {
+        	leases = new BatchServerLeases ( batchServerHotFolder, getBatchServerNode(),
+        		getConfigPropInt(session, "BatchServerLeaseTimeout", 60)*1000L,
+        		getConfigPropInt(session, "BatchServerLeaseHeartbeat", 10)*1000L );
+        }
+        // Open the job journal and requeue jobs that were processing when the server last stopped.
+        BatchServerJournal journal = new BatchServerJournal ( batchServerHotFolder,
+        	getConfigPropInt(session, "BatchServerJobRetentionDays", 30), leases );
+        try {
+        	journal.open();
+        }
+        catch ( IOException e ) {
+			Message.printWarning ( 1, routine, "Error opening batch server job journal (" + e + ")." );
+			quitProgram ( 1 );
+        }
+        journal.recover();
+        // Watch the hot folder for command files:
+        // - files are processed oldest first after they have finished being copied into the folder
+        String hotFolderMode = getConfigPropValue ( session, "BatchServerHotFolderMode" );
+        if ( (hotFolderMode == null) || hotFolderMode.isEmpty() ) {
+        	hotFolderMode = BatchServerHotFolder.MODE_AUTO;
+        }
+        BatchServerHotFolder hotFolder = new BatchServerHotFolder ( batchServerHotFolder, hotFolderMode,
+        	getConfigPropInt(session, "BatchServerStableTime", 1000),
+        	getConfigPropInt(session, "BatchServerPollInterval", 1000),
+        	getConfigPropInt(session, "BatchServerRescanInterval", 60000) );
+        // Also watch the priority subfolders (high, normal, low), creating them if necessary.
+        for ( String priorityName : BatchServerJob.PRIORITY_NAMES ) {
+        	File priorityFolder = new File ( batchServerHotFolder, priorityName );
+        	if ( !priorityFolder.exists() && !priorityFolder.mkdir() ) {
+        		Message.printWarning ( 2, routine, "Unable to create batch server priority folder \"" + priorityFolder + "\"." );
+        		continue;
         	}
+        	hotFolder.addFolder ( priorityFolder );
+        }
+        hotFolder.open();
+        // Run jobs in order of priority and fair share between submitters, raising the priority of waiting jobs over time.
+        String fairShare = getConfigPropValue ( session, "BatchServerFairShare" );
+        if ( (fairShare == null) || fairShare.isEmpty() ) {
+        	fairShare = BatchServerScheduler.FAIR_SHARE_OWNER;
+        }
+        BatchServerScheduler scheduler = new BatchServerScheduler ( batchServerHotFolder, fairShare,
+        	getConfigPropInt(session, "BatchServerPriorityAging", 600)*1000L );
+        BatchServer batchServer = new BatchServer ( hotFolder, journal, scheduler, runner.getProcessor(), processorProps, pluginCommandClasses,
+        	datastoreSubstituteList, getBatchServerWorkers() );
+        // Reload datastores whose configuration files have changed when a "reload-datastores" file is found in the hot folder.
+        batchServer.setDataStoreReloader ( new DataStoreReloader ( session, runner.getProcessor(), pluginDataStoreClasses,
+        	pluginDataStoreFactoryClasses, getDataStoreOpenTimeout(session) ) );
+        // Coalesce requests for identical command files unless disabled.
+        String coalesceDuplicates = getConfigPropValue ( session, "BatchServerCoalesceDuplicates" );
+        batchServer.setCoalesceDuplicates ( (coalesceDuplicates == null) || !coalesceDuplicates.equalsIgnoreCase("False") );
+        batchServer.setLeases ( leases );
+        // Write the status file with the server metrics periodically.
+        batchServer.setStatusInterval ( getConfigPropInt(session, "BatchServerStatusInterval", 30)*1000L );
+        // Cancel jobs that exceed the default time and memory limits, which can be overridden by command file annotations.
+        // The allocation limit defaults to a multiple of the memory limit because allocation includes garbage.
+        batchServer.setJobLimits ( getConfigPropInt(session, "BatchServerJobTimeLimit", 0),
+        	getConfigPropInt(session, "BatchServerJobMemoryLimit", 0), getConfigPropInt(session, "BatchServerJobAllocationLimit", -1) );
+        if ( isIncremental() ) {
+        	// Skip jobs whose inputs and outputs have not changed since the last successful run.
+        	batchServer.setIncrementalCache ( new IncrementalRunCache(getIncrementalCacheFolder(session)) );
+        }
+        batchServer.run();
+		Message.printStatus ( 1, routine, "Exiting batch server." );
+        quitProgram ( 0 );
+	}
+	else if ( isDaemon() ) {
+		trackUsage ( "daemon" );
+		Message.printStatus ( 1, routine, "Starting in daemon mode." );
+		// Create a processor that holds the open datastores, which are shared with the processor for each run.
+		TSCommandFileRunner runner = new TSCommandFileRunner(processorProps, pluginCommandClasses);
+		phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openHydroBase");
+        openHydroBase ( runner.getProcessor() );
+        phase.end();
+        openDataStoresAtStartup ( session, runner.getProcessor(), pluginDataStoreClasses, pluginDataStoreFactoryClasses, true );
+        // Startup is complete.
+        finishStartupProfile();
+        TSToolDaemon daemon = new TSToolDaemon ( session, runner.getProcessor(), processorProps, pluginCommandClasses,
+        	datastoreSubstituteList, __daemonPort );
+        // Allow clients to reload datastores whose configuration files have changed (tstool --client --reload-datastores).
+        daemon.setDataStoreReloader ( new DataStoreReloader ( session, runner.getProcessor(), pluginDataStoreClasses,
+        	pluginDataStoreFactoryClasses, getDataStoreOpenTimeout(session) ) );
+        try {
+        	daemon.run();
         }
+        catch ( Exception e ) {
+        	Message.printWarning ( 1, routine, "Error running daemon (" + e + ")." );
+        	Message.printWarning ( 3, routine, e );
+        	quitProgram ( 1 );
+        }
+        Message.printStatus ( 1, routine, "Exiting daemon." );
+        quitProgram ( 0 );
 	}
 	else if ( isHttpServer() ) {
-		// See:  http://stackoverflow.com/questions/3732109/simple-http-server-in-java-using-only-java-se-api
-		// Do something simple for now to test.
+		// Run command files submitted by HTTP clients as asynchronous jobs (see UrlHandler for the API).
 		trackUsage ( "httpserver" );
-		int port = 8000;
-		HttpServer server = HttpServer.create(new InetSocketAddress(port),0);
-		String root = "/tstool";
-		server.createContext(root, new UrlHandler());
-		server.setExecutor(null);
-		server.start();
+		Message.printStatus ( 1, routine, "Starting in HTTP server mode." );
+		// Create a processor that holds the open datastores, which are shared with the processor for each job.
+		TSCommandFileRunner runner = new TSCommandFileRunner(processorProps, pluginCommandClasses);
+		phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openHydroBase");
+        openHydroBase ( runner.getProcessor() );
+        phase.end();
+        openDataStoresAtStartup ( session, runner.getProcessor(), pluginDataStoreClasses, pluginDataStoreFactoryClasses, true );
+        // Startup is complete.
+        finishStartupProfile();
+        // Each running job is a datastore call, so by default use at most half of the datastore calls for jobs,
+        // so that requests that read from datastores are not rejected while all workers are running jobs.
+        int httpServerDataStoreConcurrency = getConfigPropInt(session, "HttpServerDataStoreConcurrency", 16);
+        TSToolHttpServer httpServer = new TSToolHttpServer ( session, runner.getProcessor(), processorProps, pluginCommandClasses,
+        	datastoreSubstituteList, getConfigPropInt(session, "HttpServerPort", 8000),
+        	getConfigPropInt(session, "HttpServerWorkers",
+        		Math.min(Runtime.getRuntime().availableProcessors(), httpServerDataStoreConcurrency/2)) );
+        httpServer.setToken ( getConfigPropValue(session, "HttpServerToken") );
+        httpServer.setQueueSize ( getConfigPropInt(session, "HttpServerQueueSize", 100) );
+        // Handle requests with virtual threads unless disabled or not available, otherwise with a pool of request threads.
+        String httpServerVirtualThreads = getConfigPropValue ( session, "HttpServerVirtualThreads" );
+        httpServer.setVirtualThreads ( (httpServerVirtualThreads == null) || !httpServerVirtualThreads.equalsIgnoreCase("False") );
+        httpServer.setRequestThreads ( getConfigPropInt(session, "HttpServerRequestThreads", 16) );
+        // Limit concurrent datastore calls so that many waiting requests do not overload the databases.
+        httpServer.setDataStoreConcurrency ( httpServerDataStoreConcurrency,
+        	getConfigPropInt(session, "HttpServerDataStoreWait", 60)*1000L );
+        // Limit concurrent bulk time series reads from each datastore (POST /tstool/ts).
+        httpServer.setDataStoreReadConcurrency ( getConfigPropInt(session, "HttpServerDataStoreReadConcurrency", 4) );
+        httpServer.setJobRetention ( getConfigPropInt(session, "HttpServerJobRetention", 60)*60000L );
+        // Keep time series catalogs so that clients can page through them without reading again (GET /tstool/catalog).
+        httpServer.setCatalogCache ( getConfigPropInt(session, "HttpServerCatalogCacheSize", 20),
+        	getConfigPropInt(session, "HttpServerCatalogCacheTime", 5)*60000L );
+        // Allow clients to reload datastores whose configuration files have changed (POST /tstool/datastores/reload).
+        httpServer.setDataStoreReloader ( new DataStoreReloader ( session, runner.getProcessor(), pluginDataStoreClasses,
+        	pluginDataStoreFactoryClasses, getDataStoreOpenTimeout(session) ) );
+        try {
+        	// Listen on the loopback address unless configured, because command files can run programs and write files.
+        	// The server does not start on other addresses unless a token is configured.
+        	String httpServerAddress = getConfigPropValue ( session, "HttpServerAddress" );
+        	if ( (httpServerAddress != null) && !httpServerAddress.isEmpty() ) {
+        		httpServer.setAddress ( InetAddress.getByName(httpServerAddress) );
+        	}
+        	httpServer.run();
+        }
+        catch ( Exception e ) {
+        	Message.printWarning ( 1, routine, "Error running HTTP server (" + e + ")." );
+        	Message.printWarning ( 3, routine, e );
+        	quitProgram ( 1 );
+        }
+        Message.printStatus ( 1, routine, "Exiting HTTP server." );
+        quitProgram ( 0 );
 	}
 	else if ( isRestServer() ) {
 		// Run in server mode using REST API.
 		trackUsage ( "restservelet" );
+		finishStartupProfile();
 		runRestletServer();
 	}
 	else {
@@ -1036,6 +1707,7 @@ public static void main ( String args[] ) {
 		// - the processor for the UI is created in the called code
 		Message.printStatus ( 2, routine, "Starting TSTool UI..." );
 		trackUsage ( "ui" );
+		// The UI finishes the startup profile after the input filters are initialized.
 		try {
             __tstool_JFrame = new TSTool_JFrame (
             	session,
@@ -1078,6 +1750,28 @@ Otherwise, opening datastores takes time and impacts performance.
 protected static DataStore openDataStore ( TSToolSession session, PropList dataStoreProps,
 	TSCommandProcessor processor, @SuppressWarnings("rawtypes") List<Class> pluginDataStoreClassList,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryClassList, boolean isBatch )
+throws ClassNotFoundException, IllegalAccessException, InstantiationException, Exception {
+	return openDataStore ( session, dataStoreProps, processor, pluginDataStoreClassList, pluginDataStoreFactoryClassList, isBatch, true, true );
+}
+
+/**
+Open a single datastore given its configuration properties.
+This version allows the caller to add the datastore to the processor,
+which is used when datastores are opened concurrently and are added to the processor in a deterministic order.
+@param session TSTool session, which provides user and environment information
+@param dataStoreProps datastore configuration properties recognized by the datastore factory "create" method.
+@param processor time series command processor that will use/manage the datastore
+@param pluginDataStoreClassList list of plugin datastore classes to be loaded dynamically
+@param isBatch indicate whether running in batch mode - if true, do not open datastores with login of "prompt"
+@param addToProcessor if true, add the opened datastore to the processor;
+if false the caller is responsible for adding the datastore to the processor
+@param allowLazy if true, return a LazyDataStore placeholder if the datastore is configured to be lazy
+(see isDataStoreLazy()); if false, always open the datastore (used when a LazyDataStore is opened)
+*/
+protected static DataStore openDataStore ( TSToolSession session, PropList dataStoreProps,
+	TSCommandProcessor processor, @SuppressWarnings("rawtypes") List<Class> pluginDataStoreClassList,
+	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryClassList, boolean isBatch, boolean addToProcessor,
+	boolean allowLazy )
 throws ClassNotFoundException, IllegalAccessException, InstantiationException, Exception {
     String routine = TSToolMain.class.getSimpleName() + ".openDataStore";
     // Open the datastore depending on the type.
@@ -1113,10 +1807,10 @@ throws ClassNotFoundException, IllegalAccessException, InstantiationException, E
     	}
     }
     else {
-    	if ( disableDatastoresMessageCount == 0 ) {
+    	// Only print the message for the first datastore that is opened.
+    	if ( disableDatastoresMessageCount.getAndIncrement() == 0 ) {
     		Message.printStatus(2, routine,
 			  		"Command line parameters --disable-datastores and --enable-datastores were not specified." );
-    		++disableDatastoresMessageCount;
     	}
     }
 
@@ -1282,7 +1976,21 @@ throws ClassNotFoundException, IllegalAccessException, InstantiationException, E
         	// The datastore is disabled so don't load the plugin
         	isEnabled = false;
         }
-        if ( isEnabled ) {
+        if ( isEnabled && allowLazy && isDataStoreLazy(session, dataStoreProps) ) {
+        	// Datastore is enabled but is lazy so add a placeholder that will open the datastore when referenced:
+        	// - the datastore type was checked above so the datastore factory should be available when opened
+        	LazyDataStore dataStore = new LazyDataStore ( session, dataStoreProps, processor,
+        		pluginDataStoreClassList, pluginDataStoreFactoryClassList, isBatch );
+        	if ( addToProcessor ) {
+        		synchronized ( processor ) {
+        			processor.setPropContents ( "DataStore", dataStore );
+        		}
+        	}
+        	Message.printStatus(2, routine, "Datastore type \"" + dataStoreType + "\", name \"" +
+        		dataStoreName + "\" is lazy.  Will open when referenced by commands or selected." );
+        	return dataStore;
+        }
+        else if ( isEnabled ) {
             // Datastore is enabled so construct the instance.
             StopWatch sw = new StopWatch();
             sw.start();
@@ -1347,7 +2055,11 @@ throws ClassNotFoundException, IllegalAccessException, InstantiationException, E
         	            }
         	            else {
 	        	            // Add the datastore to the processor.
-	        	            processor.setPropContents ( "DataStore", dataStore );
+	        	            if ( addToProcessor ) {
+	        	            	synchronized ( processor ) {
+	        	            		processor.setPropContents ( "DataStore", dataStore );
+	        	            	}
+	        	            }
 	        	            Message.printStatus(2, routine, "Opening datastore type \"" + dataStoreType + "\", name \"" +
 	        	                dataStore.getName() + "\" took " + sw.getMilliseconds() + " ms" );
         	            }
@@ -1366,7 +2078,11 @@ throws ClassNotFoundException, IllegalAccessException, InstantiationException, E
 	        	// TODO SAM 2015-02-15 Need to update each factory to handle partial opens.
 	            DataStore dataStore = factory.create(dataStoreProps);
 	            // Add the datastore to the processor.
-	            processor.setPropContents ( "DataStore", dataStore );
+	            if ( addToProcessor ) {
+	            	synchronized ( processor ) {
+	            		processor.setPropContents ( "DataStore", dataStore );
+	            	}
+	            }
 	            Message.printStatus(2, routine, "DataStore properties are: " + dataStore.getProperties().toString(","));
 	            sw.stop();
 	            Message.printStatus(2, routine, "Opening datastore type \"" + dataStoreType + "\", name \"" +
@@ -1392,6 +2108,9 @@ throws ClassNotFoundException, IllegalAccessException, InstantiationException, E
 /**
 Open the datastores (e.g., database and web service connection(s)) using datastore configuration files.
 This method can be called from the UI code to automatically establish database startup database connections.
+Datastores with different names are opened concurrently (see TSTool.DataStoreOpenThreads configuration property),
+each with a timeout (see TSTool.DataStoreOpenTimeout configuration property and OpenTimeout datastore property).
+Datastores that time out are added to the processor as UnopenedDataStore with an error status.
 @param session TSTool session, which provides user and environment information.
 @param processor Command processor that will have datastores opened.
 @param pluginDataStoreClassList List of plugin datastore classes to be loaded dynamically.
@@ -1402,57 +2121,26 @@ protected static void openDataStoresAtStartup ( TSToolSession session, TSCommand
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreClassList,
 	@SuppressWarnings("rawtypes") List<Class> pluginDataStoreFactoryClassList, boolean isBatch ) {
     String routine = TSToolMain.class.getSimpleName() + ".openDataStoresAtStartup";
+    StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openDataStoresAtStartup");
 
     // Allow multiple database connections via the new convention using datastore configuration files.
     // The following code processes all datastores.
 
     // Plugin datastore classes will have been loaded by this time.
 
-	// List configuration files in the 'datastores' folder of the software installation.
-	List<String> dataStoreConfigFiles = new ArrayList<String>();
-	// First list the cfg files
-	String installDatastoresFolder = session.getInstallDatastoresFolder();
-	List<File> installConfigFiles = IOUtil.getFilesMatchingPattern(installDatastoresFolder, "cfg", true);
-	Message.printStatus(2, routine, "Found " + installConfigFiles.size() +
-		" installation datastore *.cfg files in \"" + installDatastoresFolder );
-	// Convert to String
-	for ( File f : installConfigFiles ) {
-		dataStoreConfigFiles.add(f.getAbsolutePath());
-	}
-
-    // Also get names of datastore configuration files from configuration files in user's home folder .tstool/N/datastores.
-    if ( session.createUserDatastoresFolder(true) ) {
-	    String datastoreFolder = session.getUserDatastoresFolder();
-	    File f = new File(datastoreFolder);
-	    FilenameFilter ff = new FilenameFilter() {
-	    	public boolean accept(File dir, String name) {
-	    		if ( name.toLowerCase().endsWith(".cfg") ) {
-	    			return true;
-	    		}
-	    		else {
-	    			return false;
-	    		}
-	    	}
-	    };
-	    String [] dfs = f.list(ff); // Returns files without leading path.
-	    if ( dfs != null ) {
-	    	for ( int i = 0; i < dfs.length; i++ ) {
-	    		String datastoreFile = datastoreFolder + File.separator + dfs[i];
-	    		dataStoreConfigFiles.add(datastoreFile);
-	    		Message.printStatus(2, routine, "Found user datastore configuration file: " + datastoreFile );
-	    	}
-	    }
-    }
-    // Now open the datastores for found configuration files:
+	// List configuration files in the 'datastores' folder of the software installation and then the user's datastores folder.
+	List<String> dataStoreConfigFiles = getDataStoreConfigFiles ( session );
+    // Now read the datastore configuration files:
     // - loop backwards since user files were added last
-    // - if a duplicate is found, use the user version first
+    // - group the configuration files by datastore name, so that if a duplicate is found, the user version is used first
+    // - reading the configuration files is fast so is done sequentially
     int nDataStores = dataStoreConfigFiles.size();
-    // Datastore names that have been opened, so as to avoid reopening.  User datastores are opened first.
-    List<DataStore> openDataStoreList = new ArrayList<>(); // Datastores that have been opened, to avoid re-opening.
+    Map<String,List<PropList>> dataStorePropsMap = new LinkedHashMap<>();
+    Map<String,String> dataStoreNameMap = new LinkedHashMap<>();
     Message.printStatus(2, routine, "Trying to open " + dataStoreConfigFiles.size() + " datastores (first user, then installation configuration files)." );
     for ( int iDataStore = nDataStores - 1; iDataStore >= 0; iDataStore-- ) {
     	String dataStoreFile = dataStoreConfigFiles.get(iDataStore);
-        Message.printStatus ( 2, routine, "Start opening datastore using properties in \"" + dataStoreFile + "\".");
+        Message.printStatus ( 2, routine, "Reading datastore properties from \"" + dataStoreFile + "\".");
         // Read the properties from the configuration file.
         PropList dataStoreProps = new PropList("");
         String dataStoreFileFull = dataStoreFile;
@@ -1465,7 +2153,6 @@ protected static void openDataStoresAtStartup ( TSToolSession session, TSCommand
         }
         else {
             dataStoreProps.setPersistentName(dataStoreFileFull);
-            String dataStoreClassName = "";
             try {
                 // Get the properties from the file.
                 dataStoreProps.readPersistent();
@@ -1483,49 +2170,15 @@ protected static void openDataStoresAtStartup ( TSToolSession session, TSCommand
                			"\" type \"" + dataStoreType + "\" is obsolete.  Skipping." );
                 	continue;
                 }
-                // See if the datastore name matches one that is already open and if so, ignore it:
-                // - ignore because user datastores are opened first
-                // - name must match, and must be enabled
-                boolean dataStoreAlreadyOpened = false;
-                for ( DataStore openDataStore : openDataStoreList ) {
-                	String prop = openDataStore.getProperty("Enabled");
-                	boolean isEnabled = false;
-                	if ( (prop != null) && prop.equalsIgnoreCase("true") ) {
-                		isEnabled = true;
-                	}
-                	if ( openDataStore.getName().equalsIgnoreCase(dataStoreName) && isEnabled ) {
-                		// Found a matching datastore.
-                		Message.printStatus ( 2, routine, "  Datastore \"" + dataStoreName +
-                			"\" matches previous enabled datastore (user datastores are used before system datastores).  Skipping.");
-                		dataStoreAlreadyOpened = true;
-                		break;
-                	}
-                }
-                if ( dataStoreAlreadyOpened ) {
-                	continue;
-                }
-                DataStore dataStore = openDataStore ( session, dataStoreProps, processor, pluginDataStoreClassList, pluginDataStoreFactoryClassList, isBatch );
-                // Save the datastore name so duplicates are not opened.
-                if ( dataStore != null ) {
-                	// DataStore will be null if disabled or a serious error occurred opening.
-                	openDataStoreList.add(dataStore);
+                // Group by name (case-insensitive) so that datastores with the same name are opened in order.
+                String key = dataStoreName.toUpperCase();
+                List<PropList> dataStorePropsList = dataStorePropsMap.get(key);
+                if ( dataStorePropsList == null ) {
+                	dataStorePropsList = new ArrayList<>();
+                	dataStorePropsMap.put(key, dataStorePropsList);
+                	dataStoreNameMap.put(key, dataStoreName);
                 }
-                Message.printStatus ( 2, routine, "  Done opening datastore using properties in \"" + dataStoreFile + "\".");
-            }
-            catch ( ClassNotFoundException e ) {
-                Message.printWarning (2,routine, "  Datastore class \"" + dataStoreClassName +
-                    "\" is not in the class path - report to software support (" + e + ")." );
-                Message.printWarning(2, routine, e);
-            }
-            catch( InstantiationException e ) {
-                Message.printWarning (2,routine, "  Error instantiating datastore for class \"" + dataStoreClassName +
-                    "\" - report to software support (" + e + ")." );
-                Message.printWarning(2, routine, e);
-            }
-            catch( IllegalAccessException e ) {
-                Message.printWarning (2,routine, "  Datastore for class \"" + dataStoreClassName +
-                    "\" needs a no-argument constructor - report to software support (" + e + ")." );
-                Message.printWarning(2, routine, e);
+                dataStorePropsList.add(dataStoreProps);
             }
             catch ( Exception e ) {
                 Message.printWarning (2,routine,"  Error reading datastore configuration file \"" +
@@ -1535,6 +2188,107 @@ protected static void openDataStoresAtStartup ( TSToolSession session, TSCommand
         }
     }
 
+    // Open the datastores:
+    // - datastores with different names are independent and are opened concurrently,
+    //   limited by the number of open threads
+    // - datastores that prompt for login in the UI are opened on the calling thread
+    // - each datastore name is opened with a timeout and if the timeout is reached,
+    //   a placeholder datastore with an error status is added to the processor
+    int threadCount = getDataStoreOpenThreadCount ( session );
+    int defaultTimeoutSeconds = getDataStoreOpenTimeout ( session );
+    Message.printStatus(2, routine, "Opening " + dataStorePropsMap.size() + " datastores using up to " + threadCount +
+    	" threads and default timeout " + defaultTimeoutSeconds + " seconds (0=no timeout)." );
+    StopWatch swAll = new StopWatch();
+    swAll.start();
+    List<DataStoreOpenTask> taskList = new ArrayList<>();
+    List<DataStoreOpenTask> callerTaskList = new ArrayList<>();
+    CountDownLatch doneLatch = new CountDownLatch(dataStorePropsMap.size());
+    Semaphore permits = new Semaphore(threadCount);
+    ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor ( new ThreadFactory() {
+    	public Thread newThread ( Runnable r ) {
+    		Thread t = new Thread ( r, "TSTool-datastore-open-timeout" );
+    		t.setDaemon(true);
+    		return t;
+    	}
+    });
+    try {
+	    for ( Map.Entry<String,List<PropList>> entry : dataStorePropsMap.entrySet() ) {
+	    	String dataStoreName = dataStoreNameMap.get(entry.getKey());
+	    	List<PropList> dataStorePropsList = entry.getValue();
+	    	boolean doPrompt = false;
+	    	int timeoutSeconds = defaultTimeoutSeconds;
+	    	for ( PropList dataStoreProps : dataStorePropsList ) {
+	        	String systemLogin = dataStoreProps.getValue("SystemLogin");
+	        	String systemPassword = dataStoreProps.getValue("SystemPassword");
+	            if ( ((systemLogin != null) && systemLogin.equalsIgnoreCase("prompt")) ||
+	            	((systemPassword != null) && systemPassword.equalsIgnoreCase("prompt"))	) {
+	            	doPrompt = true;
+	            }
+	            // The datastore configuration file can override the default timeout.
+	            String propValue = dataStoreProps.getValue("OpenTimeout");
+	            if ( (propValue != null) && StringUtil.isInteger(propValue) ) {
+	            	timeoutSeconds = Integer.parseInt(propValue.trim());
+	            }
+	    	}
+	    	if ( doPrompt && !isBatch ) {
+	    		// Open on the calling thread after other datastores have been started, with no timeout since user input is needed.
+	    		DataStoreOpenTask task = new DataStoreOpenTask ( dataStoreName, dataStorePropsList, session, processor,
+	    			pluginDataStoreClassList, pluginDataStoreFactoryClassList, isBatch, 0, null, null, doneLatch );
+	    		taskList.add(task);
+	    		callerTaskList.add(task);
+	    	}
+	    	else {
+	    		DataStoreOpenTask task = new DataStoreOpenTask ( dataStoreName, dataStorePropsList, session, processor,
+	    			pluginDataStoreClassList, pluginDataStoreFactoryClassList, isBatch, timeoutSeconds, timeoutScheduler, permits, doneLatch );
+	    		taskList.add(task);
+	    		// Wait for a permit so that only the requested number of datastores are opened at the same time:
+	    		// - the permit is released when the open completes or times out
+	    		permits.acquire();
+	    		Thread t = new Thread ( task, "TSTool-datastore-open-" + dataStoreName );
+	    		// Use a daemon thread so that a hung open does not prevent TSTool from exiting.
+	    		t.setDaemon(true);
+	    		t.start();
+	    	}
+	    }
+	    for ( DataStoreOpenTask task : callerTaskList ) {
+	    	task.run();
+	    }
+	    // Wait for all the datastores to open or time out.
+	    doneLatch.await();
+    }
+    catch ( InterruptedException e ) {
+    	Message.printWarning(2, routine, "Interrupted waiting for datastores to open.  Not all datastores may be available." );
+    	Message.printWarning(3, routine, e);
+    }
+    finally {
+    	timeoutScheduler.shutdownNow();
+    }
+    swAll.stop();
+
+    // Add the datastores to the processor in the same order as the configuration files were processed,
+    // so that the order of datastores in the processor and UI does not depend on thread timing.
+    for ( DataStoreOpenTask task : taskList ) {
+    	synchronized ( processor ) {
+    		for ( DataStore dataStore : task.getDataStoreList() ) {
+    			processor.setPropContents ( "DataStore", dataStore );
+    		}
+    	}
+    	for ( String timing : task.getTimingList() ) {
+    		Message.printStatus ( 2, routine, "  " + timing );
+    	}
+    	if ( task.isTimedOut() ) {
+    		// Add a placeholder so that the datastore is listed with an error status, similar to a failed open.
+    		String message = "Datastore \"" + task.getDataStoreName() + "\" did not open within the " +
+    			task.getTimeoutSeconds() + " second timeout.";
+    		Message.printWarning ( 2, routine, "  " + message );
+    		synchronized ( processor ) {
+    			processor.setPropContents ( "DataStore", new UnopenedDataStore ( task.getTimedOutDataStoreProps(), message ) );
+    		}
+    	}
+    }
+    Message.printStatus ( 2, routine, "Opening " + taskList.size() + " datastores took " + swAll.getMilliseconds() + " ms." );
+    phase.end();
+
     // TODO SAM 2010-09-01 Transition HydroBase and other datastores here.
 }
 
@@ -1626,6 +2380,103 @@ public static HydroBaseDMI openHydroBase ( TSCommandProcessor processor ) {
     }
     return null; // Probably will not get here.
 }
+/**
+Open lazy datastores that are referenced by a command file, before the command file is read and run.
+See openLazyDataStoresReferencedByCommands().
+@param processor the processor that contains the datastores
+@param commandFile the command file to check
+*/
+protected static void openLazyDataStoresReferencedByCommandFile ( TSCommandProcessor processor, String commandFile ) {
+	String routine = TSToolMain.class.getSimpleName() + ".openLazyDataStoresReferencedByCommandFile";
+	if ( LazyDataStore.getUnopenedDataStores(processor).size() == 0 ) {
+		// No need to read the command file.
+		return;
+	}
+	String commandText = null;
+	try {
+		commandText = new String ( Files.readAllBytes(Paths.get(commandFile)) );
+	}
+	catch ( IOException e ) {
+		// The command file will fail to read later so open all lazy datastores to be safe.
+		Message.printWarning(3, routine, "Error reading command file \"" + commandFile + "\" to check datastores (" + e + ")." );
+		commandText = null;
+	}
+	openLazyDataStoresReferencedByCommands ( processor, commandText );
+}
+
+/**
+Open lazy datastores that are referenced by commands, before the commands are run.
+Commands request datastores from the processor using specific datastore classes (for example HydroBaseDataStore),
+which a placeholder cannot impersonate, and the processor is not part of TSTool, so the datastore cannot be opened
+when a command first requests it.  Instead, the datastores that the commands reference are determined before running,
+by checking the command text, as follows:
+<ul>
+<li>	Comments (# lines and block comments) are ignored.</li>
+<li>	A lazy datastore is opened if its name, or a --datastore-substitute name for the datastore, is found in the command text
+	as a whole word, for example DataStore="Name" and TSID ~Name.  A name that is found in another string,
+	such as a description, also opens the datastore, which is harmless other than the time to open.</li>
+<li>	All lazy datastores are opened if the commands may reference datastores by names that are only known at run time,
+	which is the case for RunCommands() and a ${Property} for a datastore name (DataStore="${Property}" or TSID ~${Property}).</li>
+</ul>
+A datastore name that is built at run time in another way (for example read from a table or file) is not detected,
+in which case the command will fail to find the datastore, and Lazy=False should be used for the datastore.
+@param processor the processor that contains the datastores
+@param commandText command text to check, or null to open all lazy datastores
+*/
+public static void openLazyDataStoresReferencedByCommands ( TSCommandProcessor processor, String commandText ) {
+	String routine = TSToolMain.class.getSimpleName() + ".openLazyDataStoresReferencedByCommands";
+	List<LazyDataStore> lazyDataStoreList = LazyDataStore.getUnopenedDataStores(processor);
+	if ( lazyDataStoreList.size() == 0 ) {
+		return;
+	}
+	boolean openAll = false;
+	if ( commandText == null ) {
+		openAll = true;
+	}
+	else {
+		commandText = removeCommandComments ( commandText );
+		if ( commandText.indexOf("RunCommands(") >= 0 ) {
+			// Datastores used by the command files that are run cannot be determined until run time.
+			Message.printStatus(2, routine, "Commands use RunCommands() - opening all lazy datastores." );
+			openAll = true;
+		}
+		else if ( Pattern.compile("(?i)(DataStore\\s*=\\s*\"?[^\"\\)]*|~)\\$\\{").matcher(commandText).find() ) {
+			Message.printStatus(2, routine, "Commands use a property for a datastore name - opening all lazy datastores." );
+			openAll = true;
+		}
+	}
+	List<DataStoreSubstitute> substituteList = processor.getDataStoreSubstituteList();
+	for ( LazyDataStore lazyDataStore : lazyDataStoreList ) {
+		boolean doOpen = openAll;
+		if ( !doOpen ) {
+			// Check the datastore name and any substitute names used in commands.
+			List<String> names = new ArrayList<>();
+			names.add ( lazyDataStore.getName() );
+			if ( substituteList != null ) {
+				for ( DataStoreSubstitute dssub : substituteList ) {
+					if ( dssub.getDatastoreNameToUse().equalsIgnoreCase(lazyDataStore.getName()) ) {
+						names.add ( dssub.getDatastoreNameInCommands() );
+					}
+				}
+			}
+			for ( String name : names ) {
+				// Match the name as a whole word, for example in DataStore="Name" and TSID ~Name.
+				Pattern pattern = Pattern.compile("(?i)(^|[^A-Za-z0-9_])" + Pattern.quote(name) + "($|[^A-Za-z0-9_])");
+				if ( pattern.matcher(commandText).find() ) {
+					doOpen = true;
+					break;
+				}
+			}
+		}
+		if ( doOpen ) {
+			StopWatch sw = new StopWatch();
+			sw.start();
+			lazyDataStore.open();
+			sw.stop();
+			Message.printStatus(2, routine, "Opening lazy datastore \"" + lazyDataStore.getName() + "\" took " + sw.getMilliseconds() + " ms." );
+		}
+	}
+}
 
 /**
 Open the log file.  This should be done as soon as the application home
@@ -1648,6 +2499,7 @@ private static void openLogFile ( TSToolSession session ) {
 			Message.printStatus ( 1, routine, "Log file name from -logFile: " + logFile );
 			try {
                 Message.openLogFile ( logFile );
+                __logFile = logFile;
                 // Do it again so it goes into the log file.
                 Message.printStatus ( 1, routine, "Log file name from -logFile: " + logFile );
 			}
@@ -1664,6 +2516,7 @@ private static void openLogFile ( TSToolSession session ) {
 			Message.printStatus ( 1, routine, "Log file name from TSTool default: " + logFile );
 			try {
                 Message.openLogFile ( logFile );
+                __logFile = logFile;
                 // Also log for troubleshooting.
                 Message.printStatus ( 1, routine, "Log file name from TSTool default: " + logFile );
 			}
@@ -1737,6 +2590,33 @@ throws Exception {
 			Message.printStatus ( 1, routine, "Will start TSTool in batch server mode." );
 			__isBatchServer = true;
 		}
+		else if ( args[i].toLowerCase().startsWith("--create-startup-archive") ) {
+			// The parent JVM runs a training run with the same parameters, which is handled here.
+			__createStartupArchive = true;
+			pos = args[i].indexOf("=");
+			if ( pos > 0 ) {
+				__startupArchiveSampleCommandFile = parseArgsCheckSpaceReplacement(args[i].substring(pos + 1).trim(), spaceReplacement);
+			}
+			Message.printStatus ( 1, routine, "Running startup archive training run with sample command file: " +
+				__startupArchiveSampleCommandFile );
+		}
+		else if ( args[i].equalsIgnoreCase("--incremental") ) {
+			Message.printStatus ( 1, routine, "Will skip running command files that have not changed since the last successful run." );
+			__incremental = true;
+		}
+		else if ( args[i].equalsIgnoreCase("--daemon") ) {
+			Message.printStatus ( 1, routine, "Will start TSTool in daemon mode." );
+			__isDaemon = true;
+		}
+		else if ( args[i].toLowerCase().startsWith("--daemon-port=") ) {
+			String port = args[i].substring(args[i].indexOf("=") + 1).trim();
+			if ( StringUtil.isInteger(port) ) {
+				__daemonPort = Integer.parseInt(port);
+			}
+			else {
+				Message.printWarning(1, routine, "Bad parameter \"" + args[i] + "\", should be: --daemon-port=N");
+			}
+		}
 		else if ( args[i].equalsIgnoreCase("-batchServerHotFolder") || args[i].equalsIgnoreCase("--batchServerHotFolder") ) {
 		    // Batch server hot folder name.
 			if ( (i + 1) == args.length ) {
@@ -1747,6 +2627,26 @@ throws Exception {
 			i++;
 			__batchServerHotFolder = args[i];
 		}
+		else if ( args[i].equalsIgnoreCase("-batchServerNode") || args[i].equalsIgnoreCase("--batchServerNode") ) {
+		    // Batch server node identifier, when several batch servers share the hot folder.
+			if ( ((i + 1) == args.length) || !args[i + 1].matches("[A-Za-z0-9.-]+") ) {
+				message = "'" + args[i] + "' requires a node identifier containing only letters, digits, periods, and dashes";
+				Message.printWarning(1,routine, message);
+				throw new Exception(message);
+			}
+			i++;
+			__batchServerNode = args[i];
+		}
+		else if ( args[i].equalsIgnoreCase("-batchServerWorkers") || args[i].equalsIgnoreCase("--batchServerWorkers") ) {
+		    // Number of batch server workers.
+			if ( ((i + 1) == args.length) || !StringUtil.isInteger(args[i + 1]) || (Integer.parseInt(args[i + 1].trim()) < 1) ) {
+				message = "'" + args[i] + "' requires a number of workers 1 or greater";
+				Message.printWarning(1,routine, message);
+				throw new Exception(message);
+			}
+			i++;
+			__batchServerWorkers = Integer.parseInt(args[i].trim());
+		}
 		else if ( args[i].equalsIgnoreCase("-commands") || args[i].equalsIgnoreCase("--commands") ) {
 		    // Command file name.
 			if ((i + 1)== args.length) {
@@ -1931,6 +2831,11 @@ throws Exception {
 			Message.printStatus ( 1, routine, "Will start TSTool in HTTP server mode." );
 			__isHttpServer = true;
 		}
+		else if ( args[i].equalsIgnoreCase("--lazy-datastores") ) {
+			// Open datastores when referenced rather than at startup, which is faster when only some datastores are used.
+			Message.printStatus ( 1, routine, "Will open datastores when referenced by commands or selected (unless Lazy=False in the datastore configuration)." );
+			__lazyDataStores = true;
+		}
 		else if ( args[i].equalsIgnoreCase("-logFile") || args[i].equalsIgnoreCase("--logFile") ) {
 		    // Specify the log file.
 			if ((i + 1)== args.length) {
@@ -1979,6 +2884,10 @@ throws Exception {
 				Message.printWarning(1, routine, "Bad parameter \"" + args[i] + "\", should be: --space-replacement=string");
 			}
 		}
+		else if ( args[i].equalsIgnoreCase("--startup-profile") ) {
+			// Already handled at the start of main() so that all startup phases are profiled.
+			Message.printStatus ( 1, routine, "Will write startup profile files next to the log file." );
+		}
 		else if ( args[i].equalsIgnoreCase("-test") || args[i].equalsIgnoreCase("--test") ) {
 			// User specified (generally by developers).
 			IOUtil.testing(true);
@@ -2209,6 +3118,33 @@ private static void readConfigFile ( String configFile ) {
 	}
 }
 
+/**
+Remove comments from command text, so that datastore names in comments are not treated as references.
+Comments are # lines and block comment lines, from the line that starts with the comment start to the line that starts with the comment end.
+@param commandText command text
+@return the command text without comment lines
+*/
+private static String removeCommandComments ( String commandText ) {
+	StringBuilder b = new StringBuilder();
+	boolean inBlockComment = false;
+	for ( String line : commandText.split("\\r?\\n") ) {
+		String trimmed = line.trim();
+		if ( inBlockComment ) {
+			if ( trimmed.startsWith("*/") ) {
+				inBlockComment = false;
+			}
+		}
+		else if ( trimmed.startsWith("/*") ) {
+			inBlockComment = true;
+		}
+		else if ( !trimmed.startsWith("#") ) {
+			b.append ( line );
+			b.append ( "\n" );
+		}
+	}
+	return b.toString();
+}
+
 /**
 Run TSTool in restlet server mode.
 */
@@ -2346,7 +3282,9 @@ private static void setWorkingDirInitial() {
     IOUtil.setProgramWorkingDir ( working_dir );
     // Set the dialog because if the running in batch mode and interaction with the graph occurs,
     // this default for dialogs should be the home of the command file.
-    JGUIUtil.setLastFileDialogDirectory( working_dir );
+    if ( !__leanHeadless ) {
+    	JGUIUtil.setLastFileDialogDirectory( working_dir );
+    }
     String message = "Setting working directory to user directory \"" + working_dir +"\".";
     Message.printStatus ( 1, routine, message );
     System.err.println(message);
@@ -2356,75 +3294,21 @@ private static void setWorkingDirInitial() {
 Set the working directory as the parent of the command file.
 @param commandFileFull the full (absolute) path to the command file
 */
-private static void setWorkingDirUsingCommandFile ( String commandFileFull ) {
+protected static void setWorkingDirUsingCommandFile ( String commandFileFull ) {
     File commandFileFull_File = new File ( commandFileFull );
     String workingDir = commandFileFull_File.getParent();
     IOUtil.setProgramWorkingDir ( workingDir );
     // Set the dialog because if the running in batch mode and interaction with the graph occurs,
     // this default for dialogs should be the home of the command file.
-    JGUIUtil.setLastFileDialogDirectory( workingDir );
+    if ( !__leanHeadless ) {
+    	JGUIUtil.setLastFileDialogDirectory( workingDir );
+    }
     // Print at level 1 because the log file is not yet initialized.
     String message = "Setting working directory to command file folder \"" + workingDir + ".\"";
     //Message.printStatus ( 1, routine, message );
     System.err.println(message);
 }
 
-// TODO SAM 2015-12-14 This does not seem to work as intended:
-// - the Excecutor service itself is not a thread and so does not return immediately
-// - what will happen if -nomaingui is used with a thread timeout
-// - probably need timeout on start-up but not once graph is displayed
-/**
-Start the timeout thread, which will exit TSTool if it is not finished within the timeout.
-This is needed in cases where something in the code hangs and TSTool never exits.
-Ideally those situations can be handled with granular timeouts but that is sometimes not possible
-due to limitations in the packages that are called.
-@param timeoutSeconds number of seconds before timing out (ignore if <= 0)
-*/
-private static void startTimeoutThread ( int timeoutSeconds ) {
-	String routine = TSToolMain.class.getSimpleName() + ".startTimeoutThread";
-	if ( timeoutSeconds <= 0 ) {
-		// No need to start timeout thread.
-		return;
-	}
-	ExecutorService executor = Executors.newSingleThreadExecutor();
-	Future<String> future = executor.submit(new SleepTask(timeoutSeconds));
-	try {
-		Message.printStatus(2, routine, "Starting thread to time-out TSTool if not done after " + timeoutSeconds + " seconds.");
-		// Actually the task that is run above should sleep the number of seconds so specifying the seconds below is redundant.
-		future.get(timeoutSeconds,TimeUnit.SECONDS);
-		Message.printStatus(2, routine, "Exiting TSTool after waiting " + timeoutSeconds + " seconds.");
-		quitProgram(1); // TODO SAM 2015-02-14 need to evaluate a standard set of exit codes.
-	}
-	catch ( TimeoutException e ) {
-		Message.printWarning(2, routine, e );
-	}
-	catch ( InterruptedException e ) {
-		Message.printWarning(2, routine, e );
-	}
-	catch ( ExecutionException e ) {
-		Message.printWarning(2, routine, e );
-	}
-	finally {
-		// Shutdown the tasks managed by executor.
-		executor.shutdownNow();
-	}
-
-	/*
-    Runnable r = new Runnable() {
-        public void run() {
-            try {
-                // Put in some protection against injection by checking for keywords other than SELECT.
-                Thread.sleep(freqms);
-            }
-            catch ( Exception e ) {
-                // OK since don't care about results but output to troubleshoot (typical user won't see).
-                Message.printWarning(3, "keepAlive.run", e);
-            }
-        }
-    };
-    */
-}
-
 /**
  * Do a GET request on the OpenCDSS website to cause Google Analytics to track a TSTool usage.
  * TODO smalers 2023-03-30 This needs more work.
@@ -2501,29 +3385,3 @@ private static void trackUsage ( String runMode ) {
 }
 
 }
-
-/**
-Class used to run a timeout task, which is optional to end TSTool when running in batch mode.
-*/
-class SleepTask implements Callable<String> {
-	/**
-	Number of seconds the task should sleep before timing out.
-	*/
-	private int sleepSeconds = 0;
-
-	/**
-	Construct with the timeout.
-	*/
-	public SleepTask ( int sleepSeconds ) {
-		this.sleepSeconds = sleepSeconds;
-	}
-
-	/**
-	Callable task.
-	*/
-	@Override
-	public String call () throws Exception {
-		Thread.sleep(this.sleepSeconds*1000); // Task will wait the timeout and then return.
-		return "Slept " + sleepSeconds;
-	}
-}
\ No newline at end of file
@@ -99,11 +99,14 @@ import javax.swing.JToolBar;
 import javax.swing.ListSelectionModel;
 import javax.swing.RootPaneContainer;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import javax.swing.filechooser.FileFilter;
 
 // Node network classes.
@@ -967,7 +970,9 @@ public TSTool_JFrame (
 	// - this also creates the processor instance so will be non-null after this call
 	StopWatch in = new StopWatch();
 	in.start();
+	StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "GUI construction");
 	ui_InitGUI ( initialProps );
+	phase.end();
 	in.stop();
 
 	// Set the plugin command classes in the processor:
@@ -989,7 +994,9 @@ public TSTool_JFrame (
 	// FIXME smalers 2008-10-02 Need to confirm that information can be put in the file.
 	if ( this.__source_HydroBase_enabled ) { //&& license_IsInstallCDSS(__licenseManager) ) { // }
 		// Login to HydroBase using information in the TSTool configuration file.
+		phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "openHydroBase");
 		TSTool_HydroBase.getInstance(this).openHydroBase ( true, TSToolMenus.File_Properties_HydroBase_JMenuItem );
+		phase.end();
 		// Force the choices to refresh.
 		if ( TSTool_HydroBase.getInstance(this).getHydroBaseDMILegacy() != null ) {
 			this.__inputType_JComboBox.select ( null );
@@ -1040,6 +1047,14 @@ public TSTool_JFrame (
 		Message.printWarning ( 3, routine, "For developers:  caught exception initializing input filters at setup." );
 		Message.printWarning ( 3, routine, e );
 	}
+	if ( StartupProfiler.isEnabled() ) {
+		// Input filters are initialized on the Swing event thread so finish the startup profile after that.
+		SwingUtilities.invokeLater ( new Runnable() {
+			public void run () {
+				TSToolMain.finishStartupProfile();
+			}
+		});
+	}
 	// TODO smalers 2007-01-23 Evaluate use.
 	// Force everything to refresh based on the current GUI layout.  Still evaluating this.
 	this.invalidate ();
@@ -3165,10 +3180,24 @@ private void commandProcessor_RunCommandsThreaded ( List<Command> commands, bool
 	requestParams.setUsingObject ( "CreateOutput", new Boolean(createOutput) );
 	// TODO smalers 2017-02-08 the following does not seem to be recognized.
 	requestParams.setUsingObject ( "TSViewParentUIComponent", this ); // Use so that interactive graphs are displayed on same screen as TSTool main GUI.
+	// Lazy datastores that are used by the commands are opened so that commands can find the datastores.
+	StringBuilder commandText = new StringBuilder();
+	for ( Command command : commands ) {
+		commandText.append ( command.toString() );
+		commandText.append ( "\n" );
+	}
+	final String commandTextString = commandText.toString();
 	try {
-		TSCommandProcessorThreadRunner runner = new TSCommandProcessorThreadRunner ( __tsProcessor, requestParams );
+		final TSCommandProcessorThreadRunner runner = new TSCommandProcessorThreadRunner ( __tsProcessor, requestParams );
 		Message.printStatus ( 2, routine, "Running commands in a separate thread.");
-		Thread thread = new Thread ( runner );
+		final TSCommandProcessor processor = this.__tsProcessor;
+		Thread thread = new Thread ( new Runnable() {
+			public void run () {
+				// Open lazy datastores in the run thread rather than the UI thread because connecting can take time.
+				TSToolMain.openLazyDataStoresReferencedByCommands ( processor, commandTextString );
+				runner.run();
+			}
+		});
 		commandProcessor_SetCommandProcessorThread(thread);
 		thread.start();
 		// Do one update of the GUI to reflect the GUI running:
@@ -5019,7 +5048,7 @@ private void ui_CheckGUIState () {
 
 	int dataStoreListSize = 0;
 	if ( this.__tsProcessor != null ) {
-	    dataStoreListSize = this.__tsProcessor.getDataStores().size();
+	    dataStoreListSize = TSToolMain.getDataStores(this.__tsProcessor).size();
 	}
 
 	// If no datastores are available, don't even show the datastore choices - this should hopefully
@@ -5189,7 +5218,7 @@ private void ui_CheckGUIState () {
     JGUIUtil.setEnabled ( TSToolMenus.Commands_Create_NewStatisticYearTS_JMenuItem, enabled );
     JGUIUtil.setEnabled ( TSToolMenus.Commands_Create_RunningStatisticTimeSeries_JMenuItem, enabled );
 
-	if ( this.__tsProcessor.getDataStoresByType(ReclamationHDBDataStore.class).size() > 0 ) {
+	if ( TSToolMain.getDataStoresByType(this.__tsProcessor, ReclamationHDBDataStore.class).size() > 0 ) {
 	    JGUIUtil.setEnabled ( TSToolMenus.Commands_Read_ReadReclamationHDB_JMenuItem, enabled );
 	}
 	else {
@@ -5253,7 +5282,7 @@ private void ui_CheckGUIState () {
 	JGUIUtil.setEnabled ( TSToolMenus.Commands_Output_WriteDelimitedFile_JMenuItem, enabled );
     JGUIUtil.setEnabled ( TSToolMenus.Commands_Output_WriteHecDss_JMenuItem, enabled );
 	JGUIUtil.setEnabled ( TSToolMenus.Commands_Output_WriteNwsCard_JMenuItem, enabled );
-	if ( this.__tsProcessor.getDataStoresByType(ReclamationHDBDataStore.class).size() > 0 ) {
+	if ( TSToolMain.getDataStoresByType(this.__tsProcessor, ReclamationHDBDataStore.class).size() > 0 ) {
 	    JGUIUtil.setEnabled ( TSToolMenus.Commands_Output_WriteReclamationHDB_JMenuItem, enabled );
 	}
 	else {
@@ -5490,7 +5519,7 @@ private void ui_DataStoreList_Populate () {
     this.__dataStore_JComboBox.removeAll();
     List<String> dataStoreNameList = new ArrayList<>();
     // Get all enabled datastores, even those not active - the View ... Datastores menu can be used to show errors.
-    List<DataStore> dataStoreList = this.__tsProcessor.getDataStores();
+    List<DataStore> dataStoreList = TSToolMain.getDataStores(this.__tsProcessor);
     for ( DataStore dataStore : dataStoreList ) {
         if ( dataStore.getClass().getName().endsWith(".NrcsAwdbDataStore") ||
             dataStore.getClass().getName().endsWith(".UsgsNwisDailyDataStore") ||
@@ -6497,7 +6526,10 @@ public DataStore ui_GetSelectedDataStore () {
     // TODO smalers 2023-02-02 evalaute whether needed.
     //boolean checkSubstitutes = false;
     //return this.__tsProcessor.getDataStoreForName ( dataStoreName, null, isActive, checkSubstitutes );
-    return this.__tsProcessor.getDataStoreForName ( dataStoreName, null );
+    // Synchronize because lazy datastores are opened and replaced in the processor in a background thread.
+    synchronized ( this.__tsProcessor ) {
+    	return this.__tsProcessor.getDataStoreForName ( dataStoreName, null );
+    }
 }
 
 /**
@@ -6657,7 +6689,10 @@ private void ui_InitGUI ( PropList initProps ) {
 
 	JGUIUtil.setIcon(this, JGUIUtil.getIconImage());
 
+	// The Commands submenu items are created when first selected (see LazyMenuListener).
+	StartupProfiler.Phase menuPhase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "GUI menus");
 	ui_InitGUIMenus ();
+	menuPhase.end();
     ui_InitToolbar ();
 
 	// Remainder of main window.
@@ -7300,6 +7335,7 @@ private void ui_InitGUIInputFilters ( final int y ) {
         public void run() {
         	// Encapsulated environment so need to reinitialize some data.
         	String routine = "TSTool_JFrame.ui_InitGUIInputFilters";
+        	StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "Input filter initialization");
         	// TODO smalers 2012-09-27 Want user to see something to cause them to wait while input filters are initialized,
         	// but this does not seem to do anything.
             ui_SetInputPanelTitle ("Initializing Input/Query Options...", Color.red );
@@ -7315,10 +7351,10 @@ private void ui_InitGUIInputFilters ( final int y ) {
         	// Now add the input filters for input types that are enabled, all on top of each other.
         	// Will set visible the one that is appropriate for the selections.
             if ( __source_ColoradoHydroBaseRest_enabled &&
-                (__tsProcessor.getDataStoresByType(ColoradoHydroBaseRestDataStore.class).size() > 0) ) {
+                (TSToolMain.getDataStoresByType(__tsProcessor, ColoradoHydroBaseRestDataStore.class).size() > 0) ) {
                 try {
                     TSTool_HydroBaseRest.getInstance(ui).initGUIInputFilters(
-                        __tsProcessor.getDataStoresByType(ColoradoHydroBaseRestDataStore.class), y );
+                        TSToolMain.getDataStoresByType(__tsProcessor, ColoradoHydroBaseRestDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the web service cannot initialize.
@@ -7326,9 +7362,9 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
             }
-            if ( __tsProcessor.getDataStoresByType(GenericDatabaseDataStore.class).size() > 0 ) {
+            if ( TSToolMain.getDataStoresByType(__tsProcessor, GenericDatabaseDataStore.class).size() > 0 ) {
                 try {
-                    TSTool_Generic.getInstance(ui).initGUIInputFilters(__tsProcessor.getDataStoresByType(GenericDatabaseDataStore.class), y );
+                    TSTool_Generic.getInstance(ui).initGUIInputFilters(TSToolMain.getDataStoresByType(__tsProcessor, GenericDatabaseDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7351,9 +7387,9 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
         	}
-            if ( __source_HydroBase_enabled && (__tsProcessor.getDataStoresByType(HydroBaseDataStore.class).size() > 0) ) {
+            if ( __source_HydroBase_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, HydroBaseDataStore.class).size() > 0) ) {
                 try {
-                    TSTool_HydroBase.getInstance(ui).initGUIInputFilters(__tsProcessor.getDataStoresByType(HydroBaseDataStore.class), y );
+                    TSTool_HydroBase.getInstance(ui).initGUIInputFilters(TSToolMain.getDataStoresByType(__tsProcessor, HydroBaseDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7371,9 +7407,9 @@ private void ui_InitGUIInputFilters ( final int y ) {
         			Message.printWarning ( 2, routine, e );
         		}
         	}
-            if ( __source_RCCACIS_enabled && (__tsProcessor.getDataStoresByType(RccAcisDataStore.class).size() > 0) ) {
+            if ( __source_RCCACIS_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, RccAcisDataStore.class).size() > 0) ) {
                 try {
-                	TSTool_RccAcis.getInstance(ui).initGUIInputFilters ( __tsProcessor.getDataStoresByType(RccAcisDataStore.class), y );
+                	TSTool_RccAcis.getInstance(ui).initGUIInputFilters ( TSToolMain.getDataStoresByType(__tsProcessor, RccAcisDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7381,9 +7417,9 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
             }
-            if ( __source_ReclamationHDB_enabled && (__tsProcessor.getDataStoresByType(ReclamationHDBDataStore.class).size() > 0) ) {
+            if ( __source_ReclamationHDB_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, ReclamationHDBDataStore.class).size() > 0) ) {
                 try {
-                    TSTool_HDB.getInstance(ui).initGUIInputFilters(__tsProcessor.getDataStoresByType(ReclamationHDBDataStore.class), y );
+                    TSTool_HDB.getInstance(ui).initGUIInputFilters(TSToolMain.getDataStoresByType(__tsProcessor, ReclamationHDBDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7391,9 +7427,9 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
             }
-            if ( __source_ReclamationPisces_enabled && (__tsProcessor.getDataStoresByType(ReclamationPiscesDataStore.class).size() > 0) ) {
+            if ( __source_ReclamationPisces_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, ReclamationPiscesDataStore.class).size() > 0) ) {
                 try {
-                    TSTool_Pisces.getInstance(ui).initGUIInputFilters(__tsProcessor.getDataStoresByType(ReclamationPiscesDataStore.class), y );
+                    TSTool_Pisces.getInstance(ui).initGUIInputFilters(TSToolMain.getDataStoresByType(__tsProcessor, ReclamationPiscesDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7401,10 +7437,10 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
             }
-            if ( __source_UsgsNwisDaily_enabled && (__tsProcessor.getDataStoresByType(UsgsNwisDailyDataStore.class).size() > 0) ) {
+            if ( __source_UsgsNwisDaily_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, UsgsNwisDailyDataStore.class).size() > 0) ) {
                 try {
                     TSTool_UsgsNwis.getInstance(ui).initGUIInputFiltersUsgsNwisDaily(
-                        __tsProcessor.getDataStoresByType(UsgsNwisDailyDataStore.class), y );
+                        TSToolMain.getDataStoresByType(__tsProcessor, UsgsNwisDailyDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7412,10 +7448,10 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
             }
-            if ( __source_UsgsNwisGroundwater_enabled && (__tsProcessor.getDataStoresByType(UsgsNwisGroundwaterDataStore.class).size() > 0) ) {
+            if ( __source_UsgsNwisGroundwater_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, UsgsNwisGroundwaterDataStore.class).size() > 0) ) {
                 try {
                     TSTool_UsgsNwis.getInstance(ui).initGUIInputFiltersUsgsNwisGroundwater(
-                        __tsProcessor.getDataStoresByType(UsgsNwisGroundwaterDataStore.class), y );
+                        TSToolMain.getDataStoresByType(__tsProcessor, UsgsNwisGroundwaterDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7423,10 +7459,10 @@ private void ui_InitGUIInputFilters ( final int y ) {
                     Message.printWarning(3, routine, e);
                 }
             }
-            if ( __source_UsgsNwisInstantaneous_enabled && (__tsProcessor.getDataStoresByType(UsgsNwisInstantaneousDataStore.class).size() > 0) ) {
+            if ( __source_UsgsNwisInstantaneous_enabled && (TSToolMain.getDataStoresByType(__tsProcessor, UsgsNwisInstantaneousDataStore.class).size() > 0) ) {
                 try {
                     TSTool_UsgsNwis.getInstance(ui).initGUIInputFiltersUsgsNwisInstantaneous(
-                        __tsProcessor.getDataStoresByType(UsgsNwisInstantaneousDataStore.class), y );
+                        TSToolMain.getDataStoresByType(__tsProcessor, UsgsNwisInstantaneousDataStore.class), y );
                 }
                 catch ( Throwable e ) {
                     // This may happen if the database is unavailable or inconsistent with expected design.
@@ -7435,7 +7471,7 @@ private void ui_InitGUIInputFilters ( final int y ) {
                 }
             }
             // Loop through all the plug-in datastores and initialize input filters if they provide.
-            for ( DataStore ds : __tsProcessor.getDataStores() ) {
+            for ( DataStore ds : TSToolMain.getDataStores(__tsProcessor) ) {
             	if ( ds == null ) {
             		continue;
             	}
@@ -7488,6 +7524,7 @@ private void ui_InitGUIInputFilters ( final int y ) {
             __dataStore_JTabbedPane.setVisible(true); // This should now be visible.
         	validate();
         	repaint();
+        	phase.end();
         }
     };
     if ( SwingUtilities.isEventDispatchThread() ) {
@@ -7526,6 +7563,250 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 	TSToolMenus.Commands_JMenu.setToolTipText("Insert command into commands list (above first selected command, or at end).");
 
 	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_SelectTimeSeries_JMenu = new JMenu(TSToolConstants.Commands_SelectTimeSeries_String) );
+	TSToolMenus.Commands_SelectTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_SelectTimeSeries" ) );
+    TSToolMenus.Commands_JMenu.addSeparator();
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_CreateTimeSeries_JMenu = new JMenu(TSToolConstants.Commands_CreateTimeSeries_String) );
+	TSToolMenus.Commands_CreateTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_CreateTimeSeries" ) );
+
+	// Read commands.
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_ReadTimeSeries_JMenu=	new JMenu(TSToolConstants.Commands_ReadTimeSeries_String) );
+	TSToolMenus.Commands_ReadTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_ReadTimeSeries" ) );
+
+	// Menu: Commands / Fill Time Series
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_FillTimeSeries_JMenu = new JMenu(TSToolConstants.Commands_FillTimeSeries_String));
+	TSToolMenus.Commands_FillTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_FillTimeSeries" ) );
+
+	// Menu: Commands / Set Time Series Contents
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_SetTimeSeries_JMenu=new JMenu(TSToolConstants.Commands_SetTimeSeries_String));
+	TSToolMenus.Commands_SetTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_SetTimeSeries" ) );
+
+	// Menu: Commands / Manipulate Time Series
+
+	TSToolMenus.Commands_JMenu.add (TSToolMenus.Commands_ManipulateTimeSeries_JMenu=new JMenu("Manipulate Time Series"));
+	TSToolMenus.Commands_ManipulateTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_ManipulateTimeSeries" ) );
+
+	// Menu: Commands / Analyze Time Series
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_AnalyzeTimeSeries_JMenu= new JMenu(TSToolConstants.Commands_AnalyzeTimeSeries_String) );
+	TSToolMenus.Commands_AnalyzeTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_AnalyzeTimeSeries" ) );
+
+	// Menu: Commands / Models - Routing
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_Models_Routing_JMenu = new JMenu(TSToolConstants.Commands_Models_Routing_String) );
+	TSToolMenus.Commands_Models_Routing_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Models_Routing" ) );
+
+	// Menu: Commands / Output Time Series
+
+	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_OutputTimeSeries_JMenu=new JMenu(TSToolConstants.Commands_OutputTimeSeries_String) );
+	TSToolMenus.Commands_OutputTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_OutputTimeSeries" ) );
+
+    // Check time series and other data.
+
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Check_CheckTimeSeries_JMenu = new JMenu( TSToolConstants.Commands_Check_CheckingResults_String, true ) );
+    TSToolMenus.Commands_Check_CheckTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Check_CheckTimeSeries" ) );
+}
+
+/**
+Initialize the GUI "Commands...General" and Commands/Table (top level).
+@param menuBar the menu bar to add menus
+*/
+private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
+	TSToolMenus.Commands_JMenu.addSeparator(); // Results in double separator.
+
+    // Menu: Commands / Datastore processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_Datastore_JMenu = new JMenu(TSToolConstants.Commands_Datastore_String) );
+    TSToolMenus.Commands_Datastore_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Datastore" ) );
+
+    // Menu: Commands / Ensemble processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_Ensemble_JMenu = new JMenu(TSToolConstants.Commands_Ensemble_String) );
+    TSToolMenus.Commands_Ensemble_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Ensemble" ) );
+
+    // Menu: Commands / Network Processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Network_JMenu = new JMenu( TSToolConstants.Commands_Network_String, true ) );
+    TSToolMenus.Commands_Network_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Network" ) );
+
+    // Menu: Commands / Object Processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Object_JMenu = new JMenu( TSToolConstants.Commands_Object_String, true ) );
+    TSToolMenus.Commands_Object_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Object" ) );
+
+    // Menu: Commands / Spatial Processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Spatial_JMenu = new JMenu( TSToolConstants.Commands_Spatial_String, true ) );
+    TSToolMenus.Commands_Spatial_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Spatial" ) );
+
+    // Menu: Commands / Spreadsheet Processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Spreadsheet_JMenu = new JMenu( TSToolConstants.Commands_Spreadsheet_String, true ) );
+    TSToolMenus.Commands_Spreadsheet_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Spreadsheet" ) );
+
+    // Menu: Commands / Table Processing
+
+    ui_InitGUIMenus_CommandsTable(menuBar);
+
+    // Menu: Commands(Plugin)
+
+    TSTool_Plugin.getInstance(this).initGUIMenus_Commands(menuBar);
+
+    // Menu: Commands / Template Processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Template_JMenu = new JMenu( TSToolConstants.Commands_Template_String, true ) );
+    TSToolMenus.Commands_Template_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Template" ) );
+
+    // Menu: Commands / Visualization Processing
+
+    TSToolMenus.Commands_JMenu.addSeparator();
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Visualization_JMenu = new JMenu( TSToolConstants.Commands_Visualization_String, true ) );
+    TSToolMenus.Commands_Visualization_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_Visualization" ) );
+
+    // Menu: Commands / General - Comments
+
+	TSToolMenus.Commands_JMenu.addSeparator(); // Separate general commands from others.
+	TSToolMenus.Commands_JMenu.addSeparator(); // Results in double separator.
+
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_Comments_JMenu = new JMenu( TSToolConstants.Commands_General_Comments_String, true ) );
+    TSToolMenus.Commands_General_Comments_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_General_Comments" ) );
+
+    // Menu: Commands / General - File Handling
+
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_FileHandling_JMenu = new JMenu( TSToolConstants.Commands_General_FileHandling_String, true ) );
+    TSToolMenus.Commands_General_FileHandling_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_General_FileHandling" ) );
+
+    // Menu: Commands / General - Logging and Messaging
+
+	TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_Logging_JMenu = new JMenu( TSToolConstants.Commands_General_Logging_String, true ) );
+	TSToolMenus.Commands_General_Logging_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_General_Logging" ) );
+
+    // Menu: Commands / General - Running and Properties
+
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_Running_JMenu = new JMenu( TSToolConstants.Commands_General_Running_String, true ) );
+    TSToolMenus.Commands_General_Running_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_General_Running" ) );
+
+    // Menu: Commands / General - Test Processing
+
+    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_TestProcessing_JMenu = new JMenu( TSToolConstants.Commands_General_TestProcessing_String, true ) );
+    TSToolMenus.Commands_General_TestProcessing_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_General_TestProcessing" ) );
+
+    boolean includeDeprecated = false;
+    if ( includeDeprecated ) {
+    	// Add the deprecated menu if any datastores are enabled that have deprecated commands.
+    	TSToolMenus.Commands_JMenu.addSeparator();
+    	TSToolMenus.Commands_JMenu.addSeparator();
+
+    	// Menu: Commands / General - Deprecated Commands
+
+    	TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Deprecated_JMenu = new JMenu( TSToolConstants.Commands_Deprecated_String, true ) );
+    	// Handle each datastore type separately under the main menu.
+    	if ( this.__source_HydroBase_enabled ) {
+        	TSToolMenus.Commands_Deprecated_JMenu.setToolTipText("Commands that are slated for removal.");
+        	TSToolMenus.Commands_Deprecated_JMenu.add (TSToolMenus.Commands_Deprecated_OpenHydroBase_JMenuItem =
+            	new SimpleJMenuItem(TSToolConstants.Commands_Deprecated_OpenHydroBase_String, this ) );
+        	TSToolMenus.Commands_Deprecated_OpenHydroBase_JMenuItem.setToolTipText(
+        		"Open a HydroBase database connection.  Use datastores to configure database connections.");
+    	}
+    	TSToolMenus.Commands_Deprecated_JMenu.add ( TSToolMenus.Commands_Deprecated_RunningAverage_JMenuItem =
+        	new SimpleJMenuItem(TSToolConstants.Commands_Deprecated_RunningAverage_String, this ) );
+    	TSToolMenus.Commands_Deprecated_RunningAverage_JMenuItem.setToolTipText(
+    		"Calculate a running average time series.  Replaced by the RunningStatisticTimeSeries command.");
+    }
+}
+
+/**
+Initialize the GUI "Commands(Table)" menu.
+@param menuBar the menu bar to add menus
+*/
+private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
+    menuBar.add( TSToolMenus.Commands_Table_JMenu = new JMenu( TSToolConstants.Commands_Table_String, true ) );
+	TSToolMenus.Commands_Table_JMenu.setToolTipText("Insert command into commands list (above first selected command, or at end).");
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableCreate_JMenu = new JMenu( TSToolConstants.Commands_TableCreate_String, true ) );
+    TSToolMenus.Commands_TableCreate_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableCreate" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableRead_JMenu = new JMenu( TSToolConstants.Commands_TableRead_String, true ) );
+    TSToolMenus.Commands_TableRead_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableRead" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableJoin_JMenu = new JMenu( TSToolConstants.Commands_TableJoin_String, true ) );
+    TSToolMenus.Commands_TableJoin_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableJoin" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableTimeSeries_JMenu = new JMenu( TSToolConstants.Commands_TableTimeSeries_String, true ) );
+    TSToolMenus.Commands_TableTimeSeries_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableTimeSeries" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableManipulate_JMenu = new JMenu( TSToolConstants.Commands_TableManipulate_String, true ) );
+    TSToolMenus.Commands_TableManipulate_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableManipulate" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableAnalyze_JMenu = new JMenu( TSToolConstants.Commands_TableAnalyze_String, true ) );
+    TSToolMenus.Commands_TableAnalyze_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableAnalyze" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableOutput_JMenu = new JMenu( TSToolConstants.Commands_TableOutput_String, true ) );
+    TSToolMenus.Commands_TableOutput_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableOutput" ) );
+
+    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableRunning_JMenu = new JMenu( TSToolConstants.Commands_TableRunning_String, true ) );
+    TSToolMenus.Commands_TableRunning_JMenu.addMenuListener ( new LazyMenuListener ( "Commands_TableRunning" ) );
+}
+
+/**
+Initialize the menu items for a Commands submenu, called by LazyMenuListener when the submenu is first selected.
+The submenus are created when the Commands menus are initialized but the menu items, which are the bulk of the
+menu bar, are only created if the submenu is used, which makes startup faster.
+@param menuKey the submenu key, which is the TSToolMenus submenu name without the trailing "_JMenu"
+*/
+private void ui_InitGUIMenus_CommandsLazy ( String menuKey ) {
+	switch ( menuKey ) {
+		case "Commands_SelectTimeSeries": ui_InitGUIMenus_Commands_SelectTimeSeries (); break;
+		case "Commands_CreateTimeSeries": ui_InitGUIMenus_Commands_CreateTimeSeries (); break;
+		case "Commands_ReadTimeSeries": ui_InitGUIMenus_Commands_ReadTimeSeries (); break;
+		case "Commands_FillTimeSeries": ui_InitGUIMenus_Commands_FillTimeSeries (); break;
+		case "Commands_SetTimeSeries": ui_InitGUIMenus_Commands_SetTimeSeries (); break;
+		case "Commands_ManipulateTimeSeries": ui_InitGUIMenus_Commands_ManipulateTimeSeries (); break;
+		case "Commands_AnalyzeTimeSeries": ui_InitGUIMenus_Commands_AnalyzeTimeSeries (); break;
+		case "Commands_Models_Routing": ui_InitGUIMenus_Commands_Models_Routing (); break;
+		case "Commands_OutputTimeSeries": ui_InitGUIMenus_Commands_OutputTimeSeries (); break;
+		case "Commands_Check_CheckTimeSeries": ui_InitGUIMenus_Commands_Check_CheckTimeSeries (); break;
+		case "Commands_Datastore": ui_InitGUIMenus_Commands_Datastore (); break;
+		case "Commands_Ensemble": ui_InitGUIMenus_Commands_Ensemble (); break;
+		case "Commands_Network": ui_InitGUIMenus_Commands_Network (); break;
+		case "Commands_Object": ui_InitGUIMenus_Commands_Object (); break;
+		case "Commands_Spatial": ui_InitGUIMenus_Commands_Spatial (); break;
+		case "Commands_Spreadsheet": ui_InitGUIMenus_Commands_Spreadsheet (); break;
+		case "Commands_Template": ui_InitGUIMenus_Commands_Template (); break;
+		case "Commands_Visualization": ui_InitGUIMenus_Commands_Visualization (); break;
+		case "Commands_General_Comments": ui_InitGUIMenus_Commands_General_Comments (); break;
+		case "Commands_General_FileHandling": ui_InitGUIMenus_Commands_General_FileHandling (); break;
+		case "Commands_General_Logging": ui_InitGUIMenus_Commands_General_Logging (); break;
+		case "Commands_General_Running": ui_InitGUIMenus_Commands_General_Running (); break;
+		case "Commands_General_TestProcessing": ui_InitGUIMenus_Commands_General_TestProcessing (); break;
+		case "Commands_TableCreate": ui_InitGUIMenus_Commands_TableCreate (); break;
+		case "Commands_TableRead": ui_InitGUIMenus_Commands_TableRead (); break;
+		case "Commands_TableJoin": ui_InitGUIMenus_Commands_TableJoin (); break;
+		case "Commands_TableTimeSeries": ui_InitGUIMenus_Commands_TableTimeSeries (); break;
+		case "Commands_TableManipulate": ui_InitGUIMenus_Commands_TableManipulate (); break;
+		case "Commands_TableAnalyze": ui_InitGUIMenus_Commands_TableAnalyze (); break;
+		case "Commands_TableOutput": ui_InitGUIMenus_Commands_TableOutput (); break;
+		case "Commands_TableRunning": ui_InitGUIMenus_Commands_TableRunning (); break;
+		default:
+			Message.printWarning ( 3, "TSTool_JFrame.ui_InitGUIMenus_CommandsLazy", "No menu items for menu \"" + menuKey + "\"." );
+	}
+}
+
+/**
+Initialize the GUI "Commands / SelectTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_SelectTimeSeries () {
 	//TSToolMenus.Commands_SelectTimeSeries_JMenu.setToolTipText("Select, free, and sort time series results.");
     TSToolMenus.Commands_SelectTimeSeries_JMenu.add ( TSToolMenus.Commands_Select_DeselectTimeSeries_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Select_DeselectTimeSeries_String, this ) );
@@ -7541,9 +7822,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
     TSToolMenus.Commands_SelectTimeSeries_JMenu.add ( TSToolMenus.Commands_Select_SortTimeSeries_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Select_SortTimeSeries_String, this ) );
 	TSToolMenus.Commands_Select_SortTimeSeries_JMenuItem.setToolTipText("Sort time series in results.");
-    TSToolMenus.Commands_JMenu.addSeparator();
+}
 
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_CreateTimeSeries_JMenu = new JMenu(TSToolConstants.Commands_CreateTimeSeries_String) );
+/**
+Initialize the GUI "Commands / CreateTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_CreateTimeSeries () {
 	//TSToolMenus.Commands_CreateTimeSeries_JMenu.setToolTipText("Create time series from supplied values or other time series.");
 
 	// Create (break into logical groups).
@@ -7624,10 +7909,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
     TSToolMenus.Commands_CreateTimeSeries_JMenu.add ( TSToolMenus.Commands_Create_RunningStatisticTimeSeries_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Create_RunningStatisticTimeSeries_String, this ) );
 	TSToolMenus.Commands_Create_RunningStatisticTimeSeries_JMenuItem.setToolTipText("Create a time series as statistic of values from a moving window in the input time series.");
+}
 
-	// Read commands.
-
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_ReadTimeSeries_JMenu=	new JMenu(TSToolConstants.Commands_ReadTimeSeries_String) );
+/**
+Initialize the GUI "Commands / ReadTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_ReadTimeSeries () {
 	//TSToolMenus.Commands_ReadTimeSeries_JMenu.setToolTipText("Read time series from files, databases, and web services.");
 
 	TSToolMenus.Commands_ReadTimeSeries_JMenu.add (TSToolMenus.Commands_Read_SetIncludeMissingTS_JMenuItem =
@@ -7785,10 +8073,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 			new SimpleJMenuItem(TSToolConstants.Commands_Read_StateModMax_String, this) );
         TSToolMenus.Commands_Read_StateModMax_JMenuItem.setToolTipText("Create maximum of time series from two StateMod input files, for matching identifiers.");
 	}
+}
 
-	// Menu: Commands / Fill Time Series
-
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_FillTimeSeries_JMenu = new JMenu(TSToolConstants.Commands_FillTimeSeries_String));
+/**
+Initialize the GUI "Commands / FillTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_FillTimeSeries () {
 	//TSToolMenus.Commands_FillTimeSeries_JMenu.setToolTipText("Fill time series missing data values by estimating values.");
 
 	TSToolMenus.Commands_FillTimeSeries_JMenu.add (TSToolMenus.Commands_Fill_FillConstant_JMenuItem =
@@ -7864,10 +8155,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 	TSToolMenus.Commands_FillTimeSeries_JMenu.add(TSToolMenus.Commands_Fill_SetIgnoreLEZero_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Fill_SetIgnoreLEZero_String, this ) );
     TSToolMenus.Commands_Fill_SetIgnoreLEZero_JMenuItem.setToolTipText("Indicate whether values <= 0 should be ignored when computing historical averages.");
+}
 
-	// Menu: Commands / Set Time Series Contents
-
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_SetTimeSeries_JMenu=new JMenu(TSToolConstants.Commands_SetTimeSeries_String));
+/**
+Initialize the GUI "Commands / SetTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_SetTimeSeries () {
 	//TSToolMenus.Commands_SetTimeSeries_JMenu.setToolTipText("Set time series properties and data values.");
 
 	TSToolMenus.Commands_SetTimeSeries_JMenu.add (TSToolMenus.Commands_Set_ReplaceValue_JMenuItem =
@@ -7900,10 +8194,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
     TSToolMenus.Commands_SetTimeSeries_JMenu.add ( TSToolMenus.Commands_Set_SetTimeSeriesProperty_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Set_SetTimeSeriesProperty_String, this ) );
     TSToolMenus.Commands_Set_SetTimeSeriesProperty_JMenuItem.setToolTipText("Set time series properties.");
+}
 
-	// Menu: Commands / Manipulate Time Series
-
-	TSToolMenus.Commands_JMenu.add (TSToolMenus.Commands_ManipulateTimeSeries_JMenu=new JMenu("Manipulate Time Series"));
+/**
+Initialize the GUI "Commands / ManipulateTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_ManipulateTimeSeries () {
 	//TSToolMenus.Commands_ManipulateTimeSeries_JMenu.setToolTipText("Manipulate time series data values.");
 
 	TSToolMenus.Commands_ManipulateTimeSeries_JMenu.add ( TSToolMenus.Commands_Manipulate_Add_JMenuItem =
@@ -7961,10 +8258,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 	TSToolMenus.Commands_ManipulateTimeSeries_JMenu.add ( TSToolMenus.Commands_Manipulate_Subtract_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Manipulate_Subtract_String, this ) );
     TSToolMenus.Commands_Manipulate_Subtract_JMenuItem.setToolTipText("Subtract 1+ time series from a time series.");
+}
 
-	// Menu: Commands / Analyze Time Series
-
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_AnalyzeTimeSeries_JMenu= new JMenu(TSToolConstants.Commands_AnalyzeTimeSeries_String) );
+/**
+Initialize the GUI "Commands / AnalyzeTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_AnalyzeTimeSeries () {
 	//TSToolMenus.Commands_AnalyzeTimeSeries_JMenu.setToolTipText("Analyze time series data values.");
 	TSToolMenus.Commands_AnalyzeTimeSeries_JMenu.add ( TSToolMenus.Commands_Analyze_AnalyzePattern_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Analyze_AnalyzePattern_String, this ) );
@@ -7980,10 +8280,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 	TSToolMenus.Commands_AnalyzeTimeSeries_JMenu.add (TSToolMenus.Commands_Analyze_ComputeErrorTimeSeries_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Analyze_ComputeErrorTimeSeries_String, this ) );
     TSToolMenus.Commands_Analyze_ComputeErrorTimeSeries_JMenuItem.setToolTipText("Create time series as the difference (error) between input time series, useful for simulation.");
+}
 
-	// Menu: Commands / Models - Routing
-
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_Models_Routing_JMenu = new JMenu(TSToolConstants.Commands_Models_Routing_String) );
+/**
+Initialize the GUI "Commands / Models Routing" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Models_Routing () {
 	//TSToolMenus.Commands_Models_Routing_JMenu.setToolTipText("Route time series (lag and attenuate over time).");
 	TSToolMenus.Commands_Models_Routing_JMenu.add ( TSToolMenus.Commands_Models_Routing_LagK_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Models_Routing_LagK_String, this ) );
@@ -7991,10 +8294,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
     TSToolMenus.Commands_Models_Routing_JMenu.add ( TSToolMenus.Commands_Models_Routing_VariableLagK_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Models_Routing_VariableLagK_String, this ) );
     TSToolMenus.Commands_Models_Routing_VariableLagK_JMenuItem.setToolTipText("Route (lag and attenuate) a time series using variable LagK approach.");
+}
 
-	// Menu: Commands / Output Time Series
-
-	TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_OutputTimeSeries_JMenu=new JMenu(TSToolConstants.Commands_OutputTimeSeries_String) );
+/**
+Initialize the GUI "Commands / OutputTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_OutputTimeSeries () {
 	//TSToolMenus.Commands_OutputTimeSeries_JMenu.setToolTipText("Output (write) time series to files and databases.");
 
 	TSToolMenus.Commands_OutputTimeSeries_JMenu.add ( TSToolMenus.Commands_Output_SetOutputDetailedHeaders_JMenuItem =
@@ -8093,10 +8399,13 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 	TSToolMenus.Commands_OutputTimeSeries_JMenu.add ( TSToolMenus.Commands_Output_WriteTimeSeriesPropertiesToFile_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_General_TestProcessing_WriteTimeSeriesPropertiesToFile_String, this ) );
     TSToolMenus.Commands_Output_WriteTimeSeriesPropertiesToFile_JMenuItem.setToolTipText("Write time series properties to text file.");
+}
 
-    // Check time series and other data.
-
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Check_CheckTimeSeries_JMenu = new JMenu( TSToolConstants.Commands_Check_CheckingResults_String, true ) );
+/**
+Initialize the GUI "Commands / Check CheckTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Check_CheckTimeSeries () {
     //TSToolMenus.Commands_Check_CheckTimeSeries_JMenu.setToolTipText("Check time series against criteria.");
     TSToolMenus.Commands_Check_CheckTimeSeries_JMenu.add ( TSToolMenus.Commands_Check_CheckingResults_CheckTimeSeries_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Check_CheckingResults_CheckTimeSeries_String, this ) );
@@ -8110,16 +8419,10 @@ private void ui_InitGUIMenus_Commands ( JMenuBar menuBar ) {
 }
 
 /**
-Initialize the GUI "Commands...General" and Commands/Table (top level).
-@param menuBar the menu bar to add menus
+Initialize the GUI "Commands / Datastore" menu items.
+This is called when the menu is first selected.
 */
-private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
-	TSToolMenus.Commands_JMenu.addSeparator(); // Results in double separator.
-
-    // Menu: Commands / Datastore processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_Datastore_JMenu = new JMenu(TSToolConstants.Commands_Datastore_String) );
+private void ui_InitGUIMenus_Commands_Datastore () {
     TSToolMenus.Commands_Datastore_JMenu.add(TSToolMenus.Commands_Datastore_NewAccessDatabase_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Datastore_NewAccessDatabase_String, this) );
     TSToolMenus.Commands_Datastore_NewAccessDatabase_JMenuItem.setToolTipText("Create a new Microsoft Access database.");
@@ -8167,11 +8470,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
         new SimpleJMenuItem( TSToolConstants.Commands_Datastore_SetPropertyFromDataStore_String,this));
     TSToolMenus.Commands_Datastore_SetPropertyFromDataStore_JMenuItem.setToolTipText(
     	"Set a processor property from a datastore, to use as ${Property} in commands parameters.");
+}
 
-    // Menu: Commands / Ensemble processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add ( TSToolMenus.Commands_Ensemble_JMenu = new JMenu(TSToolConstants.Commands_Ensemble_String) );
+/**
+Initialize the GUI "Commands / Ensemble" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Ensemble () {
     //TSToolMenus.Commands_Ensemble_JMenu.setToolTipText("Process ensembles (groups of related time series).");
     TSToolMenus.Commands_Ensemble_JMenu.add( TSToolMenus.Commands_Ensemble_CreateEnsembleFromOneTimeSeries_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Ensemble_CreateEnsembleFromOneTimeSeries_String, this) );
@@ -8220,11 +8525,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
         	"Write time series ensemble to National Weather Service (NWS) River Forecast System (RFS)" +
         	" Ensemble Streamflow Prediction (ESP) binary file.");
     }
+}
 
-    // Menu: Commands / Network Processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Network_JMenu = new JMenu( TSToolConstants.Commands_Network_String, true ) );
+/**
+Initialize the GUI "Commands / Network" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Network () {
     //TSToolMenus.Commands_Network_JMenu.setToolTipText("Process time series associated with network of nodes and links.");
     TSToolMenus.Commands_Network_JMenu.add( TSToolMenus.Commands_Network_CreateNetworkFromTable_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Network_CreateNetworkFromTable_String, this ) );
@@ -8234,11 +8541,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
         new SimpleJMenuItem( TSToolConstants.Commands_Network_AnalyzeNetworkPointFlow_String, this ) );
     TSToolMenus.Commands_Network_AnalyzeNetworkPointFlow_JMenuItem.setToolTipText(
     	"Analyze a network point flow model and create output time series at each network node.");
+}
 
-    // Menu: Commands / Object Processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Object_JMenu = new JMenu( TSToolConstants.Commands_Object_String, true ) );
+/**
+Initialize the GUI "Commands / Object" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Object () {
     //TSToolMenus.Commands_Object_JMenu.setToolTipText("Process objects.");
     TSToolMenus.Commands_Object_JMenu.add( TSToolMenus.Commands_Object_NewObject_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Object_NewObject_String, this ) );
@@ -8258,11 +8567,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_Object_JMenu.addSeparator();
     TSToolMenus.Commands_Object_JMenu.add( TSToolMenus.Commands_Object_WriteObjectToJSON_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Object_WriteObjectToJSON_String, this ) );
+}
 
-    // Menu: Commands / Spatial Processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Spatial_JMenu = new JMenu( TSToolConstants.Commands_Spatial_String, true ) );
+/**
+Initialize the GUI "Commands / Spatial" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Spatial () {
     //TSToolMenus.Commands_Spatial_JMenu.setToolTipText("Process spatial data).");
     TSToolMenus.Commands_Spatial_JMenu.add( TSToolMenus.Commands_Spatial_WriteTableToGeoJSON_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Spatial_WriteTableToGeoJSON_String, this ) );
@@ -8287,11 +8598,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_Spatial_JMenu.add( TSToolMenus.Commands_Spatial_GeoMap_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Spatial_GeoMap_String, this ) );
     TSToolMenus.Commands_Spatial_GeoMap_JMenuItem.setToolTipText("Create a GeoMap and add to a map project.");
+}
 
-    // Menu: Commands / Spreadsheet Processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Spreadsheet_JMenu = new JMenu( TSToolConstants.Commands_Spreadsheet_String, true ) );
+/**
+Initialize the GUI "Commands / Spreadsheet" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Spreadsheet () {
     TSToolMenus.Commands_Spreadsheet_JMenu.add( TSToolMenus.Commands_Spreadsheet_NewExcelWorkbook_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Spreadsheet_NewExcelWorkbook_String, this ) );
     TSToolMenus.Commands_Spreadsheet_NewExcelWorkbook_JMenuItem.setToolTipText("Create a new Excel workbook file.");
@@ -8333,19 +8646,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_Spreadsheet_JMenu.add( TSToolMenus.Commands_Spreadsheet_CloseExcelWorkbook_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Spreadsheet_CloseExcelWorkbook_String, this ) );
     TSToolMenus.Commands_Spreadsheet_CloseExcelWorkbook_JMenuItem.setToolTipText("Close an Excel workbook.");
+}
 
-    // Menu: Commands / Table Processing
-
-    ui_InitGUIMenus_CommandsTable(menuBar);
-
-    // Menu: Commands(Plugin)
-
-    TSTool_Plugin.getInstance(this).initGUIMenus_Commands(menuBar);
-
-    // Menu: Commands / Template Processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Template_JMenu = new JMenu( TSToolConstants.Commands_Template_String, true ) );
+/**
+Initialize the GUI "Commands / Template" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Template () {
     //TSToolMenus.Commands_Template_JMenu.setToolTipText("Process templates (to handle dynamic logic and data).");
     TSToolMenus.Commands_Template_JMenu.add( TSToolMenus.Commands_Template_ExpandTemplateFile_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Template_ExpandTemplateFile_String, this ) );
@@ -8354,11 +8661,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_Template_JMenu.add (TSToolMenus.Commands_Template_Comments_Template_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_General_Comments_TemplateComment_String, this ) );
     TSToolMenus.Commands_Template_Comments_Template_JMenuItem.setToolTipText("Insert a comment indicating that the commmand file is a template.");
+}
 
-    // Menu: Commands / Visualization Processing
-
-    TSToolMenus.Commands_JMenu.addSeparator();
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Visualization_JMenu = new JMenu( TSToolConstants.Commands_Visualization_String, true ) );
+/**
+Initialize the GUI "Commands / Visualization" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_Visualization () {
     //TSToolMenus.Commands_Visualization_JMenu.setToolTipText("Automate creation of data visualization products.");
     TSToolMenus.Commands_Visualization_JMenu.add ( TSToolMenus.Commands_Visualization_ProcessTSProduct_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_Visualization_ProcessTSProduct_String, this ) );
@@ -8370,13 +8679,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_Visualization_JMenu.add( TSToolMenus.Commands_Visualization_NewTreeView_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Visualization_NewTreeView_String, this ) );
     TSToolMenus.Commands_Visualization_NewTreeView_JMenuItem.setToolTipText("Create a new tree view in the Results / View tab with hierarchy organizing time series.");
+}
 
-    // Menu: Commands / General - Comments
-
-	TSToolMenus.Commands_JMenu.addSeparator(); // Separate general commands from others.
-	TSToolMenus.Commands_JMenu.addSeparator(); // Results in double separator.
-
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_Comments_JMenu = new JMenu( TSToolConstants.Commands_General_Comments_String, true ) );
+/**
+Initialize the GUI "Commands / General Comments" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_General_Comments () {
     //TSToolMenus.Commands_General_Comments_JMenu.setToolTipText("Insert comments.");
     TSToolMenus.Commands_General_Comments_JMenu.add ( TSToolMenus.Commands_General_Comments_Comment_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_General_Comments_Comment_String, this ) );
@@ -8469,10 +8778,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_General_Comments_JMenu.add (TSToolMenus.Commands_General_Comments_Empty_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_General_Comments_Empty_String, this ) );
     TSToolMenus.Commands_General_Comments_Empty_JMenuItem.setToolTipText("Insert a empty (blank) line, to improve readability of the command file.");
+}
 
-    // Menu: Commands / General - File Handling
-
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_FileHandling_JMenu = new JMenu( TSToolConstants.Commands_General_FileHandling_String, true ) );
+/**
+Initialize the GUI "Commands / General FileHandling" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_General_FileHandling () {
     //TSToolMenus.Commands_General_FileHandling_JMenu.setToolTipText("Manipulate files.");
     TSToolMenus.Commands_General_FileHandling_JMenu.add ( TSToolMenus.Commands_General_FileHandling_FTPGet_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_General_FileHandling_FTPGet_String, this ) );
@@ -8521,10 +8833,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_General_FileHandling_JMenu.add ( TSToolMenus.Commands_General_FileHandling_PrintTextFile_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_General_FileHandling_PrintTextFile_String, this ) );
     TSToolMenus.Commands_General_FileHandling_PrintTextFile_JMenuItem.setToolTipText("Print a text file to a printer.");
+}
 
-    // Menu: Commands / General - Logging and Messaging
-
-	TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_Logging_JMenu = new JMenu( TSToolConstants.Commands_General_Logging_String, true ) );
+/**
+Initialize the GUI "Commands / General Logging" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_General_Logging () {
 	//TSToolMenus.Commands_General_Logging_JMenu.setToolTipText("Control logging (tracking).");
 	TSToolMenus.Commands_General_Logging_JMenu.add(TSToolMenus.Commands_General_Logging_ConfigureLogging_JMenuItem =
 	    new SimpleJMenuItem(TSToolConstants.Commands_General_Logging_ConfigureLogging_String, this ) );
@@ -8546,10 +8861,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_General_Logging_JMenu.add ( TSToolMenus.Commands_General_Logging_SendEmailMessage_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_General_Logging_SendEmailMessage_String, this ) );
     TSToolMenus.Commands_General_Logging_SendEmailMessage_JMenuItem.setToolTipText("Send an email message.");
+}
 
-    // Menu: Commands / General - Running and Properties
-
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_Running_JMenu = new JMenu( TSToolConstants.Commands_General_Running_String, true ) );
+/**
+Initialize the GUI "Commands / General Running" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_General_Running () {
     //TSToolMenus.Commands_General_Running_JMenu.setToolTipText("Run external programs, command files, Python.");
     TSToolMenus.Commands_General_Running_JMenu.add ( TSToolMenus.Commands_General_Running_ReadPropertiesFromFile_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_General_Running_ReadPropertiesFromFile_String, this ) );
@@ -8631,10 +8949,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
         new SimpleJMenuItem( TSToolConstants.Commands_General_Running_ProfileCommands_String, this ) );
     TSToolMenus.Commands_General_Running_ProfileCommands_JMenuItem.setToolTipText(
     	"Save additional information about each command's run time, to optimize software and workflows.");
+}
 
-    // Menu: Commands / General - Test Processing
-
-    TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_General_TestProcessing_JMenu = new JMenu( TSToolConstants.Commands_General_TestProcessing_String, true ) );
+/**
+Initialize the GUI "Commands / General TestProcessing" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_General_TestProcessing () {
     //TSToolMenus.Commands_General_TestProcessing_JMenu.setToolTipText("Test the software and processes.");
     TSToolMenus.Commands_General_TestProcessing_JMenu.add ( TSToolMenus.Commands_General_TestProcessing_WriteTimeSeriesPropertiesToFile_JMenuItem =
         new SimpleJMenuItem(TSToolConstants.Commands_General_TestProcessing_WriteTimeSeriesPropertiesToFile_String, this ) );
@@ -8662,40 +8983,13 @@ private void ui_InitGUIMenus_CommandsGeneral ( JMenuBar menuBar ) {
     TSToolMenus.Commands_General_TestProcessing_JMenu.add ( TSToolMenus.Commands_General_TestProcessing_TestCommand_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_General_TestProcessing_TestCommand_String, this ) );
     TSToolMenus.Commands_General_TestProcessing_TestCommand_JMenuItem.setToolTipText("Command to test user interface features.");
-
-    boolean includeDeprecated = false;
-    if ( includeDeprecated ) {
-    	// Add the deprecated menu if any datastores are enabled that have deprecated commands.
-    	TSToolMenus.Commands_JMenu.addSeparator();
-    	TSToolMenus.Commands_JMenu.addSeparator();
-
-    	// Menu: Commands / General - Deprecated Commands
-
-    	TSToolMenus.Commands_JMenu.add( TSToolMenus.Commands_Deprecated_JMenu = new JMenu( TSToolConstants.Commands_Deprecated_String, true ) );
-    	// Handle each datastore type separately under the main menu.
-    	if ( this.__source_HydroBase_enabled ) {
-        	TSToolMenus.Commands_Deprecated_JMenu.setToolTipText("Commands that are slated for removal.");
-        	TSToolMenus.Commands_Deprecated_JMenu.add (TSToolMenus.Commands_Deprecated_OpenHydroBase_JMenuItem =
-            	new SimpleJMenuItem(TSToolConstants.Commands_Deprecated_OpenHydroBase_String, this ) );
-        	TSToolMenus.Commands_Deprecated_OpenHydroBase_JMenuItem.setToolTipText(
-        		"Open a HydroBase database connection.  Use datastores to configure database connections.");
-    	}
-    	TSToolMenus.Commands_Deprecated_JMenu.add ( TSToolMenus.Commands_Deprecated_RunningAverage_JMenuItem =
-        	new SimpleJMenuItem(TSToolConstants.Commands_Deprecated_RunningAverage_String, this ) );
-    	TSToolMenus.Commands_Deprecated_RunningAverage_JMenuItem.setToolTipText(
-    		"Calculate a running average time series.  Replaced by the RunningStatisticTimeSeries command.");
-    }
 }
 
 /**
-Initialize the GUI "Commands(Table)" menu.
-@param menuBar the menu bar to add menus
+Initialize the GUI "Commands / TableCreate" menu items.
+This is called when the menu is first selected.
 */
-private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
-    menuBar.add( TSToolMenus.Commands_Table_JMenu = new JMenu( TSToolConstants.Commands_Table_String, true ) );
-	TSToolMenus.Commands_Table_JMenu.setToolTipText("Insert command into commands list (above first selected command, or at end).");
-
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableCreate_JMenu = new JMenu( TSToolConstants.Commands_TableCreate_String, true ) );
+private void ui_InitGUIMenus_Commands_TableCreate () {
     //TSToolMenus.Commands_TableCreate_JMenu.setToolTipText("Create new tables.");
     TSToolMenus.Commands_TableCreate_JMenu.add( TSToolMenus.Commands_TableCreate_NewTable_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableCreate_NewTable_String, this ) );
@@ -8707,8 +9001,13 @@ private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
     TSToolMenus.Commands_TableCreate_JMenu.add( TSToolMenus.Commands_TableCreate_FreeTable_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableCreate_FreeTable_String, this ) );
     TSToolMenus.Commands_TableCreate_FreeTable_JMenuItem.setToolTipText("Delete a table and free memory used by the table.");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableRead_JMenu = new JMenu( TSToolConstants.Commands_TableRead_String, true ) );
+/**
+Initialize the GUI "Commands / TableRead" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableRead () {
     //TSToolMenus.Commands_TableRead_JMenu.setToolTipText("Read tables.");
     TSToolMenus.Commands_TableRead_JMenu.add( TSToolMenus.Commands_TableRead_ReadTableFromDataStore_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Datastore_ReadTableFromDataStore_String, this ) );
@@ -8733,8 +9032,13 @@ private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
     TSToolMenus.Commands_TableRead_JMenu.add( TSToolMenus.Commands_TableRead_ReadTableFromXML_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableRead_ReadTableFromXML_String, this ) );
     TSToolMenus.Commands_TableRead_ReadTableFromXML_JMenuItem.setToolTipText("Read a table from an XML text file.");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableJoin_JMenu = new JMenu( TSToolConstants.Commands_TableJoin_String, true ) );
+/**
+Initialize the GUI "Commands / TableJoin" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableJoin () {
     //TSToolMenus.Commands_TableJoin_JMenu.setToolTipText("Append/join tables.");
     TSToolMenus.Commands_TableJoin_JMenu.add( TSToolMenus.Commands_TableJoin_AppendTable_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableJoin_AppendTable_String, this ) );
@@ -8742,8 +9046,13 @@ private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
     TSToolMenus.Commands_TableJoin_JMenu.add( TSToolMenus.Commands_TableJoin_JoinTables_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableJoin_JoinTables_String, this ) );
     TSToolMenus.Commands_TableJoin_JoinTables_JMenuItem.setToolTipText("Join one table to another (add columns from one table to the other).");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableTimeSeries_JMenu = new JMenu( TSToolConstants.Commands_TableTimeSeries_String, true ) );
+/**
+Initialize the GUI "Commands / TableTimeSeries" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableTimeSeries () {
     //TSToolMenus.Commands_TableTimeSeries_JMenu.setToolTipText("Processing tables to/from time series.");
     TSToolMenus.Commands_TableTimeSeries_JMenu.add( TSToolMenus.Commands_TableTimeSeries_TimeSeriesToTable_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableTimeSeries_TimeSeriesToTable_String, this ) );
@@ -8762,8 +9071,13 @@ private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
     TSToolMenus.Commands_TableTimeSeries_JMenu.add( TSToolMenus.Commands_TableTimeSeries_CopyTimeSeriesPropertiesToTable_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableTimeSeries_CopyTimeSeriesPropertiesToTable_String, this ) );
     TSToolMenus.Commands_TableTimeSeries_CopyTimeSeriesPropertiesToTable_JMenuItem.setToolTipText("Copy time series properties to values in a table.");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableManipulate_JMenu = new JMenu( TSToolConstants.Commands_TableManipulate_String, true ) );
+/**
+Initialize the GUI "Commands / TableManipulate" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableManipulate () {
     //TSToolMenus.Commands_TableManipulate_JMenu.setToolTipText("Manipulate table contents.");
     // Add commands that manipulate table columns.
     TSToolMenus.Commands_TableManipulate_JMenu.add( TSToolMenus.Commands_TableManipulate_DeleteTableColumns_JMenuItem =
@@ -8815,14 +9129,24 @@ private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
     TSToolMenus.Commands_TableManipulate_JMenu.add( TSToolMenus.Commands_TableManipulate_TableTimeSeriesMath_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableManipulate_TableTimeSeriesMath_String, this ) );
     TSToolMenus.Commands_TableManipulate_TableTimeSeriesMath_JMenuItem.setToolTipText("Perform table math involving column values and time series values.");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableAnalyze_JMenu = new JMenu( TSToolConstants.Commands_TableAnalyze_String, true ) );
+/**
+Initialize the GUI "Commands / TableAnalyze" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableAnalyze () {
     //TSToolMenus.Commands_TableAnalyze_JMenu.setToolTipText("Analyze table.");
     TSToolMenus.Commands_TableAnalyze_JMenu.add( TSToolMenus.Commands_TableAnalyze_CompareTables_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableAnalyze_CompareTables_String, this ) );
     TSToolMenus.Commands_TableAnalyze_CompareTables_JMenuItem.setToolTipText("Compare tables, useful for testing.");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableOutput_JMenu = new JMenu( TSToolConstants.Commands_TableOutput_String, true ) );
+/**
+Initialize the GUI "Commands / TableOutput" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableOutput () {
     //TSToolMenus.Commands_TableOutput_JMenu.setToolTipText("Output table.");
     TSToolMenus.Commands_TableOutput_JMenu.add( TSToolMenus.Commands_TableOutput_WriteTableToDataStore_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_Datastore_WriteTableToDataStore_String, this ) );
@@ -8839,8 +9163,13 @@ private void ui_InitGUIMenus_CommandsTable ( JMenuBar menuBar ) {
     TSToolMenus.Commands_TableOutput_JMenu.add( TSToolMenus.Commands_TableOutput_WriteTableToHTML_JMenuItem =
         new SimpleJMenuItem( TSToolConstants.Commands_TableOutput_WriteTableToHTML_String, this ) );
     TSToolMenus.Commands_TableOutput_WriteTableToHTML_JMenuItem.setToolTipText("Write a table to an HTML text file, for web data visualization.");
+}
 
-    TSToolMenus.Commands_Table_JMenu.add( TSToolMenus.Commands_TableRunning_JMenu = new JMenu( TSToolConstants.Commands_TableRunning_String, true ) );
+/**
+Initialize the GUI "Commands / TableRunning" menu items.
+This is called when the menu is first selected.
+*/
+private void ui_InitGUIMenus_Commands_TableRunning () {
     //TSToolMenus.Commands_TableRunning_JMenu.setToolTipText("Commands to integrate table data with processor properties.");
     TSToolMenus.Commands_TableRunning_JMenu.add( TSToolMenus.Commands_TableRunning_SetPropertyFromTable_JMenuItem =
          new SimpleJMenuItem( TSToolConstants.Commands_TableRunning_SetPropertyFromTable_String, this ) );
@@ -12949,6 +13278,43 @@ private void uiAction_DataStoreChoiceClicked() {
         return;
     }
     DataStore selectedDataStore = ui_GetSelectedDataStore();
+    if ( (selectedDataStore instanceof LazyDataStore) && ((LazyDataStore)selectedDataStore).isOpenNeeded() ) {
+    	// Datastore has not been opened:
+    	// - open it in a background thread, which replaces the lazy datastore in the processor,
+    	//   so that the UI is not frozen while connecting to the database or web service
+    	// - reinitialize the input filters so that the opened datastore has an input filter
+    	// - process the selection again after the input filters are initialized
+    	final LazyDataStore lazyDataStore = (LazyDataStore)selectedDataStore;
+    	JGUIUtil.setWaitCursor ( this, true );
+    	Message.printStatus ( 1, routine, "Opening datastore \"" + selectedDataStoreName + "\"..." );
+    	new SwingWorker<DataStore,Void>() {
+    		protected DataStore doInBackground () {
+    			return lazyDataStore.open();
+    		}
+    		protected void done () {
+    			JGUIUtil.setWaitCursor ( TSTool_JFrame.this, false );
+    			DataStore openedDataStore = null;
+    			try {
+    				openedDataStore = get();
+    			}
+    			catch ( Exception e ) {
+    				// Handled below.
+    			}
+    			if ( openedDataStore == null ) {
+    				Message.printWarning ( 1, routine, "Unable to open datastore \"" + lazyDataStore.getName() + "\" (" +
+    					lazyDataStore.getStatusMessage() + ")." );
+    				return;
+    			}
+    			Message.printStatus ( 1, routine, "Opened datastore \"" + lazyDataStore.getName() + "\"." );
+    			ui_InitGUIInputFilters ( ui_GetInputFilterY() );
+    			// Only process the selection if the user has not selected another datastore while opening.
+    			if ( lazyDataStore.getName().equalsIgnoreCase(__dataStore_JComboBox.getSelected()) ) {
+    				uiAction_DataStoreChoiceClicked();
+    			}
+    		}
+    	}.execute();
+    	return;
+    }
     // This will select blank input type and name so that the focus is on the selected datastore.
     uiAction_InputTypeChoiceClicked(selectedDataStore);
     // Now fully initialize the input/query information based on the datastore.
@@ -15375,7 +15741,7 @@ Show the datastores.
 */
 private void uiAction_ShowDataStores () {
     try {
-        new DataStores_JFrame ( "Datastores", this, this.__tsProcessor.getDataStores(), this.datastoreSubstituteList );
+        new DataStores_JFrame ( "Datastores", this, TSToolMain.getDataStores(this.__tsProcessor), this.datastoreSubstituteList );
     }
     catch ( Exception e ) {
 		String routine = getClass().getSimpleName() + "uiAction_ShowDataStores";
@@ -16679,6 +17045,43 @@ Required by JWorksheet_Listener.
 public void worksheetSetRowCount ( int count ) {
 }
 
+/**
+Internal class to initialize the menu items for a Commands submenu when the submenu is first selected.
+The menu items are then enabled/disabled for the current state before the submenu is displayed.
+*/
+private class LazyMenuListener implements MenuListener {
+	/**
+	Submenu key, passed to ui_InitGUIMenus_CommandsLazy().
+	*/
+	private String menuKey;
+
+	/**
+	Whether the menu items have been initialized.
+	*/
+	private boolean initialized = false;
+
+	public LazyMenuListener ( String menuKey ) {
+		this.menuKey = menuKey;
+	}
+
+	public void menuCanceled ( MenuEvent event ) {
+	}
+
+	public void menuDeselected ( MenuEvent event ) {
+	}
+
+	public void menuSelected ( MenuEvent event ) {
+		if ( this.initialized ) {
+			return;
+		}
+		this.initialized = true;
+		StartupProfiler.Phase phase = StartupProfiler.begin(StartupProfiler.CATEGORY_PHASE, "GUI menu " + this.menuKey);
+		ui_InitGUIMenus_CommandsLazy ( this.menuKey );
+		phase.end();
+		ui_UpdateStatus ( true );
+	}
+}
+
 /**
 Internal class to handle action events from ensemble results list.
 */
@@ -0,0 +1,54 @@
+// UnopenedDataStore - placeholder for a configured datastore that could not be opened
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package DWR.DMI.tstool;
+
+import RTi.Util.IO.PropList;
+import riverside.datastore.AbstractDataStore;
+
+/**
+ * Placeholder for a datastore that is configured but was not opened,
+ * for example because the datastore factory did not return within the open timeout.
+ * The placeholder is added to the processor with a non-zero status so that View / Datastores
+ * lists the datastore with its status message, similar to a datastore that failed to open.
+ */
+public class UnopenedDataStore extends AbstractDataStore {
+
+	/**
+	 * Construct the placeholder from the datastore configuration properties.
+	 * @param dataStoreProps datastore configuration file properties (Name, Type, Description, etc.)
+	 * @param statusMessage message explaining why the datastore is not open
+	 */
+	public UnopenedDataStore ( PropList dataStoreProps, String statusMessage ) {
+		setName ( dataStoreProps.getValue("Name") );
+		String description = dataStoreProps.getValue("Description");
+		if ( description == null ) {
+			description = "";
+		}
+		setDescription ( description );
+		setProperties ( dataStoreProps );
+		setStatus ( 1 );
+		setStatusMessage ( statusMessage );
+	}
+
+}
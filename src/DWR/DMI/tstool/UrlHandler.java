@@ -4,7 +4,7 @@
 
 TSTool
 TSTool is a part of Colorado's Decision Support Systems (CDSS)
-Copyright (C) 1994-2019 Colorado Department of Natural Resources
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
 
 TSTool is free software:  you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -23,56 +23,680 @@ NoticeEnd */
 
 package DWR.DMI.tstool;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
+import RTi.TS.TS;
+import RTi.Util.Message.Message;
+import RTi.Util.Time.DateTime;
+
 /**
- * Class to handle a URL request - test mode
- * @author sam
- *
+ * Class to handle URL requests for the TSTool HTTP server (see TSToolHttpServer), which runs command files as asynchronous jobs.
+ * Responses are JSON unless noted, and errors are returned as {"Error": "message"} with an HTTP error status.
+ * <pre>
+ * POST   /tstool/jobs                 Submit a job, returning 202 with the job status (or 503 if the job queue is full).
+ *                                     The body is JSON {"CommandFile": "path", "Commands": "inline commands",
+ *                                     "WorkingDir": "path", "Properties": {"Name": "Value", ...}}, with CommandFile or Commands.
+ *                                     Alternatively, the body is the inline commands as text and the query parameters are
+ *                                     CommandFile, WorkingDir, and processor properties (Name=Value).
+ * GET    /tstool/jobs                 List the jobs.
+ * GET    /tstool/jobs/JobId           Get the job status.
+ * DELETE /tstool/jobs/JobId           Cancel the job.
+ * GET    /tstool/jobs/JobId/log       Get the job log (text).
+ * GET    /tstool/jobs/JobId/output/N  Get output file N from the job status OutputFiles list (file content).
+ * GET    /tstool/ts                   Read time series using the open datastores and stream the values (chunked).
+ *                                     Query parameters are TSID (one or more, Loc.Source.Type.Interval~DataStore or
+ *                                     ~InputType~InputName), InputStart and InputEnd (optional period),
+ *                                     and Format (DateValue, CSV, JSON, or NDJSON, default JSON), see TSToolHttpTimeSeriesWriter.
+ * POST   /tstool/ts                   Read many time series in parallel by datastore and stream each time series as soon as
+ *                                     it is read (chunked), so the order is not the order requested, see TSToolHttpBulkRead.
+ *                                     The body is JSON {"TSID": ["TSID1", ...], "InputStart": "...", "InputEnd": "...",
+ *                                     "Format": "NDJSON"}, or the TSIDs as text, one per line, with the other values as
+ *                                     query parameters.  Format is NDJSON (the default) or JSON.  Each time series includes
+ *                                     "RequestedTSID" and errors are written in the response as {"TSID": ..., "Error": ...}.
+ * GET    /tstool/catalog              List the datastores and whether the time series catalog can be read (CatalogSupported).
+ * GET    /tstool/catalog?DataStore=   Read a time series catalog (the list of available time series, with a column for each
+ *                                     datastore metadata property), returning a page of rows.
+ *                                     Query parameters are DataStore, DataType and Interval
+ *                                     (as shown in the UI choices), Where1, Where2, ... (Item;Operator;Value, applied by the
+ *                                     datastore query, the same as the WhereN command parameters), Filter (Column;Pattern,
+ *                                     one or more, matched to the row values ignoring case with * wildcards),
+ *                                     Fields (comma-separated columns to return, default all), Offset (default 0),
+ *                                     Limit (default 100), and Refresh=True to read again.  The catalog is kept by the server
+ *                                     for a short time so request the next page with NextOffset, see TSToolHttpCatalog.
+ * POST   /tstool/datastores/reload    Reload datastores whose configuration files have changed, after running jobs complete.
+ * GET    /tstool/status               Get the server status.
+ * POST   /tstool/shutdown             Stop the server after running jobs complete.
+ * </pre>
+ * A relative command file path is relative to WorkingDir.  Inline commands are saved in a job folder,
+ * which is the default working directory for the commands.
  */
 public class UrlHandler implements HttpHandler {
+
+	/**
+	 * Maximum request body size, to limit memory used by requests.
+	 */
+	private static final int MAX_BODY_SIZE = 10*1024*1024;
+
+	/**
+	 * Maximum number of time series in a bulk read request.
+	 */
+	private static final int MAX_BULK_TSID_COUNT = 5000;
+
+	/**
+	 * Default number of rows in a time series catalog page.
+	 */
+	private static final int DEFAULT_CATALOG_LIMIT = 100;
+
+	/**
+	 * Maximum number of rows in a time series catalog page.
+	 */
+	private static final int MAX_CATALOG_LIMIT = 10000;
+
+	/**
+	 * Server that runs the jobs.
+	 */
+	private TSToolHttpServer server;
+
+	/**
+	 * Mapper to read and write JSON.
+	 */
+	private ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Constructor.
+	 * @param server server that runs the jobs
+	 */
+	public UrlHandler ( TSToolHttpServer server ) {
+		this.server = server;
+	}
+
 	/**
-	 * TODO SAM 2016-02-10 Enable this to a reasonable level:
-	 * - use the body of the URL to determine the command file to run.
-	 * - use the query parameters to set TSCommandProcessor properties
-	 * - similar to batchServer execution
-	 * - enable some way to exit so that Java process does not need to be killed
+	 * Handle a request.
+	 * @param t exchange for the request and response
 	 */
-	public void handle(HttpExchange t) throws IOException {
-		URI uri = t.getRequestURI();
-		String response = "TSTool response for " + uri;
-		// Get query parameters
-		//Map<String,List<String>> parameters = splitQuery(uri.toURL());
-		t.sendResponseHeaders(200,response.length());
-		OutputStream os = t.getResponseBody();
-		os.write(response.getBytes());
-		os.close();
+	public void handle ( HttpExchange t ) throws IOException {
+		String routine = getClass().getSimpleName() + ".handle";
+		try {
+			String token = this.server.getToken();
+			if ( (token != null) && !isTokenValid(token, t.getRequestHeaders().getFirst("Authorization")) ) {
+				sendError ( t, 401, "Invalid or missing token." );
+				return;
+			}
+			// Split the path after the root into parts, for example "jobs", "JobId", "log".
+			String path = t.getRequestURI().getPath().substring(TSToolHttpServer.ROOT_PATH.length());
+			List<String> parts = new ArrayList<>();
+			for ( String part : path.split("/") ) {
+				if ( !part.isEmpty() ) {
+					parts.add ( part );
+				}
+			}
+			String method = t.getRequestMethod().toUpperCase();
+			if ( parts.isEmpty() ) {
+				sendError ( t, 404, "Unknown resource - see the documentation for the API." );
+			}
+			else if ( parts.get(0).equals("jobs") ) {
+				handleJobs ( t, method, parts );
+			}
+			else if ( (parts.size() == 1) && parts.get(0).equals("ts") ) {
+				if ( method.equals("GET") ) {
+					handleTimeSeries ( t );
+				}
+				else if ( method.equals("POST") ) {
+					handleTimeSeriesBulk ( t );
+				}
+				else {
+					sendError ( t, 405, "Use GET to read time series or POST to read many time series." );
+				}
+			}
+			else if ( (parts.size() == 1) && parts.get(0).equals("catalog") ) {
+				if ( !method.equals("GET") ) {
+					sendError ( t, 405, "Use GET to read a time series catalog." );
+				}
+				else {
+					handleCatalog ( t );
+				}
+			}
+			else if ( (parts.size() == 2) && parts.get(0).equals("datastores") && parts.get(1).equals("reload") ) {
+				if ( !method.equals("POST") ) {
+					sendError ( t, 405, "Use POST to reload datastores." );
+				}
+				else {
+					Map<String,Object> map = new LinkedHashMap<>();
+					map.put("Summary", this.server.reloadDataStores());
+					sendJson ( t, 200, map );
+				}
+			}
+			else if ( (parts.size() == 1) && parts.get(0).equals("status") ) {
+				sendJson ( t, 200, this.server.getStatus() );
+			}
+			else if ( (parts.size() == 1) && parts.get(0).equals("shutdown") ) {
+				if ( !method.equals("POST") ) {
+					sendError ( t, 405, "Use POST to stop the server." );
+				}
+				else {
+					Map<String,Object> map = new LinkedHashMap<>();
+					map.put("Status", "Stopping TSTool HTTP server after running jobs complete.");
+					sendJson ( t, 200, map );
+					this.server.requestStop();
+				}
+			}
+			else {
+				sendError ( t, 404, "Unknown resource \"" + path + "\"." );
+			}
+		}
+		catch ( Exception e ) {
+			if ( isResponseStarted(t) ) {
+				// The status was already sent so an error status cannot be sent.
+				// Streamed responses write the error in the response before it is closed below.
+				Message.printWarning ( 2, routine, "Error after starting the response for " + t.getRequestMethod() + " " +
+					t.getRequestURI() + " (" + e + ")." );
+				Message.printWarning ( 3, routine, e );
+			}
+			else if ( e instanceof IllegalArgumentException ) {
+				sendError ( t, 400, e.getMessage() );
+			}
+			else if ( e instanceof IllegalStateException ) {
+				sendError ( t, 409, e.getMessage() );
+			}
+			else if ( e instanceof RejectedExecutionException ) {
+				// The job queue is full or datastore calls are backed up.
+				sendError ( t, 503, e.getMessage() );
+			}
+			else {
+				Message.printWarning ( 2, routine, "Error handling request " + t.getRequestMethod() + " " + t.getRequestURI() + " (" + e + ")." );
+				Message.printWarning ( 3, routine, e );
+				try {
+					sendError ( t, 500, "Error handling request (" + e + ")." );
+				}
+				catch ( IOException e2 ) {
+					// The client disconnected.
+				}
+			}
+		}
+		finally {
+			t.close();
+		}
 	}
 
-	// TODO smalers 2019-06-01 evalaute why not used
 	/**
-	 * Split a URL string into parameters.  Do light-weight without external library.
+	 * Handle a request to read a time series catalog, returning one page of rows,
+	 * or the list of datastores if a datastore is not specified.
+	 * @param t exchange for the request and response
+	 */
+	private void handleCatalog ( HttpExchange t ) throws Exception {
+		Map<String,List<String>> query = splitQuery ( t.getRequestURI() );
+		String dataStoreName = getQueryValue ( query, "DataStore" );
+		if ( (dataStoreName == null) || dataStoreName.isEmpty() ) {
+			Map<String,Object> map = new LinkedHashMap<>();
+			map.put("DataStores", this.server.getCatalogDataStores());
+			sendJson ( t, 200, map );
+			return;
+		}
+		String dataType = getQueryValue ( query, "DataType" );
+		String interval = getQueryValue ( query, "Interval" );
+		if ( (dataType == null) || dataType.isEmpty() || (interval == null) || interval.isEmpty() ) {
+			throw new IllegalArgumentException ( "DataType and Interval must be specified." );
+		}
+		// WhereN parameters are in filter group order, with empty strings for groups that are not specified.
+		List<String> whereList = new ArrayList<>();
+		for ( String name : query.keySet() ) {
+			if ( name.matches("Where[0-9]{1,3}") ) {
+				int iwhere = Integer.parseInt(name.substring(5));
+				if ( (iwhere < 1) || (iwhere > 100) ) {
+					throw new IllegalArgumentException ( "Parameter " + name + " is not valid." );
+				}
+				while ( whereList.size() < iwhere ) {
+					whereList.add ( "" );
+				}
+				String where = getQueryValue ( query, name );
+				whereList.set ( iwhere - 1, (where == null) ? "" : where );
+			}
+		}
+		List<String> fieldList = new ArrayList<>();
+		List<String> fieldsList = query.get("Fields");
+		if ( fieldsList != null ) {
+			for ( String fields : fieldsList ) {
+				if ( fields != null ) {
+					for ( String field : fields.split(",") ) {
+						if ( !field.trim().isEmpty() ) {
+							fieldList.add ( field.trim() );
+						}
+					}
+				}
+			}
+		}
+		List<String> filterList = new ArrayList<>();
+		List<String> filtersList = query.get("Filter");
+		if ( filtersList != null ) {
+			for ( String filter : filtersList ) {
+				if ( (filter != null) && !filter.isEmpty() ) {
+					filterList.add ( filter );
+				}
+			}
+		}
+		int offset = parseInt ( "Offset", getQueryValue(query, "Offset"), 0 );
+		int limit = parseInt ( "Limit", getQueryValue(query, "Limit"), DEFAULT_CATALOG_LIMIT );
+		if ( (offset < 0) || (limit < 1) || (limit > MAX_CATALOG_LIMIT) ) {
+			throw new IllegalArgumentException ( "Offset must be >= 0 and Limit must be 1 to " + MAX_CATALOG_LIMIT + "." );
+		}
+		boolean refresh = "True".equalsIgnoreCase ( getQueryValue(query, "Refresh") );
+		TSToolHttpCatalog catalog = this.server.readTimeSeriesCatalog ( dataStoreName, dataType, interval, whereList, refresh );
+		sendJson ( t, 200, catalog.getPage(fieldList, filterList, offset, limit) );
+	}
+
+	/**
+	 * Handle a request for the "jobs" resource.
+	 * @param t exchange for the request and response
+	 * @param method request method, upper case
+	 * @param parts path parts after the root, starting with "jobs"
+	 */
+	private void handleJobs ( HttpExchange t, String method, List<String> parts ) throws IOException {
+		if ( parts.size() == 1 ) {
+			if ( method.equals("POST") ) {
+				TSToolHttpJob job = submitJob ( t );
+				sendJson ( t, 202, job.toMap(getOutputUrl(job)) );
+			}
+			else if ( method.equals("GET") ) {
+				List<Map<String,Object>> jobList = new ArrayList<>();
+				for ( TSToolHttpJob job : this.server.getJobs() ) {
+					jobList.add ( job.toMap(getOutputUrl(job)) );
+				}
+				Map<String,Object> map = new LinkedHashMap<>();
+				map.put("Jobs", jobList);
+				sendJson ( t, 200, map );
+			}
+			else {
+				sendError ( t, 405, "Use POST to submit a job or GET to list jobs." );
+			}
+			return;
+		}
+		TSToolHttpJob job = this.server.getJob ( parts.get(1) );
+		if ( job == null ) {
+			sendError ( t, 404, "Job \"" + parts.get(1) + "\" was not found (it may have been removed after the retention time)." );
+		}
+		else if ( parts.size() == 2 ) {
+			if ( method.equals("GET") ) {
+				sendJson ( t, 200, job.toMap(getOutputUrl(job)) );
+			}
+			else if ( method.equals("DELETE") ) {
+				if ( !this.server.cancelJob(job) ) {
+					sendError ( t, 409, "Job \"" + job.getId() + "\" has already finished." );
+				}
+				else {
+					sendJson ( t, 202, job.toMap(getOutputUrl(job)) );
+				}
+			}
+			else {
+				sendError ( t, 405, "Use GET to get the job status or DELETE to cancel the job." );
+			}
+		}
+		else if ( (parts.size() == 3) && parts.get(2).equals("log") && method.equals("GET") ) {
+			StringBuilder sb = new StringBuilder();
+			for ( String line : job.getLogLines() ) {
+				sb.append ( line );
+				sb.append ( "\n" );
+			}
+			sendResponse ( t, 200, "text/plain; charset=utf-8", sb.toString().getBytes(StandardCharsets.UTF_8) );
+		}
+		else if ( (parts.size() == 4) && parts.get(2).equals("output") && method.equals("GET") ) {
+			// Only files in the job's output file list can be requested, by position in the list.
+			List<File> outputFileList = job.getOutputFileList();
+			int index = -1;
+			try {
+				index = Integer.parseInt ( parts.get(3) );
+			}
+			catch ( NumberFormatException e ) {
+				// Handled below.
+			}
+			if ( (index < 0) || (index >= outputFileList.size()) ) {
+				sendError ( t, 404, "Output file \"" + parts.get(3) + "\" was not found for job \"" + job.getId() + "\"." );
+				return;
+			}
+			File outputFile = outputFileList.get(index);
+			if ( !outputFile.isFile() ) {
+				sendError ( t, 404, "Output file \"" + outputFile + "\" no longer exists." );
+				return;
+			}
+			String contentType = Files.probeContentType ( outputFile.toPath() );
+			t.getResponseHeaders().set ( "Content-Type", (contentType == null) ? "application/octet-stream" : contentType );
+			t.getResponseHeaders().set ( "Content-Disposition", "attachment; filename=\"" + outputFile.getName() + "\"" );
+			t.sendResponseHeaders ( 200, outputFile.length() );
+			try ( OutputStream os = t.getResponseBody() ) {
+				Files.copy ( outputFile.toPath(), os );
+			}
+		}
+		else {
+			sendError ( t, 404, "Unknown job resource." );
+		}
+	}
+
+	/**
+	 * Handle a request to read time series, streaming the values to the client as they are formatted.
+	 * Each time series is read and written before the next is read, so that only one time series is in memory,
+	 * except for DateValue format, which requires all the time series to write the columns.
+	 * @param t exchange for the request and response
+	 */
+	private void handleTimeSeries ( HttpExchange t ) throws Exception {
+		Map<String,List<String>> query = splitQuery ( t.getRequestURI() );
+		List<String> tsidList = query.get("TSID");
+		if ( (tsidList == null) || tsidList.isEmpty() || (tsidList.get(0) == null) ) {
+			throw new IllegalArgumentException ( "No TSID was specified." );
+		}
+		String format = TSToolHttpTimeSeriesWriter.parseFormat ( getQueryValue(query, "Format") );
+		DateTime inputStart = parseDateTime ( "InputStart", getQueryValue(query, "InputStart") );
+		DateTime inputEnd = parseDateTime ( "InputEnd", getQueryValue(query, "InputEnd") );
+		// Read the first time series (all for DateValue) before sending the response status,
+		// so that an invalid identifier or unavailable datastore results in an error status.
+		List<TS> tslist = new ArrayList<>();
+		int readCount = format.equals(TSToolHttpTimeSeriesWriter.FORMAT_DATEVALUE) ? tsidList.size() : 1;
+		for ( int i = 0; i < readCount; i++ ) {
+			tslist.add ( this.server.readTimeSeries(tsidList.get(i), inputStart, inputEnd) );
+		}
+		t.getResponseHeaders().set ( "Content-Type", TSToolHttpTimeSeriesWriter.getContentType(format) );
+		// A response length of zero uses chunked transfer encoding.
+		t.sendResponseHeaders ( 200, 0 );
+		TSToolHttpTimeSeriesWriter writer = new TSToolHttpTimeSeriesWriter ( t.getResponseBody(), format );
+		String tsid = (readCount == 1) ? tsidList.get(0) : null;
+		try {
+			writer.writeTimeSeriesList ( tslist, inputStart, inputEnd );
+			tslist = null;
+			for ( int i = readCount; i < tsidList.size(); i++ ) {
+				tsid = tsidList.get(i);
+				TS ts;
+				try {
+					ts = this.server.readTimeSeries ( tsid, inputStart, inputEnd );
+				}
+				catch ( Exception e ) {
+					// The response has started so write the error in the response and continue with the next time series.
+					writer.writeError ( tsid, (e.getMessage() == null) ? e.toString() : e.getMessage() );
+					continue;
+				}
+				writer.writeTimeSeries ( ts, inputStart, inputEnd );
+			}
+		}
+		catch ( Exception e ) {
+			// The response has started so write the error in the response rather than as an error status, and stop.
+			writeErrorAndRethrow ( writer, tsid, e );
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Handle a request to read many time series, which are read in parallel by datastore (see TSToolHttpBulkRead)
+	 * and written as each read finishes, so that clients receive each time series as soon as it is ready.
+	 * The response status is sent before reading, so errors for a time series are written in the response.
+	 * @param t exchange for the request and response
+	 */
+	@SuppressWarnings("unchecked")
+	private void handleTimeSeriesBulk ( HttpExchange t ) throws Exception {
+		Map<String,List<String>> query = splitQuery ( t.getRequestURI() );
+		byte [] body = readBody ( t );
+		List<String> tsidList = new ArrayList<>();
+		String inputStartString = getQueryValue ( query, "InputStart" );
+		String inputEndString = getQueryValue ( query, "InputEnd" );
+		String formatString = getQueryValue ( query, "Format" );
+		String contentType = t.getRequestHeaders().getFirst("Content-Type");
+		if ( (contentType != null) && contentType.toLowerCase().contains("json") ) {
+			Map<String,Object> request;
+			try {
+				request = this.mapper.readValue ( body, Map.class );
+			}
+			catch ( IOException e ) {
+				throw new IllegalArgumentException ( "The request body is not valid JSON (" + e.getMessage() + ")." );
+			}
+			Object tsids = request.get("TSID");
+			if ( tsids instanceof List ) {
+				for ( Object tsid : (List<Object>)tsids ) {
+					if ( tsid != null ) {
+						tsidList.add ( tsid.toString() );
+					}
+				}
+			}
+			else if ( tsids != null ) {
+				tsidList.add ( tsids.toString() );
+			}
+			if ( request.containsKey("InputStart") ) {
+				inputStartString = toString ( request.get("InputStart") );
+			}
+			if ( request.containsKey("InputEnd") ) {
+				inputEndString = toString ( request.get("InputEnd") );
+			}
+			if ( request.containsKey("Format") ) {
+				formatString = toString ( request.get("Format") );
+			}
+		}
+		else {
+			// The body is the TSIDs, one per line, ignoring blank lines and # comments.
+			for ( String line : new String(body, StandardCharsets.UTF_8).split("\\r?\\n") ) {
+				line = line.trim();
+				if ( !line.isEmpty() && !line.startsWith("#") ) {
+					tsidList.add ( line );
+				}
+			}
+		}
+		if ( tsidList.isEmpty() ) {
+			throw new IllegalArgumentException ( "No TSID was specified." );
+		}
+		if ( tsidList.size() > MAX_BULK_TSID_COUNT ) {
+			throw new IllegalArgumentException ( "No more than " + MAX_BULK_TSID_COUNT + " TSIDs can be read in one request." );
+		}
+		String format = TSToolHttpTimeSeriesWriter.parseFormat (
+			((formatString == null) || formatString.isEmpty()) ? TSToolHttpTimeSeriesWriter.FORMAT_NDJSON : formatString );
+		if ( !format.equals(TSToolHttpTimeSeriesWriter.FORMAT_NDJSON) && !format.equals(TSToolHttpTimeSeriesWriter.FORMAT_JSON) ) {
+			// Time series are written in the order read, so the format must identify the requested time series.
+			throw new IllegalArgumentException ( "Use " + TSToolHttpTimeSeriesWriter.FORMAT_NDJSON + " or " +
+				TSToolHttpTimeSeriesWriter.FORMAT_JSON + " format to read many time series." );
+		}
+		DateTime inputStart = parseDateTime ( "InputStart", inputStartString );
+		DateTime inputEnd = parseDateTime ( "InputEnd", inputEndString );
+		TSToolHttpBulkRead bulkRead = new TSToolHttpBulkRead ( this.server, tsidList, inputStart, inputEnd );
+		t.getResponseHeaders().set ( "Content-Type", TSToolHttpTimeSeriesWriter.getContentType(format) );
+		// A response length of zero uses chunked transfer encoding.
+		t.sendResponseHeaders ( 200, 0 );
+		TSToolHttpTimeSeriesWriter writer = new TSToolHttpTimeSeriesWriter ( t.getResponseBody(), format );
+		String tsid = null;
+		try {
+			bulkRead.start();
+			TSToolHttpBulkRead.Result result;
+			while ( (result = bulkRead.next()) != null ) {
+				tsid = result.getTSID();
+				if ( result.getTS() == null ) {
+					writer.writeError ( tsid, result.getError() );
+				}
+				else {
+					writer.writeTimeSeries ( tsid, result.getTS(), inputStart, inputEnd );
+				}
+				tsid = null;
+			}
+		}
+		catch ( Exception e ) {
+			// The response has started so write the error in the response rather than as an error status, and stop.
+			writeErrorAndRethrow ( writer, tsid, e );
+		}
+		finally {
+			// Cancel reads that have not started if the client disconnected.
+			bulkRead.cancel();
+			writer.close();
+		}
+	}
+
+	/**
+	 * Return the URL prefix for a job's output files.
+	 * @param job job
+	 * @return the URL prefix, to which the output file index is appended
+	 */
+	private String getOutputUrl ( TSToolHttpJob job ) {
+		return TSToolHttpServer.ROOT_PATH + "/jobs/" + job.getId() + "/output/";
+	}
+
+	/**
+	 * Return the last value of a query parameter.
+	 * @param query query parameters
+	 * @param name parameter name
+	 * @return the last value of the parameter, or null if not specified
+	 */
+	private String getQueryValue ( Map<String,List<String>> query, String name ) {
+		List<String> values = query.get(name);
+		return ((values == null) || values.isEmpty()) ? null : values.get(values.size() - 1);
+	}
+
+	/**
+	 * Determine whether the response has started, in which case an error status cannot be sent.
+	 * @param t exchange for the request and response
+	 * @return true if the response status and headers have been sent
+	 */
+	private boolean isResponseStarted ( HttpExchange t ) {
+		// The response code is -1 until sendResponseHeaders() is called.
+		return t.getResponseCode() != -1;
+	}
+
+	/**
+	 * Determine whether the request has the token, comparing in constant time so that the token cannot be guessed
+	 * from the response time.
+	 * @param token token that clients must provide
+	 * @param authorization Authorization header from the request, or null if not provided
+	 * @return true if the Authorization header is "Bearer token"
+	 */
+	private boolean isTokenValid ( String token, String authorization ) {
+		if ( authorization == null ) {
+			return false;
+		}
+		return MessageDigest.isEqual ( ("Bearer " + token).getBytes(StandardCharsets.UTF_8),
+			authorization.getBytes(StandardCharsets.UTF_8) );
+	}
+
+	/**
+	 * Parse a date/time request parameter.
+	 * @param name parameter name, used in the error message
+	 * @param value parameter value
+	 * @return the date/time, or null if not specified
+	 * @throws IllegalArgumentException if the date/time cannot be parsed
+	 */
+	private DateTime parseDateTime ( String name, String value ) {
+		if ( (value == null) || value.isEmpty() ) {
+			return null;
+		}
+		try {
+			return DateTime.parse ( value );
+		}
+		catch ( Exception e ) {
+			throw new IllegalArgumentException ( name + " \"" + value + "\" is not a valid date/time." );
+		}
+	}
+
+	/**
+	 * Parse an integer request parameter.
+	 * @param name parameter name, used in the error message
+	 * @param value parameter value
+	 * @param defaultValue value to return if not specified
+	 * @return the integer
+	 * @throws IllegalArgumentException if the integer cannot be parsed
+	 */
+	private int parseInt ( String name, String value, int defaultValue ) {
+		if ( (value == null) || value.isEmpty() ) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt ( value.trim() );
+		}
+		catch ( NumberFormatException e ) {
+			throw new IllegalArgumentException ( name + " \"" + value + "\" is not a valid integer." );
+		}
+	}
+
+	/**
+	 * Read the request body.
+	 * @param t exchange for the request
+	 * @return the request body
+	 * @throws IllegalArgumentException if the body is larger than the maximum size
+	 */
+	private byte [] readBody ( HttpExchange t ) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte [] buffer = new byte[8192];
+		try ( InputStream in = t.getRequestBody() ) {
+			int n;
+			while ( (n = in.read(buffer)) > 0 ) {
+				bytes.write ( buffer, 0, n );
+				if ( bytes.size() > MAX_BODY_SIZE ) {
+					throw new IllegalArgumentException ( "The request body is larger than " + MAX_BODY_SIZE + " bytes." );
+				}
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Send an error response.
+	 * @param t exchange for the response
+	 * @param code HTTP status code
+	 * @param message error message
+	 */
+	private void sendError ( HttpExchange t, int code, String message ) throws IOException {
+		Map<String,Object> map = new LinkedHashMap<>();
+		map.put("Error", message);
+		sendJson ( t, code, map );
+	}
+
+	/**
+	 * Send a JSON response.
+	 * @param t exchange for the response
+	 * @param code HTTP status code
+	 * @param object object to write as JSON
+	 */
+	private void sendJson ( HttpExchange t, int code, Object object ) throws IOException {
+		sendResponse ( t, code, "application/json; charset=utf-8", this.mapper.writeValueAsBytes(object) );
+	}
+
+	/**
+	 * Send a response.
+	 * @param t exchange for the response
+	 * @param code HTTP status code
+	 * @param contentType response content type
+	 * @param bytes response body
+	 */
+	private void sendResponse ( HttpExchange t, int code, String contentType, byte [] bytes ) throws IOException {
+		t.getResponseHeaders().set ( "Content-Type", contentType );
+		t.sendResponseHeaders ( code, bytes.length );
+		try ( OutputStream os = t.getResponseBody() ) {
+			os.write ( bytes );
+		}
+	}
+
+	/**
+	 * Split a URI query string into parameters.  Do light-weight without external library.
 	 * See:  http://stackoverflow.com/questions/13592236/parse-a-uri-string-into-name-value-collection
-	 * @param url
-	 * @return
+	 * @param uri URI to process
+	 * @return the query parameters, empty if no query
 	 * @throws UnsupportedEncodingException
 	 */
-	@SuppressWarnings("unused")
-	private Map<String, List<String>> splitQuery(URL url) throws UnsupportedEncodingException {
+	private Map<String, List<String>> splitQuery(URI uri) throws UnsupportedEncodingException {
 	  final Map<String, List<String>> query_pairs = new LinkedHashMap<String, List<String>>();
-	  final String[] pairs = url.getQuery().split("&");
+	  if ( (uri.getRawQuery() == null) || uri.getRawQuery().isEmpty() ) {
+	    return query_pairs;
+	  }
+	  final String[] pairs = uri.getRawQuery().split("&");
 	  for (String pair : pairs) {
 	    final int idx = pair.indexOf("=");
 	    final String key = idx > 0 ? URLDecoder.decode(pair.substring(0, idx), "UTF-8") : pair;
@@ -85,4 +709,83 @@ public class UrlHandler implements HttpHandler {
 	  return query_pairs;
 	}
 
+	/**
+	 * Submit a job from the request.
+	 * @param t exchange for the request
+	 * @return the job
+	 */
+	@SuppressWarnings("unchecked")
+	private TSToolHttpJob submitJob ( HttpExchange t ) throws IOException {
+		byte [] body = readBody ( t );
+		String commandFile = null;
+		String commands = null;
+		String workingDir = null;
+		List<String> propertyList = new ArrayList<>();
+		String contentType = t.getRequestHeaders().getFirst("Content-Type");
+		if ( (contentType != null) && contentType.toLowerCase().contains("json") ) {
+			Map<String,Object> request;
+			try {
+				request = this.mapper.readValue ( body, Map.class );
+			}
+			catch ( IOException e ) {
+				throw new IllegalArgumentException ( "The request body is not valid JSON (" + e.getMessage() + ")." );
+			}
+			commandFile = toString ( request.get("CommandFile") );
+			commands = toString ( request.get("Commands") );
+			workingDir = toString ( request.get("WorkingDir") );
+			Object properties = request.get("Properties");
+			if ( properties instanceof Map ) {
+				for ( Map.Entry<String,Object> entry : ((Map<String,Object>)properties).entrySet() ) {
+					propertyList.add ( entry.getKey() + "==" + toString(entry.getValue()) );
+				}
+			}
+			else if ( properties != null ) {
+				throw new IllegalArgumentException ( "Properties must be an object with property names and values." );
+			}
+		}
+		else {
+			// The body is the inline commands and the query parameters are the command file, working directory, and properties.
+			commands = new String ( body, StandardCharsets.UTF_8 );
+			for ( Map.Entry<String,List<String>> entry : splitQuery(t.getRequestURI()).entrySet() ) {
+				String value = entry.getValue().get(entry.getValue().size() - 1);
+				if ( entry.getKey().equals("CommandFile") ) {
+					commandFile = value;
+				}
+				else if ( entry.getKey().equals("WorkingDir") ) {
+					workingDir = value;
+				}
+				else {
+					propertyList.add ( entry.getKey() + "==" + ((value == null) ? "" : value) );
+				}
+			}
+		}
+		return this.server.submitJob ( commandFile, commands, workingDir, propertyList );
+	}
+
+	/**
+	 * Convert a JSON value to a string.
+	 * @param value JSON value
+	 * @return the string, or null if the value is null
+	 */
+	private String toString ( Object value ) {
+		return (value == null) ? null : value.toString();
+	}
+
+	/**
+	 * Write an error in a streamed response that has already started, and then rethrow the error so that it is logged.
+	 * @param writer writer for the response
+	 * @param tsid identifier of the time series that was being read or written, or null if not known
+	 * @param e error that occurred
+	 * @throws Exception the error that occurred
+	 */
+	private void writeErrorAndRethrow ( TSToolHttpTimeSeriesWriter writer, String tsid, Exception e ) throws Exception {
+		try {
+			writer.writeError ( tsid, (e.getMessage() == null) ? e.toString() : e.getMessage() );
+		}
+		catch ( IOException e2 ) {
+			// The client disconnected.
+		}
+		throw e;
+	}
+
 }
@@ -0,0 +1,156 @@
+// HydroBaseCatalogFilterType - type of input filter used to list HydroBase time series for a data type
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package cdss.app.tstool.datastore;
+
+import DWR.DMI.HydroBaseDMI.HydroBaseDMI;
+import DWR.DMI.HydroBaseDMI.HydroBase_Util;
+import DWR.DMI.tstool.TSToolConstants;
+
+/**
+ * This class provides an enumeration of the input filters that are used to list HydroBase time series,
+ * which depend on the data type and time step.
+ * The TSTool UI uses the type to select the input filter panel and the HTTP server uses the type to create the panel
+ * that holds the filters for a catalog read (see TimeSeriesCatalogService).
+ */
+public enum HydroBaseCatalogFilterType {
+
+	/**
+	 * CASS agricultural crop statistics.
+	 */
+	AGRICULTURAL_CASS_CROP_STATS("AgriculturalCASSCropStats"),
+
+	/**
+	 * CASS agricultural livestock statistics.
+	 */
+	AGRICULTURAL_CASS_LIVESTOCK_STATS("AgriculturalCASSLivestockStats"),
+
+	/**
+	 * NASS agricultural crop statistics.
+	 */
+	AGRICULTURAL_NASS_CROP_STATS("AgriculturalNASSCropStats"),
+
+	/**
+	 * CU population.
+	 */
+	CU_POPULATION("CUPopulation"),
+
+	/**
+	 * Groundwater wells, for time steps other than irregular.
+	 */
+	GROUNDWATER_WELL("GroundwaterWell"),
+
+	/**
+	 * Structure irrigation summary.
+	 */
+	IRRIG_SUMMARY("IrrigSummary"),
+
+	/**
+	 * Stations, including irregular groundwater well time series.
+	 */
+	STATION("Station"),
+
+	/**
+	 * Structures that are not filtered by SFUT.
+	 */
+	STRUCTURE("Structure"),
+
+	/**
+	 * Structures that can be filtered by SFUT.
+	 */
+	STRUCTURE_SFUT("StructureSFUT");
+
+	/**
+	 * The string name that should be displayed.
+	 */
+	private final String displayName;
+
+	/**
+	 * Construct an enumeration value.
+	 * @param displayName name that should be displayed in choices, etc.
+	 */
+	private HydroBaseCatalogFilterType(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Return the display name for the filter type.
+	 * This is usually the same as the value but using appropriate mixed case.
+	 * @return the display name.
+	 */
+	@Override
+	public String toString() {
+		return displayName;
+	}
+
+	/**
+	 * Return the filter type for a data type and time step.
+	 * The checks are in the order that the TSTool UI has always used to select the HydroBase input filter panel.
+	 * @param hbdmi HydroBase DMI for the database
+	 * @param dataType data type, as shown in the UI data type choices
+	 * @param timeStep time step, as shown in the UI time step choices
+	 * @return the filter type, or null if the data type does not use a HydroBase input filter
+	 */
+	public static HydroBaseCatalogFilterType valueOfDataType ( HydroBaseDMI hbdmi, String dataType, String timeStep ) {
+		// The following lookups are currently hard coded and not read from HydroBase.
+		String meas_type = HydroBase_Util.convertToHydroBaseMeasType ( dataType, timeStep )[0];
+		if ( HydroBase_Util.isStationTimeSeriesDataType ( hbdmi, meas_type) ) {
+			return STATION;
+		}
+		// Check before the more general isStructureTimeSeriesDataType() method.
+		else if ( HydroBase_Util.isStructureSFUTTimeSeriesDataType ( hbdmi, meas_type) ) {
+			return STRUCTURE_SFUT;
+		}
+		else if ( HydroBase_Util.isStructureTimeSeriesDataType ( hbdmi, meas_type) ) {
+			return STRUCTURE;
+		}
+		else if ( HydroBase_Util.isAgriculturalCASSCropStatsTimeSeriesDataType ( hbdmi, dataType) ) {
+			return AGRICULTURAL_CASS_CROP_STATS;
+		}
+		else if ( HydroBase_Util.isAgriculturalCASSLivestockStatsTimeSeriesDataType ( hbdmi, dataType) ) {
+			return AGRICULTURAL_CASS_LIVESTOCK_STATS;
+		}
+		else if ( HydroBase_Util.isCUPopulationTimeSeriesDataType ( hbdmi, dataType) ) {
+			return CU_POPULATION;
+		}
+		else if ( HydroBase_Util.isAgriculturalNASSCropStatsTimeSeriesDataType ( hbdmi, dataType) ) {
+			return AGRICULTURAL_NASS_CROP_STATS;
+		}
+		else if ( HydroBase_Util.isIrrigSummaryTimeSeriesDataType ( hbdmi, dataType) ) {
+			return IRRIG_SUMMARY;
+		}
+		else if ( HydroBase_Util.isGroundWaterWellTimeSeriesDataType ( hbdmi, dataType) ) {
+			if ( timeStep.equals(TSToolConstants.TIMESTEP_IRREGULAR) ) {
+				// Irregular well levels are station time series.
+				return STATION;
+			}
+			else {
+				return GROUNDWATER_WELL;
+			}
+		}
+		else {
+			return null;
+		}
+	}
+
+}
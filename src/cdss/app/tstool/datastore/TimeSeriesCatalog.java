@@ -0,0 +1,248 @@
+// TimeSeriesCatalog - time series catalog (list of available time series) as plain metadata rows
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package cdss.app.tstool.datastore;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.table.TableModel;
+
+import RTi.Util.Time.DateTime;
+
+/**
+ * Time series catalog (the list of available time series) that was read from a datastore by TimeSeriesCatalogService,
+ * as plain metadata rows that do not depend on the UI.
+ * Each row corresponds to one metadata object that was read from the datastore
+ * (for example a HydroBase station and measurement type), and each column corresponds to one metadata property,
+ * determined from the public "get" and "is" methods of the metadata class that return a simple value
+ * (string, number, boolean, character, date/time, or enumeration).
+ * Column names are the property names (for example "Station_id" for getStation_id()), sorted alphabetically.
+ * Properties of the DMI base classes, such as whether the object has been edited, are not included.
+ * Catalogs for plugin datastores, which are only available as a table model, use the table model columns instead.
+ * The catalog is not changed after it is created and can be used by more than one thread at a time.
+ */
+public class TimeSeriesCatalog {
+
+	/**
+	 * Datastore name.
+	 */
+	private String dataStoreName;
+
+	/**
+	 * Data type that was requested.
+	 */
+	private String dataType;
+
+	/**
+	 * Time step that was requested.
+	 */
+	private String timeStep;
+
+	/**
+	 * Column names.
+	 */
+	private List<String> columnNames = new ArrayList<>();
+
+	/**
+	 * Rows, each with a value for each column.
+	 */
+	private List<Object[]> rows = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 * @param dataStoreName datastore name
+	 * @param dataType data type that was requested
+	 * @param timeStep time step that was requested
+	 * @param metadataList metadata objects that were read from the datastore, one for each row
+	 * @throws Exception if a metadata property cannot be read
+	 */
+	TimeSeriesCatalog ( String dataStoreName, String dataType, String timeStep, List<? extends Object> metadataList )
+	throws Exception {
+		this.dataStoreName = dataStoreName;
+		this.dataType = dataType;
+		this.timeStep = timeStep;
+		// Determine the columns from the first object, which is the same class as the other objects.
+		List<Method> getterList = new ArrayList<>();
+		if ( (metadataList != null) && !metadataList.isEmpty() ) {
+			Map<String,Method> getterMap = getPropertyGetters ( metadataList.get(0).getClass() );
+			for ( Map.Entry<String,Method> entry : getterMap.entrySet() ) {
+				this.columnNames.add ( entry.getKey() );
+				getterList.add ( entry.getValue() );
+			}
+			for ( Object metadata : metadataList ) {
+				Object [] row = new Object[getterList.size()];
+				for ( int icol = 0; icol < row.length; icol++ ) {
+					row[icol] = toPlainValue ( getterList.get(icol).invoke(metadata) );
+				}
+				this.rows.add ( row );
+			}
+		}
+		this.columnNames = Collections.unmodifiableList ( this.columnNames );
+	}
+
+	/**
+	 * Constructor for a catalog that is provided as a table model, such as for plugin datastores.
+	 * The columns are the table model columns.
+	 * @param dataStoreName datastore name
+	 * @param dataType data type that was requested
+	 * @param timeStep time step that was requested
+	 * @param tableModel table model with a row for each time series
+	 */
+	TimeSeriesCatalog ( String dataStoreName, String dataType, String timeStep, TableModel tableModel ) {
+		this.dataStoreName = dataStoreName;
+		this.dataType = dataType;
+		this.timeStep = timeStep;
+		int ncol = tableModel.getColumnCount();
+		for ( int icol = 0; icol < ncol; icol++ ) {
+			// Worksheet column names use newlines to wrap the heading.
+			this.columnNames.add ( tableModel.getColumnName(icol).replace('\n', ' ').trim() );
+		}
+		for ( int irow = 0; irow < tableModel.getRowCount(); irow++ ) {
+			Object [] row = new Object[ncol];
+			for ( int icol = 0; icol < ncol; icol++ ) {
+				row[icol] = toPlainValue ( tableModel.getValueAt(irow, icol) );
+			}
+			this.rows.add ( row );
+		}
+		this.columnNames = Collections.unmodifiableList ( this.columnNames );
+	}
+
+	/**
+	 * Return the column names.
+	 * @return the column names, which cannot be modified
+	 */
+	public List<String> getColumnNames () {
+		return this.columnNames;
+	}
+
+	/**
+	 * Return the datastore name.
+	 * @return the datastore name
+	 */
+	public String getDataStoreName () {
+		return this.dataStoreName;
+	}
+
+	/**
+	 * Return the data type that was requested.
+	 * @return the data type that was requested
+	 */
+	public String getDataType () {
+		return this.dataType;
+	}
+
+	/**
+	 * Return the property getter methods for a metadata class.
+	 * @param metadataClass metadata class
+	 * @return the getter methods, by property name, sorted by property name
+	 */
+	private Map<String,Method> getPropertyGetters ( Class<?> metadataClass ) {
+		Map<String,Method> getterMap = new TreeMap<>();
+		for ( Method method : metadataClass.getMethods() ) {
+			String name = method.getName();
+			String property = null;
+			if ( name.startsWith("get") && (name.length() > 3) ) {
+				property = name.substring(3);
+			}
+			else if ( name.startsWith("is") && (name.length() > 2) ) {
+				property = name.substring(2);
+			}
+			if ( (property == null) || Modifier.isStatic(method.getModifiers()) || (method.getParameterCount() != 0) ||
+				!isPlainType(method.getReturnType()) ) {
+				continue;
+			}
+			// Use the class name rather than getPackage(), which can be null, to determine the package.
+			String declaringClass = method.getDeclaringClass().getName();
+			int pos = declaringClass.lastIndexOf('.');
+			String declaringPackage = (pos < 0) ? "" : declaringClass.substring(0, pos);
+			if ( declaringPackage.startsWith("java.") || declaringPackage.equals("RTi.DMI") ) {
+				// Object and DMI base class properties are not metadata.
+				continue;
+			}
+			getterMap.put ( property, method );
+		}
+		return getterMap;
+	}
+
+	/**
+	 * Return the number of rows.
+	 * @return the number of rows
+	 */
+	public int getRowCount () {
+		return this.rows.size();
+	}
+
+	/**
+	 * Return the time step that was requested.
+	 * @return the time step that was requested
+	 */
+	public String getTimeStep () {
+		return this.timeStep;
+	}
+
+	/**
+	 * Return a value.
+	 * @param row row index (0+)
+	 * @param column column index (0+)
+	 * @return the value, which is a string, number, boolean, or null
+	 */
+	public Object getValue ( int row, int column ) {
+		return this.rows.get(row)[column];
+	}
+
+	/**
+	 * Indicate whether a metadata property type is a simple value that is included in the catalog.
+	 * @param type property type
+	 * @return true if the type is included in the catalog
+	 */
+	private boolean isPlainType ( Class<?> type ) {
+		return (type.isPrimitive() && (type != void.class)) ||
+			(type == String.class) ||
+			Number.class.isAssignableFrom(type) ||
+			(type == Boolean.class) ||
+			(type == Character.class) ||
+			Date.class.isAssignableFrom(type) ||
+			(type == DateTime.class) ||
+			type.isEnum();
+	}
+
+	/**
+	 * Convert a metadata property value to a plain value.
+	 * @param value metadata property value
+	 * @return the value for numbers, booleans, and null, and otherwise the value as a string
+	 */
+	private Object toPlainValue ( Object value ) {
+		if ( (value == null) || (value instanceof Number) || (value instanceof Boolean) ) {
+			return value;
+		}
+		return value.toString();
+	}
+
+}
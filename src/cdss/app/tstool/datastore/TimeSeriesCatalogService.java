@@ -0,0 +1,359 @@
+// TimeSeriesCatalogService - read time series catalogs from datastores, shared by the TSTool UI and server
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package cdss.app.tstool.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import DWR.DMI.HydroBaseDMI.HydroBaseDMI;
+import DWR.DMI.HydroBaseDMI.HydroBaseDataStore;
+import DWR.DMI.HydroBaseDMI.HydroBase_Util;
+import DWR.DMI.tstool.TSToolConstants;
+import RTi.DMI.DatabaseDataStore;
+import RTi.GR.GRLimits;
+import RTi.Util.GUI.InputFilter_JPanel;
+import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
+import riverside.datastore.DataStore;
+import riverside.datastore.GenericDatabaseDataStore;
+import riverside.datastore.GenericDatabaseDataStore_TimeSeries_InputFilter_JPanel;
+import riverside.datastore.PluginDataStore;
+import riverside.datastore.TimeSeriesMeta;
+import rti.tscommandprocessor.commands.rccacis.RccAcisDataStore;
+import rti.tscommandprocessor.commands.rccacis.RccAcisStationTimeSeriesMetadata;
+import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDBDataStore;
+import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDB_DMI;
+import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDB_SiteTimeSeriesMetadata;
+import rti.tscommandprocessor.commands.usgs.nwis.daily.UsgsNwisDailyDataStore;
+import rti.tscommandprocessor.commands.usgs.nwis.daily.UsgsNwisSiteTimeSeriesMetadata;
+import rti.tscommandprocessor.commands.usgs.nwis.groundwater.UsgsNwisGroundwaterDataStore;
+import rti.tscommandprocessor.commands.usgs.nwis.instantaneous.UsgsNwisInstantaneousDataStore;
+
+/**
+ * This class reads time series catalogs (the list of available time series) from datastores.
+ * It is the one place that the catalog lookups are implemented and is used by the TSTool UI
+ * (the TSTool_* classes for each datastore, which display the metadata with their own table models)
+ * and by tools such as the HTTP server (which use readTimeSeriesCatalog() to get plain metadata rows, see TimeSeriesCatalog).
+ * <p>
+ * The datastore read methods take the datastore's input filter panel to provide the filters.
+ * This class does not create or change input filter panels.
+ * The UI provides the panel that the user edited and other callers provide a panel that they created and set
+ * (for example from where strings that were parsed with TimeSeriesCatalogWhere).
+ * The read methods do not change the panel and can be called on any thread.
+ * <p>
+ * Catalogs for plugin datastores are read using the plugin datastore's time series list table model,
+ * which is the only catalog that the plugin datastore interface provides.
+ * Catalogs for file input types are not supported.
+ * The class is a singleton.  Use getInstance() to get the instance to call methods.
+ */
+public class TimeSeriesCatalogService {
+
+	/**
+	 * Singleton instance of this class.
+	 */
+	private static final TimeSeriesCatalogService instance = new TimeSeriesCatalogService();
+
+	/**
+	 * Private constructor for the singleton.
+	 */
+	private TimeSeriesCatalogService () {
+	}
+
+	/**
+	 * Get the singleton instance.
+	 */
+	public static TimeSeriesCatalogService getInstance () {
+		return TimeSeriesCatalogService.instance;
+	}
+
+	/**
+	 * Indicate whether the time series catalog for a datastore can be read by this class.
+	 * @param dataStore datastore to check
+	 * @return true if the catalog can be read
+	 */
+	public boolean isCatalogSupported ( DataStore dataStore ) {
+		return (dataStore instanceof GenericDatabaseDataStore) ||
+			(dataStore instanceof HydroBaseDataStore) ||
+			(dataStore instanceof PluginDataStore) ||
+			(dataStore instanceof RccAcisDataStore) ||
+			(dataStore instanceof ReclamationHDBDataStore) ||
+			(dataStore instanceof UsgsNwisDailyDataStore) ||
+			(dataStore instanceof UsgsNwisGroundwaterDataStore) ||
+			(dataStore instanceof UsgsNwisInstantaneousDataStore);
+	}
+
+	/**
+	 * Read the GenericDatabaseDataStore metadata for a catalog.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param filterPanel input filter panel with the filters, which must be a GenericDatabaseDataStore panel
+	 * @return the metadata objects
+	 */
+	public List<TimeSeriesMeta> readGenericDatabaseMetadataList ( GenericDatabaseDataStore ds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		return ds.readTimeSeriesMetaList ( dataType, timeStep, (GenericDatabaseDataStore_TimeSeries_InputFilter_JPanel)filterPanel );
+	}
+
+	/**
+	 * Read the HydroBase metadata for a catalog.
+	 * The metadata class depends on the data type, for example HydroBase_StationGeolocMeasType for station data types.
+	 * @param hbdmi HydroBase DMI for the datastore or legacy input type
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param filterPanel input filter panel with the filters, for the type from HydroBaseCatalogFilterType
+	 * @param grlimits if not null, limit stations to the limits (used when the list is requested from a map)
+	 * @return the metadata objects, which are all the same class
+	 */
+	public List<? extends Object> readHydroBaseMetadataList ( HydroBaseDMI hbdmi, String dataType, String timeStep,
+		InputFilter_JPanel filterPanel, GRLimits grlimits ) throws Exception {
+		// Convert TSTool conventions to HydroBase conventions.
+		String [] hb_mt = HydroBase_Util.convertToHydroBaseMeasType ( dataType, timeStep );
+		String meas_type = hb_mt[0];
+		String hbtime_step = hb_mt[2];
+		// Specific objects are read from HydroBase based on the data type.
+		if ( HydroBase_Util.isAgriculturalCASSCropStatsTimeSeriesDataType ( hbdmi, dataType ) ) {
+			// Data from agricultural_CASS_crop_statistics.
+			return hbdmi.readAgriculturalCASSCropStatsList ( filterPanel,
+				null,		// county
+				null,		// commodity
+				null,		// practice
+				null,		// date1
+				null,		// date2,
+				true );		// Distinct
+		}
+		else if ( HydroBase_Util.isAgriculturalNASSCropStatsTimeSeriesDataType ( hbdmi, dataType ) ) {
+			// Data from agricultural_NASS_crop_statistics.
+			return hbdmi.readAgriculturalNASSCropStatsList ( filterPanel,
+				null,		// county
+				null,		// commodity
+				null,		// date1
+				null,		// date2,
+				true );		// Distinct
+		}
+		else if ( HydroBase_Util.isAgriculturalCASSLivestockStatsTimeSeriesDataType ( hbdmi, dataType ) ) {
+			// Data from CASS livestock stats.
+			return hbdmi.readAgriculturalCASSLivestockStatsList ( filterPanel,
+				null,		// county
+				null,		// commodity
+				null,		// type
+				null,		// date1
+				null,		// date2,
+				true );		// Distinct
+		}
+		else if ( HydroBase_Util.isCUPopulationTimeSeriesDataType ( hbdmi, dataType ) ) {
+			return hbdmi.readCUPopulationList ( filterPanel,
+				null,		// county
+				null,		// commodity
+				null,		// type
+				null,		// date1
+				null,		// date2,
+				true );		// Distinct
+		}
+		else if ( HydroBase_Util.isIrrigSummaryTimeSeriesDataType ( hbdmi, dataType ) ) {
+			return HydroBase_Util.readStructureIrrigSummaryTSCatalogList ( hbdmi, filterPanel,
+				null,	// orderby
+				HydroBase_Util.MISSING_INT,	// structure_num
+				HydroBase_Util.MISSING_INT,	// wd
+				HydroBase_Util.MISSING_INT,	// id
+				null,	// str_name
+				null,	// landuse
+				null,	// start
+				null,	// end
+				true );	// distinct
+		}
+		else if ( HydroBase_Util.isStationTimeSeriesDataType ( hbdmi, meas_type ) ) {
+			return HydroBase_Util.readStationGeolocMeasTypeCatalogList ( hbdmi, filterPanel, dataType, timeStep, grlimits );
+		}
+		else if ( HydroBase_Util.isStructureTimeSeriesDataType ( hbdmi, meas_type ) ) {
+			return hbdmi.readStructureGeolocStructMeasTypeCatalogList ( filterPanel, dataType, timeStep );
+		}
+		else if ( (dataType.equalsIgnoreCase("WellLevel") || dataType.equalsIgnoreCase("WellLevelElev") ||
+			dataType.equalsIgnoreCase("WellLevelDepth")) && timeStep.equalsIgnoreCase("Day") ) {
+			// Well level data.
+			return HydroBase_Util.readGroundWaterWellsViewTSCatalogList ( hbdmi, filterPanel, meas_type, hbtime_step );
+		}
+		else {
+			// Other data types, including real-time well levels, are not listed.
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Read the catalog for a plugin datastore, which the plugin datastore interface provides as a table model.
+	 * @param pds datastore for the catalog
+	 * @param dataType data type to list, the full data type choice
+	 * @param timeStep time step to list, the full time step choice
+	 * @param filterPanel input filter panel with the filters, from the plugin datastore
+	 * @return the table model, whose rows are the metadata objects
+	 */
+	public JWorksheet_AbstractRowTableModel readPluginTableModel ( PluginDataStore pds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		if ( pds instanceof DatabaseDataStore ) {
+			// Check the connection in case the connection timed out.
+			((DatabaseDataStore)pds).checkDatabaseConnection();
+		}
+		return pds.createTimeSeriesListTableModel ( dataType, timeStep, filterPanel );
+	}
+
+	/**
+	 * Read the RCC ACIS metadata for a catalog.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param filterPanel input filter panel with the filters
+	 * @return the metadata objects
+	 */
+	public List<RccAcisStationTimeSeriesMetadata> readRccAcisMetadataList ( RccAcisDataStore ds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		return ds.readStationTimeSeriesMetadataList ( dataType, timeStep, filterPanel );
+	}
+
+	/**
+	 * Read the ReclamationHDB metadata for a catalog.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type (object type) to list
+	 * @param timeStep time step to list, or * to list the hour, day, month, year, and irregular time series
+	 * @param filterPanel input filter panel with the filters
+	 * @return the metadata objects
+	 */
+	public List<ReclamationHDB_SiteTimeSeriesMetadata> readReclamationHDBMetadataList ( ReclamationHDBDataStore ds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		// Check the connection in case the connection timed out.
+		ds.checkDatabaseConnection();
+		ReclamationHDB_DMI dmi = (ReclamationHDB_DMI)ds.getDMI();
+		if ( timeStep.equals("*") ) {
+			// Read the time series for each of the major intervals and then concatenate the results.
+			String [] timeSteps = {
+				TSToolConstants.TIMESTEP_HOUR,
+				TSToolConstants.TIMESTEP_DAY,
+				TSToolConstants.TIMESTEP_MONTH,
+				TSToolConstants.TIMESTEP_YEAR,
+				TSToolConstants.TIMESTEP_IRREGULAR
+			};
+			List<ReclamationHDB_SiteTimeSeriesMetadata> results = new ArrayList<>();
+			for ( int i = 0; i < timeSteps.length; i++ ) {
+				try {
+					List<ReclamationHDB_SiteTimeSeriesMetadata> results2 =
+						dmi.readSiteTimeSeriesMetadataList(dataType, timeSteps[i], filterPanel);
+					if ( results2 != null ) {
+						results.addAll ( results2 );
+					}
+				}
+				catch ( Exception e ) {
+					// Just skip the timestep.
+				}
+			}
+			return results;
+		}
+		else {
+			return dmi.readSiteTimeSeriesMetadataList(dataType, timeStep, filterPanel);
+		}
+	}
+
+	/**
+	 * Read the time series catalog for a datastore as plain metadata rows.
+	 * @param dataStore datastore for the catalog
+	 * @param dataType data type to list, as shown in the UI data type choices
+	 * @param timeStep time step to list, as shown in the UI time step choices (for ReclamationHDB, * for all time steps)
+	 * @param filterPanel input filter panel with the filters, the same type of panel as the UI uses for the datastore,
+	 * data type, and time step (may be null for HydroBase data types that do not use a filter)
+	 * @return the catalog
+	 * @throws IllegalArgumentException if the datastore catalog cannot be read by this class
+	 * @throws Exception if there is an error reading the catalog
+	 */
+	public TimeSeriesCatalog readTimeSeriesCatalog ( DataStore dataStore, String dataType, String timeStep,
+		InputFilter_JPanel filterPanel ) throws Exception {
+		List<? extends Object> metadataList = null;
+		if ( dataStore instanceof GenericDatabaseDataStore ) {
+			metadataList = readGenericDatabaseMetadataList ( (GenericDatabaseDataStore)dataStore, dataType, timeStep, filterPanel );
+		}
+		else if ( dataStore instanceof HydroBaseDataStore ) {
+			metadataList = readHydroBaseMetadataList ( (HydroBaseDMI)((HydroBaseDataStore)dataStore).getDMI(), dataType, timeStep, filterPanel, null );
+		}
+		else if ( dataStore instanceof PluginDataStore ) {
+			return new TimeSeriesCatalog ( dataStore.getName(), dataType, timeStep,
+				readPluginTableModel ( (PluginDataStore)dataStore, dataType, timeStep, filterPanel ) );
+		}
+		else if ( dataStore instanceof RccAcisDataStore ) {
+			metadataList = readRccAcisMetadataList ( (RccAcisDataStore)dataStore, dataType, timeStep, filterPanel );
+		}
+		else if ( dataStore instanceof ReclamationHDBDataStore ) {
+			metadataList = readReclamationHDBMetadataList ( (ReclamationHDBDataStore)dataStore, dataType, timeStep, filterPanel );
+		}
+		else if ( dataStore instanceof UsgsNwisDailyDataStore ) {
+			metadataList = readUsgsNwisDailyMetadataList ( (UsgsNwisDailyDataStore)dataStore, dataType, timeStep, filterPanel );
+		}
+		else if ( dataStore instanceof UsgsNwisGroundwaterDataStore ) {
+			metadataList = readUsgsNwisGroundwaterMetadataList ( (UsgsNwisGroundwaterDataStore)dataStore, dataType, timeStep, filterPanel );
+		}
+		else if ( dataStore instanceof UsgsNwisInstantaneousDataStore ) {
+			metadataList = readUsgsNwisInstantaneousMetadataList ( (UsgsNwisInstantaneousDataStore)dataStore, dataType, timeStep, filterPanel );
+		}
+		else {
+			throw new IllegalArgumentException ( "Reading the time series catalog for datastore \"" + dataStore.getName() +
+				"\" is not supported." );
+		}
+		return new TimeSeriesCatalog ( dataStore.getName(), dataType, timeStep, metadataList );
+	}
+
+	/**
+	 * Read the USGS NWIS daily metadata for a catalog.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param filterPanel input filter panel with the filters
+	 * @return the metadata objects
+	 */
+	public List<UsgsNwisSiteTimeSeriesMetadata> readUsgsNwisDailyMetadataList ( UsgsNwisDailyDataStore ds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		return ds.readSiteTimeSeriesMetadataList ( dataType, timeStep, filterPanel );
+	}
+
+	/**
+	 * Read the USGS NWIS groundwater metadata for a catalog.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param filterPanel input filter panel with the filters
+	 * @return the metadata objects
+	 */
+	public List<UsgsNwisSiteTimeSeriesMetadata> readUsgsNwisGroundwaterMetadataList ( UsgsNwisGroundwaterDataStore ds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		return ds.readSiteTimeSeriesMetadataList ( dataType, timeStep, filterPanel );
+	}
+
+	/**
+	 * Read the USGS NWIS instantaneous metadata for a catalog.
+	 * @param ds datastore for the catalog
+	 * @param dataType data type to list
+	 * @param timeStep time step to list
+	 * @param filterPanel input filter panel with the filters
+	 * @return the metadata objects
+	 */
+	public List<UsgsNwisSiteTimeSeriesMetadata> readUsgsNwisInstantaneousMetadataList ( UsgsNwisInstantaneousDataStore ds,
+		String dataType, String timeStep, InputFilter_JPanel filterPanel ) throws Exception {
+		return ds.readSiteTimeSeriesMetadataList ( dataType, timeStep, filterPanel );
+	}
+
+}
@@ -0,0 +1,143 @@
+// TimeSeriesCatalogWhere - one filter for a time series catalog, parsed from a where string
+
+/* NoticeStart
+
+TSTool
+TSTool is a part of Colorado's Decision Support Systems (CDSS)
+Copyright (C) 1994-2025 Colorado Department of Natural Resources
+
+TSTool is free software:  you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    TSTool is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with TSTool.  If not, see <https://www.gnu.org/licenses/>.
+
+NoticeEnd */
+
+package cdss.app.tstool.datastore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One filter for a time series catalog (see TimeSeriesCatalogService), parsed from a where string
+ * in the same format as the WhereN parameters of read commands, for example "Station - Name;Matches;*Creek*".
+ * Where strings are parsed and checked by this class so that invalid filters are found without an input filter panel.
+ * The filter is not changed after it is created.
+ */
+public class TimeSeriesCatalogWhere {
+
+	/**
+	 * Delimiter for the parts of a where string, the same as the WhereN parameters of read commands.
+	 */
+	public static final String DELIMITER = ";";
+
+	/**
+	 * Filter group (0+) that the filter is applied to.
+	 */
+	private int filterGroup;
+
+	/**
+	 * Filter item, for example "Station - Name".
+	 */
+	private String item;
+
+	/**
+	 * Filter operator, for example "Matches".
+	 */
+	private String operator;
+
+	/**
+	 * Filter value, which may be empty.
+	 */
+	private String value;
+
+	/**
+	 * Constructor.
+	 * @param filterGroup filter group (0+) that the filter is applied to
+	 * @param item filter item
+	 * @param operator filter operator
+	 * @param value filter value, which may be empty
+	 */
+	public TimeSeriesCatalogWhere ( int filterGroup, String item, String operator, String value ) {
+		this.filterGroup = filterGroup;
+		this.item = item;
+		this.operator = operator;
+		this.value = value;
+	}
+
+	/**
+	 * Return the filter group (0+) that the filter is applied to.
+	 * @return the filter group
+	 */
+	public int getFilterGroup () {
+		return this.filterGroup;
+	}
+
+	/**
+	 * Return the filter item.
+	 * @return the filter item
+	 */
+	public String getItem () {
+		return this.item;
+	}
+
+	/**
+	 * Return the filter operator.
+	 * @return the filter operator
+	 */
+	public String getOperator () {
+		return this.operator;
+	}
+
+	/**
+	 * Return the filter value.
+	 * @return the filter value, which may be empty
+	 */
+	public String getValue () {
+		return this.value;
+	}
+
+	/**
+	 * Parse a list of where strings.
+	 * @param whereList where strings, one for each filter group in order, in format "Item;Operator;Value"
+	 * (null and empty strings are skipped)
+	 * @return the filters, in filter group order
+	 * @throws IllegalArgumentException if a where string is not valid
+	 */
+	public static List<TimeSeriesCatalogWhere> parseList ( List<String> whereList ) {
+		List<TimeSeriesCatalogWhere> filterList = new ArrayList<>();
+		for ( int ifg = 0; ifg < whereList.size(); ifg++ ) {
+			String where = whereList.get(ifg);
+			if ( (where == null) || where.isEmpty() ) {
+				continue;
+			}
+			// The value can contain the delimiter, for example for a list of values.
+			String [] parts = where.split ( DELIMITER, 3 );
+			if ( (parts.length < 2) || parts[0].trim().isEmpty() || parts[1].trim().isEmpty() ) {
+				throw new IllegalArgumentException ( "Where" + (ifg + 1) + " \"" + where +
+					"\" is not valid - the format is Item" + DELIMITER + "Operator" + DELIMITER + "Value." );
+			}
+			filterList.add ( new TimeSeriesCatalogWhere ( ifg, parts[0].trim(), parts[1].trim(),
+				(parts.length == 3) ? parts[2].trim() : "" ) );
+		}
+		return filterList;
+	}
+
+	/**
+	 * Return the filter as a where string.
+	 * @return the filter in format "Item;Operator;Value"
+	 */
+	@Override
+	public String toString () {
+		return this.item + DELIMITER + this.operator + DELIMITER + this.value;
+	}
+
+}
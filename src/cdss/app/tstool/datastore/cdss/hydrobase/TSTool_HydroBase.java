@@ -25,7 +25,6 @@ package cdss.app.tstool.datastore.cdss.hydrobase;
 
 import java.awt.GridBagConstraints;
 import java.awt.Insets;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.JMenuItem;
@@ -84,6 +83,8 @@ import RTi.Util.IO.IOUtil;
 import RTi.Util.IO.PropList;
 import RTi.Util.Message.Message;
 import RTi.Util.String.StringUtil;
+import cdss.app.tstool.datastore.HydroBaseCatalogFilterType;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
 import riverside.datastore.DataStore;
 
 /**
@@ -276,6 +277,44 @@ public class TSTool_HydroBase {
 		return dmi;
 	}
 	
+	/**
+	 * Return the legacy input filter panel for a filter type.
+	 * @param filterType filter type for the data type and time step
+	 * @return the input filter panel, or null if the panel was not initialized (for example for an old database)
+	 */
+	private InputFilter_JPanel getInputFilterJPanelLegacy ( HydroBaseCatalogFilterType filterType ) {
+		if ( filterType == HydroBaseCatalogFilterType.AGRICULTURAL_CASS_CROP_STATS ) {
+			return this.inputFilterHydroBaseCASSCropStats_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.AGRICULTURAL_CASS_LIVESTOCK_STATS ) {
+			return this.inputFilterHydroBaseCASSLivestockStats_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.AGRICULTURAL_NASS_CROP_STATS ) {
+			return this.inputFilterHydroBaseNASS_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.CU_POPULATION ) {
+			return this.inputFilterHydroBaseCUPopulation_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.GROUNDWATER_WELL ) {
+			return this.inputFilterHydroBaseWells_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.IRRIG_SUMMARY ) {
+			return this.inputFilterHydroBaseIrrigts_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.STATION ) {
+			return this.inputFilterHydroBaseStation_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.STRUCTURE ) {
+			return this.inputFilterHydroBaseStructure_JPanel;
+		}
+		else if ( filterType == HydroBaseCatalogFilterType.STRUCTURE_SFUT ) {
+			return this.inputFilterHydroBaseStructureSfut_JPanel;
+		}
+		else {
+			return null;
+		}
+	}
+
 	/**
 	 * Handle setting the input filter.
 	 */
@@ -284,71 +323,23 @@ public class TSTool_HydroBase {
 		String routine = getClass().getSimpleName() + ".setInputFilterForSelections";
         // Legacy HydroBaseDMI input type/name.
 		// Can only use the HydroBase filters if they were originally set up (if HydroBase was originally available).
-        // The following lookups are currently hard coded and not read from HydroBase.
-		String [] hb_mt = HydroBase_Util.convertToHydroBaseMeasType( selectedDataType, selectedTimeStep );
-		String meas_type = hb_mt[0];
-		//String vax_field = hb_mt[1];
-		//String time_step = hb_mt[2];
 		InputFilter_JPanel selectedInputFilter_JPanel = null;
-		if ( getHydroBaseDataStoreLegacy() != null ) {
-    		Message.printStatus(2, routine, "isStationTimeSeriesDataType("+ selectedDataType
-    			+ "," + selectedTimeStep + "," + meas_type +
-    			")=" + HydroBase_Util.isStationTimeSeriesDataType ( getHydroBaseDMILegacy(), meas_type));
-		}
 		if ( getHydroBaseDataStoreLegacy() == null ) {
 		    // Display a message in the input filter panel area that a database connection needs to be made.
 		    selectedInputFilter_JPanel = this.tstoolJFrame.ui_GetInputFilterMessageJPanel (
 		        "HydroBase connection is not available.\nUse File...Open...HydroBase.");
 		}
-		else if ( (this.inputFilterHydroBaseStation_JPanel != null) &&
-		    HydroBase_Util.isStationTimeSeriesDataType ( getHydroBaseDMILegacy(), meas_type) ) {
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseStation_JPanel;
-		}
-		// Call this before the more general isStructureTimeSeriesDataType() method.
-		else if ( (this.inputFilterHydroBaseStructureSfut_JPanel != null) &&
-		    HydroBase_Util.isStructureSFUTTimeSeriesDataType ( getHydroBaseDMILegacy(), meas_type) ) {
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseStructureSfut_JPanel;
-		}
-		else if ( (this.inputFilterHydroBaseStructure_JPanel != null) &&
-		    HydroBase_Util.isStructureTimeSeriesDataType ( getHydroBaseDMILegacy(), meas_type) ) {
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseStructure_JPanel;
-		}
-		else if ((this.inputFilterHydroBaseCASSCropStats_JPanel != null)
-			&& HydroBase_Util.isAgriculturalCASSCropStatsTimeSeriesDataType ( getHydroBaseDMILegacy(), selectedDataType) ) {
-			//Message.printStatus (2, "","Displaying CASS crop stats panel");
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseCASSCropStats_JPanel;
-		}
-		else if ((this.inputFilterHydroBaseCASSLivestockStats_JPanel != null) &&
-		    HydroBase_Util.isAgriculturalCASSLivestockStatsTimeSeriesDataType ( getHydroBaseDMILegacy(), selectedDataType) ) {
-			//Message.printStatus (2, "","Displaying CASS livestock stats panel");
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseCASSLivestockStats_JPanel;
-		}
-		else if ((this.inputFilterHydroBaseCUPopulation_JPanel != null) &&
-		    HydroBase_Util.isCUPopulationTimeSeriesDataType ( getHydroBaseDMILegacy(), selectedDataType) ) {
-			//Message.printStatus (2, "","Displaying CU population panel");
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseCUPopulation_JPanel;
-		}
-		else if ( (this.inputFilterHydroBaseNASS_JPanel != null) &&
-			HydroBase_Util.isAgriculturalNASSCropStatsTimeSeriesDataType ( getHydroBaseDMILegacy(), selectedDataType) ) {
-			//Message.printStatus (2, "","Displaying NASS agstats panel");
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseNASS_JPanel;
-		}
-		else if ( (this.inputFilterHydroBaseIrrigts_JPanel != null) &&
-			HydroBase_Util.isIrrigSummaryTimeSeriesDataType ( getHydroBaseDMILegacy(), selectedDataType) ) {
-			selectedInputFilter_JPanel = this.inputFilterHydroBaseIrrigts_JPanel;
-		}
-		else if ((this.inputFilterHydroBaseWells_JPanel != null)
-		    && HydroBase_Util.isGroundWaterWellTimeSeriesDataType( getHydroBaseDMILegacy(), selectedDataType)) {
-			if (selectedTimeStep.equals(TSToolConstants.TIMESTEP_IRREGULAR)) {
-				selectedInputFilter_JPanel = this.inputFilterHydroBaseStation_JPanel;
-			}
-			else {
-				selectedInputFilter_JPanel = this.inputFilterHydroBaseWells_JPanel;
-			}
-		}		
 		else {
-            // Generic input filter does not have anything.
-			selectedInputFilter_JPanel = inputFilterGeneric_JPanel;
+			// The filter type is shared with the catalog service so that the HTTP server uses the same filters.
+			HydroBaseCatalogFilterType filterType = HydroBaseCatalogFilterType.valueOfDataType (
+				getHydroBaseDMILegacy(), selectedDataType, selectedTimeStep );
+			Message.printStatus(2, routine, "HydroBase filter type for (" + selectedDataType +
+				"," + selectedTimeStep + ")=" + filterType );
+			selectedInputFilter_JPanel = getInputFilterJPanelLegacy ( filterType );
+			if ( selectedInputFilter_JPanel == null ) {
+	            // Generic input filter does not have anything.
+				selectedInputFilter_JPanel = inputFilterGeneric_JPanel;
+			}
 		}
 		return selectedInputFilter_JPanel;
 	}
@@ -390,219 +381,137 @@ public class TSTool_HydroBase {
 			hbdmi = (HydroBaseDMI)hydroBaseDataStore.getDMI();
 		}
 		InputFilter_JPanel selectedInputFilterJPanel = selectedInputFilter_JPanel;
-		// Convert TSTool conventions to HydroBase conventions.
-		String [] hb_mt = HydroBase_Util.convertToHydroBaseMeasType ( selectedDataType, selectedTimeStep );
-		String meas_type = hb_mt[0];
-		String hbtime_step = hb_mt[2];
 		try {
 			// List the time series by major category:
-			// - old code had this logic in HydroBase_Util and returned List (no generics)
-			// - new code calls specific HydroBaseUtil code in order to cleanly implement generics
-			// Specific objects are read from HydroBase based on the data type.
-			if ( HydroBase_Util.isAgriculturalCASSCropStatsTimeSeriesDataType ( hbdmi, selectedDataType ) ) {
+			// - the shared catalog service reads the specific objects from HydroBase based on the data type
+			// - the objects are listed using the table model for the object type
+			List<? extends Object> readList = TimeSeriesCatalogService.getInstance().readHydroBaseMetadataList (
+				hbdmi, selectedDataType, selectedTimeStep, selectedInputFilterJPanel, grlimits );
+			size = readList.size();
+			Object firstData = (size > 0) ? readList.get(0) : null;
+			if ( firstData instanceof HydroBase_AgriculturalCASSCropStats ) {
 				// Data from agricultural_CASS_crop_statistics.
-				List<HydroBase_AgriculturalCASSCropStats>dataList = hbdmi.readAgriculturalCASSCropStatsList (
-						selectedInputFilterJPanel,
-						null,		// county
-						null,		// commodity
-						null,		// practice
-						null,		// date1
-						null,		// date2,
-						true );		// Distinct
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase CASS crop statistics time series were read.  Displaying data..." );
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new
-							TSTool_HydroBase_Ag_CASS_TableModel ( query_JWorksheet, dataList, selectedDataType );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					TSTool_HydroBase_Ag_CASS_CellRenderer cr = new
-							TSTool_HydroBase_Ag_CASS_CellRenderer((TSTool_HydroBase_Ag_CASS_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
+				@SuppressWarnings("unchecked")
+				List<HydroBase_AgriculturalCASSCropStats> dataList = (List<HydroBase_AgriculturalCASSCropStats>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase CASS crop statistics time series were read.  Displaying data..." );
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new
+						TSTool_HydroBase_Ag_CASS_TableModel ( query_JWorksheet, dataList, selectedDataType );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				TSTool_HydroBase_Ag_CASS_CellRenderer cr = new
+						TSTool_HydroBase_Ag_CASS_CellRenderer((TSTool_HydroBase_Ag_CASS_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
-			else if ( HydroBase_Util.isAgriculturalNASSCropStatsTimeSeriesDataType ( hbdmi, selectedDataType ) ) {
+			else if ( firstData instanceof HydroBase_AgriculturalNASSCropStats ) {
 				// Data from agricultural_NASS_crop_statistics.
-				List<HydroBase_AgriculturalNASSCropStats>dataList = hbdmi.readAgriculturalNASSCropStatsList (
-						selectedInputFilterJPanel,
-						null,		// county
-						null,		// commodity
-						null,		// date1
-						null,		// date2,
-						true );		// Distinct
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase NASS crop statistics time series were read.  Displaying data..." );
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new
-							TSTool_HydroBase_Ag_NASS_TableModel ( query_JWorksheet, dataList, selectedDataType );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					TSTool_HydroBase_Ag_NASS_CellRenderer cr = new
-							TSTool_HydroBase_Ag_NASS_CellRenderer((TSTool_HydroBase_Ag_NASS_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
+				@SuppressWarnings("unchecked")
+				List<HydroBase_AgriculturalNASSCropStats> dataList = (List<HydroBase_AgriculturalNASSCropStats>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase NASS crop statistics time series were read.  Displaying data..." );
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new
+						TSTool_HydroBase_Ag_NASS_TableModel ( query_JWorksheet, dataList, selectedDataType );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				TSTool_HydroBase_Ag_NASS_CellRenderer cr = new
+						TSTool_HydroBase_Ag_NASS_CellRenderer((TSTool_HydroBase_Ag_NASS_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
-			else if (HydroBase_Util.isAgriculturalCASSLivestockStatsTimeSeriesDataType ( hbdmi, selectedDataType) ) {
+			else if ( firstData instanceof HydroBase_AgriculturalCASSLivestockStats ) {
 				// Data from CASS livestock stats.
-				List<HydroBase_AgriculturalCASSLivestockStats> dataList = hbdmi.readAgriculturalCASSLivestockStatsList (
-						selectedInputFilterJPanel,	// From input filter.
-						null,		// county
-						null,		// commodity
-						null,		// type
-						null,		// date1
-						null,		// date2,
-						true );		// Distinct
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase CASS livestock statistics time series were read.  Displaying data..." );
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new
-							TSTool_HydroBase_CASSLivestockStats_TableModel ( query_JWorksheet, dataList, selectedDataType );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					TSTool_HydroBase_CASSLivestockStats_CellRenderer cr = new
-							TSTool_HydroBase_CASSLivestockStats_CellRenderer(
-									(TSTool_HydroBase_CASSLivestockStats_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
+				@SuppressWarnings("unchecked")
+				List<HydroBase_AgriculturalCASSLivestockStats> dataList = (List<HydroBase_AgriculturalCASSLivestockStats>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase CASS livestock statistics time series were read.  Displaying data..." );
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new
+						TSTool_HydroBase_CASSLivestockStats_TableModel ( query_JWorksheet, dataList, selectedDataType );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				TSTool_HydroBase_CASSLivestockStats_CellRenderer cr = new
+						TSTool_HydroBase_CASSLivestockStats_CellRenderer(
+								(TSTool_HydroBase_CASSLivestockStats_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
+			}
+			else if ( firstData instanceof HydroBase_CUPopulation ) {
+				// Data from CUPopulation.
+				@SuppressWarnings("unchecked")
+				List<HydroBase_CUPopulation> dataList = (List<HydroBase_CUPopulation>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase human population time series were read.  Displaying data..." );
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new
+						TSTool_HydroBase_CUPopulation_TableModel ( query_JWorksheet, dataList, selectedDataType );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				TSTool_HydroBase_CUPopulation_CellRenderer cr =	new
+						TSTool_HydroBase_CUPopulation_CellRenderer(
+								(TSTool_HydroBase_CUPopulation_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
-			else if ( HydroBase_Util.isCUPopulationTimeSeriesDataType( hbdmi, selectedDataType) ) {
-				List<HydroBase_CUPopulation> dataList = hbdmi.readCUPopulationList (
-						selectedInputFilterJPanel,	// From input filter.
-						null,		// county
-						null,		// commodity
-						null,		// type
-						null,		// date1
-						null,		// date2,
-						true );		// Distinct
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase human population time series were read.  Displaying data..." );
-					// Data from CUPopulation.
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new
-							TSTool_HydroBase_CUPopulation_TableModel ( query_JWorksheet, dataList, selectedDataType );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					TSTool_HydroBase_CUPopulation_CellRenderer cr =	new
-							TSTool_HydroBase_CUPopulation_CellRenderer(
-									(TSTool_HydroBase_CUPopulation_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
+			else if ( firstData instanceof HydroBase_StructureIrrigSummaryTS ) {
+				// Irrig summary TS.
+				@SuppressWarnings("unchecked")
+				List<HydroBase_StructureIrrigSummaryTS> dataList = (List<HydroBase_StructureIrrigSummaryTS>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase structure irrigation summary time series were read.  Displaying data..." );
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new
+						TSTool_HydroBase_AgGIS_TableModel (	query_JWorksheet, dataList, selectedDataType,
+								StringUtil.atoi(tstoolProps.getValue( "HydroBase.WDIDLength")) );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				TSTool_HydroBase_AgGIS_CellRenderer cr = new
+						TSTool_HydroBase_AgGIS_CellRenderer( (TSTool_HydroBase_AgGIS_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
-			else if ( HydroBase_Util.isIrrigSummaryTimeSeriesDataType( hbdmi, selectedDataType ) ) {
-				List<HydroBase_StructureIrrigSummaryTS> dataList = HydroBase_Util.readStructureIrrigSummaryTSCatalogList(
-						hbdmi,
-						selectedInputFilterJPanel,
-						null,	// orderby
-						HydroBase_Util.MISSING_INT,	// structure_num
-						HydroBase_Util.MISSING_INT,	// wd
-						HydroBase_Util.MISSING_INT,	// id
-						null,	// str_name
-						null,	// landuse
-						null,	// start
-						null,	// end
-						true);	// distinct
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase structure irrigation summary time series were read.  Displaying data..." );
-					// Irrig summary TS.
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new
-							TSTool_HydroBase_AgGIS_TableModel (	query_JWorksheet, dataList, selectedDataType,
-									StringUtil.atoi(tstoolProps.getValue( "HydroBase.WDIDLength")) );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					TSTool_HydroBase_AgGIS_CellRenderer cr = new
-							TSTool_HydroBase_AgGIS_CellRenderer( (TSTool_HydroBase_AgGIS_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
-			}	
-			else if ( HydroBase_Util.isStationTimeSeriesDataType(hbdmi, meas_type) ) {
-				List<HydroBase_StationGeolocMeasType> dataList = HydroBase_Util.readStationGeolocMeasTypeCatalogList(
-						hbdmi, selectedInputFilterJPanel, selectedDataType, selectedTimeStep, grlimits );
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase station time series series were read.  Displaying data..." );
-					JWorksheet_DefaultTableCellRenderer cr = null;
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new TSTool_HydroBase_StationGeolocMeasType_TableModel(
-							query_JWorksheet, dataList );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					cr = new TSTool_HydroBase_StationGeolocMeasType_CellRenderer(
-							(TSTool_HydroBase_StationGeolocMeasType_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
+			else if ( firstData instanceof HydroBase_GroundWaterWellsView ) {
+				// Well level data, only listed for the day time step.
+				@SuppressWarnings("unchecked")
+				List<HydroBase_GroundWaterWellsView> dataList = (List<HydroBase_GroundWaterWellsView>)readList;
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new TSTool_HydroBase_WellLevel_Day_TableModel (
+						query_JWorksheet, StringUtil.atoi( tstoolProps.getValue("HydroBase.WDIDLength")), dataList,
+						"HydroBase" );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				TSTool_HydroBase_WellLevel_Day_CellRenderer cr =
+						new TSTool_HydroBase_WellLevel_Day_CellRenderer(
+								(TSTool_HydroBase_WellLevel_Day_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
-			else if ( HydroBase_Util.isStructureTimeSeriesDataType(hbdmi, meas_type) ) {
-				List<HydroBase_StructureGeolocStructMeasType> dataList = hbdmi.readStructureGeolocStructMeasTypeCatalogList(
-						selectedInputFilterJPanel, selectedDataType, selectedTimeStep);
-				size = dataList.size();
-				if ( size > 0 ) {
-					Message.printStatus ( 1, routine, "" + size + " HydroBase structure time series were read.  Displaying list..." );
-					JWorksheet_DefaultTableCellRenderer cr = null;
-					JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-					JWorksheet_AbstractRowTableModel query_TableModel = new TSTool_HydroBase_StructureGeolocStructMeasType_TableModel (
-							query_JWorksheet, StringUtil.atoi(tstoolProps.getValue( "HydroBase.WDIDLength")), dataList );
-					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-					cr = new TSTool_HydroBase_StructureGeolocStructMeasType_CellRenderer(
-							(TSTool_HydroBase_StructureGeolocStructMeasType_TableModel)query_TableModel);
-					query_JWorksheet.setCellRenderer ( cr );
-					query_JWorksheet.setModel(query_TableModel);
-					query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-				}
+			else if ( firstData instanceof HydroBase_StationGeolocMeasType ) {
+				@SuppressWarnings("unchecked")
+				List<HydroBase_StationGeolocMeasType> dataList = (List<HydroBase_StationGeolocMeasType>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase station time series series were read.  Displaying data..." );
+				JWorksheet_DefaultTableCellRenderer cr = null;
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new TSTool_HydroBase_StationGeolocMeasType_TableModel(
+						query_JWorksheet, dataList );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				cr = new TSTool_HydroBase_StationGeolocMeasType_CellRenderer(
+						(TSTool_HydroBase_StationGeolocMeasType_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
-			else if (selectedDataType.equalsIgnoreCase( "WellLevel") || selectedDataType.equalsIgnoreCase( "WellLevelElev")||
-					selectedDataType.equalsIgnoreCase( "WellLevelDepth") ) {
-				// Well level data.
-				if (selectedTimeStep.equalsIgnoreCase("Day")) {
-					List<HydroBase_GroundWaterWellsView> dataList =
-							HydroBase_Util.readGroundWaterWellsViewTSCatalogList(hbdmi, selectedInputFilterJPanel, meas_type, hbtime_step);
-					size = dataList.size();
-					if ( size > 0 ) {
-						JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-						JWorksheet_AbstractRowTableModel query_TableModel = new TSTool_HydroBase_WellLevel_Day_TableModel (
-								query_JWorksheet, StringUtil.atoi( tstoolProps.getValue("HydroBase.WDIDLength")), dataList,
-								"HydroBase" );
-						this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-						TSTool_HydroBase_WellLevel_Day_CellRenderer cr =
-								new TSTool_HydroBase_WellLevel_Day_CellRenderer(
-										(TSTool_HydroBase_WellLevel_Day_TableModel)query_TableModel);
-						query_JWorksheet.setCellRenderer ( cr );
-						query_JWorksheet.setModel(query_TableModel);
-						query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-					}
-				}
-				else {
-					// Real-time well elevation as station.
-					// TODO smalers 2019-06-02 evaluate if this is working (is it handled by the general station code?).
-					List<HydroBase_StationGeolocMeasType> dataList = new ArrayList<>();
-					size = dataList.size();
-					if ( size > 0 ) {
-						JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
-						JWorksheet_AbstractRowTableModel query_TableModel =
-							new TSTool_HydroBase_StationGeolocMeasType_TableModel ( query_JWorksheet, dataList );
-						this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
-						TSTool_HydroBase_StationGeolocMeasType_CellRenderer cr =
-								new TSTool_HydroBase_StationGeolocMeasType_CellRenderer(
-										(TSTool_HydroBase_StationGeolocMeasType_TableModel)query_TableModel);
-						query_JWorksheet.setCellRenderer ( cr );
-						query_JWorksheet.setModel(query_TableModel);
-						// TODO smalers 2012-09-05 Verify that Abbrev should be on since station.
-						// Turn off columns in the table model that do not apply.
-						//__query_JWorksheet.removeColumn ( ((TSTool_HydroBase_StationGeolocMeasType_TableModel)__query_TableModel).COL_ABBREV );
-						query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
-					}
-				}
+			else if ( firstData instanceof HydroBase_StructureGeolocStructMeasType ) {
+				@SuppressWarnings("unchecked")
+				List<HydroBase_StructureGeolocStructMeasType> dataList = (List<HydroBase_StructureGeolocStructMeasType>)readList;
+				Message.printStatus ( 1, routine, "" + size + " HydroBase structure time series were read.  Displaying list..." );
+				JWorksheet_DefaultTableCellRenderer cr = null;
+				JWorksheet query_JWorksheet = tstoolJFrame.ui_GetTimeSeriesCatalogWorksheet();
+				JWorksheet_AbstractRowTableModel query_TableModel = new TSTool_HydroBase_StructureGeolocStructMeasType_TableModel (
+						query_JWorksheet, StringUtil.atoi(tstoolProps.getValue( "HydroBase.WDIDLength")), dataList );
+				this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
+				cr = new TSTool_HydroBase_StructureGeolocStructMeasType_CellRenderer(
+						(TSTool_HydroBase_StructureGeolocStructMeasType_TableModel)query_TableModel);
+				query_JWorksheet.setCellRenderer ( cr );
+				query_JWorksheet.setModel(query_TableModel);
+				query_JWorksheet.setColumnWidths ( cr.getColumnWidths(), this.tstoolJFrame.getGraphics() );
 			}
 			if ( size == 0 ) {
 				Message.printStatus ( 1, routine, "No HydroBase time series were read." );
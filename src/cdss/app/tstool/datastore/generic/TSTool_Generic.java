@@ -44,6 +44,7 @@ import RTi.Util.GUI.JWorksheet;
 import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
 import RTi.Util.GUI.SimpleJComboBox;
 import RTi.Util.Message.Message;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
 import riverside.datastore.DataStore;
 import riverside.datastore.GenericDatabaseDataStore;
 import riverside.datastore.GenericDatabaseDataStore_TS_CellRenderer;
@@ -111,8 +112,8 @@ public class TSTool_Generic {
 		   List<TimeSeriesMeta> results = null;
 		   // Data type is shown with name so only use the first part of the choice.
 		   try {
-			   results = ds.readTimeSeriesMetaList(dataType, timeStep,
-					   (GenericDatabaseDataStore_TimeSeries_InputFilter_JPanel)selectedInputFilter_JPanel);
+			   results = TimeSeriesCatalogService.getInstance().readGenericDatabaseMetadataList (
+					   ds, dataType, timeStep, selectedInputFilter_JPanel );
 		   }
 		   catch ( Exception e ) {
 			   results = null;
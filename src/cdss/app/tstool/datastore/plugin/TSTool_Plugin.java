@@ -45,6 +45,7 @@ import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
 import RTi.Util.GUI.SimpleJComboBox;
 import RTi.Util.GUI.SimpleJMenuItem;
 import RTi.Util.Message.Message;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
 import riverside.datastore.DataStore;
 import riverside.datastore.PluginDataStore;
 
@@ -155,11 +156,6 @@ public class TSTool_Plugin {
 		}
 		// The headers are a list of objects controlled by the plugin datastore.
 		try {
-			if ( dataStore instanceof DatabaseDataStore ) {
-				// Check the connection in case the connection timed out.
-				DatabaseDataStore dbds = (DatabaseDataStore)dataStore;
-				dbds.checkDatabaseConnection();
-			}
 			this.tstoolJFrame.queryResultsList_Clear ();
 
 			String dataType = dataType_JComboBox.getSelected(); // May be "datatype" or "datatype - note", but generically can't know here.
@@ -168,8 +164,10 @@ public class TSTool_Plugin {
 			List<Object> results = null;
 			if ( pds != null ) {
 				// Data type is shown without name so use full choice.
+				// The shared service also checks the connection in case the connection timed out.
 				try {
-					JWorksheet_AbstractRowTableModel query_TableModel = pds.createTimeSeriesListTableModel(dataType,timeStep,selectedInputFilter_JPanel);
+					JWorksheet_AbstractRowTableModel query_TableModel = TimeSeriesCatalogService.getInstance().readPluginTableModel (
+						pds, dataType, timeStep, selectedInputFilter_JPanel );
 					this.tstoolJFrame.ui_SetTimeSeriesCatalogTableModel ( query_TableModel );
 					@SuppressWarnings("unchecked")
 					List<Object> results0 = query_TableModel.getData();
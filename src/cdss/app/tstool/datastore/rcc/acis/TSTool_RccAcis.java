@@ -36,6 +36,7 @@ import RTi.Util.GUI.JWorksheet;
 import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
 import RTi.Util.GUI.SimpleJComboBox;
 import RTi.Util.Message.Message;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
 import riverside.datastore.DataStore;
 import rti.tscommandprocessor.commands.rccacis.RccAcisDataStore;
 import rti.tscommandprocessor.commands.rccacis.RccAcisStationTimeSeriesMetadata;
@@ -163,7 +164,8 @@ public class TSTool_RccAcis {
 	    	List<RccAcisStationTimeSeriesMetadata> results = null;
 	    	// Data type is shown with name so only use the first part of the choice.
 	    	try {
-	    		results = rccAcisDataStore.readStationTimeSeriesMetadataList(dataType, timeStep, selectedInputFilter_JPanel);
+	    		results = TimeSeriesCatalogService.getInstance().readRccAcisMetadataList (
+	    			rccAcisDataStore, dataType, timeStep, selectedInputFilter_JPanel );
 	    	}
 	    	catch ( Exception e ) {
 	    		Message.printWarning(1, rtn, "Error getting time series list from ACIS (" + e + ").");
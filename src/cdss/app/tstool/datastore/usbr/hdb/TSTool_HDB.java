@@ -41,6 +41,7 @@ import RTi.Util.GUI.JWorksheet;
 import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
 import RTi.Util.GUI.SimpleJComboBox;
 import RTi.Util.Message.Message;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
 import riverside.datastore.DataStore;
 import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDBDataStore;
 import rti.tscommandprocessor.commands.reclamationhdb.ReclamationHDBDataStoreFactory;
@@ -102,9 +103,6 @@ public class TSTool_HDB {
 		// The headers are a list of ReclamationHDB_SiteTimeSeriesMetadata.
 		try {
 			ReclamationHDBDataStore ds = (ReclamationHDBDataStore)dataStore;
-			// Check the connection in case the connection timed out.
-			ds.checkDatabaseConnection();
-			ReclamationHDB_DMI dmi = (ReclamationHDB_DMI)ds.getDMI();
 			this.tstoolJFrame.queryResultsList_Clear ();
 
 			String dataType = dataType_JComboBox.getSelected(); // Object type - common data type.
@@ -118,43 +116,14 @@ public class TSTool_HDB {
 				timeStep = timeStep.trim();
 			}
 
+			// The catalog is read by the shared service, which also checks the connection in case the connection timed out.
 			List<ReclamationHDB_SiteTimeSeriesMetadata> results = null;
-			if ( timeStep.equals("*") ) {
-				// Read the time series for each of the major intervals and then concatenate the results.
-				String [] timeSteps = {
-						TSToolConstants.TIMESTEP_HOUR,
-						TSToolConstants.TIMESTEP_DAY,
-						TSToolConstants.TIMESTEP_MONTH,
-						TSToolConstants.TIMESTEP_YEAR,
-						TSToolConstants.TIMESTEP_IRREGULAR
-				};
-				results = new ArrayList<>();
-				List<ReclamationHDB_SiteTimeSeriesMetadata> results2 = null;
-				for ( int i = 0; i < timeSteps.length; i++ ) {
-					try {
-						results2 = dmi.readSiteTimeSeriesMetadataList(dataType, timeSteps[i], selectedInputFilter_JPanel);
-						if ( results2 != null ) {
-							for ( ReclamationHDB_SiteTimeSeriesMetadata result : results2 ) {
-								results.add ( result );
-							}
-						}
-					}
-					catch ( Exception e ) {
-						// Just skip the timestep.
-					}
-				}
-				if ( results.size() == 0 ) {
-					results = null; // Handle warning below.
-				}
+			try {
+				results = TimeSeriesCatalogService.getInstance().readReclamationHDBMetadataList (
+					ds, dataType, timeStep, selectedInputFilter_JPanel );
 			}
-			else {
-				// Data type is shown with name so only use the first part of the choice.
-				try {
-					results = dmi.readSiteTimeSeriesMetadataList(dataType, timeStep, selectedInputFilter_JPanel);
-				}
-				catch ( Exception e ) {
-					results = null;
-				}
+			catch ( Exception e ) {
+				results = null; // Handle warning below.
 			}
 
 			int size = 0;
@@ -282,7 +251,11 @@ public class TSTool_HDB {
 		// Get the list of ReclamationHDB datastores that are open and send to the dialog.
 		// The user will be able to pick one and then re-login.  The updated datastore will be returned.
 		TSCommandProcessor processor = this.tstoolJFrame.commandProcessor_GetCommandProcessor();
-		List<DataStore> dslist = processor.getDataStoresByType(ReclamationHDBDataStore.class, false); // Returns all, even non-active.
+		List<DataStore> dslist;
+		synchronized ( processor ) {
+			// Copy because the processor's datastores can be changed by other threads (see TSToolMain.getDataStores()).
+			dslist = new ArrayList<>(processor.getDataStoresByType(ReclamationHDBDataStore.class, false)); // Returns all, even non-active.
+		}
 		DataStore ds = factory.openDataStoreConnectionUI(dslist, this.tstoolJFrame);
 		ReclamationHDBDataStore newrds = (ReclamationHDBDataStore)ds;
 		DMI newdmi = newrds.getDMI();
@@ -291,7 +264,10 @@ public class TSTool_HDB {
 			// Get the old matching datastore, if any, in order to close the old DMI.
 			// TODO smalers 2015-03-22 Setting the processor property may do this.
 			TSCommandProcessor tsProcessor = this.tstoolJFrame.commandProcessor_GetCommandProcessor();
-			ReclamationHDBDataStore oldds = (ReclamationHDBDataStore)tsProcessor.getDataStoreForName ( newrds.getName(), ReclamationHDBDataStore.class );
+			ReclamationHDBDataStore oldds;
+			synchronized ( tsProcessor ) {
+				oldds = (ReclamationHDBDataStore)tsProcessor.getDataStoreForName ( newrds.getName(), ReclamationHDBDataStore.class );
+			}
 			DMI olddmi = oldds.getDMI();
 			if ( (oldds == newrds) && (olddmi == newdmi) ) {
 				// Don't need to do anything - likely a cancel out of the login with no change.
@@ -310,7 +286,9 @@ public class TSTool_HDB {
 					}
 				}
 				// Once re-opened, reset in the command processor and refresh the UI components that depend on the datastore.
-				tsProcessor.setPropContents("DataStore", newrds);
+				synchronized ( tsProcessor ) {
+					tsProcessor.setPropContents("DataStore", newrds);
+				}
 				// Reset the input panel in the user interface.
 				List<DataStore> dsList = new ArrayList<>();
 				dsList.add(ds);
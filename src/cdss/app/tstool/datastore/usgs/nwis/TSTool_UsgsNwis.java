@@ -45,6 +45,7 @@ import RTi.Util.GUI.JWorksheet_AbstractRowTableModel;
 import RTi.Util.GUI.SimpleFileFilter;
 import RTi.Util.GUI.SimpleJComboBox;
 import RTi.Util.Message.Message;
+import cdss.app.tstool.datastore.TimeSeriesCatalogService;
 import riverside.datastore.DataStore;
 import rti.tscommandprocessor.commands.usgs.nwis.daily.UsgsNwisDailyDataStore;
 import rti.tscommandprocessor.commands.usgs.nwis.daily.UsgsNwisDaily_TimeSeries_InputFilter_JPanel;
@@ -268,7 +269,8 @@ public class TSTool_UsgsNwis {
 	    	List<UsgsNwisSiteTimeSeriesMetadata> results = null;
 	    	// Data type is shown with name so only use the first part of the choice.
 	    	try {
-	    		results = usgsNwisDailyDataStore.readSiteTimeSeriesMetadataList(dataType, timeStep, tstoolJFrame.ui_GetSelectedInputFilterJPanel());
+	    		results = TimeSeriesCatalogService.getInstance().readUsgsNwisDailyMetadataList (
+	    			usgsNwisDailyDataStore, dataType, timeStep, tstoolJFrame.ui_GetSelectedInputFilterJPanel() );
 	    	}
 	    	catch ( Exception e ) {
 	    		Message.printWarning(1, rtn, "Error getting time series list from USGS NWIS (" + e + ").");
@@ -335,7 +337,8 @@ public class TSTool_UsgsNwis {
 	    	List<UsgsNwisSiteTimeSeriesMetadata> results = null;
 	    	// Data type is shown with name so only use the first part of the choice.
 	    	try {
-	    		results = usgsNwisGroundwaterDataStore.readSiteTimeSeriesMetadataList(dataType, timeStep, tstoolJFrame.ui_GetSelectedInputFilterJPanel());
+	    		results = TimeSeriesCatalogService.getInstance().readUsgsNwisGroundwaterMetadataList (
+	    			usgsNwisGroundwaterDataStore, dataType, timeStep, tstoolJFrame.ui_GetSelectedInputFilterJPanel() );
 	    	}
 	    	catch ( Exception e ) {
 	    		Message.printWarning(1, rtn, "Error getting time series list from USGS NWIS groundwater (" + e + ").");
@@ -404,7 +407,8 @@ public class TSTool_UsgsNwis {
 	    	List<UsgsNwisSiteTimeSeriesMetadata> results = null;
 	    	// Data type is shown with name so only use the first part of the choice.
 	    	try {
-	    		results = usgsNwisInstantaneousDataStore.readSiteTimeSeriesMetadataList(dataType, timeStep, tstoolJFrame.ui_GetSelectedInputFilterJPanel());
+	    		results = TimeSeriesCatalogService.getInstance().readUsgsNwisInstantaneousMetadataList (
+	    			usgsNwisInstantaneousDataStore, dataType, timeStep, tstoolJFrame.ui_GetSelectedInputFilterJPanel() );
 	    	}
 	    	catch ( Exception e ) {
 	    		Message.printWarning(1, rtn, "Error getting time series list from USGS NWIS (" + e + ").");
@@ -0,0 +1,176 @@
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for BatchServerHotFolder readiness, ignore rules, and ordering.
+ * The folder is polled so that the tests do not depend on WatchService event delivery.
+ */
+public class BatchServerHotFolderTest extends TestCase {
+
+	/**
+	 * Temporary hot folder.
+	 */
+	private File folder = null;
+
+	/**
+	 * Hot folder being tested, closed in tearDown().
+	 */
+	private BatchServerHotFolder hotFolder = null;
+
+	public BatchServerHotFolderTest ( String testname ) {
+		super(testname);
+	}
+
+	public BatchServerHotFolderTest () {
+	}
+
+	protected void setUp () throws Exception {
+		this.folder = Files.createTempDirectory("BatchServerHotFolderTest").toFile();
+	}
+
+	protected void tearDown () throws Exception {
+		if ( this.hotFolder != null ) {
+			this.hotFolder.close();
+		}
+		deleteFolder ( this.folder );
+	}
+
+	/**
+	 * Delete a folder and its contents.
+	 */
+	private void deleteFolder ( File file ) {
+		File [] files = file.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				deleteFolder ( f );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Open a polled hot folder.
+	 * @param stableMs time that a file must be unchanged before it is ready
+	 */
+	private BatchServerHotFolder openHotFolder ( long stableMs ) {
+		this.hotFolder = new BatchServerHotFolder ( this.folder, BatchServerHotFolder.MODE_POLL, stableMs, 50, 1000 );
+		this.hotFolder.open();
+		return this.hotFolder;
+	}
+
+	/**
+	 * Write a file.
+	 * @param folder folder for the file
+	 * @param name file name
+	 * @param modified modification time to set, milliseconds, or -1 to use the current time
+	 */
+	private File writeFile ( File folder, String name, long modified ) throws IOException {
+		File file = new File ( folder, name );
+		Files.write ( file.toPath(), ("# " + name + "\n").getBytes("UTF-8") );
+		if ( modified >= 0 ) {
+			file.setLastModified ( modified );
+		}
+		return file;
+	}
+
+	/**
+	 * Hidden files, files starting with ~, and .tmp and .part files are ignored.
+	 */
+	public void testIgnoredFiles () throws Exception {
+		writeFile ( this.folder, ".hidden.tstool", 1600000000000L );
+		writeFile ( this.folder, "~lock.tstool", 1600000000000L );
+		writeFile ( this.folder, "copying.tstool.tmp", 1600000000000L );
+		writeFile ( this.folder, "download.tstool.PART", 1600000000000L );
+		writeFile ( this.folder, "job.tstool", 1600000000000L );
+		BatchServerHotFolder hotFolder = openHotFolder ( 0 );
+		assertEquals ( 1, hotFolder.getPendingCount() );
+		assertEquals ( "job.tstool", hotFolder.waitForNextFile(500).getName() );
+		assertNull ( hotFolder.waitForNextFile(200) );
+	}
+
+	/**
+	 * A file is not ready until it has been unchanged for the stable time.
+	 */
+	public void testFileReadyAfterStableTime () throws Exception {
+		writeFile ( this.folder, "job.tstool", -1 );
+		BatchServerHotFolder hotFolder = openHotFolder ( 400 );
+		long start = System.currentTimeMillis();
+		assertNull ( "file should not be ready before the stable time", hotFolder.waitForNextFile(0) );
+		File file = hotFolder.waitForNextFile ( 5000 );
+		assertNotNull ( file );
+		assertTrue ( "file was returned before the stable time", (System.currentTimeMillis() - start) >= 350 );
+	}
+
+	/**
+	 * A file that changes while waiting is not ready until it is unchanged for the stable time.
+	 */
+	public void testChangingFileIsNotReady () throws Exception {
+		File file = writeFile ( this.folder, "job.tstool", -1 );
+		BatchServerHotFolder hotFolder = openHotFolder ( 600 );
+		assertNull ( hotFolder.waitForNextFile(300) );
+		// Append to the file, as if it is still being copied.
+		Files.write ( file.toPath(), "# more\n".getBytes("UTF-8"), java.nio.file.StandardOpenOption.APPEND );
+		assertNull ( "changed file should not be ready", hotFolder.waitForNextFile(400) );
+		assertNotNull ( hotFolder.waitForNextFile(5000) );
+	}
+
+	/**
+	 * Ready files are returned oldest first by modification time, then by name.
+	 */
+	public void testOldestFirst () throws Exception {
+		writeFile ( this.folder, "c.tstool", 1600000002000L );
+		writeFile ( this.folder, "b.tstool", 1600000001000L );
+		writeFile ( this.folder, "a.tstool", 1600000002000L );
+		BatchServerHotFolder hotFolder = openHotFolder ( 0 );
+		assertEquals ( "b.tstool", hotFolder.waitForNextFile(500).getName() );
+		assertEquals ( "a.tstool", hotFolder.waitForNextFile(500).getName() );
+		assertEquals ( "c.tstool", hotFolder.waitForNextFile(500).getName() );
+	}
+
+	/**
+	 * A file is returned once, and again only if it is modified.
+	 */
+	public void testFileReturnedOnceUntilModified () throws Exception {
+		File file = writeFile ( this.folder, "job.tstool", 1600000000000L );
+		BatchServerHotFolder hotFolder = openHotFolder ( 0 );
+		assertNotNull ( hotFolder.waitForNextFile(500) );
+		assertNull ( "unchanged file should not be returned again", hotFolder.waitForNextFile(300) );
+		file.setLastModified ( 1600000005000L );
+		File again = hotFolder.waitForNextFile ( 1000 );
+		assertNotNull ( "modified file should be returned again", again );
+		assertEquals ( file.getAbsolutePath(), again.getPath() );
+	}
+
+	/**
+	 * A pending file that is deleted before it is ready is not returned.
+	 */
+	public void testDeletedFileNotReturned () throws Exception {
+		File file = writeFile ( this.folder, "job.tstool", -1 );
+		BatchServerHotFolder hotFolder = openHotFolder ( 300 );
+		assertEquals ( 1, hotFolder.getPendingCount() );
+		file.delete();
+		assertNull ( hotFolder.waitForNextFile(800) );
+		assertEquals ( 0, hotFolder.getPendingCount() );
+	}
+
+	/**
+	 * Files in subfolders that are added are returned.
+	 */
+	public void testSubfolder () throws Exception {
+		File subfolder = new File ( this.folder, "high" );
+		subfolder.mkdir();
+		writeFile ( subfolder, "job.tstool", 1600000000000L );
+		this.hotFolder = new BatchServerHotFolder ( this.folder, BatchServerHotFolder.MODE_POLL, 0, 50, 1000 );
+		this.hotFolder.addFolder ( subfolder );
+		this.hotFolder.open();
+		File file = this.hotFolder.waitForNextFile ( 500 );
+		assertNotNull ( file );
+		assertEquals ( subfolder.getAbsolutePath(), file.getParentFile().getPath() );
+	}
+
+}
@@ -0,0 +1,229 @@
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for BatchServerJournal job folders, recovery of jobs that were processing when the server stopped,
+ * and removal of old job files.
+ */
+public class BatchServerJournalTest extends TestCase {
+
+	/**
+	 * Temporary hot folder.
+	 */
+	private File hotFolder = null;
+
+	/**
+	 * Journal being tested, closed in tearDown().
+	 */
+	private BatchServerJournal journal = null;
+
+	public BatchServerJournalTest ( String testname ) {
+		super(testname);
+	}
+
+	public BatchServerJournalTest () {
+	}
+
+	protected void setUp () throws Exception {
+		this.hotFolder = Files.createTempDirectory("BatchServerJournalTest").toFile();
+	}
+
+	protected void tearDown () throws Exception {
+		if ( this.journal != null ) {
+			this.journal.close();
+		}
+		deleteFolder ( this.hotFolder );
+	}
+
+	/**
+	 * Delete a folder and its contents.
+	 */
+	private void deleteFolder ( File file ) {
+		File [] files = file.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				deleteFolder ( f );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Return a job folder.
+	 * @param name folder name under the journal folder, for example "processing/high"
+	 */
+	private File getJobsFolder ( String name ) {
+		return new File ( new File(this.hotFolder, BatchServerJournal.JOBS_FOLDER_NAME), name );
+	}
+
+	/**
+	 * Return the number of files in a folder, not including subfolders.
+	 */
+	private int getFileCount ( File folder ) {
+		int count = 0;
+		File [] files = folder.listFiles();
+		if ( files != null ) {
+			for ( File file : files ) {
+				if ( file.isFile() ) {
+					++count;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Open a new journal, as when the server starts.
+	 */
+	private BatchServerJournal openJournal ( int retentionDays ) throws IOException {
+		if ( this.journal != null ) {
+			this.journal.close();
+		}
+		this.journal = new BatchServerJournal ( this.hotFolder, retentionDays );
+		this.journal.open();
+		return this.journal;
+	}
+
+	/**
+	 * Read the journal file.
+	 */
+	private String readJournal () throws IOException {
+		File journalFile = getJobsFolder ( BatchServerJournal.JOURNAL_FILE_NAME );
+		return new String ( Files.readAllBytes(journalFile.toPath()), "UTF-8" );
+	}
+
+	/**
+	 * Write a command file.
+	 */
+	private File writeCommandFile ( File folder, String name ) throws IOException {
+		folder.mkdirs();
+		File file = new File ( folder, name );
+		Files.write ( file.toPath(), ("# " + name + "\n").getBytes("UTF-8") );
+		return file;
+	}
+
+	/**
+	 * Enqueued command files are moved to "processing", and then to "done" or "failed" when the job finishes.
+	 */
+	public void testEnqueueAndFinish () throws Exception {
+		BatchServerJournal journal = openJournal ( 0 );
+		File commandFile1 = writeCommandFile ( this.hotFolder, "ok.tstool" );
+		File commandFile2 = writeCommandFile ( this.hotFolder, "bad.tstool" );
+		BatchServerJob job1 = journal.enqueue ( commandFile1, BatchServerJob.PRIORITY_NORMAL, "", System.currentTimeMillis() );
+		BatchServerJob job2 = journal.enqueue ( commandFile2, BatchServerJob.PRIORITY_HIGH, "", System.currentTimeMillis() );
+		assertFalse ( commandFile1.exists() );
+		assertEquals ( getJobsFolder("processing"), job1.getCommandFile().getParentFile() );
+		assertEquals ( getJobsFolder("processing/high"), job2.getCommandFile().getParentFile() );
+		assertEquals ( job1.getId() + "_ok.tstool", job1.getCommandFile().getName() );
+
+		job1.setStarted ( "worker-1" );
+		journal.start ( job1, 1 );
+		job1.setFinished ( 0 );
+		journal.finish ( job1 );
+		job2.setStarted ( "worker-1" );
+		journal.start ( job2, 0 );
+		job2.setFinished ( 1 );
+		journal.finish ( job2 );
+		assertEquals ( getJobsFolder("done"), job1.getCommandFile().getParentFile() );
+		assertEquals ( getJobsFolder("failed"), job2.getCommandFile().getParentFile() );
+		assertTrue ( job1.getCommandFile().isFile() );
+
+		String text = readJournal();
+		assertTrue ( text.contains("\"Event\":\"enqueue\",\"JobId\":\"" + job1.getId() + "\"") );
+		assertTrue ( text.contains("\"Event\":\"start\",\"JobId\":\"" + job1.getId() + "\"") );
+		assertTrue ( text.contains("\"Event\":\"finish\",\"JobId\":\"" + job2.getId() + "\"") );
+		assertTrue ( text.contains("\"Folder\":\"failed\"") );
+	}
+
+	/**
+	 * Command files that were processing when the server stopped are moved back to the hot folder
+	 * or the priority subfolder, with their original names, when the server starts.
+	 */
+	public void testRecoverRequeuesProcessingJobs () throws Exception {
+		BatchServerJournal journal = openJournal ( 0 );
+		File highFolder = new File ( this.hotFolder, "high" );
+		BatchServerJob job1 = journal.enqueue ( writeCommandFile(this.hotFolder, "normal.tstool"), BatchServerJob.PRIORITY_NORMAL, "", System.currentTimeMillis() );
+		BatchServerJob job2 = journal.enqueue ( writeCommandFile(highFolder, "urgent.tstool"), BatchServerJob.PRIORITY_HIGH, "", System.currentTimeMillis() );
+		// The low priority subfolder does not exist so the file is requeued in the hot folder.
+		journal.enqueue ( writeCommandFile(new File(this.hotFolder, "low"), "later.tstool"), BatchServerJob.PRIORITY_LOW, "", System.currentTimeMillis() );
+		deleteFolder ( new File(this.hotFolder, "low") );
+		// The finished job is not requeued.
+		BatchServerJob finishedJob = journal.enqueue ( writeCommandFile(this.hotFolder, "finished.tstool"), BatchServerJob.PRIORITY_NORMAL, "", System.currentTimeMillis() );
+		finishedJob.setFinished ( 0 );
+		journal.finish ( finishedJob );
+
+		// Restart without finishing the jobs.
+		journal = openJournal ( 0 );
+		List<File> requeuedList = journal.recover();
+		assertEquals ( 3, requeuedList.size() );
+		assertTrue ( new File(this.hotFolder, "normal.tstool").isFile() );
+		assertTrue ( new File(highFolder, "urgent.tstool").isFile() );
+		assertTrue ( new File(this.hotFolder, "later.tstool").isFile() );
+		assertFalse ( new File(this.hotFolder, "finished.tstool").exists() );
+		assertEquals ( 0, getFileCount(getJobsFolder("processing")) );
+		assertEquals ( 0, getFileCount(getJobsFolder("processing/high")) );
+		assertEquals ( 0, getFileCount(getJobsFolder("processing/low")) );
+
+		String text = readJournal();
+		assertTrue ( text.contains("\"Event\":\"requeue\",\"JobId\":\"" + job1.getId() + "\",\"Name\":\"normal.tstool\"") );
+		assertTrue ( text.contains("\"Event\":\"requeue\",\"JobId\":\"" + job2.getId() + "\",\"Name\":\"urgent.tstool\"") );
+
+		// Nothing is requeued the second time.
+		assertEquals ( 0, journal.recover().size() );
+	}
+
+	/**
+	 * If a new command file with the same name was submitted while the server was stopped,
+	 * the requeued file keeps the job identifier in its name so that neither file is replaced.
+	 */
+	public void testRecoverKeepsJobIdWhenNameExists () throws Exception {
+		BatchServerJournal journal = openJournal ( 0 );
+		BatchServerJob job = journal.enqueue ( writeCommandFile(this.hotFolder, "daily.tstool"), BatchServerJob.PRIORITY_NORMAL, "", System.currentTimeMillis() );
+		File newFile = writeCommandFile ( this.hotFolder, "daily.tstool" );
+
+		journal = openJournal ( 0 );
+		List<File> requeuedList = journal.recover();
+		assertEquals ( 1, requeuedList.size() );
+		assertEquals ( job.getId() + "_daily.tstool", requeuedList.get(0).getName() );
+		assertTrue ( requeuedList.get(0).isFile() );
+		assertTrue ( newFile.isFile() );
+	}
+
+	/**
+	 * Files older than the retention period are removed from the done, failed, and logs folders when the journal is opened.
+	 */
+	public void testRetentionRemovesOldFiles () throws Exception {
+		openJournal ( 0 );
+		long old = System.currentTimeMillis() - 10*86400000L;
+		long recent = System.currentTimeMillis() - 2*86400000L;
+		for ( String folderName : new String[] { "done", "failed", "logs" } ) {
+			File folder = getJobsFolder ( folderName );
+			writeCommandFile ( folder, "old.tstool" ).setLastModified ( old );
+			writeCommandFile ( folder, "recent.tstool" ).setLastModified ( recent );
+		}
+		File processingFile = writeCommandFile ( getJobsFolder("processing"), "20200101-000000000-1_old.tstool" );
+		processingFile.setLastModified ( old );
+
+		// Retention of 0 keeps all files.
+		openJournal ( 0 );
+		assertEquals ( 2, getFileCount(getJobsFolder("done")) );
+
+		openJournal ( 7 );
+		for ( String folderName : new String[] { "done", "failed", "logs" } ) {
+			File folder = getJobsFolder ( folderName );
+			assertFalse ( folderName, new File(folder, "old.tstool").exists() );
+			assertTrue ( folderName, new File(folder, "recent.tstool").exists() );
+		}
+		// Files for unfinished jobs are not removed.
+		assertTrue ( processingFile.exists() );
+		// The journal is not removed.
+		assertTrue ( getJobsFolder(BatchServerJournal.JOURNAL_FILE_NAME).isFile() );
+	}
+
+}
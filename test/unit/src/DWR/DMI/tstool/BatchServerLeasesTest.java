@@ -0,0 +1,200 @@
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for BatchServerLeases expiry when several batch server nodes share a hot folder.
+ * The nodes are simulated with a journal and leases for each node in the same JVM,
+ * using the shortest heartbeat (1 second) and lease timeout (2 seconds).
+ */
+public class BatchServerLeasesTest extends TestCase {
+
+	/**
+	 * Heartbeat interval, milliseconds, which is the minimum allowed.
+	 */
+	private static final long HEARTBEAT_MS = 1000;
+
+	/**
+	 * Lease timeout, milliseconds, which is the minimum allowed for the heartbeat.
+	 */
+	private static final long LEASE_TIMEOUT_MS = 2000;
+
+	/**
+	 * Temporary hot folder.
+	 */
+	private File hotFolder = null;
+
+	/**
+	 * Journals that were opened, closed in tearDown().
+	 */
+	private List<BatchServerJournal> journalList = new ArrayList<>();
+
+	public BatchServerLeasesTest ( String testname ) {
+		super(testname);
+	}
+
+	public BatchServerLeasesTest () {
+	}
+
+	protected void setUp () throws Exception {
+		this.hotFolder = Files.createTempDirectory("BatchServerLeasesTest").toFile();
+	}
+
+	protected void tearDown () throws Exception {
+		for ( BatchServerJournal journal : this.journalList ) {
+			journal.close();
+		}
+		deleteFolder ( this.hotFolder );
+	}
+
+	/**
+	 * Delete a folder and its contents.
+	 */
+	private void deleteFolder ( File file ) {
+		File [] files = file.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				deleteFolder ( f );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Return the lease file for a job.
+	 */
+	private File getLeaseFile ( BatchServerJob job ) {
+		File leasesFolder = new File ( new File(this.hotFolder, BatchServerJournal.JOBS_FOLDER_NAME), BatchServerLeases.LEASES_FOLDER_NAME );
+		return new File ( leasesFolder, job.getCommandFile().getName() + BatchServerLeases.LEASE_FILE_EXTENSION );
+	}
+
+	/**
+	 * Open the journal for a node.
+	 */
+	private BatchServerJournal openJournal ( BatchServerLeases leases ) throws IOException {
+		BatchServerJournal journal = new BatchServerJournal ( this.hotFolder, 0, leases );
+		journal.open();
+		this.journalList.add ( journal );
+		return journal;
+	}
+
+	/**
+	 * Write a command file in the hot folder.
+	 */
+	private File writeCommandFile ( String name ) throws IOException {
+		File file = new File ( this.hotFolder, name );
+		Files.write ( file.toPath(), ("# " + name + "\n").getBytes("UTF-8") );
+		return file;
+	}
+
+	/**
+	 * A lease that is renewed by the node that holds it does not expire.
+	 */
+	public void testRenewedLeaseDoesNotExpire () throws Exception {
+		BatchServerLeases leasesA = new BatchServerLeases ( this.hotFolder, "A", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerLeases leasesB = new BatchServerLeases ( this.hotFolder, "B", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerJournal journalA = openJournal ( leasesA );
+		BatchServerJournal journalB = openJournal ( leasesB );
+		BatchServerJob job = journalA.enqueue ( writeCommandFile("job.tstool"), BatchServerJob.PRIORITY_NORMAL, "",
+			System.currentTimeMillis() );
+		assertTrue ( getLeaseFile(job).isFile() );
+		// The node that holds the lease never requeues the job.
+		assertEquals ( 0, journalA.recover().size() );
+		long end = System.currentTimeMillis() + 2*LEASE_TIMEOUT_MS;
+		while ( System.currentTimeMillis() < end ) {
+			assertEquals ( 0, leasesA.heartbeat().size() );
+			assertEquals ( 0, journalB.recover().size() );
+			Thread.sleep ( HEARTBEAT_MS/2 );
+		}
+		assertTrue ( job.getCommandFile().isFile() );
+		job.setFinished ( 0 );
+		journalA.finish ( job );
+		assertFalse ( getLeaseFile(job).exists() );
+	}
+
+	/**
+	 * A lease that is not renewed (because the node stopped) expires after the lease timeout,
+	 * and the job is requeued by another node.  The node then finds that its lease was lost.
+	 */
+	public void testLeaseExpiresWhenNotRenewed () throws Exception {
+		BatchServerLeases leasesA = new BatchServerLeases ( this.hotFolder, "A", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerLeases leasesB = new BatchServerLeases ( this.hotFolder, "B", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerJournal journalA = openJournal ( leasesA );
+		BatchServerJournal journalB = openJournal ( leasesB );
+		BatchServerJob job = journalA.enqueue ( writeCommandFile("job.tstool"), BatchServerJob.PRIORITY_NORMAL, "",
+			System.currentTimeMillis() );
+		// The first check observes the lease, which has not expired.
+		long start = System.currentTimeMillis();
+		assertEquals ( 0, journalB.recover().size() );
+		List<File> requeuedList = null;
+		while ( System.currentTimeMillis() < (start + 3*LEASE_TIMEOUT_MS) ) {
+			requeuedList = journalB.recover();
+			if ( requeuedList.size() > 0 ) {
+				break;
+			}
+			Thread.sleep ( 100 );
+		}
+		assertEquals ( 1, requeuedList.size() );
+		assertTrue ( "lease expired before the timeout", (System.currentTimeMillis() - start) >= LEASE_TIMEOUT_MS );
+		assertEquals ( new File(this.hotFolder, "job.tstool"), requeuedList.get(0) );
+		assertTrue ( requeuedList.get(0).isFile() );
+		assertFalse ( getLeaseFile(job).exists() );
+
+		// The node that held the lease finds that it was lost, and finishing the job leaves the requeued file.
+		List<BatchServerJob> lostList = leasesA.heartbeat();
+		assertEquals ( 1, lostList.size() );
+		assertSame ( job, lostList.get(0) );
+		job.setLeaseLost ( true );
+		job.setFinished ( 1 );
+		journalA.finish ( job );
+		assertTrue ( requeuedList.get(0).isFile() );
+		assertFalse ( getLeaseFile(job).exists() );
+	}
+
+	/**
+	 * A command file in the "processing" folder without a lease file (for example, if the node stopped before the lease
+	 * was written) expires after the lease timeout rather than immediately.
+	 */
+	public void testMissingLeaseExpiresAfterTimeout () throws Exception {
+		BatchServerLeases leasesA = new BatchServerLeases ( this.hotFolder, "A", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerLeases leasesB = new BatchServerLeases ( this.hotFolder, "B", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerJournal journalA = openJournal ( leasesA );
+		BatchServerJournal journalB = openJournal ( leasesB );
+		BatchServerJob job = journalA.enqueue ( writeCommandFile("job.tstool"), BatchServerJob.PRIORITY_NORMAL, "",
+			System.currentTimeMillis() );
+		getLeaseFile(job).delete();
+		assertEquals ( 0, journalB.recover().size() );
+		Thread.sleep ( LEASE_TIMEOUT_MS/2 );
+		assertEquals ( 0, journalB.recover().size() );
+		Thread.sleep ( LEASE_TIMEOUT_MS );
+		assertEquals ( 1, journalB.recover().size() );
+	}
+
+	/**
+	 * A lease for a node that was restarted with the same node identifier has expired immediately,
+	 * so the node runs its own unfinished jobs again without waiting for the lease timeout.
+	 */
+	public void testOwnLeaseExpiresAfterRestart () throws Exception {
+		BatchServerLeases leasesA = new BatchServerLeases ( this.hotFolder, "A", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerJournal journalA = openJournal ( leasesA );
+		journalA.enqueue ( writeCommandFile("job.tstool"), BatchServerJob.PRIORITY_NORMAL, "", System.currentTimeMillis() );
+		journalA.close();
+
+		// Restart node A.  Another node waits for the lease timeout.
+		BatchServerLeases leasesB = new BatchServerLeases ( this.hotFolder, "B", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerJournal journalB = openJournal ( leasesB );
+		assertEquals ( 0, journalB.recover().size() );
+		BatchServerLeases leasesA2 = new BatchServerLeases ( this.hotFolder, "A", LEASE_TIMEOUT_MS, HEARTBEAT_MS );
+		BatchServerJournal journalA2 = openJournal ( leasesA2 );
+		List<File> requeuedList = journalA2.recover();
+		assertEquals ( 1, requeuedList.size() );
+		assertEquals ( "job.tstool", requeuedList.get(0).getName() );
+	}
+
+}
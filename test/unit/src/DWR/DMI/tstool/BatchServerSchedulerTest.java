@@ -0,0 +1,198 @@
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for BatchServerScheduler priority, ordering, aging, and duplicate removal.
+ */
+public class BatchServerSchedulerTest extends TestCase {
+
+	/**
+	 * Temporary hot folder.
+	 */
+	private File hotFolder = null;
+
+	public BatchServerSchedulerTest ( String testname ) {
+		super(testname);
+	}
+
+	public BatchServerSchedulerTest () {
+	}
+
+	protected void setUp () throws Exception {
+		this.hotFolder = Files.createTempDirectory("BatchServerSchedulerTest").toFile();
+	}
+
+	protected void tearDown () throws Exception {
+		deleteFolder ( this.hotFolder );
+	}
+
+	/**
+	 * Delete a folder and its contents.
+	 */
+	private void deleteFolder ( File file ) {
+		File [] files = file.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				deleteFolder ( f );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Write a command file.
+	 * @param folder folder for the file
+	 * @param name file name
+	 * @param content file content
+	 */
+	private File writeCommandFile ( File folder, String name, String content ) throws IOException {
+		folder.mkdirs();
+		File file = new File ( folder, name );
+		Files.write ( file.toPath(), content.getBytes("UTF-8") );
+		return file;
+	}
+
+	/**
+	 * Return the name of the next file, or null if the queue is empty.
+	 */
+	private String nextName ( BatchServerScheduler scheduler ) {
+		BatchServerScheduler.QueuedFile queuedFile = scheduler.next();
+		if ( queuedFile == null ) {
+			return null;
+		}
+		scheduler.jobFinished ( queuedFile.getShareKey() );
+		return queuedFile.getFile().getName();
+	}
+
+	/**
+	 * The priority is determined from the hot folder subfolder, and the annotation overrides the subfolder.
+	 */
+	public void testPriority () throws Exception {
+		BatchServerScheduler scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 0 );
+		assertEquals ( BatchServerJob.PRIORITY_NORMAL,
+			scheduler.add(writeCommandFile(this.hotFolder, "a.tstool", "# a\n")).getPriority() );
+		assertEquals ( BatchServerJob.PRIORITY_HIGH,
+			scheduler.add(writeCommandFile(new File(this.hotFolder, "high"), "b.tstool", "# b\n")).getPriority() );
+		assertEquals ( BatchServerJob.PRIORITY_LOW,
+			scheduler.add(writeCommandFile(new File(this.hotFolder, "low"), "c.tstool", "# c\n")).getPriority() );
+		assertEquals ( BatchServerJob.PRIORITY_LOW,
+			scheduler.add(writeCommandFile(new File(this.hotFolder, "high"), "d.tstool", "# d\n#@priority low\n")).getPriority() );
+		assertEquals ( BatchServerJob.PRIORITY_HIGH,
+			scheduler.add(writeCommandFile(this.hotFolder, "e.tstool", "#@Priority High\n")).getPriority() );
+		// An invalid annotation is ignored.
+		assertEquals ( BatchServerJob.PRIORITY_NORMAL,
+			scheduler.add(writeCommandFile(this.hotFolder, "f.tstool", "#@priority urgent\n")).getPriority() );
+		assertEquals ( 6, scheduler.getQueueDepth() );
+	}
+
+	/**
+	 * Higher priority files run first, and files of the same priority run in the order that they were submitted.
+	 */
+	public void testOrder () throws Exception {
+		BatchServerScheduler scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 0 );
+		long now = System.currentTimeMillis();
+		scheduler.add ( writeCommandFile(new File(this.hotFolder, "low"), "low.tstool", "# low\n"), now - 3000 );
+		scheduler.add ( writeCommandFile(this.hotFolder, "normal2.tstool", "# normal2\n"), now - 1000 );
+		scheduler.add ( writeCommandFile(this.hotFolder, "normal1.tstool", "# normal1\n"), now - 2000 );
+		scheduler.add ( writeCommandFile(new File(this.hotFolder, "high"), "high.tstool", "# high\n"), now );
+		// Files submitted at the same time run in the order that they were queued.
+		scheduler.add ( writeCommandFile(this.hotFolder, "z.tstool", "# z\n"), now );
+		scheduler.add ( writeCommandFile(this.hotFolder, "y.tstool", "# y\n"), now );
+		assertEquals ( "high.tstool", nextName(scheduler) );
+		assertEquals ( "normal1.tstool", nextName(scheduler) );
+		assertEquals ( "normal2.tstool", nextName(scheduler) );
+		assertEquals ( "z.tstool", nextName(scheduler) );
+		assertEquals ( "y.tstool", nextName(scheduler) );
+		assertEquals ( "low.tstool", nextName(scheduler) );
+		assertNull ( nextName(scheduler) );
+	}
+
+	/**
+	 * The order uses the time that files were queued, not the modification time,
+	 * which may be preserved by the tool that copied the file.
+	 */
+	public void testOrderIgnoresModificationTime () throws Exception {
+		BatchServerScheduler scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 0 );
+		File first = writeCommandFile ( this.hotFolder, "first.tstool", "# first\n" );
+		first.setLastModified ( System.currentTimeMillis() );
+		File copied = writeCommandFile ( this.hotFolder, "copied.tstool", "# copied\n" );
+		copied.setLastModified ( 1600000000000L );
+		scheduler.add ( first );
+		scheduler.add ( copied );
+		assertEquals ( "first.tstool", nextName(scheduler) );
+		assertEquals ( "copied.tstool", nextName(scheduler) );
+	}
+
+	/**
+	 * A waiting file's priority is raised one level for each aging interval, so low priority files eventually run.
+	 */
+	public void testAging () throws Exception {
+		BatchServerScheduler scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 60000 );
+		long now = System.currentTimeMillis();
+		File lowFolder = new File ( this.hotFolder, "low" );
+		File highFolder = new File ( this.hotFolder, "high" );
+		// Waited one interval so is normal priority, which runs after high priority files.
+		scheduler.add ( writeCommandFile(lowFolder, "low1.tstool", "# low1\n"), now - 90000 );
+		// Waited two intervals so is high priority, and is older than the high priority file.
+		scheduler.add ( writeCommandFile(lowFolder, "low2.tstool", "# low2\n"), now - 150000 );
+		scheduler.add ( writeCommandFile(highFolder, "high.tstool", "# high\n"), now - 1000 );
+		scheduler.add ( writeCommandFile(this.hotFolder, "normal.tstool", "# normal\n"), now - 30000 );
+		assertEquals ( "low2.tstool", nextName(scheduler) );
+		assertEquals ( "high.tstool", nextName(scheduler) );
+		assertEquals ( "low1.tstool", nextName(scheduler) );
+		assertEquals ( "normal.tstool", nextName(scheduler) );
+
+		// Without aging, the low priority files run last.
+		scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 0 );
+		scheduler.add ( new File(lowFolder, "low2.tstool"), now - 150000 );
+		scheduler.add ( new File(this.hotFolder, "normal.tstool"), now - 30000 );
+		assertEquals ( "normal.tstool", nextName(scheduler) );
+		assertEquals ( "low2.tstool", nextName(scheduler) );
+	}
+
+	/**
+	 * Adding a file that is already queued replaces it, and files can be removed.
+	 */
+	public void testReplaceAndRemove () throws Exception {
+		BatchServerScheduler scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 0 );
+		long now = System.currentTimeMillis();
+		File a = writeCommandFile ( this.hotFolder, "a.tstool", "# a\n" );
+		File b = writeCommandFile ( this.hotFolder, "b.tstool", "# b\n" );
+		scheduler.add ( a, now - 2000 );
+		scheduler.add ( b, now - 1000 );
+		// The modified file is submitted again so runs after the other file.
+		scheduler.add ( a, now );
+		assertEquals ( 2, scheduler.getQueueDepth() );
+		assertEquals ( "b.tstool", nextName(scheduler) );
+		scheduler.remove ( a );
+		assertEquals ( 0, scheduler.getQueueDepth() );
+		assertNull ( nextName(scheduler) );
+	}
+
+	/**
+	 * Queued files with identical content are removed, oldest first, to be coalesced with a running job.
+	 */
+	public void testRemoveDuplicates () throws Exception {
+		BatchServerScheduler scheduler = new BatchServerScheduler ( this.hotFolder, BatchServerScheduler.FAIR_SHARE_NONE, 0 );
+		long now = System.currentTimeMillis();
+		BatchServerScheduler.QueuedFile running = scheduler.add (
+			writeCommandFile(this.hotFolder, "run.tstool", "# same\n"), now - 5000 );
+		scheduler.add ( writeCommandFile(this.hotFolder, "copy2.tstool", "# same\n"), now - 1000 );
+		scheduler.add ( writeCommandFile(this.hotFolder, "copy1.tstool", "# same\n"), now - 2000 );
+		scheduler.add ( writeCommandFile(this.hotFolder, "other.tstool", "# other\n"), now - 3000 );
+		assertEquals ( "run.tstool", nextName(scheduler) );
+		List<BatchServerScheduler.QueuedFile> duplicates = scheduler.removeDuplicates ( running.getContentKey() );
+		assertEquals ( 2, duplicates.size() );
+		assertEquals ( "copy1.tstool", duplicates.get(0).getFile().getName() );
+		assertEquals ( "copy2.tstool", duplicates.get(1).getFile().getName() );
+		assertEquals ( 1, scheduler.getQueueDepth() );
+		assertEquals ( 0, scheduler.removeDuplicates(null).size() );
+	}
+
+}
@@ -0,0 +1,162 @@
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import RTi.Util.IO.PropList;
+import junit.framework.TestCase;
+import rti.tscommandprocessor.core.TSCommandFileRunner;
+
+/**
+ * Tests for the IncrementalRunCache fingerprint, which must change when any input file changes
+ * and must not be computed for command files whose inputs cannot be determined before running.
+ */
+public class IncrementalRunCacheTest extends TestCase {
+
+	/**
+	 * Temporary folder for the command files and input files, used as the working directory.
+	 */
+	private File folder = null;
+
+	public IncrementalRunCacheTest ( String testname ) {
+		super(testname);
+	}
+
+	public IncrementalRunCacheTest () {
+	}
+
+	protected void setUp () throws Exception {
+		this.folder = Files.createTempDirectory("IncrementalRunCacheTest").toFile();
+	}
+
+	protected void tearDown () throws Exception {
+		deleteFolder ( this.folder );
+	}
+
+	/**
+	 * Delete a folder and its contents.
+	 */
+	private void deleteFolder ( File file ) {
+		File [] files = file.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				deleteFolder ( f );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Write a file in the temporary folder.
+	 * @param name file name
+	 * @param content file content
+	 * @param modified modification time to set, milliseconds
+	 */
+	private File writeFile ( String name, String content, long modified ) throws IOException {
+		File file = new File ( this.folder, name );
+		Files.write ( file.toPath(), content.getBytes("UTF-8") );
+		file.setLastModified ( modified );
+		return file;
+	}
+
+	/**
+	 * Read a command file and compute its fingerprint.
+	 * @param commandFile command file
+	 * @param processorProps processor properties from the command line
+	 * @return the fingerprint, or null if the command file cannot be cached
+	 */
+	@SuppressWarnings("rawtypes")
+	private String computeFingerprint ( File commandFile, PropList processorProps ) throws Exception {
+		TSCommandFileRunner runner = new TSCommandFileRunner ( processorProps, new ArrayList<Class>() );
+		runner.readCommandFile ( commandFile.getPath(), false );
+		IncrementalRunCache cache = new IncrementalRunCache ( new File(this.folder, "cache") );
+		return cache.computeFingerprint ( commandFile, runner.getProcessor(), processorProps, this.folder.getPath() );
+	}
+
+	/**
+	 * The input files of commands that are not Read* commands are part of the fingerprint, and output files are not.
+	 */
+	public void testInputFilesOfAllCommands () throws Exception {
+		File template = writeFile ( "template.txt", "Value=${Value}\n", 1600000000000L );
+		writeFile ( "input1.txt", "a\n", 1600000000000L );
+		writeFile ( "input2.txt", "a\n", 1600000000000L );
+		File commandFile = writeFile ( "test.tstool",
+			"ExpandTemplateFile(InputFile=\"template.txt\",OutputFile=\"expanded.txt\")\n" +
+			"CompareFiles(InputFile1=\"input1.txt\",InputFile2=\"input2.txt\")\n" +
+			"CopyFile(InputFile=\"input1.txt\",OutputFile=\"copy.txt\")\n", 1600000000000L );
+		PropList props = new PropList ( "Test" );
+		String fingerprint = computeFingerprint ( commandFile, props );
+		assertNotNull ( fingerprint );
+		assertEquals ( fingerprint, computeFingerprint(commandFile, props) );
+
+		// Output files are not inputs.
+		writeFile ( "copy.txt", "a\n", 1600000005000L );
+		assertEquals ( fingerprint, computeFingerprint(commandFile, props) );
+
+		// A changed template file changes the fingerprint.
+		template.setLastModified ( 1600000001000L );
+		String fingerprint2 = computeFingerprint ( commandFile, props );
+		assertNotNull ( fingerprint2 );
+		assertFalse ( fingerprint.equals(fingerprint2) );
+
+		// A changed CompareFiles input file changes the fingerprint, here with the same modification time and a new size.
+		writeFile ( "input1.txt", "ab\n", 1600000000000L );
+		assertFalse ( fingerprint2.equals(computeFingerprint(commandFile, props)) );
+	}
+
+	/**
+	 * Processor properties from the command line are part of the fingerprint.
+	 */
+	public void testProcessorProperties () throws Exception {
+		writeFile ( "input.txt", "a\n", 1600000000000L );
+		File commandFile = writeFile ( "test.tstool", "CopyFile(InputFile=\"input.txt\",OutputFile=\"copy.txt\")\n", 1600000000000L );
+		PropList props = new PropList ( "Test" );
+		props.set ( "Scenario", "A" );
+		String fingerprint = computeFingerprint ( commandFile, props );
+		props.set ( "Scenario", "B" );
+		assertFalse ( fingerprint.equals(computeFingerprint(commandFile, props)) );
+	}
+
+	/**
+	 * Command files with dates relative to the current time are not cached.
+	 */
+	public void testCurrentDateNotCached () throws Exception {
+		writeFile ( "input.dv", "# DateValue\n", 1600000000000L );
+		File commandFile = writeFile ( "test.tstool",
+			"SetInputPeriod(InputStart=\"CurrentToDay - 7Day\",InputEnd=\"CurrentToDay\")\n" +
+			"ReadDateValue(InputFile=\"input.dv\")\n", 1600000000000L );
+		assertNull ( computeFingerprint(commandFile, new PropList("Test")) );
+
+		commandFile = writeFile ( "test2.tstool",
+			"SetProperty(PropertyName=\"End\",PropertyType=DateTime,PropertyValue=\"CurrentToMinute\")\n" +
+			"ReadDateValue(InputFile=\"input.dv\")\n", 1600000000000L );
+		assertNull ( computeFingerprint(commandFile, new PropList("Test")) );
+
+		// A fixed period is cached.
+		commandFile = writeFile ( "test3.tstool",
+			"SetInputPeriod(InputStart=\"2020-01-01\",InputEnd=\"2020-12-31\")\n" +
+			"ReadDateValue(InputFile=\"input.dv\")\n", 1600000000000L );
+		assertNotNull ( computeFingerprint(commandFile, new PropList("Test")) );
+	}
+
+	/**
+	 * Command files with commands whose inputs cannot be determined before running are not cached.
+	 */
+	public void testUncacheableCommands () throws Exception {
+		writeFile ( "product.tsp", "[Product]\n", 1600000000000L );
+		File commandFile = writeFile ( "test.tstool",
+			"ProcessTSProduct(TSProductFile=\"product.tsp\",RunMode=BatchOnly,View=False,OutputFile=\"graph.png\")\n",
+			1600000000000L );
+		assertNull ( computeFingerprint(commandFile, new PropList("Test")) );
+
+		commandFile = writeFile ( "test2.tstool", "RunProgram(CommandLine=\"echo test\")\n", 1600000000000L );
+		assertNull ( computeFingerprint(commandFile, new PropList("Test")) );
+
+		// Input file that is set when running.
+		commandFile = writeFile ( "test3.tstool", "CopyFile(InputFile=\"${InputFile}\",OutputFile=\"copy.txt\")\n", 1600000000000L );
+		assertNull ( computeFingerprint(commandFile, new PropList("Test")) );
+	}
+
+}
@@ -0,0 +1,196 @@
+package DWR.DMI.tstool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for PluginManifestIndex, which must only reuse an index entry if the jar file has not changed.
+ */
+public class PluginManifestIndexTest extends TestCase {
+
+	/**
+	 * Temporary folder for the jar files and index file.
+	 */
+	private File folder = null;
+
+	public PluginManifestIndexTest ( String testname ) {
+		super(testname);
+	}
+
+	public PluginManifestIndexTest () {
+	}
+
+	protected void setUp () throws Exception {
+		this.folder = Files.createTempDirectory("PluginManifestIndexTest").toFile();
+	}
+
+	protected void tearDown () throws Exception {
+		deleteFolder ( this.folder );
+	}
+
+	/**
+	 * Delete a folder and its contents.
+	 */
+	private void deleteFolder ( File file ) {
+		File [] files = file.listFiles();
+		if ( files != null ) {
+			for ( File f : files ) {
+				deleteFolder ( f );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Write a plugin jar file with a MANIFEST.
+	 * @param jarFile jar file to write
+	 * @param dataStoreClass Datastore-Class MANIFEST value
+	 * @param commandClasses Command-ClassN MANIFEST values
+	 * @param modified modification time to set, milliseconds
+	 */
+	private void writeJar ( File jarFile, String dataStoreClass, String [] commandClasses, long modified ) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put ( Attributes.Name.MANIFEST_VERSION, "1.0" );
+		attributes.putValue ( "Datastore-Class", dataStoreClass );
+		attributes.putValue ( "DataStoreFactory-Class", dataStoreClass + "Factory" );
+		for ( int i = 0; i < commandClasses.length; i++ ) {
+			attributes.putValue ( "Command-Class" + (i + 1), commandClasses[i] );
+		}
+		try ( JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile), manifest) ) {
+		}
+		jarFile.setLastModified ( modified );
+	}
+
+	/**
+	 * The MANIFEST values are read for a new jar file.
+	 */
+	public void testGetEntryReadsManifest () throws Exception {
+		File jarFile = new File ( this.folder, "plugin.jar" );
+		writeJar ( jarFile, "org.example.ExampleDataStore", new String[] { "org.example.ReadExample_Command",
+			"org.example.WriteExample_Command" }, 1600000000000L );
+		PluginManifestIndex index = new PluginManifestIndex ( new File(this.folder, PluginManifestIndex.INDEX_FILE_NAME) );
+		PluginManifestIndex.Entry entry = index.getEntry ( jarFile );
+		assertNotNull ( entry );
+		assertEquals ( "org.example.ExampleDataStore", entry.getDataStoreClass() );
+		assertEquals ( "org.example.ExampleDataStoreFactory", entry.getDataStoreFactoryClass() );
+		assertEquals ( 2, entry.getCommandClassList().size() );
+		assertEquals ( "org.example.WriteExample_Command", entry.getCommandClassList().get(1) );
+		assertNull ( index.getEntry(new File(this.folder, "missing.jar")) );
+	}
+
+	/**
+	 * An unchanged jar file uses the saved entry without reading the jar file,
+	 * and a changed modification time or size causes the MANIFEST to be read again.
+	 */
+	public void testEntryInvalidatedWhenJarChanges () throws Exception {
+		File indexFile = new File ( this.folder, PluginManifestIndex.INDEX_FILE_NAME );
+		File jarFile = new File ( this.folder, "plugin.jar" );
+		writeJar ( jarFile, "org.example.OldDataStore", new String[] { "org.example.Old_Command" }, 1600000000000L );
+		PluginManifestIndex index = new PluginManifestIndex ( indexFile );
+		index.getEntry ( jarFile );
+		index.write();
+		assertTrue ( indexFile.isFile() );
+
+		// Rewrite the jar with the same size and modification time (the class names have the same length),
+		// which is treated as unchanged, so the saved entry is used.
+		long size = jarFile.length();
+		writeJar ( jarFile, "org.example.NewDataStore", new String[] { "org.example.New_Command" }, 1600000000000L );
+		assertEquals ( size, jarFile.length() );
+		index = PluginManifestIndex.read ( indexFile );
+		assertEquals ( "org.example.OldDataStore", index.getEntry(jarFile).getDataStoreClass() );
+
+		// A new modification time causes the MANIFEST to be read.
+		jarFile.setLastModified ( 1600000001000L );
+		index = PluginManifestIndex.read ( indexFile );
+		PluginManifestIndex.Entry entry = index.getEntry ( jarFile );
+		assertEquals ( "org.example.NewDataStore", entry.getDataStoreClass() );
+		assertEquals ( "org.example.New_Command", entry.getCommandClassList().get(0) );
+
+		// A new size with the same modification time causes the MANIFEST to be read.
+		index.write();
+		writeJar ( jarFile, "org.example.LongerNameDataStore", new String[0], 1600000001000L );
+		index = PluginManifestIndex.read ( indexFile );
+		entry = index.getEntry ( jarFile );
+		assertEquals ( "org.example.LongerNameDataStore", entry.getDataStoreClass() );
+		assertEquals ( 0, entry.getCommandClassList().size() );
+	}
+
+	/**
+	 * Entries for jar files that were not used in a run are removed when the index is written.
+	 */
+	public void testUnusedEntriesRemovedOnWrite () throws Exception {
+		File indexFile = new File ( this.folder, PluginManifestIndex.INDEX_FILE_NAME );
+		File jarFile1 = new File ( this.folder, "plugin1.jar" );
+		File jarFile2 = new File ( this.folder, "plugin2.jar" );
+		writeJar ( jarFile1, "org.example.OneDataStore", new String[0], 1600000000000L );
+		writeJar ( jarFile2, "org.example.TwoDataStore", new String[0], 1600000000000L );
+		PluginManifestIndex index = new PluginManifestIndex ( indexFile );
+		index.getEntry ( jarFile1 );
+		index.getEntry ( jarFile2 );
+		index.write();
+		String text = new String ( Files.readAllBytes(indexFile.toPath()), "UTF-8" );
+		assertTrue ( text.contains("plugin1.jar") );
+		assertTrue ( text.contains("plugin2.jar") );
+
+		// Only use the first jar in the next run.
+		index = PluginManifestIndex.read ( indexFile );
+		index.getEntry ( jarFile1 );
+		index.write();
+		text = new String ( Files.readAllBytes(indexFile.toPath()), "UTF-8" );
+		assertTrue ( text.contains("plugin1.jar") );
+		assertFalse ( text.contains("plugin2.jar") );
+	}
+
+	/**
+	 * The saved "dep" folder jar list is reused until the "dep" folder changes.
+	 */
+	public void testDepJarListInvalidatedWhenFolderChanges () throws Exception {
+		File indexFile = new File ( this.folder, PluginManifestIndex.INDEX_FILE_NAME );
+		File jarFile = new File ( this.folder, "plugin.jar" );
+		writeJar ( jarFile, "org.example.ExampleDataStore", new String[0], 1600000000000L );
+		File depFolder = new File ( this.folder, "dep" );
+		depFolder.mkdir();
+		writeJar ( new File(depFolder, "lib1.jar"), "x", new String[0], 1600000000000L );
+		depFolder.setLastModified ( 1600000000000L );
+		PluginManifestIndex index = new PluginManifestIndex ( indexFile );
+		assertEquals ( 1, index.getDepJarFiles(jarFile.getPath()).size() );
+		index.write();
+
+		// Add a jar file but restore the folder modification time, so the saved list is used.
+		writeJar ( new File(depFolder, "lib2.jar"), "x", new String[0], 1600000000000L );
+		depFolder.setLastModified ( 1600000000000L );
+		index = PluginManifestIndex.read ( indexFile );
+		assertEquals ( 1, index.getDepJarFiles(jarFile.getPath()).size() );
+
+		// Change the folder modification time, so the folder is listed again.
+		depFolder.setLastModified ( 1600000002000L );
+		index = PluginManifestIndex.read ( indexFile );
+		List<File> depJarFiles = index.getDepJarFiles ( jarFile.getPath() );
+		assertEquals ( 2, depJarFiles.size() );
+	}
+
+	/**
+	 * A corrupt index file is ignored and rebuilt.
+	 */
+	public void testCorruptIndexIsRebuilt () throws Exception {
+		File indexFile = new File ( this.folder, PluginManifestIndex.INDEX_FILE_NAME );
+		Files.write ( indexFile.toPath(), "Jar=/x.jar\nSize=notanumber\n".getBytes("UTF-8") );
+		File jarFile = new File ( this.folder, "plugin.jar" );
+		writeJar ( jarFile, "org.example.ExampleDataStore", new String[0], 1600000000000L );
+		PluginManifestIndex index = PluginManifestIndex.read ( indexFile );
+		assertEquals ( "org.example.ExampleDataStore", index.getEntry(jarFile).getDataStoreClass() );
+		index.write();
+		String text = new String ( Files.readAllBytes(indexFile.toPath()), "UTF-8" );
+		assertFalse ( text.contains("notanumber") );
+	}
+
+}